@@ -0,0 +1,110 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.ant.jdt.ecj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.testframework.AbstractTestDirectoryBasedTest;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class ClassFileTransferTest extends AbstractTestDirectoryBasedTest {
+
+  @Test
+  public void copy() {
+    Map<String, File> compiledClasses = createClassFile("a/A.class", "first");
+    ClassFileTransfer transfer = new ClassFileTransfer(OutputStrategy.copy);
+    transfer.transfer(getDestdir(), compiledClasses);
+
+    assertContent("a/A.class", "first");
+    assertTrue(transfer.getStatistics(), transfer.getStatistics().contains("copied 1 class file(s) (5 bytes)"));
+
+    // the copy doesn't change with the source
+    getTestDirectory().createFile("bin/a/A.class", "other");
+    assertContent("a/A.class", "first");
+  }
+
+  @Test
+  public void link() throws Exception {
+    try {
+      Class.forName("java.nio.file.Files");
+    } catch (ClassNotFoundException ex) {
+      Assume.assumeTrue(false);
+    }
+    Map<String, File> compiledClasses = createClassFile("a/A.class", "first");
+    ClassFileTransfer transfer = new ClassFileTransfer(OutputStrategy.link);
+    transfer.transfer(getDestdir(), compiledClasses);
+
+    assertContent("a/A.class", "first");
+    assertTrue(transfer.getStatistics(), transfer.getStatistics().contains("linked 1 class file(s) (5 bytes)"));
+
+    // the link shares the content with the source
+    getTestDirectory().createFile("bin/a/A.class", "other");
+    assertContent("a/A.class", "other");
+  }
+
+  @Test
+  public void copyIfLinkFails() {
+    Map<String, File> compiledClasses = createClassFile("a/A.class", "first");
+    ClassFileTransfer transfer = new ClassFileTransfer(OutputStrategy.link) {
+      @Override
+      boolean link(File source, File destfile) {
+        return false;
+      }
+    };
+    transfer.transfer(getDestdir(), compiledClasses);
+
+    assertContent("a/A.class", "first");
+    assertTrue(transfer.getStatistics(), transfer.getStatistics().contains("copied 1 class file(s) (5 bytes)"));
+    assertTrue(transfer.getStatistics(), transfer.getStatistics().contains("linked 0 class file(s)"));
+  }
+
+  @Test
+  public void skipUnchanged() {
+    Map<String, File> compiledClasses = createClassFile("a/A.class", "first");
+    compiledClasses.putAll(createClassFile("a/B.class", "second"));
+    new ClassFileTransfer(OutputStrategy.copy).transfer(getDestdir(), compiledClasses);
+    File destfile = new File(getDestdir(), "a/A.class");
+    destfile.setLastModified(0);
+
+    // only the changed class file is transferred again
+    getTestDirectory().createFile("bin/a/B.class", "changed");
+    ClassFileTransfer transfer = new ClassFileTransfer(OutputStrategy.copy);
+    transfer.transfer(getDestdir(), compiledClasses);
+
+    assertEquals(0, destfile.lastModified());
+    assertContent("a/B.class", "changed");
+    assertTrue(transfer.getStatistics(), transfer.getStatistics().contains("copied 1 class file(s) (7 bytes)"));
+    assertTrue(transfer.getStatistics(), transfer.getStatistics().contains("1 unchanged"));
+  }
+
+  private Map<String, File> createClassFile(String name, String content) {
+    getTestDirectory().createSubDirectory(new File("bin", name).getParent());
+    Map<String, File> result = new HashMap<String, File>();
+    result.put(name, getTestDirectory().createFile("bin/" + name, content));
+    return result;
+  }
+
+  private File getDestdir() {
+    return new File(getTestDirectoryRootDir(), "classes");
+  }
+
+  private void assertContent(String name, String expected) {
+    assertEquals(expected, new String(Utilities.readFile(new File(getDestdir(), name))));
+  }
+}
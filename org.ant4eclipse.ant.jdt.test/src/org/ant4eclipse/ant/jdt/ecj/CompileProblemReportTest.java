@@ -0,0 +1,62 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.ant.jdt.ecj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.testframework.AbstractTestDirectoryBasedTest;
+import org.eclipse.jdt.internal.compiler.problem.DefaultProblem;
+import org.eclipse.jdt.internal.compiler.problem.ProblemSeverities;
+import org.junit.Test;
+
+public class CompileProblemReportTest extends AbstractTestDirectoryBasedTest {
+
+  @Test
+  public void escapeStrings() {
+    File file = new File(getTestDirectoryRootDir(), "src/A.java");
+    CompileProblemReport report = new CompileProblemReport();
+    report.add(file, problem("quote \" backslash \\ tab \t newline \n return \r bell \u0007 umlaut \u00e4",
+        ProblemSeverities.Error));
+    assertEquals(1, report.getCount());
+    assertEquals("{\"severity\":\"ERROR\",\"file\":\"" + file.getAbsolutePath().replace("\\", "\\\\")
+        + "\",\"line\":3,\"start\":42,\"end\":44,\"id\":16777218,\"category\":"
+        + problem("", ProblemSeverities.Error).getCategoryID()
+        + ",\"message\":\"quote \\\" backslash \\\\ tab \\t newline \\n return \\r bell \\u0007 umlaut \u00e4\"}\n",
+        report.toString());
+  }
+
+  @Test
+  public void appendToFile() {
+    File file = new File(getTestDirectoryRootDir(), "src/A.java");
+    File reportFile = new File(getTestDirectoryRootDir(), "problems.json");
+    CompileProblemReport first = new CompileProblemReport();
+    first.add(file, problem("first", ProblemSeverities.Error));
+    first.appendTo(reportFile);
+    CompileProblemReport second = new CompileProblemReport();
+    second.add(file, problem("second", ProblemSeverities.Warning));
+    second.appendTo(reportFile);
+
+    String[] lines = new String(Utilities.readFile(reportFile)).split("\n");
+    assertEquals(2, lines.length);
+    assertEquals(first.toString(), lines[0] + "\n");
+    assertEquals(second.toString(), lines[1] + "\n");
+    assertTrue(lines[1].startsWith("{\"severity\":\"WARNING\""));
+  }
+
+  private DefaultProblem problem(String message, int severity) {
+    return new DefaultProblem("A.java".toCharArray(), message, 16777218, new String[0], severity, 42, 44, 3, 1);
+  }
+}
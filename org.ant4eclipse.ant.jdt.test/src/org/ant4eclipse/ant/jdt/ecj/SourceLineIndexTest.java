@@ -0,0 +1,61 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.ant.jdt.ecj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class SourceLineIndexTest {
+
+  @Test
+  public void lineBreaks() {
+    for (String lineBreak : new String[] { "\n", "\r", "\r\n" }) {
+      SourceLineIndex index = new SourceLineIndex(("first" + lineBreak + lineBreak + "third").toCharArray());
+      assertEquals(3, index.getLineCount());
+      assertEquals(0, index.getLineStart(1));
+      assertEquals(5 + lineBreak.length(), index.getLineStart(2));
+      assertEquals(5 + 2 * lineBreak.length(), index.getLineStart(3));
+      assertEquals("first", index.getLine(1));
+      assertEquals("", index.getLine(2));
+      assertEquals("third", index.getLine(3));
+    }
+  }
+
+  @Test
+  public void mixedLineBreaks() {
+    SourceLineIndex index = new SourceLineIndex("a\r\nb\rc\nd\n".toCharArray());
+    assertEquals(5, index.getLineCount());
+    assertEquals(3, index.getLineStart(2));
+    assertEquals(5, index.getLineStart(3));
+    assertEquals(7, index.getLineStart(4));
+    assertEquals(9, index.getLineStart(5));
+    assertEquals("d", index.getLine(4));
+    assertEquals("", index.getLine(5));
+  }
+
+  @Test
+  public void outOfRange() {
+    SourceLineIndex index = new SourceLineIndex("a\nb".toCharArray());
+    assertEquals(-1, index.getLineStart(0));
+    assertEquals(-1, index.getLineStart(3));
+    assertNull(index.getLine(0));
+    assertNull(index.getLine(-1));
+    assertNull(index.getLine(3));
+
+    SourceLineIndex empty = new SourceLineIndex(new char[0]);
+    assertEquals(1, empty.getLineCount());
+    assertEquals("", empty.getLine(1));
+    assertNull(empty.getLine(2));
+  }
+}
@@ -12,6 +12,7 @@
 package org.ant4eclipse.ant.jdt;
 
 import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.jdt.ecj.AccessRules;
 import org.apache.tools.ant.types.Path;
 
 import java.io.File;
@@ -37,19 +38,19 @@ import java.util.Set;
  */
 public class EcjAdditionalCompilerArguments {
 
-  private Path                 _sourceFilteredFilesetPath;
+  private Path                   _sourceFilteredFilesetPath;
 
   /** maps source folders to output folders */
-  private Map<File, File>      _outputFolderMap;
+  private Map<File, File>        _outputFolderMap;
 
   /** maps output folders to source folders */
-  private Map<File, Set<File>> _sourceFolderMap;
+  private Map<File, Set<File>>   _sourceFolderMap;
 
-  /** maps class path entries to access restrictions */
-  private Map<File, String>    _accessRestrictions;
+  /** maps class path entries to (precompiled) access restrictions */
+  private Map<File, AccessRules> _accessRestrictions;
 
   /** the boot class path access restrictions */
-  private String               _bootClassPathAccessRestrictions;
+  private AccessRules            _bootClassPathAccessRestrictions;
 
   /**
    * <p>
@@ -58,7 +59,7 @@ public class EcjAdditionalCompilerArguments {
    */
   public EcjAdditionalCompilerArguments() {
     // create the maps
-    this._accessRestrictions = new HashMap<File, String>();
+    this._accessRestrictions = new HashMap<File, AccessRules>();
     this._outputFolderMap = new HashMap<File, File>();
     this._sourceFolderMap = new HashMap<File, Set<File>>();
   }
@@ -82,6 +83,18 @@ public class EcjAdditionalCompilerArguments {
    * @return the boot class path access restrictions.
    */
   public String getBootClassPathAccessRestrictions() {
+    return hasBootClassPathAccessRestrictions() ? this._bootClassPathAccessRestrictions.toString() : null;
+  }
+
+  /**
+   * <p>
+   * Returns the precompiled boot class path access restrictions.
+   * </p>
+   * 
+   * @return the precompiled boot class path access restrictions or <code>null</code> if no boot class path access
+   *         restrictions are set.
+   */
+  public AccessRules getBootClassPathAccessRules() {
     return this._bootClassPathAccessRestrictions;
   }
 
@@ -110,6 +123,21 @@ public class EcjAdditionalCompilerArguments {
    *         the given class path entry is specified.
    */
   public String getAccessRestrictions(File classpathentry) {
+    AccessRules accessRules = this._accessRestrictions.get(classpathentry);
+    return accessRules != null ? accessRules.toString() : null;
+  }
+
+  /**
+   * <p>
+   * Returns the precompiled access restrictions for the given class path entry or <code>null</code> if no access
+   * restriction for the given class path entry is specified.
+   * </p>
+   * 
+   * @param classpathentry
+   *          the class path entry
+   * @return the precompiled access restrictions for the given class path entry or <code>null</code>.
+   */
+  public AccessRules getAccessRules(File classpathentry) {
     return this._accessRestrictions.get(classpathentry);
   }
 
@@ -161,7 +189,22 @@ public class EcjAdditionalCompilerArguments {
    *          an access restriction for the given class path entry.
    */
   public void addAccessRestrictions(File classpathentry, String accessRestrictions) {
-    this._accessRestrictions.put(classpathentry, accessRestrictions);
+    addAccessRestrictions(classpathentry, AccessRules.parse(accessRestrictions));
+  }
+
+  /**
+   * <p>
+   * Adds the (precompiled) access restrictions for the given class path entry.
+   * </p>
+   * 
+   * @param classpathentry
+   *          the class path entry.
+   * @param accessRules
+   *          the access restrictions for the given class path entry.
+   */
+  public void addAccessRestrictions(File classpathentry, AccessRules accessRules) {
+    Assure.notNull("accessRules", accessRules);
+    this._accessRestrictions.put(classpathentry, accessRules);
   }
 
   /**
@@ -174,7 +217,20 @@ public class EcjAdditionalCompilerArguments {
    */
   public void setBootClassPathAccessRestrictions(String bootClassPathAccessRestrictions) {
     Assure.nonEmpty("bootClassPathAccessRestrictions", bootClassPathAccessRestrictions);
-    this._bootClassPathAccessRestrictions = bootClassPathAccessRestrictions;
+    setBootClassPathAccessRestrictions(AccessRules.parse(bootClassPathAccessRestrictions));
+  }
+
+  /**
+   * <p>
+   * Sets the (precompiled) boot class path access restrictions.
+   * </p>
+   * 
+   * @param bootClassPathAccessRules
+   *          the boot access restrictions.
+   */
+  public void setBootClassPathAccessRestrictions(AccessRules bootClassPathAccessRules) {
+    Assure.notNull("bootClassPathAccessRules", bootClassPathAccessRules);
+    this._bootClassPathAccessRestrictions = bootClassPathAccessRules;
   }
 
   /**
@@ -15,6 +15,8 @@ import java.io.File;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
 
 import org.ant4eclipse.ant.platform.core.MacroExecutionValues;
@@ -22,6 +24,7 @@ import org.ant4eclipse.ant.platform.core.ScopedMacroDefinition;
 import org.ant4eclipse.ant.platform.core.delegate.ConditionalMacroDef;
 import org.ant4eclipse.ant.platform.core.delegate.MacroExecutionValuesProvider;
 import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
 import org.ant4eclipse.lib.core.util.StringMap;
 import org.ant4eclipse.lib.core.util.Utilities;
 import org.ant4eclipse.lib.jdt.model.project.JavaProjectRole;
@@ -34,6 +37,13 @@ import org.apache.tools.ant.types.FileSet;
 
 /**
  * <p>
+ * Executes the scoped macro definitions for a jdt project.
+ * </p>
+ * <p>
+ * If the attribute <code>batchProjectNames</code> is set, the class paths of all listed jdt projects are resolved
+ * concurrently (using at most <code>threadCount</code> threads) the first time the task is executed for this set of
+ * projects. This is useful if the task is executed for each project of a project set (e.g. within an
+ * <code>executeProjectSet</code> task): the class paths of the following projects are taken from the resolver cache.
  * </p>
  * 
  * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
@@ -87,6 +97,13 @@ public class ExecuteJdtProjectTask extends AbstractExecuteJdtProjectTask impleme
   /** - */
   private Set<String>              _resolvedClassPaths                           = CLASSPATH_POSSIBLE_VALUES;
 
+  /** the (comma separated) names of the projects whose class paths are resolved in batch mode (maybe null) */
+  private String                   _batchProjectNames;
+
+  /** the maximum number of threads used in batch mode */
+  private int                      _threadCount                                  = Runtime.getRuntime()
+                                                                                     .availableProcessors();
+
   /**
    * <p>
    * Creates a new instance of type {@link ExecuteJdtProjectTask}.
@@ -141,6 +158,31 @@ public class ExecuteJdtProjectTask extends AbstractExecuteJdtProjectTask impleme
     }
   }
 
+  /**
+   * <p>
+   * Sets the (comma separated) names of the projects whose class paths should be resolved concurrently.
+   * </p>
+   * 
+   * @param batchProjectNames
+   *          the names of the projects
+   */
+  public void setBatchProjectNames(String batchProjectNames) {
+    this._batchProjectNames = batchProjectNames;
+  }
+
+  /**
+   * <p>
+   * Sets the maximum number of threads used to resolve the class paths in batch mode. Defaults to the number of
+   * available processors.
+   * </p>
+   * 
+   * @param threadCount
+   *          the maximum number of threads
+   */
+  public void setThreadCount(int threadCount) {
+    this._threadCount = threadCount;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -212,6 +254,9 @@ public class ExecuteJdtProjectTask extends AbstractExecuteJdtProjectTask impleme
     // check require fields
     requireWorkspaceAndProjectNameSet();
 
+    // resolve the class paths of all projects of the batch
+    resolveBatchClasspaths();
+
     // execute scoped macro definitions
     for (ScopedMacroDefinition<String> scopedMacroDefinition : getScopedMacroDefinitions()) {
 
@@ -243,6 +288,57 @@ public class ExecuteJdtProjectTask extends AbstractExecuteJdtProjectTask impleme
     }
   }
 
+  /**
+   * <p>
+   * Resolves the class paths of all projects listed in the attribute <code>batchProjectNames</code> concurrently.
+   * The resolved class paths are stored in the resolver cache. Each batch is only resolved once per build.
+   * </p>
+   */
+  private void resolveBatchClasspaths() {
+
+    if (this._batchProjectNames == null) {
+      return;
+    }
+    if (this._threadCount < 1) {
+      throw new BuildException("The attribute 'threadCount' must be greater than zero.");
+    }
+    if (!JdtResolver.isCacheEnabled()) {
+      A4ELogging.debug("The jdt resolver cache is disabled, class paths are not resolved in batch mode.");
+      return;
+    }
+
+    // the runtime class path is needed if it's requested or if the class path entries are iterated
+    boolean runtime = this._resolvedClassPaths.contains(CLASSPATH_ABSOLUTE_RUNTIME)
+        || this._resolvedClassPaths.contains(CLASSPATH_RELATIVE_RUNTIME);
+    for (ScopedMacroDefinition<String> scopedMacroDefinition : getScopedMacroDefinitions()) {
+      runtime |= SCOPE_FOR_EACH_RUNTIME_CLASSPATH.equals(scopedMacroDefinition.getScope());
+    }
+
+    // the batch is only resolved by the first execution within this build
+    String batchKey = String.format("ant4eclipse.jdtBatch[%s,%s,%s]", System.identityHashCode(getWorkspace()),
+        runtime, this._batchProjectNames);
+    if (getProject().getReference(batchKey) != null) {
+      return;
+    }
+
+    // collect the jdt projects
+    String[] names = this._batchProjectNames.split(",");
+    for (int i = 0; i < names.length; i++) {
+      names[i] = names[i].trim();
+    }
+    List<EclipseProject> projects = new LinkedList<EclipseProject>();
+    for (EclipseProject project : getWorkspace().getProjects(names, true)) {
+      if (project.hasRole(JavaProjectRole.class)) {
+        projects.add(project);
+      }
+    }
+
+    // resolve the class paths
+    JdtResolver.resolveProjectClasspathModels(projects, runtime, getJdtClasspathContainerArguments(),
+        this._threadCount);
+    getProject().addReference(batchKey, Boolean.TRUE);
+  }
+
   /**
    * @param macroDef
    * @param javaProjectRole
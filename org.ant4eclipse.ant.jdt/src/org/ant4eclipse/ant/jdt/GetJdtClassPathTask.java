@@ -14,18 +14,30 @@ package org.ant4eclipse.ant.jdt;
 import org.ant4eclipse.ant.jdt.containerargs.JdtClasspathContainerArgumentComponent;
 import org.ant4eclipse.ant.jdt.containerargs.JdtClasspathContainerArgumentDelegate;
 import org.ant4eclipse.ant.platform.core.task.AbstractGetProjectPathTask;
+import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
+import org.ant4eclipse.lib.jdt.model.project.JavaProjectRole;
 import org.ant4eclipse.lib.jdt.tools.JdtResolver;
 import org.ant4eclipse.lib.jdt.tools.ResolvedClasspath;
 import org.ant4eclipse.lib.jdt.tools.container.JdtClasspathContainerArgument;
+import org.ant4eclipse.lib.platform.PlatformExceptionCode;
+import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
 import org.apache.tools.ant.BuildException;
 
 import java.io.File;
+import java.util.LinkedList;
 import java.util.List;
 
 /**
  * <p>
  * Resolves a class path from a underlying jdt project.
  * </p>
+ * <p>
+ * If the attribute <code>projectNames</code> is set instead of <code>projectName</code>, the task runs in batch mode:
+ * the class paths of all listed jdt projects are resolved concurrently (using at most <code>threadCount</code>
+ * threads) and stored under <code>&lt;pathId&gt;.&lt;projectName&gt;</code> resp.
+ * <code>&lt;property&gt;.&lt;projectName&gt;</code>. Like in single project mode, each listed project must be a jdt
+ * project.
+ * </p>
  * 
  * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
  */
@@ -37,6 +49,12 @@ public class GetJdtClassPathTask extends AbstractGetProjectPathTask implements J
   /** the {@link JdtClasspathContainerArgumentDelegate} */
   private JdtClasspathContainerArgumentDelegate _classpathContainerArgumentDelegate;
 
+  /** the names of the projects whose class paths are resolved in batch mode (maybe null) */
+  private String[]                              _projectNames;
+
+  /** the maximum number of threads used in batch mode */
+  private int                                   _threadCount = Runtime.getRuntime().availableProcessors();
+
   /**
    * <p>
    * Creates a new instance of type {@link GetJdtClassPathTask}.
@@ -84,6 +102,46 @@ public class GetJdtClassPathTask extends AbstractGetProjectPathTask implements J
     this._runtime = runtime;
   }
 
+  /**
+   * <p>
+   * Sets the (comma separated) names of the projects whose class paths should be resolved in batch mode.
+   * </p>
+   * 
+   * @param projectNames
+   *          the names of the projects
+   */
+  public void setProjectNames(String projectNames) {
+    String[] names = projectNames.split(",");
+    this._projectNames = new String[names.length];
+    for (int i = 0; i < names.length; i++) {
+      this._projectNames[i] = names[i].trim();
+    }
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the task runs in batch mode.
+   * </p>
+   * 
+   * @return <code>true</code> if the task runs in batch mode.
+   */
+  public boolean isProjectNamesSet() {
+    return this._projectNames != null;
+  }
+
+  /**
+   * <p>
+   * Sets the maximum number of threads used to resolve the class paths in batch mode. Defaults to the number of
+   * available processors.
+   * </p>
+   * 
+   * @param threadCount
+   *          the maximum number of threads
+   */
+  public void setThreadCount(int threadCount) {
+    this._threadCount = threadCount;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -107,6 +165,64 @@ public class GetJdtClassPathTask extends AbstractGetProjectPathTask implements J
     this._classpathContainerArgumentDelegate.setDynamicAttribute(name, value);
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void preconditions() throws BuildException {
+    if (!isProjectNamesSet()) {
+      super.preconditions();
+      return;
+    }
+
+    // batch mode
+    if (isProjectNameSet()) {
+      throw new BuildException("Only one of the attributes 'projectName' and 'projectNames' can be set!");
+    }
+    if (this._threadCount < 1) {
+      throw new BuildException("The attribute 'threadCount' must be greater than zero.");
+    }
+    requireWorkspaceDirectoryOrWorkspaceIdSet();
+    requirePathIdOrPropertySet();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void doExecute() {
+    if (!isProjectNamesSet()) {
+      super.doExecute();
+      return;
+    }
+
+    // collect the jdt projects
+    List<EclipseProject> projects = new LinkedList<EclipseProject>();
+    for (EclipseProject project : getWorkspace().getProjects(this._projectNames, true)) {
+      if (!project.hasRole(JavaProjectRole.class)) {
+        throw new Ant4EclipseException(PlatformExceptionCode.MISSING_PROJECT_ROLE, project.getSpecifiedName(),
+            JavaProjectRole.class.getName());
+      }
+      projects.add(project);
+    }
+
+    // resolve the class paths concurrently
+    List<ResolvedClasspath> resolvedClasspaths = JdtResolver.resolveProjectClasspaths(projects, isRelative(),
+        isRuntime(), this._classpathContainerArgumentDelegate.getJdtClasspathContainerArguments(), this._threadCount);
+
+    // set the paths and properties
+    for (int i = 0; i < projects.size(); i++) {
+      String projectName = projects.get(i).getSpecifiedName();
+      File[] resolvedPath = resolvedClasspaths.get(i).getClasspathFiles();
+      if (isPathIdSet()) {
+        getProject().addReference(getPathId() + "." + projectName, convertToPath(resolvedPath));
+      }
+      if (isPropertySet()) {
+        getProject().setProperty(getProperty() + "." + projectName, convertToString(resolvedPath));
+      }
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
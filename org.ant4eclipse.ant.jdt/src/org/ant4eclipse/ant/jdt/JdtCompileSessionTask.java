@@ -0,0 +1,114 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.ant.jdt;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.ant4eclipse.ant.core.AbstractAnt4EclipseTask;
+import org.ant4eclipse.ant.jdt.ecj.CompileSession;
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Task;
+import org.apache.tools.ant.TaskContainer;
+
+/**
+ * <p>
+ * The {@link JdtCompileSessionTask} executes its nested tasks (typically an <code>executeProjectSet</code> task that
+ * builds all projects of a workspace). The compilations requested by nested <code>jdtCompiler</code> tasks are not
+ * executed immediately, they are collected and compiled together within a single compiler session after the nested
+ * tasks have been executed (see {@link CompileSession}).
+ * </p>
+ * <p>
+ * Example:
+ * </p>
+ *
+ * <pre>
+ * &lt;jdtCompileSession&gt;
+ *   &lt;executeProjectSet workspaceDirectory=&quot;${workspace}&quot; allWorkspaceProjects=&quot;true&quot;&gt;
+ *     &lt;forEachProject&gt;
+ *       &lt;buildJdtProject workspaceDirectory=&quot;${workspace}&quot;
+ *                        projectName=&quot;${executeProjectSet.project.name}&quot; /&gt;
+ *     &lt;/forEachProject&gt;
+ *   &lt;/executeProjectSet&gt;
+ * &lt;/jdtCompileSession&gt;
+ * </pre>
+ * <p>
+ * Nested tasks that need the compiled class files (f.e. to create archives) have to be executed after the
+ * {@link JdtCompileSessionTask}.
+ * </p>
+ * <p>
+ * If the attribute <code>threadCount</code> is greater than one, the collected compilations are executed in parallel
+ * on the given number of threads. Each project is compiled as soon as the projects on its class path have been
+ * compiled.
+ * </p>
+ */
+public class JdtCompileSessionTask extends AbstractAnt4EclipseTask implements TaskContainer {
+
+  /** the nested tasks */
+  private List<Task> _tasks       = new LinkedList<Task>();
+
+  /** the number of compile jobs that are compiled at the same time */
+  private int        _threadCount = 1;
+
+  /**
+   * <p>
+   * Sets the maximum number of compile jobs that are compiled at the same time. With a value greater than one each job
+   * is compiled in its own compiler session.
+   * </p>
+   *
+   * @param threadCount
+   *          the maximum number of compile jobs that are compiled at the same time.
+   */
+  public void setThreadCount(int threadCount) {
+    this._threadCount = threadCount;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void addTask(Task task) {
+    this._tasks.add(task);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void preconditions() throws BuildException {
+    super.preconditions();
+
+    if (CompileSession.getCompileSession(getProject()) != null) {
+      throw new BuildException("Compile sessions can't be nested.");
+    }
+    if (this._threadCount < 1) {
+      throw new BuildException("The attribute 'threadCount' must be greater than zero.");
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void doExecute() {
+    CompileSession compileSession = new CompileSession();
+    getProject().addReference(CompileSession.REFERENCE_ID, compileSession);
+    try {
+      for (Task task : this._tasks) {
+        task.perform();
+      }
+    } finally {
+      getProject().getReferences().remove(CompileSession.REFERENCE_ID);
+    }
+    compileSession.compile(this._threadCount);
+  }
+
+}
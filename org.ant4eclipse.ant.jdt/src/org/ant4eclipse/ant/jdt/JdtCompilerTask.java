@@ -13,6 +13,9 @@ package org.ant4eclipse.ant.jdt;
 
 import java.io.File;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.ant4eclipse.ant.jdt.ecj.A4ECompilerAdapter;
 import org.ant4eclipse.ant.jdt.ecj.EcjCompilerAdapter;
@@ -37,6 +40,9 @@ public class JdtCompilerTask extends Javac {
 
   private static final String MSG_FAILURE           = "The compilation failed. Check the output for more information.";
 
+  /** System-Property that enables the incremental compilation by default */
+  public static final String  INCREMENTAL_PROPERTY  = "ant4eclipse.incrementalCompilation";
+
   private String              _errprop              = null;
 
   private String              _updateprop           = null;
@@ -45,6 +51,8 @@ public class JdtCompilerTask extends Javac {
 
   private boolean             _warnings             = true;
 
+  private boolean             _incremental          = Boolean.getBoolean(INCREMENTAL_PROPERTY);
+
   /**
    * The CompilerAdapter for this compilation
    */
@@ -60,6 +68,27 @@ public class JdtCompilerTask extends Javac {
     this._warnings = enable;
   }
 
+  /**
+   * Enables/disables the incremental compilation. If enabled the compiler determines the source files that need to be
+   * compiled on its own (based on the state of the previous compilation) instead of comparing the timestamps of source
+   * and class files. The incremental compilation is only supported by the ecj compiler.
+   * 
+   * @param enable
+   *          <code>true</code> <=> Enables the incremental compilation.
+   */
+  public void setIncremental(boolean enable) {
+    this._incremental = enable;
+  }
+
+  /**
+   * Returns <code>true</code> if the incremental compilation is enabled.
+   * 
+   * @return <code>true</code> <=> The incremental compilation is enabled.
+   */
+  public boolean isIncremental() {
+    return this._incremental && this._useecj;
+  }
+
   /**
    * Enables/disables the use of the ecj compiler.
    * 
@@ -110,6 +139,27 @@ public class JdtCompilerTask extends Javac {
     return this._a4eCompilerAdapter;
   }
 
+  /**
+   * The incremental compilation determines the changed source files on its own, so all source files are passed to the
+   * compiler in this case.
+   * 
+   * {@inheritDoc}
+   */
+  @Override
+  protected void scanDir(File srcDir, File destDir, String[] files) {
+    if (!isIncremental()) {
+      super.scanDir(srcDir, destDir, files);
+      return;
+    }
+    List<File> sourceFiles = new ArrayList<File>(Arrays.asList(this.compileList));
+    for (String file : files) {
+      if (file.endsWith(".java")) {
+        sourceFiles.add(new File(srcDir, file));
+      }
+    }
+    this.compileList = sourceFiles.toArray(new File[sourceFiles.size()]);
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -122,7 +172,10 @@ public class JdtCompilerTask extends Javac {
 
       File current = new File(".");
       String dest = destdir != null ? String.valueOf(destdir) : String.valueOf(current);
-      if (this.compileList.length == 1) {
+      if (isIncremental()) {
+        A4ELogging.info("Checking %d source file(s) for changes to compile to '%s' !", Integer
+            .valueOf(this.compileList.length), dest);
+      } else if (this.compileList.length == 1) {
         A4ELogging.info("Compiling 1 source file '%s' to '%s' !", this.compileList[0], dest);
       } else {
         A4ELogging.info("Compiling %d source files to '%s' !", Integer.valueOf(this.compileList.length), dest);
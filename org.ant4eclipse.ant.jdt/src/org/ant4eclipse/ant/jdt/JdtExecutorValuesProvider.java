@@ -21,12 +21,15 @@ import org.ant4eclipse.ant.platform.core.PathComponent;
 import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
 import org.ant4eclipse.lib.core.util.PerformanceLogging;
+import org.ant4eclipse.lib.jdt.ecj.AccessRules;
 import org.ant4eclipse.lib.jdt.model.project.JavaProjectRole;
 import org.ant4eclipse.lib.jdt.tools.JdtResolver;
 import org.ant4eclipse.lib.jdt.tools.ResolvedClasspath;
 import org.ant4eclipse.lib.jdt.tools.ResolvedClasspathEntry;
 import org.ant4eclipse.lib.jdt.tools.ResolvedClasspathEntry.AccessRestrictions;
+import org.ant4eclipse.lib.jdt.tools.ResolvedClasspathModel;
 import org.ant4eclipse.lib.jdt.tools.container.JdtClasspathContainerArgument;
+import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
 import org.apache.tools.ant.ProjectComponent;
 import org.apache.tools.ant.types.FileSet;
 import org.apache.tools.ant.types.Path;
@@ -78,37 +81,19 @@ public class JdtExecutorValuesProvider implements JdtExecutorValues {
     executionValues.getReferences().put(COMPILER_ARGS, compilerArguments);
 
     // resolve (boot) class path
-    ResolvedClasspath cpAbsoluteCompiletime = null;
-    if (requestedPaths.contains(ExecuteJdtProjectTask.CLASSPATH_ABSOLUTE_COMPILETIME)) {
-      cpAbsoluteCompiletime = JdtResolver.resolveProjectClasspath(javaProjectRole.getEclipseProject(), false, false,
-          jdtClasspathContainerArguments);
-    }
-
-    ResolvedClasspath cpRelativeCompiletime = null;
-    if (requestedPaths.contains(ExecuteJdtProjectTask.CLASSPATH_RELATIVE_COMPILETIME)) {
-      cpRelativeCompiletime = JdtResolver.resolveProjectClasspath(javaProjectRole.getEclipseProject(), true, false,
-          jdtClasspathContainerArguments);
-    }
-
-    ResolvedClasspath cpAbsoluteRuntime = null;
-    if (requestedPaths.contains(ExecuteJdtProjectTask.CLASSPATH_ABSOLUTE_RUNTIME)) {
-      cpAbsoluteRuntime = JdtResolver.resolveProjectClasspath(javaProjectRole.getEclipseProject(), false, true,
-          jdtClasspathContainerArguments);
-    }
-
-    ResolvedClasspath cpRelativeRuntime = null;
-    if (requestedPaths.contains(ExecuteJdtProjectTask.CLASSPATH_RELATIVE_RUNTIME)) {
-      cpRelativeRuntime = JdtResolver.resolveProjectClasspath(javaProjectRole.getEclipseProject(), true, true,
-          jdtClasspathContainerArguments);
-    }
+    ResolvedClasspath[] classpaths = resolveClasspaths(javaProjectRole.getEclipseProject(),
+        jdtClasspathContainerArguments, requestedPaths);
+    ResolvedClasspath cpAbsoluteCompiletime = classpaths[0];
+    ResolvedClasspath cpRelativeCompiletime = classpaths[1];
+    ResolvedClasspath cpAbsoluteRuntime = classpaths[2];
+    ResolvedClasspath cpRelativeRuntime = classpaths[3];
 
     if (cpAbsoluteCompiletime != null) {
 
       if (cpAbsoluteCompiletime.hasBootClasspath()) {
         if (cpAbsoluteCompiletime.getBootClasspath().hasAccessRestrictions()) {
-          // TODO
-          compilerArguments.setBootClassPathAccessRestrictions(cpAbsoluteCompiletime.getBootClasspath()
-              .getAccessRestrictions().asFormattedString());
+          compilerArguments.setBootClassPathAccessRestrictions(toAccessRules(cpAbsoluteCompiletime
+              .getBootClasspath().getAccessRestrictions()));
         }
       }
 
@@ -129,9 +114,9 @@ public class JdtExecutorValuesProvider implements JdtExecutorValues {
 
         // set access restrictions
         if (resolvedClasspathEntry.hasAccessRestrictions()) {
-          AccessRestrictions accessRestrictions = resolvedClasspathEntry.getAccessRestrictions();
+          AccessRules accessRules = toAccessRules(resolvedClasspathEntry.getAccessRestrictions());
           for (File file : resolvedClasspathEntry.getClassPathEntries()) {
-            compilerArguments.addAccessRestrictions(file, accessRestrictions.asFormattedString());
+            compilerArguments.addAccessRestrictions(file, accessRules);
           }
         }
       }
@@ -231,6 +216,83 @@ public class JdtExecutorValuesProvider implements JdtExecutorValues {
     return compilerArguments;
   }
 
+  /**
+   * <p>
+   * Resolves the requested class paths (in the order absolute compile time, relative compile time, absolute runtime,
+   * relative runtime). Class paths that haven't been requested are <code>null</code>. Cached class paths are reused.
+   * If more than one of the requested class paths has to be resolved, all of them are derived from a single resolution
+   * pass.
+   * </p>
+   */
+  private ResolvedClasspath[] resolveClasspaths(EclipseProject eclipseProject,
+      List<JdtClasspathContainerArgument> jdtClasspathContainerArguments, Set<String> requestedPaths) {
+
+    String[] names = new String[] { ExecuteJdtProjectTask.CLASSPATH_ABSOLUTE_COMPILETIME,
+        ExecuteJdtProjectTask.CLASSPATH_RELATIVE_COMPILETIME, ExecuteJdtProjectTask.CLASSPATH_ABSOLUTE_RUNTIME,
+        ExecuteJdtProjectTask.CLASSPATH_RELATIVE_RUNTIME };
+    ResolvedClasspath[] result = new ResolvedClasspath[names.length];
+
+    // count the requested class paths
+    int requested = 0;
+    for (String name : names) {
+      if (requestedPaths.contains(name)) {
+        requested++;
+      }
+    }
+
+    // a single class path is resolved directly
+    if (requested == 1) {
+      for (int i = 0; i < names.length; i++) {
+        if (requestedPaths.contains(names[i])) {
+          result[i] = JdtResolver.resolveProjectClasspath(eclipseProject, (i % 2) == 1, i >= 2,
+              jdtClasspathContainerArguments);
+        }
+      }
+      return result;
+    }
+
+    // reuse the cached class paths
+    int missing = 0;
+    boolean runtimeMissing = false;
+    for (int i = 0; i < names.length; i++) {
+      if (requestedPaths.contains(names[i])) {
+        result[i] = JdtResolver.getCachedProjectClasspath(eclipseProject, (i % 2) == 1, i >= 2,
+            jdtClasspathContainerArguments);
+        if (result[i] == null) {
+          missing++;
+          runtimeMissing |= i >= 2;
+        }
+      }
+    }
+
+    // derive the missing class paths
+    ResolvedClasspathModel model = null;
+    if (missing > 1) {
+      model = JdtResolver.resolveProjectClasspathModel(eclipseProject, runtimeMissing, jdtClasspathContainerArguments);
+    }
+    for (int i = 0; i < names.length; i++) {
+      if (requestedPaths.contains(names[i]) && (result[i] == null)) {
+        result[i] = model != null ? model.getClasspath((i % 2) == 1, i >= 2) : JdtResolver.resolveProjectClasspath(
+            eclipseProject, (i % 2) == 1, i >= 2, jdtClasspathContainerArguments);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Precompiles the given access restrictions, so they don't have to be formatted and parsed again.
+   * </p>
+   * 
+   * @param accessRestrictions
+   *          the access restrictions of a resolved class path entry.
+   * @return the precompiled access rules.
+   */
+  private static AccessRules toAccessRules(AccessRestrictions accessRestrictions) {
+    return new AccessRules(accessRestrictions.getPublicPackages(), accessRestrictions.getPrivatePackages(),
+        accessRestrictions.isExcludeAll());
+  }
+
   /**
    * <p>
    * Returns an ant {@link Path} that contains a file set with all included source files.
@@ -11,32 +11,36 @@
  **********************************************************************/
 package org.ant4eclipse.ant.jdt.ecj;
 
-import java.io.BufferedReader;
-import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.InputStreamReader;
 import java.nio.charset.Charset;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.ant4eclipse.ant.core.AntConfigurator;
 import org.ant4eclipse.ant.jdt.EcjAdditionalCompilerArguments;
+import org.ant4eclipse.ant.jdt.JdtCompilerTask;
 import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
 import org.ant4eclipse.lib.core.util.PerformanceLogging;
 import org.ant4eclipse.lib.core.util.StringMap;
 import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.jdt.ecj.BuildCache;
 import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
 import org.ant4eclipse.lib.jdt.ecj.ClassFileLoaderFactory;
+import org.ant4eclipse.lib.jdt.ecj.CompilationUnitResult;
 import org.ant4eclipse.lib.jdt.ecj.CompileJobDescription;
 import org.ant4eclipse.lib.jdt.ecj.CompileJobResult;
 import org.ant4eclipse.lib.jdt.ecj.DefaultCompileJobDescription;
 import org.ant4eclipse.lib.jdt.ecj.EcjAdapter;
 import org.ant4eclipse.lib.jdt.ecj.EcjExceptionCodes;
+import org.ant4eclipse.lib.jdt.ecj.IncrementalCompilation;
+import org.ant4eclipse.lib.jdt.ecj.JarOutput;
 import org.ant4eclipse.lib.jdt.ecj.SourceFile;
 import org.ant4eclipse.lib.jdt.ecj.SourceFileFactory;
 import org.apache.tools.ant.BuildException;
@@ -60,6 +64,21 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
 
   private static final String ANT4ECLIPSE_COMPILE_ERRORS_FILE   = "ant4eclipse.compile.errors.file";
 
+  /** the file that receives the machine readable report of the compile problems (JSON lines, appended) */
+  private static final String ANT4ECLIPSE_COMPILE_REPORT_FILE   = "ant4eclipse.compile.report.file";
+
+  /** the directory of the build cache (the build cache is disabled if not set) */
+  private static final String ANT4ECLIPSE_BUILD_CACHE           = "ant4eclipse.buildCache";
+
+  /** the maximum size of the build cache in megabytes */
+  private static final String ANT4ECLIPSE_BUILD_CACHE_SIZE      = "ant4eclipse.buildCache.maxSize";
+
+  /** the default maximum size of the build cache in megabytes */
+  private static final long   DEFAULT_BUILD_CACHE_SIZE          = 1024;
+
+  /** the strategy used to transfer the class files into the destination directory (direct, link or copy) */
+  private static final String ANT4ECLIPSE_OUTPUT_STRATEGY       = "ant4eclipse.outputStrategy";
+
   /** format of the compile problem message */
   private static final String COMPILE_PROBLEM_MESSAGE           = "----------\n%s. %s in %s (at line %s)\n%s\n%s\n%s\n";
 
@@ -81,6 +100,21 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
    */
   private static final String DEFAULT_COMPILER_OPTIONS_FILE     = "default.compiler.options.file";
 
+  /** the key for the jar archive that receives the compiled class files */
+  private static final String OUTPUT_ARCHIVE                    = "output.archive";
+
+  /** the key that enables/disables the compression of the archive entries (default: <code>true</code>) */
+  private static final String OUTPUT_ARCHIVE_COMPRESS           = "output.archive.compress";
+
+  /** the key for the number of threads used to compress the archive entries */
+  private static final String OUTPUT_ARCHIVE_THREADS            = "output.archive.threads";
+
+  /** the key for the time stamp of the archive entries (milliseconds since 1970-01-01) */
+  private static final String OUTPUT_ARCHIVE_TIMESTAMP          = "output.archive.timestamp";
+
+  /** the key for the manifest of the archive */
+  private static final String OUTPUT_ARCHIVE_MANIFEST           = "output.archive.manifest";
+
   private boolean             _warnings                         = true;
 
   /**
@@ -128,7 +162,6 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
     DefaultCompileJobDescription compileJobDescription = new DefaultCompileJobDescription();
     SourceFile[] sourceFiles = getSourceFilesToCompile(ecjAdditionalCompilerArguments);
     compileJobDescription.setSourceFiles(sourceFiles);
-    compileJobDescription.setClassFileLoader(createClassFileLoader(ecjAdditionalCompilerArguments));
 
     // Step 5: set the compiler options
     String compilerOptionsFileName = extractJavacCompilerArg(COMPILER_OPTIONS_FILE, null);
@@ -137,50 +170,128 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
         defaultCompilerOptionsFileName);
     compileJobDescription.setCompilerOptions(compilerOptions);
 
-    if (A4ELogging.isTraceingEnabled()) {
-      A4ELogging.trace("CompileJobDescription: %s", compileJobDescription);
+    // Step 6: Compile (within a compile session the job is compiled at the end of the session)
+    JarOutput jarOutput = getJarOutput();
+    CompileSession compileSession = CompileSession.getCompileSession(getProject());
+    if ((compileSession != null) && (jarOutput != null)) {
+      A4ELogging.info("Compiling into '%s' outside of the compile session.", jarOutput.getJarFile());
+    } else if (compileSession != null) {
+      if (isIncremental() || (getBuildCache() != null)) {
+        A4ELogging.info("Incremental compilation and build cache are not used within a compile session.");
+      }
+      compileSession.addJob(this, compileJobDescription, ecjAdditionalCompilerArguments);
+      return true;
+    }
+    BuildCache buildCache = getBuildCache();
+    CompileJobResult compileJobResult = null;
+    if (jarOutput != null) {
+      if (isIncremental() || (buildCache != null)) {
+        A4ELogging.info("Incremental compilation and build cache are not used when compiling into an archive.");
+      }
+      compileJobDescription.setClassFileLoader(createClassFileLoader(ecjAdditionalCompilerArguments));
+      compileJobResult = compile(compileJobDescription, jarOutput);
+    } else if (isIncremental()) {
+      compileJobResult = compileIncrementally(compileJobDescription, ecjAdditionalCompilerArguments, buildCache);
+    } else {
+      String key = buildCache != null ? buildCache.getKey(sourceFiles, compilerOptions, getClasspathEntries(),
+          getAccessRestrictions(ecjAdditionalCompilerArguments)) : null;
+      if (key != null) {
+        compileJobResult = buildCache.restore(key, sourceFiles);
+      }
+      if (compileJobResult == null) {
+        compileJobDescription.setClassFileLoader(createClassFileLoader(ecjAdditionalCompilerArguments));
+        compileJobDescription.setRecordCompilationUnitResults(key != null);
+        if (A4ELogging.isTraceingEnabled()) {
+          A4ELogging.trace("CompileJobDescription: %s", compileJobDescription);
+        }
+        compileJobResult = compile(compileJobDescription);
+        if ((key != null) && compileJobResult.succeeded()) {
+          buildCache.store(key, sourceFiles, compileJobResult.getCompilationUnitResults());
+        }
+      }
+    }
+    if (buildCache != null) {
+      A4ELogging.info(buildCache.getStatistics());
     }
-
-    // Step 6: Compile
-    CompileJobResult compileJobResult = compile(compileJobDescription);
 
     // Step 7: dump result
-    CategorizedProblem[] categorizedProblems = compileJobResult.getCategorizedProblems();
+    handleResult(sourceFiles, compileJobResult);
 
-    // Buffer for messages
-    StringBuilder builder = new StringBuilder();
+    // Step 8: Return
+    return true;
+
+  }
+
+  /**
+   * <p>
+   * Reports the problems of a compile job and copies the generated class files into the destination directory (if
+   * specified).
+   * </p>
+   * 
+   * @param sourceFiles
+   *          the source files of the compile job.
+   * @param compileJobResult
+   *          the result of the compile job.
+   * 
+   * @throws Ant4EclipseException
+   *           if the compilation was not successful.
+   */
+  void handleResult(SourceFile[] sourceFiles, CompileJobResult compileJobResult) {
 
+    CategorizedProblem[] categorizedProblems = compileJobResult.getCategorizedProblems();
+
+    // group the reported problems by source file (in the order of their first problem)
+    Map<String, SourceFile> sourceFilesByName = new HashMap<String, SourceFile>();
+    for (SourceFile sourceFile : sourceFiles) {
+      if (!sourceFilesByName.containsKey(sourceFile.getSourceFileName())) {
+        sourceFilesByName.put(sourceFile.getSourceFileName(), sourceFile);
+      }
+    }
+    Map<SourceFile, List<Integer>> problemsBySourceFile = new LinkedHashMap<SourceFile, List<Integer>>();
     for (int i = 0; i < categorizedProblems.length; i++) {
       CategorizedProblem categorizedProblem = categorizedProblems[i];
-      if (categorizedProblem.isError() || (categorizedProblem.isWarning() && !getJavac().getNowarn())) {
-        String fileName = String.valueOf(categorizedProblem.getOriginatingFileName());
-        for (SourceFile sourceFile : sourceFiles) {
-          if (fileName.equals(sourceFile.getSourceFileName())) {
-            if (!categorizedProblem.isError()) {
-              if (!this._warnings) {
-                continue;
-              }
-            }
-            Object[] args = new Object[7];
-            args[0] = Integer.valueOf(i + 1);
-            args[1] = categorizedProblem.isError() ? "ERROR" : "WARNING";
-            args[2] = sourceFile.getSourceFile().getAbsolutePath();
-            args[3] = Integer.valueOf(categorizedProblem.getSourceLineNumber());
-            String[] problematicLine = readProblematicLine(sourceFile, categorizedProblem);
-            args[4] = problematicLine[0];
-            args[5] = problematicLine[1];
-            args[6] = categorizedProblem.getMessage();
-            builder.append(String.format(COMPILE_PROBLEM_MESSAGE, args));
-            if (i + 1 == categorizedProblems.length) {
-              builder.append("----------\n");
-            }
+      if (categorizedProblem.isError()
+          || (categorizedProblem.isWarning() && !getJavac().getNowarn() && this._warnings)) {
+        SourceFile sourceFile = sourceFilesByName.get(String.valueOf(categorizedProblem.getOriginatingFileName()));
+        if (sourceFile != null) {
+          List<Integer> problems = problemsBySourceFile.get(sourceFile);
+          if (problems == null) {
+            problems = new LinkedList<Integer>();
+            problemsBySourceFile.put(sourceFile, problems);
           }
+          problems.add(Integer.valueOf(i));
         }
       }
     }
 
+    // Buffer for messages
+    StringBuilder builder = new StringBuilder();
+    CompileProblemReport report = new CompileProblemReport();
+
+    // render the problems of each source file in one pass (the source file is read once)
+    for (Map.Entry<SourceFile, List<Integer>> entry : problemsBySourceFile.entrySet()) {
+      SourceFile sourceFile = entry.getKey();
+      SourceLineIndex lineIndex = SourceLineIndex.create(sourceFile);
+      for (Integer index : entry.getValue()) {
+        CategorizedProblem categorizedProblem = categorizedProblems[index.intValue()];
+        Object[] args = new Object[7];
+        args[0] = Integer.valueOf(index.intValue() + 1);
+        args[1] = categorizedProblem.isError() ? "ERROR" : "WARNING";
+        args[2] = sourceFile.getSourceFile().getAbsolutePath();
+        args[3] = Integer.valueOf(categorizedProblem.getSourceLineNumber());
+        String[] problematicLine = renderProblematicLine(lineIndex, categorizedProblem);
+        args[4] = problematicLine[0];
+        args[5] = problematicLine[1];
+        args[6] = categorizedProblem.getMessage();
+        builder.append(String.format(COMPILE_PROBLEM_MESSAGE, args));
+        report.add(sourceFile.getSourceFile(), categorizedProblem);
+      }
+    }
+
     // Dump error messages if any
     if (builder.length() > 0) {
+      builder.append("----------\n");
+
       // Dump to logging system
       A4ELogging.error(builder.toString());
 
@@ -191,52 +302,278 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
       }
     }
 
+    // Optional: append the machine readable report
+    String compileReportFile = System.getProperty(ANT4ECLIPSE_COMPILE_REPORT_FILE);
+    if ((compileReportFile != null) && (report.getCount() > 0)) {
+      report.appendTo(new File(compileReportFile));
+    }
+
     // if the destination directory has been specified for the javac task we might need
     // to copy the generated class files
-    if (compileJobResult.succeeded() && (getJavac().getDestdir() != null)) {
-      /**
-       * @todo [12-Apr-2011:KASI] This needs to be supported for Javac, too. It would be possible to use the destdir
-       *       alternatively but references like the EcjAdditionalCompilerArguments need to be adopted in this case.
-       */
-      File destdir = Utilities.getCanonicalFile(getJavac().getDestdir());
-
+    File destdir = getTransferDestdir();
+    if (compileJobResult.succeeded() && (destdir != null)) {
       PerformanceLogging.start(A4ECompilerAdapter.class, "cloneClasses");
+      ClassFileTransfer transfer = new ClassFileTransfer(getOutputStrategy());
       try {
-        cloneClasses(destdir, compileJobResult.getCompiledClassFiles());
+        transfer.transfer(destdir, compileJobResult.getCompiledClassFiles());
       } finally {
         PerformanceLogging.stop(A4ECompilerAdapter.class, "cloneClasses");
       }
+      A4ELogging.info(transfer.getStatistics());
     }
 
     // throw Exception if compilation was not successful
     if (!compileJobResult.succeeded()) {
       throw new Ant4EclipseException(EcjExceptionCodes.COMPILATION_WAS_NOT_SUCCESFUL);
     }
+  }
 
-    // Step 8: Return
-    return true;
+  /**
+   * <p>
+   * Returns the destination directory of the javac task if the compiled class files are transferred into it (using the
+   * <code>copy</code> or <code>link</code> {@link OutputStrategy output strategy}).
+   * </p>
+   * 
+   * @return the destination directory or <code>null</code> if the class files aren't transferred.
+   */
+  private File getTransferDestdir() {
+    if ((getJavac().getDestdir() == null) || (getOutputStrategy() == OutputStrategy.direct)
+        || (extractJavacCompilerArg(OUTPUT_ARCHIVE, null) != null)) {
+      return null;
+    }
+    /**
+     * @todo [12-Apr-2011:KASI] This needs to be supported for Javac, too. It would be possible to use the destdir
+     *       alternatively but references like the EcjAdditionalCompilerArguments need to be adopted in this case.
+     */
+    return Utilities.getCanonicalFile(getJavac().getDestdir());
+  }
+
+  /**
+   * <p>
+   * Returns the strategy used to transfer the compiled class files into the destination directory of the javac task.
+   * The strategy can be set using the system property <code>ant4eclipse.outputStrategy</code> (<code>direct</code>,
+   * <code>link</code> or <code>copy</code>), the default is <code>copy</code>.
+   * </p>
+   * 
+   * @return the output strategy.
+   */
+  OutputStrategy getOutputStrategy() {
+    String strategy = System.getProperty(ANT4ECLIPSE_OUTPUT_STRATEGY);
+    if ((strategy == null) || (strategy.trim().length() == 0)) {
+      return OutputStrategy.copy;
+    }
+    try {
+      return OutputStrategy.valueOf(strategy.trim().toLowerCase());
+    } catch (IllegalArgumentException ex) {
+      A4ELogging.warn("Unknown output strategy '%s', using '%s'.", strategy, OutputStrategy.copy);
+      return OutputStrategy.copy;
+    }
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the incremental compilation has been enabled for the javac task.
+   * </p>
+   * 
+   * @return <code>true</code> if the incremental compilation has been enabled.
+   */
+  private boolean isIncremental() {
+    return (getJavac() instanceof JdtCompilerTask) && ((JdtCompilerTask) getJavac()).isIncremental();
+  }
+
+  /**
+   * <p>
+   * Compiles only the changed source files and their dependents. The supplied description contains all source files,
+   * the {@link IncrementalCompilation} determines the ones that need to be compiled in each round. The class file
+   * loader is only created if there's something to compile. If there's something to compile the build cache (if
+   * enabled) is consulted first: on a hit the output folders are restored from the cache instead. Class files that have
+   * been deleted from the output folders are deleted from the destination directory as well.
+   * </p>
+   * 
+   * @param description
+   *          The description which provides all necessary information for the compilation (except the class file
+   *          loader).
+   * @param compilerArguments
+   *          the compiler arguments, can be <code>null</code>.
+   * @param buildCache
+   *          the build cache, can be <code>null</code>.
+   * 
+   * @return The merged result of all compilation rounds.
+   */
+  private CompileJobResult compileIncrementally(DefaultCompileJobDescription description,
+      EcjAdditionalCompilerArguments compilerArguments, BuildCache buildCache) {
+    SourceFile[] sourceFiles = description.getSourceFiles();
+    File[] classpathEntries = getClasspathEntries();
+    Map<String, String> accessRestrictions = getAccessRestrictions(compilerArguments);
+    IncrementalCompilation compilation = new IncrementalCompilation(sourceFiles, description.getCompilerOptions(),
+        classpathEntries, accessRestrictions);
+    SourceFile[] sources = compilation.nextSourceFiles();
+    String key = null;
+    if ((sources.length > 0) && (buildCache != null)) {
+      key = buildCache.getKey(sourceFiles, description.getCompilerOptions(), classpathEntries, accessRestrictions);
+      CompileJobResult restored = buildCache.restore(key, sourceFiles);
+      if (restored != null) {
+        compilation.addResult(restored);
+        compilation.save();
+        deleteStaleClassFiles(compilation.getDeletedClassFiles());
+        return compilation.getResult();
+      }
+    }
+    if (sources.length > 0) {
+      description.setClassFileLoader(createClassFileLoader(compilerArguments));
+      description.setRecordCompilationUnitResults(true);
+    }
+    while (sources.length > 0) {
+      description.setSourceFiles(sources);
+      if (A4ELogging.isTraceingEnabled()) {
+        A4ELogging.trace("CompileJobDescription: %s", description);
+      }
+      compilation.addResult(compile(description));
+      sources = compilation.nextSourceFiles();
+    }
+    compilation.save();
+    deleteStaleClassFiles(compilation.getDeletedClassFiles());
+    CompileJobResult result = compilation.getResult();
+    if ((key != null) && result.succeeded()) {
+      CompilationUnitResult[] recordedResults = compilation.getRecordedResults();
+      if (recordedResults != null) {
+        buildCache.store(key, sourceFiles, recordedResults);
+      }
+    }
+    return result;
+  }
 
+  /**
+   * <p>
+   * Deletes the copies of the given class files from the destination directory (if the class files are transferred
+   * into it).
+   * </p>
+   * 
+   * @param classFileNames
+   *          the names of the class files that have been deleted from the output folders.
+   */
+  private void deleteStaleClassFiles(Set<String> classFileNames) {
+    File destdir = getTransferDestdir();
+    if (destdir == null) {
+      return;
+    }
+    for (String classFileName : classFileNames) {
+      File classFile = new File(destdir, classFileName);
+      if (classFile.exists()) {
+        A4ELogging.debug("deleting stale class file: '%s'", classFile);
+        Utilities.delete(classFile);
+      }
+    }
   }
 
   /**
-   * Clones all generated class files while copying them into the user specified directory.
+   * <p>
+   * Returns the jar archive that receives the compiled class files if the compiler argument
+   * <code>output.archive</code> has been specified. The entries are compressed using all available processors unless
+   * <code>output.archive.compress</code> is <code>false</code>, the number of threads can be set with
+   * <code>output.archive.threads</code>. The time stamp of the entries (<code>output.archive.timestamp</code>) and the
+   * manifest (<code>output.archive.manifest</code>) are optional.
+   * </p>
+   *
+   * @return the jar archive or <code>null</code> if the class files are written into the destination folders.
+   */
+  private JarOutput getJarOutput() {
+    String archive = extractJavacCompilerArg(OUTPUT_ARCHIVE, null);
+    if ((archive == null) || (archive.trim().length() == 0)) {
+      return null;
+    }
+    boolean compress = !"false".equalsIgnoreCase(extractJavacCompilerArg(OUTPUT_ARCHIVE_COMPRESS, "true").trim());
+    int threadCount = Runtime.getRuntime().availableProcessors();
+    long timestamp = -1;
+    try {
+      threadCount = Integer.parseInt(extractJavacCompilerArg(OUTPUT_ARCHIVE_THREADS, String.valueOf(threadCount))
+          .trim());
+      timestamp = Long.parseLong(extractJavacCompilerArg(OUTPUT_ARCHIVE_TIMESTAMP, "-1").trim());
+    } catch (NumberFormatException ex) {
+      A4ELogging.warn("Invalid compiler argument for the output archive: %s", ex.getMessage());
+    }
+    JarOutput result = new JarOutput(getProject().resolveFile(archive.trim()), compress, Math.max(threadCount, 1),
+        timestamp);
+    String manifest = extractJavacCompilerArg(OUTPUT_ARCHIVE_MANIFEST, null);
+    if (manifest != null) {
+      result.addEntry(JarOutput.MANIFEST_NAME, Utilities.readFile(getProject().resolveFile(manifest.trim())));
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns the build cache if it has been enabled using the system property <code>ant4eclipse.buildCache</code>.
+   * </p>
+   *
+   * @return the build cache or <code>null</code> if it's disabled.
+   */
+  private BuildCache getBuildCache() {
+    String directory = System.getProperty(ANT4ECLIPSE_BUILD_CACHE);
+    if ((directory == null) || (directory.trim().length() == 0)) {
+      return null;
+    }
+    long maxSize = DEFAULT_BUILD_CACHE_SIZE;
+    String size = System.getProperty(ANT4ECLIPSE_BUILD_CACHE_SIZE);
+    if (size != null) {
+      try {
+        maxSize = Long.parseLong(size.trim());
+      } catch (NumberFormatException ex) {
+        A4ELogging.warn("Invalid size of the build cache '%s', using %d MB.", size, Long.valueOf(maxSize));
+      }
+    }
+    return BuildCache.getBuildCache(new File(directory.trim()), maxSize * 1024 * 1024);
+  }
+
+  /**
+   * <p>
+   * Returns the entries of the boot class path and the class path of the javac task.
+   * </p>
    * 
-   * @param destdir
-   *          The destination director to save the classes to. Not <code>null</code>.
-   * @param compiledclasses
-   *          A map which provides all compiled classes. Not <code>null</code>.
+   * @return the class path entries.
    */
-  private void cloneClasses(File destdir, Map<String, File> compiledclasses) {
-    if (!destdir.isAbsolute()) {
-      destdir = destdir.getAbsoluteFile();
-    }
-    for (Map.Entry<String, File> entry : compiledclasses.entrySet()) {
-      File destfile = Utilities.getCanonicalFile(new File(destdir, entry.getKey()));
-      Utilities.mkdirs(destfile.getParentFile());
-      if (!destfile.equals(entry.getValue())) {
-        Utilities.copy(entry.getValue(), destfile);
+  private File[] getClasspathEntries() {
+    List<File> result = new LinkedList<File>();
+    for (Path path : new Path[] { getJavac().getBootclasspath(), getJavac().getClasspath() }) {
+      if (path != null) {
+        for (String entry : path.list()) {
+          File file = new File(entry);
+          if (file.exists()) {
+            result.add(file);
+          }
+        }
       }
     }
+    return result.toArray(new File[result.size()]);
+  }
+
+  /**
+   * <p>
+   * Returns the access restrictions of all entries of the boot class path and the class path in class path order (key:
+   * the absolute path of the entry, value: the formatted access restrictions or an empty string).
+   * </p>
+   *
+   * @param compilerArguments
+   *          the compiler arguments, can be <code>null</code>.
+   * @return the access restrictions of the class path entries.
+   */
+  Map<String, String> getAccessRestrictions(EcjAdditionalCompilerArguments compilerArguments) {
+    Map<String, String> result = new LinkedHashMap<String, String>();
+    if (getJavac().getBootclasspath() != null) {
+      boolean restricted = (compilerArguments != null) && compilerArguments.hasBootClassPathAccessRestrictions();
+      for (String entry : getJavac().getBootclasspath().list()) {
+        File file = new File(entry);
+        result.put(file.getAbsolutePath(), restricted ? compilerArguments.getBootClassPathAccessRestrictions() : "");
+      }
+    }
+    if (getJavac().getClasspath() != null) {
+      for (String entry : getJavac().getClasspath().list()) {
+        File file = new File(entry);
+        boolean restricted = (compilerArguments != null) && compilerArguments.hasAccessRestrictions(file);
+        result.put(file.getAbsolutePath(), restricted ? compilerArguments.getAccessRestrictions(file) : "");
+      }
+    }
+    return result;
   }
 
   /**
@@ -249,6 +586,46 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
    */
   protected abstract CompileJobResult compile(CompileJobDescription description);
 
+  /**
+   * Runs the compilation and writes the compiled class files into the given jar archive. The default implementation
+   * compiles into the destination folders and adds the class files to the archive afterwards, implementations may
+   * write the class files into the archive directly.
+   * 
+   * @param description
+   *          The description which provides all necessary information for the compilation.
+   * @param jarOutput
+   *          The archive that receives the compiled class files.
+   * 
+   * @return A descriptional instance which provides some information which came up during the compilation.
+   */
+  protected CompileJobResult compile(CompileJobDescription description, JarOutput jarOutput) {
+    CompileJobResult result = compile(description);
+    if (result.succeeded()) {
+      for (Map.Entry<String, File> entry : result.getCompiledClassFiles().entrySet()) {
+        jarOutput.addEntry(entry.getKey(), Utilities.readFile(entry.getValue()));
+      }
+      jarOutput.write();
+    }
+    return result;
+  }
+
+  /**
+   * Runs the compilation of several compile jobs. The default implementation compiles one job after the other,
+   * implementations may compile them within a single compiler session.
+   * 
+   * @param descriptions
+   *          The descriptions of the compile jobs. All jobs use the same compiler options.
+   * 
+   * @return The results of the compile jobs (in the order of the descriptions).
+   */
+  protected CompileJobResult[] compile(CompileJobDescription[] descriptions) {
+    CompileJobResult[] results = new CompileJobResult[descriptions.length];
+    for (int i = 0; i < descriptions.length; i++) {
+      results[i] = compile(descriptions[i]);
+    }
+    return results;
+  }
+
   /**
    * <p>
    * Returns an array with all the source files to compile.
@@ -263,6 +640,9 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
     // get default destination folder
     File defaultDestinationFolder = getJavac().getDestdir();
 
+    // with the 'direct' output strategy the class files are written into the destination directory only
+    boolean direct = (defaultDestinationFolder != null) && (getOutputStrategy() == OutputStrategy.direct);
+
     // get the files to compile
     List<SourceFile> sourceFiles = new LinkedList<SourceFile>();
 
@@ -321,8 +701,8 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
           sourceFolder.getAbsolutePath().length() + File.separator.length());
 
       // get the destination folder
-      File destinationFolder = compilerArguments != null ? compilerArguments.getOutputFolder(sourceFolder)
-          : defaultDestinationFolder;
+      File destinationFolder = (compilerArguments != null) && !direct ? compilerArguments
+          .getOutputFolder(sourceFolder) : defaultDestinationFolder;
 
       // make sure a destination folder is set
       if (destinationFolder == null) {
@@ -415,7 +795,7 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
    * @return the class file loader.
    */
   @SuppressWarnings("unchecked")
-  private ClassFileLoader createClassFileLoader(EcjAdditionalCompilerArguments compilerArguments) {
+  ClassFileLoader createClassFileLoader(EcjAdditionalCompilerArguments compilerArguments) {
 
     // Step 1: create class file loader list
     List<ClassFileLoader> classFileLoaderList = new LinkedList<ClassFileLoader>();
@@ -464,7 +844,7 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
         // create and add FilteringClassFileLoader is necessary
         if (compilerArguments != null && compilerArguments.hasAccessRestrictions(fileResource.getFile())) {
           classFileLoaderList.add(ClassFileLoaderFactory.createFilteringClassFileLoader(myclassFileLoader,
-              compilerArguments.getAccessRestrictions(fileResource.getFile())));
+              compilerArguments.getAccessRules(fileResource.getFile())));
         }
         // else add class file loader
         else {
@@ -492,12 +872,8 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
     // Step 1: get the boot class path as specified in the javac task
     Path bootclasspath = getJavac().getBootclasspath();
 
-    // if (ClassFileLoaderCache.getInstance().hasClassFileLoader(bootclasspath.toString())) {
-    // return ClassFileLoaderCache.getInstance().getClassFileLoader(bootclasspath.toString());
-    // }
-
-    // Step 2: create ClassFileLoaders for each entry in the boot class path
-    List<ClassFileLoader> bootClassFileLoaders = new LinkedList<ClassFileLoader>();
+    // Step 2: collect the existing boot class path entries
+    List<File> bootClasspathEntries = new LinkedList<File>();
 
     // Step 3: iterate over the boot class path entries as specified in the ant path
     for (Iterator<FileResource> iterator = bootclasspath.iterator(); iterator.hasNext();) {
@@ -505,20 +881,19 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
       // get the file resource
       FileResource fileResource = iterator.next();
 
-      // create class file loader
       if (fileResource.getFile().exists()) {
-        ClassFileLoader classFileLoader = ClassFileLoaderFactory.createClasspathClassFileLoader(fileResource.getFile(),
-            EcjAdapter.LIBRARY);
-        bootClassFileLoaders.add(classFileLoader);
+        bootClasspathEntries.add(fileResource.getFile());
       }
     }
 
-    // Step 4: create compound class file loader
-    ClassFileLoader classFileLoader = ClassFileLoaderFactory.createCompoundClassFileLoader(bootClassFileLoaders
-        .toArray(new ClassFileLoader[0]));
+    // Step 4: get the compound class file loader (shared by all compilations with the same boot class path, loads the
+    // classes from an API stub archive if enabled)
+    boolean restricted = (compilerArguments != null) && compilerArguments.hasBootClassPathAccessRestrictions();
+    ClassFileLoader classFileLoader = ClassFileLoaderFactory.createBootClassFileLoader(bootClasspathEntries
+        .toArray(new File[bootClasspathEntries.size()]), EcjAdapter.LIBRARY);
 
     // Step 5: create FilteringClassFileLoader is necessary
-    if (compilerArguments != null && compilerArguments.hasBootClassPathAccessRestrictions()) {
+    if (restricted) {
 
       // Step 4: debug
       if (A4ELogging.isDebuggingEnabled()) {
@@ -527,11 +902,9 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
       }
 
       classFileLoader = ClassFileLoaderFactory.createFilteringClassFileLoader(classFileLoader,
-          compilerArguments.getBootClassPathAccessRestrictions());
+          compilerArguments.getBootClassPathAccessRules());
     }
 
-    // ClassFileLoaderCache.getInstance().storeClassFileLoader(bootclasspath.toString(), classFileLoader);
-
     return classFileLoader;
   }
 
@@ -621,57 +994,39 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
 
   /**
    * <p>
+   * Returns the line of the given problem and a line that marks the position of the problem.
    * </p>
    * 
-   * @param sourceFile
-   * @param lineNumber
-   * @param sourceStart
-   * @param sourceEnd
-   * @return
+   * @param lineIndex
+   *          the line index of the source file that contains the problem (maybe <code>null</code>).
+   * @param categorizedProblem
+   *          the problem.
+   * @return the line of the problem and the marker line (empty if the line is not available).
    */
-  private String[] readProblematicLine(SourceFile sourceFile, CategorizedProblem categorizedProblem) {
-    Assure.notNull("sourceFile", sourceFile);
+  private String[] renderProblematicLine(SourceLineIndex lineIndex, CategorizedProblem categorizedProblem) {
     Assure.notNull("categorizedProblem", categorizedProblem);
 
     int lineNumber = categorizedProblem.getSourceLineNumber();
     int sourceStart = categorizedProblem.getSourceStart();
     int sourceEnd = categorizedProblem.getSourceEnd();
 
-    try {
-      // Open the file that is the first
-      // command line parameter
-      FileInputStream fstream = new FileInputStream(sourceFile.getSourceFile());
-      // Get the object of DataInputStream
-      DataInputStream in = new DataInputStream(fstream);
-      BufferedReader br = new BufferedReader(new InputStreamReader(in));
-      int lineStart = 0;
-      String strLine = "";
-      // Read File Line By Line
-      for (int i = 0; i < lineNumber; i++) {
-        String newLine = br.readLine();
-
-        lineStart = lineStart + strLine.length();
-        if (i + 1 != lineNumber) {
-          lineStart = lineStart + 1;
-        }
-        strLine = newLine;
-      }
-      Utilities.close(in);
-      StringBuilder underscoreLine = new StringBuilder();
-      for (int i = lineStart; i < sourceStart; i++) {
-        if (strLine.charAt(i - lineStart) == '\t') {
-          underscoreLine.append('\t');
-        } else {
-          underscoreLine.append(' ');
-        }
-      }
-      for (int i = sourceStart; i <= sourceEnd; i++) {
-        underscoreLine.append('^');
-      }
-      return new String[] { strLine, underscoreLine.toString() };
-    } catch (Exception e) {// Catch exception if any
+    String line = lineIndex != null ? lineIndex.getLine(lineNumber) : null;
+    if (line == null) {
       return new String[] { "", "" };
     }
+    int lineStart = lineIndex.getLineStart(lineNumber);
+    StringBuilder underscoreLine = new StringBuilder();
+    for (int i = lineStart; i < sourceStart; i++) {
+      if ((i - lineStart < line.length()) && (line.charAt(i - lineStart) == '\t')) {
+        underscoreLine.append('\t');
+      } else {
+        underscoreLine.append(' ');
+      }
+    }
+    for (int i = sourceStart; i <= sourceEnd; i++) {
+      underscoreLine.append('^');
+    }
+    return new String[] { line, underscoreLine.toString() };
   }
 
   /**
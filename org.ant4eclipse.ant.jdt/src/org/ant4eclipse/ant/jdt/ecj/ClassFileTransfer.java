@@ -0,0 +1,181 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.ant.jdt.ecj;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.Utilities;
+
+/**
+ * <p>
+ * Transfers compiled class files from the output folders of a project into the destination directory of the javac task
+ * using an {@link OutputStrategy}. Class files whose content didn't change are not touched. The number of transferred
+ * files and bytes is recorded.
+ * </p>
+ * <p>
+ * Hard links require a java runtime that provides <code>java.nio.file.Files</code> (java 7 or later). If they are not
+ * available or the link can't be created (f.e. because the destination is located on another file system), the class
+ * file is copied instead.
+ * </p>
+ */
+class ClassFileTransfer {
+
+  /** <code>File.toPath()</code> or <code>null</code> if hard links are not supported */
+  private static final Method TO_PATH;
+
+  /** <code>Files.createLink(Path, Path)</code> or <code>null</code> if hard links are not supported */
+  private static final Method CREATE_LINK;
+
+  static {
+    Method toPath = null;
+    Method createLink = null;
+    try {
+      Class<?> pathClass = Class.forName("java.nio.file.Path");
+      toPath = File.class.getMethod("toPath");
+      createLink = Class.forName("java.nio.file.Files").getMethod("createLink", pathClass, pathClass);
+    } catch (Exception ex) {
+      // hard links are not supported by this java runtime
+      toPath = null;
+      createLink = null;
+    }
+    TO_PATH = toPath;
+    CREATE_LINK = createLink;
+  }
+
+  /** the strategy used to transfer the class files */
+  private OutputStrategy _strategy;
+
+  /** the directories that are known to exist */
+  private Set<File>      _directories;
+
+  /** the number of copied class files */
+  private int            _copiedFiles;
+
+  /** the number of linked class files */
+  private int            _linkedFiles;
+
+  /** the number of class files that didn't change */
+  private int            _unchangedFiles;
+
+  /** the number of copied bytes */
+  private long           _copiedBytes;
+
+  /** the number of bytes of the linked class files */
+  private long           _linkedBytes;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link ClassFileTransfer}.
+   * </p>
+   *
+   * @param strategy
+   *          the strategy used to transfer the class files.
+   */
+  ClassFileTransfer(OutputStrategy strategy) {
+    Assure.notNull("strategy", strategy);
+    this._strategy = strategy;
+    this._directories = new HashSet<File>();
+  }
+
+  /**
+   * <p>
+   * Transfers all compiled class files into the given destination directory.
+   * </p>
+   *
+   * @param destdir
+   *          the canonical destination directory. Not <code>null</code>.
+   * @param compiledclasses
+   *          the compiled class files (key: the relative path of the class file). Not <code>null</code>.
+   */
+  void transfer(File destdir, Map<String, File> compiledclasses) {
+    Assure.notNull("destdir", destdir);
+    Assure.notNull("compiledclasses", compiledclasses);
+    for (Map.Entry<String, File> entry : compiledclasses.entrySet()) {
+      File source = entry.getValue().getAbsoluteFile();
+      File destfile = new File(destdir, entry.getKey());
+      if (!destfile.equals(source)) {
+        transfer(source, destfile);
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Returns a summary of the transferred class files.
+   * </p>
+   *
+   * @return a summary of the transferred class files.
+   */
+  String getStatistics() {
+    return String.format(
+        "Output strategy '%s': copied %d class file(s) (%d bytes), linked %d class file(s) (%d bytes), %d unchanged.",
+        this._strategy, Integer.valueOf(this._copiedFiles), Long.valueOf(this._copiedBytes), Integer
+            .valueOf(this._linkedFiles), Long.valueOf(this._linkedBytes), Integer.valueOf(this._unchangedFiles));
+  }
+
+  private void transfer(File source, File destfile) {
+    File directory = destfile.getParentFile();
+    if (this._directories.add(directory) && !directory.isDirectory()) {
+      Utilities.mkdirs(directory);
+    } else if (destfile.isFile() && (destfile.length() == source.length())
+        && Arrays.equals(Utilities.readFile(destfile), Utilities.readFile(source))) {
+      // the destination has the same content (or already is a link to the source)
+      this._unchangedFiles++;
+      return;
+    }
+    if ((this._strategy == OutputStrategy.link) && link(source, destfile)) {
+      this._linkedFiles++;
+      this._linkedBytes += source.length();
+    } else {
+      Utilities.copy(source, destfile);
+      this._copiedFiles++;
+      this._copiedBytes += source.length();
+    }
+  }
+
+  /**
+   * <p>
+   * Creates a hard link to the source file. An existing destination file is replaced.
+   * </p>
+   *
+   * @param source
+   *          the class file in the output folder
+   * @param destfile
+   *          the class file in the destination directory
+   * @return <code>true</code> if the link has been created, <code>false</code> if the class file has to be copied.
+   */
+  boolean link(File source, File destfile) {
+    if (CREATE_LINK == null) {
+      return false;
+    }
+    if (destfile.exists() && !destfile.delete()) {
+      return false;
+    }
+    try {
+      CREATE_LINK.invoke(null, TO_PATH.invoke(destfile), TO_PATH.invoke(source));
+      return true;
+    } catch (InvocationTargetException ex) {
+      A4ELogging.debug("Could not link '%s' to '%s': %s", destfile, source, ex.getCause());
+      return false;
+    } catch (IllegalAccessException ex) {
+      return false;
+    }
+  }
+}
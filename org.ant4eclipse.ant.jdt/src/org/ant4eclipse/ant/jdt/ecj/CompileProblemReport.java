@@ -0,0 +1,147 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.ant.jdt.ecj;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.eclipse.jdt.core.compiler.CategorizedProblem;
+
+/**
+ * <p>
+ * Machine readable report of compile problems. Each problem is written as a JSON object on a line of its own (JSON
+ * lines), so the reports of several compilations can be appended to the same file and parsed line by line:
+ * </p>
+ *
+ * <pre>
+ * {"severity":"ERROR","file":"/src/a/A.java","line":3,"start":42,"end":44,"id":16777218,"category":40,"message":"..."}
+ * </pre>
+ */
+class CompileProblemReport {
+
+  /** the reported problems */
+  private StringBuilder _lines;
+
+  /** the number of reported problems */
+  private int           _count;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link CompileProblemReport}.
+   * </p>
+   */
+  CompileProblemReport() {
+    this._lines = new StringBuilder();
+  }
+
+  /**
+   * <p>
+   * Adds the given problem.
+   * </p>
+   *
+   * @param file
+   *          the source file that contains the problem.
+   * @param problem
+   *          the problem.
+   */
+  void add(File file, CategorizedProblem problem) {
+    Assure.notNull("file", file);
+    Assure.notNull("problem", problem);
+    this._lines.append("{\"severity\":");
+    appendString(problem.isError() ? "ERROR" : "WARNING");
+    this._lines.append(",\"file\":");
+    appendString(file.getAbsolutePath());
+    this._lines.append(",\"line\":").append(problem.getSourceLineNumber());
+    this._lines.append(",\"start\":").append(problem.getSourceStart());
+    this._lines.append(",\"end\":").append(problem.getSourceEnd());
+    this._lines.append(",\"id\":").append(problem.getID());
+    this._lines.append(",\"category\":").append(problem.getCategoryID());
+    this._lines.append(",\"message\":");
+    appendString(problem.getMessage());
+    this._lines.append("}\n");
+    this._count++;
+  }
+
+  /**
+   * <p>
+   * Returns the number of reported problems.
+   * </p>
+   *
+   * @return the number of reported problems.
+   */
+  int getCount() {
+    return this._count;
+  }
+
+  /**
+   * <p>
+   * Appends the report to the given file (the file is created if it doesn't exist).
+   * </p>
+   *
+   * @param file
+   *          the report file.
+   */
+  void appendTo(File file) {
+    Assure.notNull("file", file);
+    try {
+      Utilities.appendFile(file, this._lines.toString().getBytes("UTF-8"));
+    } catch (UnsupportedEncodingException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    return this._lines.toString();
+  }
+
+  /**
+   * <p>
+   * Appends the given value as a JSON string.
+   * </p>
+   */
+  private void appendString(String value) {
+    this._lines.append('"');
+    for (int i = 0; (value != null) && (i < value.length()); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+      case '"':
+        this._lines.append("\\\"");
+        break;
+      case '\\':
+        this._lines.append("\\\\");
+        break;
+      case '\n':
+        this._lines.append("\\n");
+        break;
+      case '\r':
+        this._lines.append("\\r");
+        break;
+      case '\t':
+        this._lines.append("\\t");
+        break;
+      default:
+        if (c < 0x20) {
+          this._lines.append(String.format("\\u%04x", Integer.valueOf(c)));
+        } else {
+          this._lines.append(c);
+        }
+      }
+    }
+    this._lines.append('"');
+  }
+}
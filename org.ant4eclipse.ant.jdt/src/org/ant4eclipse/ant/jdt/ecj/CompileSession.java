@@ -0,0 +1,357 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.ant.jdt.ecj;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.ant4eclipse.ant.jdt.EcjAdditionalCompilerArguments;
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
+import org.ant4eclipse.lib.jdt.ecj.CompileJobDescription;
+import org.ant4eclipse.lib.jdt.ecj.CompileJobResult;
+import org.ant4eclipse.lib.jdt.ecj.CompileService;
+import org.ant4eclipse.lib.jdt.ecj.DefaultCompileJobDescription;
+import org.ant4eclipse.lib.jdt.ecj.EcjExceptionCodes;
+import org.ant4eclipse.lib.jdt.ecj.SourceFile;
+import org.apache.tools.ant.Project;
+
+/**
+ * <p>
+ * A {@link CompileSession} collects the compile jobs of several projects (f.e. all projects of a workspace in build
+ * order) and compiles them together within a single compiler session. So the compiler shares the bindings of all
+ * projects instead of reading the class files of the upstream projects again for each project. Each source file is
+ * still compiled into the output folder of its project.
+ * </p>
+ * <p>
+ * As the compiler can't distinguish between the projects when it looks up a type, only jobs which use the same
+ * compiler options and compatible effective class paths are compiled together. The effective class path of a job is
+ * its boot class path and class path (together with the access restrictions of each entry) without the output folders
+ * of the jobs compiled in the same session. Each job keeps its own class file loader that applies its own access
+ * restrictions, but an entry that is part of the effective class path of several jobs must have the same access
+ * restrictions for all of them. Within a compiler session the source files and the output folders of all jobs are
+ * visible to each other, so the types of an output folder are resolved from source and its access restrictions can't be
+ * applied. A job whose class path contains the output folder of another job of the session with access restrictions
+ * (f.e. a plug-in project that only sees the exported packages of another one) is therefore compiled in a new session.
+ * </p>
+ * <p>
+ * Alternatively the jobs can be compiled in parallel using a {@link CompileService}. In this case each job is compiled
+ * in its own compiler session as soon as the jobs that produce the output folders on its class path have been
+ * compiled.
+ * </p>
+ */
+public class CompileSession {
+
+  /** the reference id of the active compile session */
+  public static final String REFERENCE_ID = "ant4eclipse.compileSession";
+
+  /** the collected compile jobs */
+  private List<Job>          _jobs;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link CompileSession}.
+   * </p>
+   */
+  public CompileSession() {
+    this._jobs = new ArrayList<Job>();
+  }
+
+  /**
+   * <p>
+   * Returns the active compile session of the given project or <code>null</code> if there's none.
+   * </p>
+   *
+   * @param project
+   *          the ant project
+   * @return the active compile session or <code>null</code>.
+   */
+  public static CompileSession getCompileSession(Project project) {
+    Object result = project.getReference(REFERENCE_ID);
+    return result instanceof CompileSession ? (CompileSession) result : null;
+  }
+
+  /**
+   * <p>
+   * Returns the number of collected compile jobs.
+   * </p>
+   *
+   * @return the number of collected compile jobs.
+   */
+  public synchronized int getJobCount() {
+    return this._jobs.size();
+  }
+
+  /**
+   * <p>
+   * Adds a compile job. The class file loader of the job is created when the job is compiled, so it sees the class
+   * files of the jobs compiled before.
+   * </p>
+   *
+   * @param adapter
+   *          the compiler adapter of the job
+   * @param description
+   *          the description of the job (without class file loader)
+   * @param compilerArguments
+   *          the compiler arguments, can be <code>null</code>.
+   */
+  synchronized void addJob(A4ECompilerAdapter adapter, DefaultCompileJobDescription description,
+      EcjAdditionalCompilerArguments compilerArguments) {
+    Assure.notNull("adapter", adapter);
+    Assure.notNull("description", description);
+    this._jobs.add(new Job(adapter, description, compilerArguments));
+  }
+
+  /**
+   * <p>
+   * Compiles all collected compile jobs. The problems are reported for each job.
+   * </p>
+   *
+   * @throws Ant4EclipseException
+   *           if the compilation was not successful.
+   */
+  public synchronized void compile() {
+    compile(1);
+  }
+
+  /**
+   * <p>
+   * Compiles all collected compile jobs. If the given thread count is greater than one, the jobs are compiled in
+   * parallel (each job in its own compiler session), otherwise compatible jobs are compiled within a single compiler
+   * session. The problems are reported for each job.
+   * </p>
+   *
+   * @param threadCount
+   *          the maximum number of jobs that are compiled at the same time.
+   * @throws Ant4EclipseException
+   *           if the compilation was not successful.
+   */
+  public synchronized void compile(int threadCount) {
+    Assure.assertTrue(threadCount > 0, "threadCount must be positive");
+    if (threadCount > 1) {
+      compileInParallel(threadCount);
+      this._jobs.clear();
+      return;
+    }
+    List<Job> batch = new ArrayList<Job>();
+    int sessions = 0;
+    for (Job job : this._jobs) {
+      if (!batch.isEmpty() && !isCompatible(batch, job)) {
+        compile(batch);
+        sessions++;
+        batch = new ArrayList<Job>();
+      }
+      batch.add(job);
+    }
+    if (!batch.isEmpty()) {
+      compile(batch);
+      sessions++;
+    }
+    A4ELogging.info("Compiled %d compile job(s) in %d compiler session(s).", Integer.valueOf(this._jobs.size()),
+        Integer.valueOf(sessions));
+    this._jobs.clear();
+  }
+
+  /**
+   * <p>
+   * Compiles the given jobs within a single compiler session.
+   * </p>
+   */
+  private void compile(List<Job> batch) {
+    CompileJobDescription[] descriptions = new CompileJobDescription[batch.size()];
+    for (int i = 0; i < descriptions.length; i++) {
+      Job job = batch.get(i);
+      job._description.setClassFileLoader(job._adapter.createClassFileLoader(job._compilerArguments));
+      descriptions[i] = job._description;
+    }
+    CompileJobResult[] results = batch.get(0)._adapter.compile(descriptions);
+
+    // report the problems of all jobs before failing
+    Ant4EclipseException failure = null;
+    for (int i = 0; i < results.length; i++) {
+      try {
+        batch.get(i)._adapter.handleResult(descriptions[i].getSourceFiles(), results[i]);
+      } catch (Ant4EclipseException ex) {
+        if (failure == null) {
+          failure = ex;
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * <p>
+   * Compiles the jobs using a {@link CompileService}. A job depends on all jobs that have been added before and whose
+   * output folders are part of its class path.
+   * </p>
+   */
+  private void compileInParallel(int threadCount) {
+    CompileService compileService = new CompileService(threadCount);
+    for (int i = 0; i < this._jobs.size(); i++) {
+      final Job job = this._jobs.get(i);
+      List<String> upstreamJobs = new ArrayList<String>();
+      for (int j = 0; j < i; j++) {
+        for (File outputFolder : this._jobs.get(j).getOutputFolders()) {
+          if (job._accessRestrictions.containsKey(outputFolder.getAbsolutePath())) {
+            upstreamJobs.add(String.valueOf(j));
+            break;
+          }
+        }
+      }
+      compileService.addJob(String.valueOf(i), new CompileJobDescription() {
+        private ClassFileLoader _classFileLoader;
+
+        public synchronized ClassFileLoader getClassFileLoader() {
+          // created by the worker thread after the upstream jobs have been compiled
+          if (this._classFileLoader == null) {
+            this._classFileLoader = job._adapter.createClassFileLoader(job._compilerArguments);
+          }
+          return this._classFileLoader;
+        }
+
+        public Map<String, String> getCompilerOptions() {
+          return job._description.getCompilerOptions();
+        }
+
+        public SourceFile[] getSourceFiles() {
+          return job._description.getSourceFiles();
+        }
+
+        public boolean isRecordCompilationUnitResults() {
+          return job._description.isRecordCompilationUnitResults();
+        }
+      }, upstreamJobs.toArray(new String[upstreamJobs.size()]));
+    }
+
+    // report the problems of all jobs before failing
+    CompileService.Job[] results = compileService.compile();
+    RuntimeException failure = null;
+    for (int i = 0; i < results.length; i++) {
+      CompileService.Job result = results[i];
+      A4ELogging.debug("Compile job %d: queue time %d ms, wall time %d ms.", Integer.valueOf(i),
+          Long.valueOf(result.getQueueTime()), Long.valueOf(result.getWallTime()));
+      try {
+        if (result.getResult() != null) {
+          this._jobs.get(i)._adapter.handleResult(result.getDescription().getSourceFiles(), result.getResult());
+        } else if (result.getException() != null) {
+          throw result.getException();
+        } else {
+          throw new Ant4EclipseException(EcjExceptionCodes.COMPILATION_WAS_NOT_SUCCESFUL);
+        }
+      } catch (RuntimeException ex) {
+        if (failure == null) {
+          failure = ex;
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the given job can be compiled within the same compiler session as the given jobs,
+   * that is if all of them use the same compiler options, no job has access restrictions on the output folder of
+   * another job of the session and the entries shared by the effective class paths have the same access restrictions.
+   * </p>
+   */
+  private boolean isCompatible(List<Job> batch, Job job) {
+    Job first = batch.get(0);
+    if ((first._adapter.getClass() != job._adapter.getClass())
+        || !first._description.getCompilerOptions().equals(job._description.getCompilerOptions())) {
+      return false;
+    }
+    List<Job> jobs = new ArrayList<Job>(batch);
+    jobs.add(job);
+    Set<String> outputFolders = new HashSet<String>();
+    for (Job other : jobs) {
+      outputFolders.addAll(other.getOutputFolderPaths());
+    }
+    Map<String, String> classpath = new HashMap<String, String>();
+    for (Job other : jobs) {
+      for (Map.Entry<String, String> entry : other._accessRestrictions.entrySet()) {
+        String path = entry.getKey();
+        if (outputFolders.contains(path)) {
+          // resolved from source within the session, so the restrictions wouldn't be applied
+          if (entry.getValue().length() > 0) {
+            A4ELogging.debug("Access restrictions on output folder '%s', starting a new compiler session.", path);
+            return false;
+          }
+        } else if (classpath.containsKey(path) && !classpath.get(path).equals(entry.getValue())) {
+          A4ELogging.debug("Access restrictions on '%s' differ, starting a new compiler session.", path);
+          return false;
+        } else {
+          classpath.put(path, entry.getValue());
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * <p>
+   * A collected compile job.
+   * </p>
+   */
+  private static class Job {
+
+    /** the compiler adapter of the job */
+    private A4ECompilerAdapter             _adapter;
+
+    /** the description of the job */
+    private DefaultCompileJobDescription   _description;
+
+    /** the compiler arguments, maybe <code>null</code> */
+    private EcjAdditionalCompilerArguments _compilerArguments;
+
+    /** the access restrictions of the class path entries */
+    private Map<String, String>            _accessRestrictions;
+
+    private Job(A4ECompilerAdapter adapter, DefaultCompileJobDescription description,
+        EcjAdditionalCompilerArguments compilerArguments) {
+      this._adapter = adapter;
+      this._description = description;
+      this._compilerArguments = compilerArguments;
+      this._accessRestrictions = adapter.getAccessRestrictions(compilerArguments);
+    }
+
+    private List<File> getOutputFolders() {
+      List<File> result = new ArrayList<File>();
+      for (SourceFile sourceFile : this._description.getSourceFiles()) {
+        if (!result.contains(sourceFile.getDestinationFolder())) {
+          result.add(sourceFile.getDestinationFolder());
+        }
+      }
+      return result;
+    }
+
+    private List<String> getOutputFolderPaths() {
+      List<String> result = new ArrayList<String>();
+      for (File outputFolder : getOutputFolders()) {
+        result.add(outputFolder.getAbsolutePath());
+      }
+      return result;
+    }
+  }
+
+}
@@ -16,6 +16,7 @@ import org.ant4eclipse.lib.core.util.PerformanceLogging;
 import org.ant4eclipse.lib.jdt.ecj.CompileJobDescription;
 import org.ant4eclipse.lib.jdt.ecj.CompileJobResult;
 import org.ant4eclipse.lib.jdt.ecj.EcjAdapter;
+import org.ant4eclipse.lib.jdt.ecj.JarOutput;
 
 /**
  * <p>
@@ -53,4 +54,41 @@ public class EcjCompilerAdapter extends A4ECompilerAdapter {
     return result;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected CompileJobResult compile(CompileJobDescription description, JarOutput jarOutput) {
+
+    PerformanceLogging.start(EcjCompilerAdapter.class, "compileToArchive");
+
+    try {
+      return EcjAdapter.Factory.create().compile(description, jarOutput);
+    } finally {
+      long duration = PerformanceLogging.stop(EcjCompilerAdapter.class, "compileToArchive");
+      if (duration > 0) {
+        A4ELogging.info("ECJ Compilation into '%s' took %d ms", jarOutput.getJarFile(), Long.valueOf(duration));
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected CompileJobResult[] compile(CompileJobDescription[] descriptions) {
+
+    PerformanceLogging.start(EcjCompilerAdapter.class, "compileSession");
+
+    try {
+      return EcjAdapter.Factory.create().compile(descriptions);
+    } finally {
+      long duration = PerformanceLogging.stop(EcjCompilerAdapter.class, "compileSession");
+      if (duration > 0) {
+        A4ELogging.info("ECJ Compilation of %d compile jobs took %d ms", Integer.valueOf(descriptions.length),
+            Long.valueOf(duration));
+      }
+    }
+  }
+
 } /* ENDCALSS */
@@ -0,0 +1,31 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.ant.jdt.ecj;
+
+/**
+ * <p>
+ * Defines how the compiled class files get into the destination directory of the javac task if it differs from the
+ * output folders of the project.
+ * </p>
+ */
+public enum OutputStrategy {
+
+  /** the class files are written directly into the destination directory (the output folders are not used) */
+  direct,
+
+  /** the class files are hard-linked into the destination directory (copied if linking isn't possible) */
+  link,
+
+  /** the class files are copied into the destination directory if their content differs */
+  copy
+
+} /* ENDENUM */
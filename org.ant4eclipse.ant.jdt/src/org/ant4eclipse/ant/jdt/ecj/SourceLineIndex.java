@@ -0,0 +1,148 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.ant.jdt.ecj;
+
+import java.io.UnsupportedEncodingException;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.jdt.ecj.SourceFile;
+
+/**
+ * <p>
+ * Index of the lines of a source file. The source file is read once and the start offsets of all lines are computed,
+ * so the lines of all problems reported for the source file can be rendered without reading the file again. The
+ * offsets are compatible with the source positions of the compiler (line breaks may be <code>\n</code>,
+ * <code>\r</code> or <code>\r\n</code>).
+ * </p>
+ */
+class SourceLineIndex {
+
+  /** the contents of the source file */
+  private char[] _contents;
+
+  /** the offsets of the lines (the last element is the length of the contents) */
+  private int[]  _lineStarts;
+
+  /** the number of lines */
+  private int    _lineCount;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link SourceLineIndex}.
+   * </p>
+   *
+   * @param contents
+   *          the contents of the source file.
+   */
+  SourceLineIndex(char[] contents) {
+    Assure.notNull("contents", contents);
+    this._contents = contents;
+
+    int[] lineStarts = new int[64];
+    int count = 0;
+    int offset = 0;
+    while (offset <= contents.length) {
+      if (count + 1 >= lineStarts.length) {
+        int[] extended = new int[lineStarts.length * 2];
+        System.arraycopy(lineStarts, 0, extended, 0, count);
+        lineStarts = extended;
+      }
+      lineStarts[count++] = offset;
+
+      // skip to the start of the next line
+      while ((offset < contents.length) && (contents[offset] != '\n') && (contents[offset] != '\r')) {
+        offset++;
+      }
+      if (offset == contents.length) {
+        break;
+      }
+      if ((contents[offset] == '\r') && (offset + 1 < contents.length) && (contents[offset + 1] == '\n')) {
+        offset++;
+      }
+      offset++;
+    }
+    lineStarts[count] = contents.length;
+    this._lineStarts = lineStarts;
+    this._lineCount = count;
+  }
+
+  /**
+   * <p>
+   * Reads the given source file and returns its index or <code>null</code> if the file can't be read.
+   * </p>
+   *
+   * @param sourceFile
+   *          the source file.
+   * @return the index or <code>null</code>.
+   */
+  static SourceLineIndex create(SourceFile sourceFile) {
+    Assure.notNull("sourceFile", sourceFile);
+    try {
+      byte[] content = Utilities.readFile(sourceFile.getSourceFile());
+      return new SourceLineIndex(new String(content, sourceFile.getEncoding()).toCharArray());
+    } catch (UnsupportedEncodingException ex) {
+      A4ELogging.debug("Could not read source file '%s': %s", sourceFile.getSourceFile(), ex);
+      return null;
+    } catch (RuntimeException ex) {
+      A4ELogging.debug("Could not read source file '%s': %s", sourceFile.getSourceFile(), ex);
+      return null;
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the number of lines.
+   * </p>
+   *
+   * @return the number of lines.
+   */
+  int getLineCount() {
+    return this._lineCount;
+  }
+
+  /**
+   * <p>
+   * Returns the offset of the given line.
+   * </p>
+   *
+   * @param lineNumber
+   *          the line number (starting with 1).
+   * @return the offset of the line or -1 if there's no such line.
+   */
+  int getLineStart(int lineNumber) {
+    return (lineNumber > 0) && (lineNumber <= this._lineCount) ? this._lineStarts[lineNumber - 1] : -1;
+  }
+
+  /**
+   * <p>
+   * Returns the given line (without the line break).
+   * </p>
+   *
+   * @param lineNumber
+   *          the line number (starting with 1).
+   * @return the line or <code>null</code> if there's no such line.
+   */
+  String getLine(int lineNumber) {
+    int start = getLineStart(lineNumber);
+    if (start == -1) {
+      return null;
+    }
+    int end = start;
+    int next = this._lineStarts[lineNumber];
+    while ((end < next) && (this._contents[end] != '\n') && (this._contents[end] != '\r')) {
+      end++;
+    }
+    return new String(this._contents, start, end - start);
+  }
+}
@@ -16,8 +16,11 @@ import org.junit.Assert;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
 
 /**
  * The Test Environment contains a set of folder that are created before and removed after a test case.
@@ -115,6 +118,31 @@ public class TestDirectory {
     return createFile(fileName, output.toString());
   }
 
+  /**
+   * Creates the jar file fileName in the root folder of the test environment. Each entry contains two (dummy) bytes.
+   * 
+   * @param fileName
+   *          The filename that is relative to the root of the test environment
+   * @param entries
+   *          The names of the entries
+   * @return The file that has been created
+   * @throws IOException
+   */
+  public File createJarFile(String fileName, String... entries) throws IOException {
+    File result = new File(this._rootDir, fileName);
+    JarOutputStream output = new JarOutputStream(new FileOutputStream(result));
+    try {
+      for (String entry : entries) {
+        output.putNextEntry(new ZipEntry(entry));
+        output.write(new byte[] { (byte) 0xCA, (byte) 0xFE });
+        output.closeEntry();
+      }
+    } finally {
+      output.close();
+    }
+    return result;
+  }
+
   public File createSubDirectory(String name) {
     Assert.assertNotNull(name);
 
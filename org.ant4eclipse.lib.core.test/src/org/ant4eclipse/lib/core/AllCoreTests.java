@@ -18,6 +18,7 @@ import org.ant4eclipse.lib.core.logging.LoggingUsageTest;
 import org.ant4eclipse.lib.core.nls.NLSTest;
 import org.ant4eclipse.lib.core.service.PropertiesBasedServiceRegistryConfigurationTest;
 import org.ant4eclipse.lib.core.service.ServiceRegistryTest;
+import org.ant4eclipse.lib.core.util.JarFilePoolTest;
 import org.ant4eclipse.lib.core.util.ManifestHelperTest;
 import org.ant4eclipse.lib.core.util.UtilitiesTest;
 import org.ant4eclipse.lib.core.xquery.XQueryHandlerTest;
@@ -28,6 +29,6 @@ import org.junit.runners.Suite;
 @Suite.SuiteClasses({ AssureTest.class, ClassNameTest.class, DefaultConfiguratorTest.class, VersionTest.class,
     DependencyGraphTest.class, Failuretest.class, LoggingUsageTest.class, NLSTest.class,
     PropertiesBasedServiceRegistryConfigurationTest.class, ServiceRegistryTest.class, ManifestHelperTest.class,
-    UtilitiesTest.class, XQueryHandlerTest.class })
+    UtilitiesTest.class, XQueryHandlerTest.class, JarFilePoolTest.class })
 public class AllCoreTests {
 } /* ENDCLASS */
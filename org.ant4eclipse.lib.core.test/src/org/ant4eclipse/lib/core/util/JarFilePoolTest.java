@@ -0,0 +1,108 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.jar.JarFile;
+
+import org.ant4eclipse.testframework.AbstractTestDirectoryBasedTest;
+import org.junit.Test;
+
+public class JarFilePoolTest extends AbstractTestDirectoryBasedTest {
+
+  @Test
+  public void reuseHandles() throws IOException {
+    File jar = getTestDirectory().createJarFile("lib.jar", "a/A.class");
+    JarFilePool pool = newPool(128);
+
+    JarFile first = pool.acquire(jar);
+    JarFile second = pool.acquire(jar);
+    assertSame(first, second);
+    pool.release(first);
+    pool.release(second);
+
+    // released archives are kept open
+    assertSame(first, pool.acquire(jar));
+    pool.release(first);
+    assertNotNull(first.getEntry("a/A.class"));
+    assertEquals(1, pool.getOpenCount());
+    assertEquals(2, pool.getHitCount());
+
+    // a changed archive is opened again and the outdated handle is closed
+    assertTrue(jar.setLastModified(jar.lastModified() + 2000));
+    JarFile third = pool.acquire(jar);
+    assertNotSame(first, third);
+    assertClosed(first);
+    pool.release(third);
+    assertEquals(2, pool.getOpenCount());
+
+    pool.dispose();
+    assertClosed(third);
+  }
+
+  @Test
+  public void evictLeastRecentlyUsed() throws IOException {
+    File a = getTestDirectory().createJarFile("a.jar", "a/A.class");
+    File b = getTestDirectory().createJarFile("b.jar", "b/B.class");
+    File c = getTestDirectory().createJarFile("c.jar", "c/C.class");
+    File d = getTestDirectory().createJarFile("d.jar", "d/D.class");
+    JarFilePool pool = newPool(2);
+
+    // 'a' is in use, so 'b' is the least recently used archive that can be closed
+    JarFile jarA = pool.acquire(a);
+    JarFile jarB = pool.acquire(b);
+    pool.release(jarB);
+    JarFile jarC = pool.acquire(c);
+    pool.release(jarC);
+    assertEquals(1, pool.getEvictionCount());
+    assertClosed(jarB);
+    assertNotNull(jarA.getEntry("a/A.class"));
+
+    // released archives are closed as soon as the bound is exceeded
+    pool.release(jarA);
+    JarFile jarD = pool.acquire(d);
+    pool.release(jarD);
+    assertEquals(2, pool.getEvictionCount());
+    assertClosed(jarA);
+    assertNotNull(jarC.getEntry("c/C.class"));
+    assertNotNull(jarD.getEntry("d/D.class"));
+    pool.dispose();
+  }
+
+  private JarFilePool newPool(int maxOpen) {
+    System.setProperty(JarFilePool.MAX_OPEN_PROPERTY, String.valueOf(maxOpen));
+    try {
+      JarFilePool result = new JarFilePool();
+      result.initialize();
+      return result;
+    } finally {
+      System.getProperties().remove(JarFilePool.MAX_OPEN_PROPERTY);
+    }
+  }
+
+  private void assertClosed(JarFile jarFile) {
+    try {
+      jarFile.getEntry("a/A.class");
+    } catch (IllegalStateException ex) {
+      // expected: the archive has been closed
+      return;
+    }
+    throw new AssertionError("The archive '" + jarFile.getName() + "' hasn't been closed.");
+  }
+}
@@ -0,0 +1,314 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.core.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.jar.JarFile;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.Lifecycle;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.service.ServiceRegistryAccess;
+
+/**
+ * <p>
+ * Process wide pool of open {@link JarFile} instances. Opening an archive means reading its central directory, so
+ * archives that are accessed repeatedly (f.e. the libraries on a class path) are kept open and shared between all
+ * users. Each user has to {@link #release(JarFile) release} an archive after it has been
+ * {@link #acquire(File) acquired}.
+ * </p>
+ * <p>
+ * The number of open archives is bounded: if more archives than allowed are open, the least recently used archives
+ * that are not in use anymore will be closed. The limit can be changed using the system property
+ * <code>ant4eclipse.jarFilePool.maxOpen</code> (default: 128). The returned {@link JarFile} instances are thread safe
+ * for reading, so the same instance can be used by concurrent readers.
+ * </p>
+ */
+public class JarFilePool implements Lifecycle {
+
+  /** System-Property that specifies the maximum number of open archives */
+  public static final String                   MAX_OPEN_PROPERTY = "ant4eclipse.jarFilePool.maxOpen";
+
+  /** the default maximum number of open archives */
+  private static final int                     DEFAULT_MAX_OPEN  = 128;
+
+  /** the maximum number of unused archives that will be kept open */
+  private int                                  _maxOpen;
+
+  /** the open archives in LRU order (least recently used first) */
+  private LinkedHashMap<String, PooledJarFile> _pool;
+
+  /** maps acquired archives to their pool entries */
+  private Map<JarFile, PooledJarFile>          _acquired;
+
+  /** the number of archives that have been opened */
+  private int                                  _opened;
+
+  /** the number of archives that have been closed due to the limit */
+  private int                                  _evicted;
+
+  /** the number of requests that could be served with an already opened archive */
+  private int                                  _hits;
+
+  /** - */
+  private boolean                              _initialized;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link JarFilePool}.
+   * </p>
+   */
+  public JarFilePool() {
+    this._pool = new LinkedHashMap<String, PooledJarFile>(16, 0.75f, true);
+    this._acquired = new IdentityHashMap<JarFile, PooledJarFile>();
+    this._maxOpen = Integer.getInteger(MAX_OPEN_PROPERTY, DEFAULT_MAX_OPEN).intValue();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public boolean isInitialized() {
+    return this._initialized;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void initialize() {
+    this._initialized = true;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public synchronized void dispose() {
+    this._initialized = false;
+    dump();
+    for (PooledJarFile pooled : this._pool.values()) {
+      pooled.close();
+    }
+    this._pool.clear();
+    this._acquired.clear();
+  }
+
+  /**
+   * <p>
+   * Returns an open {@link JarFile} for the given archive. The caller has to {@link #release(JarFile)} it as soon as it
+   * isn't needed anymore.
+   * </p>
+   *
+   * @param file
+   *          the archive. Not <code>null</code>.
+   * @return the open archive. Not <code>null</code>.
+   * @throws IOException
+   *           if the archive could not be opened.
+   */
+  public synchronized JarFile acquire(File file) throws IOException {
+    Assure.notNull("file", file);
+
+    String key = file.getAbsolutePath();
+    PooledJarFile pooled = this._pool.get(key);
+
+    // reopen the archive if it has been changed in the meantime
+    if ((pooled != null) && !pooled.isUpToDate(file)) {
+      this._pool.remove(key);
+      pooled.retire();
+      pooled = null;
+    }
+
+    if (pooled == null) {
+      pooled = new PooledJarFile(file);
+      this._pool.put(key, pooled);
+      this._opened++;
+    } else {
+      this._hits++;
+    }
+
+    pooled._references++;
+    this._acquired.put(pooled._jarFile, pooled);
+
+    evict();
+
+    return pooled._jarFile;
+  }
+
+  /**
+   * <p>
+   * Releases an archive that has been returned by {@link #acquire(File)}.
+   * </p>
+   *
+   * @param jarFile
+   *          the archive to release. Maybe <code>null</code>.
+   */
+  public synchronized void release(JarFile jarFile) {
+    if (jarFile == null) {
+      return;
+    }
+    PooledJarFile pooled = this._acquired.get(jarFile);
+    if (pooled == null) {
+      return;
+    }
+    pooled._references--;
+    if (pooled._references <= 0) {
+      this._acquired.remove(jarFile);
+      if (pooled._retired) {
+        pooled.close();
+      } else {
+        evict();
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the number of archives that have been opened by this pool.
+   * </p>
+   *
+   * @return the number of archives that have been opened by this pool.
+   */
+  public synchronized int getOpenCount() {
+    return this._opened;
+  }
+
+  /**
+   * <p>
+   * Returns the number of archives that have been closed because the limit of open archives has been exceeded.
+   * </p>
+   *
+   * @return the number of archives that have been closed because the limit has been exceeded.
+   */
+  public synchronized int getEvictionCount() {
+    return this._evicted;
+  }
+
+  /**
+   * <p>
+   * Returns the number of requests that could be served with an already opened archive.
+   * </p>
+   *
+   * @return the number of requests that could be served with an already opened archive.
+   */
+  public synchronized int getHitCount() {
+    return this._hits;
+  }
+
+  /**
+   * Dumps the statistics of the JarFilePool via A4ELogging
+   */
+  public synchronized void dump() {
+    A4ELogging.debug("JarFilePool: %d archives opened, %d evicted, %d hits, %d currently open.", Integer
+        .valueOf(this._opened), Integer.valueOf(this._evicted), Integer.valueOf(this._hits), Integer.valueOf(this._pool
+        .size()));
+  }
+
+  /**
+   * <p>
+   * Closes the least recently used archives which are not in use until the limit is satisfied.
+   * </p>
+   */
+  private void evict() {
+    Iterator<PooledJarFile> iterator = this._pool.values().iterator();
+    while ((this._pool.size() > this._maxOpen) && iterator.hasNext()) {
+      PooledJarFile pooled = iterator.next();
+      if (pooled._references <= 0) {
+        iterator.remove();
+        pooled.close();
+        this._evicted++;
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the {@link JarFilePool} instance.
+   * </p>
+   *
+   * @return the {@link JarFilePool} instance.
+   */
+  public static JarFilePool getInstance() {
+    return ServiceRegistryAccess.instance().getService(JarFilePool.class);
+  }
+
+  /**
+   * <p>
+   * An open archive together with the information needed to manage it.
+   * </p>
+   */
+  private static class PooledJarFile {
+
+    /** the open archive */
+    private JarFile _jarFile;
+
+    /** the size of the archive when it has been opened */
+    private long    _length;
+
+    /** the modification time of the archive when it has been opened */
+    private long    _lastModified;
+
+    /** the number of users */
+    private int     _references;
+
+    /** <code>true</code> if the archive has been replaced and has to be closed after its last release */
+    private boolean _retired;
+
+    /**
+     * <p>
+     * Opens the given archive.
+     * </p>
+     */
+    PooledJarFile(File file) throws IOException {
+      this._length = file.length();
+      this._lastModified = file.lastModified();
+      this._jarFile = new JarFile(file, false);
+    }
+
+    /**
+     * <p>
+     * Returns <code>true</code> if the archive didn't change since it has been opened.
+     * </p>
+     */
+    boolean isUpToDate(File file) {
+      return (file.length() == this._length) && (file.lastModified() == this._lastModified);
+    }
+
+    /**
+     * <p>
+     * Marks this archive as replaced. It will be closed immediately if it's not in use.
+     * </p>
+     */
+    void retire() {
+      this._retired = true;
+      if (this._references <= 0) {
+        close();
+      }
+    }
+
+    /**
+     * <p>
+     * Closes the archive.
+     * </p>
+     */
+    void close() {
+      try {
+        this._jarFile.close();
+      } catch (IOException ex) {
+        // nothing to do here...
+      }
+    }
+  }
+
+} /* ENDCLASS */
@@ -12,6 +12,7 @@
 package org.ant4eclipse.lib.core.util;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
@@ -31,6 +32,8 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
 import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -1075,6 +1078,53 @@ public class Utilities {
     }
   }
 
+  /**
+   * This function loads the complete content of a file.
+   *
+   * @param source
+   *          The file which content has to be loaded. Not <code>null</code>.
+   *
+   * @return The content of the file. Not <code>null</code>.
+   */
+  public static final byte[] readFile(File source) {
+    Assure.isFile("source", source);
+    InputStream input = null;
+    try {
+      input = new FileInputStream(source);
+      ByteArrayOutputStream byteout = new ByteArrayOutputStream((int) source.length());
+      copy(input, byteout, new byte[8192]);
+      return byteout.toByteArray();
+    } catch (IOException ex) {
+      throw new Ant4EclipseException(ex, CoreExceptionCode.FILEIO_FAILURE, source);
+    } finally {
+      close(input);
+    }
+  }
+
+  /**
+   * Calculates a hash for the supplied content. The hash is suitable to detect changes of the content and is
+   * represented as a hexadecimal string.
+   *
+   * @param content
+   *          The content which hash has to be calculated. Not <code>null</code>.
+   *
+   * @return The hash of the content. Not <code>null</code>.
+   */
+  public static final String digest(byte[] content) {
+    Assure.notNull("content", content);
+    try {
+      byte[] hash = MessageDigest.getInstance("MD5").digest(content);
+      StringBuffer buffer = new StringBuffer(hash.length * 2);
+      for (byte b : hash) {
+        buffer.append(Character.forDigit((b >> 4) & 0x0F, 16));
+        buffer.append(Character.forDigit(b & 0x0F, 16));
+      }
+      return buffer.toString();
+    } catch (NoSuchAlgorithmException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
   public static synchronized void appendFile(File destination, byte[] content) {
     Assure.notNull("destination", destination);
     Assure.notNull("content", content);
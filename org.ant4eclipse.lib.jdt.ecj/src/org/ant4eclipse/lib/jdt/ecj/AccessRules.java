@@ -0,0 +1,280 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.ant4eclipse.lib.core.Assure;
+
+/**
+ * <p>
+ * Precompiled access rules of a class path entry. The rules are given as patterns on the class file names (using
+ * '/' as separator) like <code>+org/example/*;-org/example/internal/*;-**&#47;*</code>. A '*' matches any sequence of
+ * characters. A class is accessible if it matches one of the included patterns or none of the excluded patterns.
+ * </p>
+ * <p>
+ * Patterns that denote a package (<code>org/example/*</code>) or everything (<code>**&#47;*</code>) are stored in a
+ * tree of package segments, so a query only needs to walk the package of the class. Other patterns are compiled to
+ * regular expressions once.
+ * </p>
+ */
+public class AccessRules {
+
+  /** the root of the package tree (all classes) */
+  private Node                 _root;
+
+  /** class names without wildcards (key: class file name without '.class', value: included) */
+  private Map<String, Boolean> _exactNames;
+
+  /** the included patterns that can't be represented in the package tree */
+  private List<Pattern>        _includePatterns;
+
+  /** the excluded patterns that can't be represented in the package tree */
+  private List<Pattern>        _excludePatterns;
+
+  /** the rules as formatted string */
+  private StringBuffer         _formatted;
+
+  /**
+   * <p>
+   * Creates a new (empty) instance of type {@link AccessRules}.
+   * </p>
+   */
+  public AccessRules() {
+    this._root = new Node();
+    this._exactNames = new HashMap<String, Boolean>();
+    this._includePatterns = new LinkedList<Pattern>();
+    this._excludePatterns = new LinkedList<Pattern>();
+    this._formatted = new StringBuffer();
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link AccessRules} for the given packages.
+   * </p>
+   *
+   * @param publicPackages
+   *          the packages (dot separated) that are accessible.
+   * @param privatePackages
+   *          the packages (dot separated) that are not accessible.
+   * @param excludeAll
+   *          <code>true</code> if all other classes are not accessible.
+   */
+  public AccessRules(Collection<String> publicPackages, Collection<String> privatePackages, boolean excludeAll) {
+    this();
+    Assure.notNull("publicPackages", publicPackages);
+    Assure.notNull("privatePackages", privatePackages);
+    for (String publicPackage : publicPackages) {
+      addRule(true, publicPackage.replace('.', '/') + "/*");
+    }
+    for (String privatePackage : privatePackages) {
+      addRule(false, privatePackage.replace('.', '/') + "/*");
+    }
+    addRule(!excludeAll, "**/*");
+  }
+
+  /**
+   * <p>
+   * Parses the given access rules (f.e. <code>+org/example/*;-**&#47;*</code>).
+   * </p>
+   *
+   * @param rules
+   *          the access rules separated by ';'. Each rule starts with '+' (included) or '-' (excluded).
+   * @return the parsed access rules.
+   */
+  public static AccessRules parse(String rules) {
+    Assure.notNull("rules", rules);
+    AccessRules result = new AccessRules();
+    for (String rule : rules.split(";")) {
+      if (rule.startsWith("+") || rule.startsWith("-")) {
+        result.addRule(rule.charAt(0) == '+', rule.substring(1));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Adds a rule.
+   * </p>
+   *
+   * @param include
+   *          <code>true</code> if the matching classes are accessible.
+   * @param pattern
+   *          the pattern on the class file names (without the '.class' suffix).
+   */
+  public void addRule(boolean include, String pattern) {
+    Assure.notNull("pattern", pattern);
+    if (this._formatted.length() > 0) {
+      this._formatted.append(';');
+    }
+    this._formatted.append(include ? '+' : '-').append(pattern);
+
+    int wildcard = pattern.indexOf('*');
+    if (wildcard == -1) {
+      if (!this._exactNames.containsKey(pattern) || include) {
+        this._exactNames.put(pattern, Boolean.valueOf(include));
+      }
+    } else if (isPrefixPattern(pattern, wildcard)) {
+      // all classes within a package (and its sub packages)
+      Node node = this._root;
+      String packagePath = pattern.substring(0, wildcard);
+      for (String segment : packagePath.split("/")) {
+        if (segment.length() > 0) {
+          node = node.getOrCreateChild(segment);
+        }
+      }
+      if (include) {
+        node._included = true;
+      } else {
+        node._excluded = true;
+      }
+    } else {
+      // '**/*' matches classes in the default package as well
+      String[] parts = pattern.replace("**/*", "*").split("\\*", -1);
+      StringBuffer regex = new StringBuffer(Pattern.quote(parts[0]));
+      for (int i = 1; i < parts.length; i++) {
+        regex.append(".*").append(Pattern.quote(parts[i]));
+      }
+      (include ? this._includePatterns : this._excludePatterns).add(Pattern.compile(regex.toString()));
+    }
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the given class is not accessible.
+   * </p>
+   *
+   * @param className
+   *          the class file name without the '.class' suffix (f.e. <code>org/example/Foo</code>).
+   * @return <code>true</code> if the given class is not accessible.
+   */
+  public boolean isForbidden(String className) {
+    boolean excluded = this._root._excluded;
+    if (this._root._included) {
+      return false;
+    }
+
+    // walk the package segments
+    Node node = this._root;
+    int start = 0;
+    for (int end = className.indexOf('/'); end != -1 && node != null; end = className.indexOf('/', start)) {
+      node = node.getChild(className.substring(start, end));
+      if (node != null) {
+        if (node._included) {
+          return false;
+        }
+        excluded |= node._excluded;
+      }
+      start = end + 1;
+    }
+
+    // exact names and the remaining patterns
+    Boolean exact = this._exactNames.get(className);
+    if (Boolean.TRUE.equals(exact) || matches(this._includePatterns, className)) {
+      return false;
+    }
+    return excluded || Boolean.FALSE.equals(exact) || matches(this._excludePatterns, className);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode() {
+    return toString().hashCode();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(Object obj) {
+    return (obj instanceof AccessRules) && toString().equals(obj.toString());
+  }
+
+  /**
+   * <p>
+   * Returns the rules as formatted string (f.e. <code>+org/example/*;-**&#47;*</code>).
+   * </p>
+   */
+  @Override
+  public String toString() {
+    return this._formatted.toString();
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the given pattern consists of a package path followed by wildcards only (f.e.
+   * <code>org/example/*</code> or <code>**&#47;*</code>).
+   * </p>
+   */
+  private static boolean isPrefixPattern(String pattern, int wildcard) {
+    if ((wildcard > 0) && (pattern.charAt(wildcard - 1) != '/')) {
+      return false;
+    }
+    for (int i = wildcard; i < pattern.length(); i++) {
+      char c = pattern.charAt(i);
+      if ((c != '*') && (c != '/')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean matches(List<Pattern> patterns, String className) {
+    for (Pattern pattern : patterns) {
+      if (pattern.matcher(className).matches()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * <p>
+   * A package segment of the package tree.
+   * </p>
+   */
+  private static class Node {
+
+    /** the sub packages (created on demand) */
+    private Map<String, Node> _children;
+
+    /** <code>true</code> if all classes within this package are accessible */
+    private boolean           _included;
+
+    /** <code>true</code> if all classes within this package are not accessible */
+    private boolean           _excluded;
+
+    private Node getChild(String segment) {
+      return this._children != null ? this._children.get(segment) : null;
+    }
+
+    private Node getOrCreateChild(String segment) {
+      if (this._children == null) {
+        this._children = new HashMap<String, Node>();
+      }
+      Node result = this._children.get(segment);
+      if (result == null) {
+        result = new Node();
+        this._children.put(segment, result);
+      }
+      return result;
+    }
+  }
+}
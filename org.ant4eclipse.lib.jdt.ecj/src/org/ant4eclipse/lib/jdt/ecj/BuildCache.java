@@ -0,0 +1,512 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.CompileJobResultImpl;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.incremental.AbiFingerprint;
+import org.eclipse.jdt.core.compiler.CategorizedProblem;
+
+/**
+ * <p>
+ * The {@link BuildCache} is a local, content addressed cache for the results of compile jobs. A job is identified by a
+ * key that is calculated from the content and encoding of all source files, the compiler options, the version of the
+ * compiler and the {@link AbiFingerprint API fingerprints} and access restrictions of the class path entries. Absolute
+ * paths are not part of the key, so the same project checked out to a different location (f.e. by another CI job) hits
+ * the same entry.
+ * </p>
+ * <p>
+ * An entry contains the class files and the {@link CompilationUnitResult results} of all source files of the job. Only
+ * jobs without errors are stored. Warnings are reported by the compilation that created the entry, they are not
+ * repeated when the entry is restored. The cache is limited in size: if it grows beyond its limit the least recently
+ * used entries are removed.
+ * </p>
+ */
+public class BuildCache {
+
+  /** the suffix of a cache entry */
+  public static final String                  ENTRY_SUFFIX     = ".a4e-cache";
+
+  /** the magic number of a cache entry */
+  private static final int                    MAGIC            = 0x41344543;
+
+  /** the version of the file format (also part of the key) */
+  private static final int                    VERSION          = 1;
+
+  /** the version of the eclipse compiler (also part of the key) */
+  static final String                         COMPILER_VERSION = getCompilerVersion();
+
+  /** the shared instances (key: cache directory) */
+  private static final Map<File, BuildCache>  INSTANCES        = new HashMap<File, BuildCache>();
+
+  /** the cache directory */
+  private File                                _directory;
+
+  /** the maximum size of all entries in bytes */
+  private long                                _maxSize;
+
+  /** the number of restored jobs */
+  private int                                 _hits;
+
+  /** the number of jobs that haven't been found */
+  private int                                 _misses;
+
+  /** the number of stored jobs */
+  private int                                 _stores;
+
+  /** the number of removed entries */
+  private int                                 _evictions;
+
+  /** the number of restored class files */
+  private int                                 _restoredClassFiles;
+
+  /** the API fingerprints of the class path entries (stored in the cache directory) */
+  private AbiFingerprint                      _fingerprints;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link BuildCache}.
+   * </p>
+   *
+   * @param directory
+   *          the cache directory, will be created if necessary
+   * @param maxSize
+   *          the maximum size of all entries in bytes
+   */
+  public BuildCache(File directory, long maxSize) {
+    Assure.notNull("directory", directory);
+    Assure.assertTrue(maxSize > 0, "maxSize must be positive");
+
+    this._directory = directory.getAbsoluteFile();
+    this._maxSize = maxSize;
+    Utilities.mkdirs(this._directory);
+    this._fingerprints = new AbiFingerprint(new File(this._directory, "classpath" + AbiFingerprint.ABI_FILE_SUFFIX));
+  }
+
+  /**
+   * <p>
+   * Returns the shared {@link BuildCache} for the given directory, so the statistics cover all compile jobs of a build.
+   * </p>
+   *
+   * @param directory
+   *          the cache directory, will be created if necessary
+   * @param maxSize
+   *          the maximum size of all entries in bytes
+   * @return the shared instance. Not <code>null</code>.
+   */
+  public static BuildCache getBuildCache(File directory, long maxSize) {
+    Assure.notNull("directory", directory);
+    synchronized (INSTANCES) {
+      File key = Utilities.getCanonicalFile(directory);
+      BuildCache result = INSTANCES.get(key);
+      if (result == null) {
+        result = new BuildCache(key, maxSize);
+        INSTANCES.put(key, result);
+      }
+      result._maxSize = maxSize;
+      return result;
+    }
+  }
+
+  /**
+   * <p>
+   * Calculates the key of a compile job. The output folders of the job are ignored if they are part of the class path
+   * as their content is the outcome of the job.
+   * </p>
+   *
+   * @param sourceFiles
+   *          all source files of the job
+   * @param compilerOptions
+   *          the compiler options
+   * @param classpath
+   *          the class path used for the compilation
+   * @param accessRestrictions
+   *          the formatted access restrictions of the class path entries (key: absolute path of the class path entry).
+   *          Entries without restrictions don't need to be contained.
+   * @return the key of the job. Not <code>null</code>.
+   */
+  public String getKey(SourceFile[] sourceFiles, Map<String, String> compilerOptions, File[] classpath,
+      Map<String, String> accessRestrictions) {
+    Assure.notNull("sourceFiles", sourceFiles);
+    Assure.notNull("compilerOptions", compilerOptions);
+    Assure.notNull("classpath", classpath);
+    Assure.notNull("accessRestrictions", accessRestrictions);
+
+    List<File> outputFolders = getOutputFolders(sourceFiles);
+    Set<File> ignored = new HashSet<File>();
+    for (File outputFolder : outputFolders) {
+      ignored.add(Utilities.getCanonicalFile(outputFolder));
+    }
+
+    StringBuffer buffer = new StringBuffer();
+    buffer.append(VERSION).append('\n');
+    buffer.append(COMPILER_VERSION).append('\n');
+    for (Map.Entry<String, String> entry : new TreeMap<String, String>(compilerOptions).entrySet()) {
+      buffer.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+    }
+    for (File entry : classpath) {
+      File canonical = Utilities.getCanonicalFile(entry);
+      if (!ignored.contains(canonical)) {
+        buffer.append(this._fingerprints.getFingerprint(canonical));
+        String restrictions = accessRestrictions.get(entry.getAbsolutePath());
+        if ((restrictions != null) && (restrictions.length() > 0)) {
+          buffer.append(' ').append(restrictions);
+        }
+        buffer.append('\n');
+      }
+    }
+    Set<String> sources = new TreeSet<String>();
+    for (SourceFile sourceFile : sourceFiles) {
+      sources.add(getSourceKey(sourceFile, outputFolders) + ':' + sourceFile.getEncoding() + ':'
+          + Utilities.digest(Utilities.readFile(sourceFile.getSourceFile())));
+    }
+    for (String source : sources) {
+      buffer.append(source).append('\n');
+    }
+    this._fingerprints.save();
+    try {
+      return Utilities.digest(buffer.toString().getBytes("UTF-8"));
+    } catch (UnsupportedEncodingException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  /**
+   * <p>
+   * Restores the entry with the given key. The class files are written into the output folders of the source files
+   * (unchanged class files are left untouched).
+   * </p>
+   *
+   * @param key
+   *          the key of the job as returned by {@link #getKey(SourceFile[], Map, File[], Map)}
+   * @param sourceFiles
+   *          all source files of the job
+   * @return the result of the job or <code>null</code> if there's no usable entry.
+   */
+  public CompileJobResult restore(String key, SourceFile[] sourceFiles) {
+    Assure.nonEmpty("key", key);
+    Assure.notNull("sourceFiles", sourceFiles);
+
+    File entryFile = getEntryFile(key);
+    CompilationUnitResult[] unitResults = null;
+    Map<String, File> compiledClassFiles = new HashMap<String, File>();
+    if (entryFile.isFile()) {
+      try {
+        unitResults = read(entryFile, sourceFiles, compiledClassFiles);
+      } catch (Exception ex) {
+        A4ELogging.warn("Could not restore build cache entry '%s': %s", entryFile, ex.getMessage());
+      }
+    }
+
+    synchronized (this) {
+      if (unitResults == null) {
+        this._misses++;
+        return null;
+      }
+      this._hits++;
+      this._restoredClassFiles += compiledClassFiles.size();
+    }
+
+    // mark the entry as recently used
+    entryFile.setLastModified(System.currentTimeMillis());
+
+    A4ELogging.info("Restored %d class file(s) of %d source file(s) from the build cache.", Integer
+        .valueOf(compiledClassFiles.size()), Integer.valueOf(sourceFiles.length));
+
+    CompileJobResultImpl result = new CompileJobResultImpl();
+    result.setSucceeded(true);
+    result.setCategorizedProblems(new CategorizedProblem[0]);
+    result.setCompiledClassFiles(compiledClassFiles);
+    result.setCompilationUnitResults(unitResults);
+    return result;
+  }
+
+  /**
+   * <p>
+   * Stores the results of a job. Nothing is stored if the results don't cover all source files or if one of them
+   * contains errors.
+   * </p>
+   *
+   * @param key
+   *          the key of the job as returned by {@link #getKey(SourceFile[], Map, File[], Map)}
+   * @param sourceFiles
+   *          all source files of the job
+   * @param unitResults
+   *          the results of all source files
+   */
+  public void store(String key, SourceFile[] sourceFiles, CompilationUnitResult[] unitResults) {
+    Assure.nonEmpty("key", key);
+    Assure.notNull("sourceFiles", sourceFiles);
+    Assure.notNull("unitResults", unitResults);
+
+    if (unitResults.length != sourceFiles.length) {
+      return;
+    }
+    for (CompilationUnitResult unitResult : unitResults) {
+      if (unitResult.hasErrors()) {
+        return;
+      }
+    }
+
+    File entryFile = getEntryFile(key);
+    try {
+      byte[] content = write(sourceFiles, unitResults);
+      File tempFile = File.createTempFile(key, ".tmp", this._directory);
+      Utilities.writeFile(tempFile, content);
+      Utilities.delete(entryFile);
+      if (!tempFile.renameTo(entryFile)) {
+        Utilities.delete(tempFile);
+        return;
+      }
+    } catch (Exception ex) {
+      A4ELogging.warn("Could not store build cache entry '%s': %s", entryFile, ex.getMessage());
+      return;
+    }
+
+    synchronized (this) {
+      this._stores++;
+    }
+    evict(entryFile);
+  }
+
+  /**
+   * <p>
+   * Returns a short report about the usage of this cache.
+   * </p>
+   *
+   * @return a short report about the usage of this cache. Not <code>null</code>.
+   */
+  public synchronized String getStatistics() {
+    long size = 0;
+    File[] entries = listEntries();
+    for (File entry : entries) {
+      size += entry.length();
+    }
+    return String.format(
+        "Build cache '%s': %d hit(s), %d miss(es), %d stored, %d evicted, %d class file(s) restored, %d entries"
+            + " using %d of %d KB.", this._directory, Integer.valueOf(this._hits), Integer.valueOf(this._misses),
+        Integer.valueOf(this._stores), Integer.valueOf(this._evictions), Integer.valueOf(this._restoredClassFiles),
+        Integer.valueOf(entries.length), Long.valueOf(size / 1024), Long.valueOf(this._maxSize / 1024));
+  }
+
+  /**
+   * <p>
+   * Removes the least recently used entries until the cache doesn't exceed its size limit. The given entry is kept.
+   * </p>
+   */
+  private synchronized void evict(File keep) {
+    File[] entries = listEntries();
+    long size = 0;
+    for (File entry : entries) {
+      size += entry.length();
+    }
+    if (size <= this._maxSize) {
+      return;
+    }
+    Arrays.sort(entries, new Comparator<File>() {
+      public int compare(File file1, File file2) {
+        long modified1 = file1.lastModified();
+        long modified2 = file2.lastModified();
+        return modified1 < modified2 ? -1 : (modified1 == modified2 ? 0 : 1);
+      }
+    });
+    for (int i = 0; (i < entries.length) && (size > this._maxSize); i++) {
+      if (!entries[i].equals(keep)) {
+        long length = entries[i].length();
+        if (entries[i].delete()) {
+          A4ELogging.debug("Removed build cache entry '%s'.", entries[i]);
+          size -= length;
+          this._evictions++;
+        }
+      }
+    }
+  }
+
+  private File[] listEntries() {
+    File[] result = this._directory.listFiles(new FileFilter() {
+      public boolean accept(File file) {
+        return file.getName().endsWith(ENTRY_SUFFIX) && file.isFile();
+      }
+    });
+    return result != null ? result : new File[0];
+  }
+
+  private File getEntryFile(String key) {
+    return new File(this._directory, key + ENTRY_SUFFIX);
+  }
+
+  /**
+   * <p>
+   * Writes an entry: the results of all source files together with the content of their class files.
+   * </p>
+   */
+  private byte[] write(SourceFile[] sourceFiles, CompilationUnitResult[] unitResults) throws IOException {
+    List<File> outputFolders = getOutputFolders(sourceFiles);
+    ByteArrayOutputStream byteout = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(byteout);
+    output.writeInt(MAGIC);
+    output.writeInt(VERSION);
+    output.writeInt(unitResults.length);
+    for (CompilationUnitResult unitResult : unitResults) {
+      SourceFile sourceFile = unitResult.getSourceFile();
+      output.writeUTF(getSourceKey(sourceFile, outputFolders));
+      writeStrings(output, unitResult.getQualifiedReferences());
+      writeStrings(output, unitResult.getSimpleNameReferences());
+      output.writeInt(unitResult.getClassFiles().size());
+      for (Map.Entry<String, String> classFile : unitResult.getClassFiles().entrySet()) {
+        byte[] content = Utilities.readFile(new File(sourceFile.getDestinationFolder(), classFile.getKey()));
+        output.writeUTF(classFile.getKey());
+        output.writeUTF(classFile.getValue());
+        output.writeInt(content.length);
+        output.write(content);
+      }
+    }
+    output.flush();
+    return byteout.toByteArray();
+  }
+
+  /**
+   * <p>
+   * Reads an entry and writes its class files. Returns <code>null</code> if the entry doesn't match the source files.
+   * </p>
+   */
+  private CompilationUnitResult[] read(File entryFile, SourceFile[] sourceFiles, Map<String, File> compiledClassFiles)
+      throws IOException {
+    List<File> outputFolders = getOutputFolders(sourceFiles);
+    Map<String, SourceFile> sources = new HashMap<String, SourceFile>();
+    for (SourceFile sourceFile : sourceFiles) {
+      sources.put(getSourceKey(sourceFile, outputFolders), sourceFile);
+    }
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(Utilities.readFile(entryFile)));
+    if ((input.readInt() != MAGIC) || (input.readInt() != VERSION)) {
+      return null;
+    }
+    CompilationUnitResult[] result = new CompilationUnitResult[input.readInt()];
+    if (result.length != sourceFiles.length) {
+      return null;
+    }
+    for (int i = 0; i < result.length; i++) {
+      SourceFile sourceFile = sources.get(input.readUTF());
+      if (sourceFile == null) {
+        return null;
+      }
+      String[] qualifiedReferences = readStrings(input);
+      String[] simpleNameReferences = readStrings(input);
+      Map<String, String> classFiles = new HashMap<String, String>();
+      int count = input.readInt();
+      for (int j = 0; j < count; j++) {
+        String classFileName = input.readUTF();
+        String hash = input.readUTF();
+        byte[] content = new byte[input.readInt()];
+        input.readFully(content);
+        File classFile = new File(sourceFile.getDestinationFolder(), classFileName);
+        if (!isUnchanged(classFile, content)) {
+          Utilities.mkdirs(classFile.getParentFile());
+          Utilities.writeFile(classFile, content);
+        }
+        classFiles.put(classFileName, hash);
+        compiledClassFiles.put(classFileName, classFile);
+      }
+      result[i] = new CompilationUnitResult(sourceFile, false, classFiles, qualifiedReferences, simpleNameReferences);
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns the version of the eclipse compiler.
+   * </p>
+   */
+  private static String getCompilerVersion() {
+    try {
+      return ResourceBundle.getBundle("org.eclipse.jdt.internal.compiler.batch.messages").getString("compiler.version");
+    } catch (MissingResourceException ex) {
+      A4ELogging.debug("Could not determine the version of the eclipse compiler: %s", ex.getMessage());
+      return "unknown";
+    }
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the given class file already has the given content. Leaving unchanged class files
+   * untouched keeps their modification time, so their {@link AbiFingerprint API fingerprint} doesn't need to be
+   * calculated again.
+   * </p>
+   */
+  private static boolean isUnchanged(File classFile, byte[] content) {
+    return classFile.isFile() && (classFile.length() == content.length)
+        && Arrays.equals(content, Utilities.readFile(classFile));
+  }
+
+  /**
+   * <p>
+   * Returns the distinct output folders of the given source files in a stable order.
+   * </p>
+   */
+  private static List<File> getOutputFolders(SourceFile[] sourceFiles) {
+    Set<File> result = new TreeSet<File>();
+    for (SourceFile sourceFile : sourceFiles) {
+      result.add(sourceFile.getDestinationFolder().getAbsoluteFile());
+    }
+    return Collections.unmodifiableList(new ArrayList<File>(result));
+  }
+
+  /**
+   * <p>
+   * Returns a location independent key for a source file: the index of its output folder and its relative name.
+   * </p>
+   */
+  private static String getSourceKey(SourceFile sourceFile, List<File> outputFolders) {
+    return outputFolders.indexOf(sourceFile.getDestinationFolder().getAbsoluteFile()) + ":"
+        + sourceFile.getSourceFileName().replace(File.separatorChar, '/');
+  }
+
+  private static void writeStrings(DataOutputStream output, String[] values) throws IOException {
+    output.writeInt(values.length);
+    for (String value : values) {
+      output.writeUTF(value);
+    }
+  }
+
+  private static String[] readStrings(DataInputStream input) throws IOException {
+    String[] result = new String[input.readInt()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = input.readUTF();
+    }
+    return result;
+  }
+
+}
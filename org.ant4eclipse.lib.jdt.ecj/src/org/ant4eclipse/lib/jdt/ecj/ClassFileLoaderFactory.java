@@ -12,13 +12,21 @@
 package org.ant4eclipse.lib.jdt.ecj;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+import org.ant4eclipse.lib.core.logging.A4ELogging;
 import org.ant4eclipse.lib.core.util.PerformanceLogging;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.ApiStubArchive;
 import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.ClassFileLoaderCache;
 import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.ClasspathClassFileLoaderImpl;
 import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.CompoundClassFileLoaderImpl;
 import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.FilteringClassFileLoader;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.JrtClassFileLoaderImpl;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.JrtImage;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.MappedJarClassFileLoaderImpl;
 
 /**
  * <p>
@@ -29,6 +37,12 @@ import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.FilteringClassFileLoade
  */
 public class ClassFileLoaderFactory {
 
+  /** the maximum number of shared compound class file loaders */
+  private static final int                          MAX_SHARED_LOADERS = 8;
+
+  /** the shared compound class file loaders (key: the class path entries including their time stamps) */
+  private static final Map<String, ClassFileLoader> SHARED_LOADERS     = new SharedLoaderMap();
+
   // /**
   // * <p>
   // * Creates an new instance of type {@link ClassFileLoader}, that can load {@link ClassFile ClassFiles} from an array
@@ -78,8 +92,13 @@ public class ClassFileLoaderFactory {
       // Try to get already initialized ClassFileLoader from cache
       ClassFileLoader classFileLoader = ClassFileLoaderCache.getInstance().getClassFileLoader(cacheKey);
       if (classFileLoader == null) {
-        // Create new ClassFileLoader
-        classFileLoader = new ClasspathClassFileLoaderImpl(source, type, classpathEntries, sourcepathEntries);
+        // Create new ClassFileLoader (single jar files may be mapped into memory)
+        if ((classpathEntries.length == 1) && (sourcepathEntries.length == 0)) {
+          classFileLoader = createMappedJarClassFileLoader(classpathEntries[0], type);
+        }
+        if (classFileLoader == null) {
+          classFileLoader = new ClasspathClassFileLoaderImpl(source, type, classpathEntries, sourcepathEntries);
+        }
 
         // add ClassFileLoader to Cache
         ClassFileLoaderCache.getInstance().storeClassFileLoader(cacheKey, classFileLoader);
@@ -188,7 +207,8 @@ public class ClassFileLoaderFactory {
   /**
    * <p>
    * Creates an new instance of type {@link ClassFileLoader}, that can load {@link ClassFile ClassFiles} from a jar file
-   * or directory.
+   * or directory. If the entry is the runtime image of a modular JDK (<code>lib/modules</code>), the classes are loaded
+   * from the image.
    * </p>
    * 
    * @param entry
@@ -207,7 +227,15 @@ public class ClassFileLoaderFactory {
       ClassFileLoader classFileLoader = ClassFileLoaderCache.getInstance().getClassFileLoader(cacheKey);
       if (classFileLoader == null) {
         // Create new ClassFileLoader
-        classFileLoader = new ClasspathClassFileLoaderImpl(entry, type);
+        if (JrtImage.isModulesImage(entry)) {
+          // the runtime image of a modular JDK (java 9 or later)
+          classFileLoader = new JrtClassFileLoaderImpl(entry, type);
+        } else {
+          classFileLoader = createMappedJarClassFileLoader(entry, type);
+        }
+        if (classFileLoader == null) {
+          classFileLoader = new ClasspathClassFileLoaderImpl(entry, type);
+        }
 
         // add to cache
         ClassFileLoaderCache.getInstance().storeClassFileLoader(cacheKey, classFileLoader);
@@ -220,6 +248,30 @@ public class ClassFileLoaderFactory {
     }
   }
 
+  /**
+   * <p>
+   * Creates a {@link MappedJarClassFileLoaderImpl} for the given jar file if memory mapped jar files are enabled.
+   * Returns <code>null</code> if they are disabled, if the entry is not a file or if it could not be mapped.
+   * </p>
+   * 
+   * @param entry
+   *          the class path entry
+   * @param type
+   *          the type of the source.
+   * @return a new {@link MappedJarClassFileLoaderImpl} or <code>null</code>.
+   */
+  private static ClassFileLoader createMappedJarClassFileLoader(File entry, byte type) {
+    if (!MappedJarClassFileLoaderImpl.isEnabled() || !entry.isFile()) {
+      return null;
+    }
+    try {
+      return new MappedJarClassFileLoaderImpl(entry, type);
+    } catch (IOException e) {
+      A4ELogging.debug("Could not map jar file '%s' into memory: %s", entry, e.getMessage());
+      return null;
+    }
+  }
+
   /**
    * <p>
    * Creates an new instance of type {@link ClassFileLoader}, that can load classes from multiple underlying class file
@@ -240,6 +292,81 @@ public class ClassFileLoaderFactory {
     }
   }
 
+  /**
+   * <p>
+   * Returns a compound {@link ClassFileLoader} for the given jar files (f.e. the boot class path). As compound class
+   * file loaders are immutable, the loader (and its package index) is built once and shared by all compilations that
+   * use the same (unchanged) jar files. If one of the entries is a directory, a new loader is created every time.
+   * </p>
+   * 
+   * @param entries
+   *          the class path entries.
+   * @param type
+   *          the type of the source. Possible values are {@link EcjAdapter#LIBRARY} and {@link EcjAdapter#PROJECT}.
+   * @return the (shared) compound class file loader.
+   */
+  public static ClassFileLoader createSharedCompoundClassFileLoader(File[] entries, byte type) {
+    PerformanceLogging.start(ClassFileLoaderFactory.class, "createSharedCompoundClassFileLoader");
+    try {
+      // the content of a directory can change without changing its time stamp
+      StringBuffer key = new StringBuffer().append(type);
+      for (File entry : entries) {
+        if (!entry.isFile()) {
+          key = null;
+          break;
+        }
+        key.append(File.pathSeparatorChar).append(entry.getAbsolutePath()).append('|').append(entry.length())
+            .append('|').append(entry.lastModified());
+      }
+
+      if (key != null) {
+        synchronized (SHARED_LOADERS) {
+          ClassFileLoader result = SHARED_LOADERS.get(key.toString());
+          if (result != null) {
+            return result;
+          }
+        }
+      }
+
+      ClassFileLoader[] classFileLoaders = new ClassFileLoader[entries.length];
+      for (int i = 0; i < entries.length; i++) {
+        classFileLoaders[i] = createClasspathClassFileLoader(entries[i], type);
+      }
+      ClassFileLoader result = new CompoundClassFileLoaderImpl(classFileLoaders);
+
+      if (key != null) {
+        synchronized (SHARED_LOADERS) {
+          SHARED_LOADERS.put(key.toString(), result);
+        }
+      }
+      return result;
+    } finally {
+      PerformanceLogging.stop(ClassFileLoaderFactory.class, "createSharedCompoundClassFileLoader");
+    }
+  }
+
+  /**
+   * <p>
+   * Returns a (shared) compound {@link ClassFileLoader} for the given boot class path entries. If API stubs are enabled
+   * (see {@link ApiStubArchive#STUB_DIRECTORY_PROPERTY}) and all entries are jar files, the classes are loaded from an
+   * API stub archive that contains the classes without method bodies. The archive is created once and cached on disk.
+   * Access restrictions are not applied, the caller has to wrap the result in a filtering class file loader.
+   * </p>
+   * 
+   * @param entries
+   *          the boot class path entries.
+   * @param type
+   *          the type of the source. Possible values are {@link EcjAdapter#LIBRARY} and {@link EcjAdapter#PROJECT}.
+   * @return the (shared) compound class file loader.
+   */
+  public static ClassFileLoader createBootClassFileLoader(File[] entries, byte type) {
+    File stubDirectory = ApiStubArchive.getStubDirectory();
+    if ((stubDirectory != null) && ApiStubArchive.isSupported(entries)) {
+      entries = new File[] { ApiStubArchive.getStubArchive(entries, stubDirectory) };
+    }
+    return createSharedCompoundClassFileLoader(entries, type);
+  }
+
   /**
    * <p>
    * Creates an new instance of type {@link ClassFileLoader}, that can filter the access to classes in an underlying
@@ -261,4 +388,47 @@ public class ClassFileLoaderFactory {
     }
   }
 
+  /**
+   * <p>
+   * Creates an new instance of type {@link ClassFileLoader}, that restricts the access to classes in an underlying
+   * class file loader according to the given (precompiled) access rules.
+   * </p>
+   * 
+   * @param classFileLoader
+   *          the underlying class file loader
+   * @param accessRules
+   *          the access rules
+   * @return the class file loader
+   */
+  public static ClassFileLoader createFilteringClassFileLoader(ClassFileLoader classFileLoader,
+      AccessRules accessRules) {
+    PerformanceLogging.start(ClassFileLoaderFactory.class, "createFilteringClassFileLoader");
+    try {
+      return new FilteringClassFileLoader(classFileLoader, accessRules);
+    } finally {
+      PerformanceLogging.stop(ClassFileLoaderFactory.class, "createFilteringClassFileLoader");
+    }
+  }
+
+  /**
+   * <p>
+   * Keeps the most recently used shared compound class file loaders.
+   * </p>
+   */
+  private static class SharedLoaderMap extends LinkedHashMap<String, ClassFileLoader> {
+
+    private static final long serialVersionUID = 1L;
+
+    private SharedLoaderMap() {
+      super(16, 0.75f, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, ClassFileLoader> eldest) {
+      return size() > MAX_SHARED_LOADERS;
+    }
+  }
 }
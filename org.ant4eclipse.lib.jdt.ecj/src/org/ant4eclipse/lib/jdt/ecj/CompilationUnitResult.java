@@ -0,0 +1,145 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.ant4eclipse.lib.core.Assure;
+
+/**
+ * <p>
+ * The {@link CompilationUnitResult} describes the outcome of the compilation of a single {@link SourceFile}: the class
+ * files that have been produced and the names the compilation unit refers to. The references are reported by the
+ * compiler and can be used to find the compilation units that are affected by the change of a type.
+ * </p>
+ */
+public class CompilationUnitResult {
+
+  /** the compiled source file */
+  private SourceFile          _sourceFile;
+
+  /** <code>true</code> if the compilation unit contains errors */
+  private boolean             _hasErrors;
+
+  /** maps the names of the produced class files (e.g. <code>foo/bar/Bazz.class</code>) to the hash of their content */
+  private Map<String, String> _classFiles;
+
+  /** the qualified names (types and packages) the compilation unit refers to (e.g. <code>foo.bar</code>) */
+  private String[]            _qualifiedReferences;
+
+  /** the simple names the compilation unit refers to (e.g. <code>Bazz</code>) */
+  private String[]            _simpleNameReferences;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link CompilationUnitResult}.
+   * </p>
+   *
+   * @param sourceFile
+   *          the compiled source file
+   * @param hasErrors
+   *          <code>true</code> if the compilation unit contains errors
+   * @param classFiles
+   *          maps the names of the produced class files to the hash of their content
+   * @param qualifiedReferences
+   *          the qualified names the compilation unit refers to
+   * @param simpleNameReferences
+   *          the simple names the compilation unit refers to
+   */
+  public CompilationUnitResult(SourceFile sourceFile, boolean hasErrors, Map<String, String> classFiles,
+      String[] qualifiedReferences, String[] simpleNameReferences) {
+    Assure.notNull("sourceFile", sourceFile);
+    Assure.notNull("classFiles", classFiles);
+    Assure.notNull("qualifiedReferences", qualifiedReferences);
+    Assure.notNull("simpleNameReferences", simpleNameReferences);
+
+    this._sourceFile = sourceFile;
+    this._hasErrors = hasErrors;
+    this._classFiles = Collections.unmodifiableMap(classFiles);
+    this._qualifiedReferences = qualifiedReferences;
+    this._simpleNameReferences = simpleNameReferences;
+  }
+
+  /**
+   * <p>
+   * Returns the compiled source file.
+   * </p>
+   *
+   * @return the compiled source file.
+   */
+  public SourceFile getSourceFile() {
+    return this._sourceFile;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the compilation unit contains errors.
+   * </p>
+   *
+   * @return <code>true</code> if the compilation unit contains errors.
+   */
+  public boolean hasErrors() {
+    return this._hasErrors;
+  }
+
+  /**
+   * <p>
+   * Returns a map with the names of the produced class files (relative to the destination folder, e.g.
+   * <code>foo/bar/Bazz.class</code>) as keys and the hash of their content as values.
+   * </p>
+   *
+   * @return the produced class files. Not <code>null</code>.
+   */
+  public Map<String, String> getClassFiles() {
+    return this._classFiles;
+  }
+
+  /**
+   * <p>
+   * Returns the qualified names (types and packages) the compilation unit refers to.
+   * </p>
+   *
+   * @return the qualified names the compilation unit refers to. Not <code>null</code>.
+   */
+  public String[] getQualifiedReferences() {
+    return this._qualifiedReferences;
+  }
+
+  /**
+   * <p>
+   * Returns the simple names the compilation unit refers to.
+   * </p>
+   *
+   * @return the simple names the compilation unit refers to. Not <code>null</code>.
+   */
+  public String[] getSimpleNameReferences() {
+    return this._simpleNameReferences;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    StringBuffer buffer = new StringBuffer();
+    buffer.append("[CompilationUnitResult:");
+    buffer.append(" _sourceFile: ");
+    buffer.append(this._sourceFile);
+    buffer.append(" _hasErrors: ");
+    buffer.append(this._hasErrors);
+    buffer.append(" _classFiles: ");
+    buffer.append(this._classFiles.keySet());
+    buffer.append("]");
+    return buffer.toString();
+  }
+}
@@ -50,4 +50,15 @@ public interface CompileJobDescription {
    *         compilation process.
    */
   ClassFileLoader getClassFileLoader();
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the results of the compiled source files (the produced class files and their hashes,
+   * and the names the source files refer to) should be recorded. This is only needed for incremental compilations and
+   * the build cache, as the compiler has to collect the references and each class file has to be hashed.
+   * </p>
+   * 
+   * @return <code>true</code> if the results of the compiled source files should be recorded.
+   */
+  boolean isRecordCompilationUnitResults();
 }
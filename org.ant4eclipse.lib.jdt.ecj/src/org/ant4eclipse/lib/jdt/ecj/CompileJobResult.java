@@ -50,4 +50,15 @@ public interface CompileJobResult {
    */
   Map<String, File> getCompiledClassFiles();
 
+  /**
+   * <p>
+   * Returns the {@link CompilationUnitResult CompilationUnitResults} for all compiled source files (including the ones
+   * that contain errors). The results are only recorded if requested by the compile job (see
+   * {@link CompileJobDescription#isRecordCompilationUnitResults()}), otherwise an empty array is returned.
+   * </p>
+   * 
+   * @return the {@link CompilationUnitResult CompilationUnitResults}. Not <code>null</code>.
+   */
+  CompilationUnitResult[] getCompilationUnitResults();
+
 }
@@ -0,0 +1,431 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+
+/**
+ * <p>
+ * The {@link CompileService} compiles several compile jobs in parallel. Each job declares the jobs it depends on (its
+ * upstream jobs) and is started on a bounded pool of worker threads as soon as all of its upstream jobs have been
+ * compiled successfully. Jobs whose upstream jobs failed are skipped.
+ * </p>
+ * <p>
+ * All jobs are compiled within the same process, so they share the {@link ClassFileLoader ClassFileLoaders} of the
+ * <code>ClassFileLoaderCache</code> and the parsed types of the <code>BinaryTypeCache</code>. The class file loader of
+ * a job is requested from its {@link CompileJobDescription} on the worker thread right before the job is compiled, so
+ * a description may create it lazily once the class files of the upstream jobs exist.
+ * </p>
+ * <p>
+ * For each job the service records the queue time (the time between the moment the job became ready and the moment a
+ * worker thread started it) and the wall time of the compilation.
+ * </p>
+ */
+public class CompileService {
+
+  /** the number of worker threads */
+  private int              _threadCount;
+
+  /** the registered jobs (key: job name) */
+  private Map<String, Job> _jobs;
+
+  /** the number of finished (compiled or skipped) jobs of the current run */
+  private int              _finished;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link CompileService}.
+   * </p>
+   *
+   * @param threadCount
+   *          the maximum number of jobs that are compiled at the same time.
+   */
+  public CompileService(int threadCount) {
+    Assure.assertTrue(threadCount > 0, "threadCount must be positive");
+    this._threadCount = threadCount;
+    this._jobs = new LinkedHashMap<String, Job>();
+  }
+
+  /**
+   * <p>
+   * Returns the maximum number of jobs that are compiled at the same time.
+   * </p>
+   *
+   * @return the maximum number of jobs that are compiled at the same time.
+   */
+  public int getThreadCount() {
+    return this._threadCount;
+  }
+
+  /**
+   * <p>
+   * Adds a compile job. The upstream jobs must have been added before, so the jobs can't contain cycles.
+   * </p>
+   *
+   * @param name
+   *          the unique name of the job (f.e. the project name).
+   * @param description
+   *          the description of the job.
+   * @param upstreamJobs
+   *          the names of the jobs that have to be compiled before this job.
+   * @return the added job.
+   */
+  public synchronized Job addJob(String name, CompileJobDescription description, String... upstreamJobs) {
+    Assure.nonEmpty("name", name);
+    Assure.notNull("description", description);
+    Assure.assertTrue(!this._jobs.containsKey(name), "A job named '" + name + "' has already been added");
+
+    Job job = new Job(name, description);
+    for (String upstreamJob : upstreamJobs) {
+      Job upstream = this._jobs.get(upstreamJob);
+      Assure.assertTrue(upstream != null, "The upstream job '" + upstreamJob + "' of the job '" + name
+          + "' has not been added");
+      if (!job._upstream.contains(upstream)) {
+        job._upstream.add(upstream);
+        upstream._downstream.add(job);
+      }
+    }
+    this._jobs.put(name, job);
+    return job;
+  }
+
+  /**
+   * <p>
+   * Returns all jobs in the order they have been added.
+   * </p>
+   *
+   * @return all jobs in the order they have been added.
+   */
+  public synchronized Job[] getJobs() {
+    return this._jobs.values().toArray(new Job[this._jobs.size()]);
+  }
+
+  /**
+   * <p>
+   * Compiles all jobs and waits until all of them are finished. Afterwards each job provides either its
+   * {@link CompileJobResult}, the exception that aborted it or the information that it has been skipped.
+   * </p>
+   *
+   * @return all jobs in the order they have been added.
+   */
+  public Job[] compile() {
+    Job[] jobs = getJobs();
+    if (jobs.length == 0) {
+      return jobs;
+    }
+
+    int threadCount = Math.min(this._threadCount, jobs.length);
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount, new WorkerThreadFactory());
+    long start = System.currentTimeMillis();
+    try {
+      synchronized (this) {
+        this._finished = 0;
+        for (Job job : jobs) {
+          job.reset();
+        }
+        for (Job job : jobs) {
+          if (job._pendingUpstream == 0) {
+            submit(executor, job);
+          }
+        }
+        while (this._finished < jobs.length) {
+          try {
+            wait();
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the compile jobs", ex);
+          }
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    long wallTime = 0;
+    for (Job job : jobs) {
+      wallTime += job.getWallTime();
+    }
+    A4ELogging.info("Compiled %d compile job(s) with %d thread(s) in %d ms (sum of the job wall times: %d ms).",
+        Integer.valueOf(jobs.length), Integer.valueOf(threadCount), Long.valueOf(System.currentTimeMillis() - start),
+        Long.valueOf(wallTime));
+    return jobs;
+  }
+
+  /**
+   * <p>
+   * Marks the given job as ready and passes it to the worker threads. Must be called while holding the lock of this
+   * service.
+   * </p>
+   */
+  private void submit(final ExecutorService executor, final Job job) {
+    job._readyTime = System.currentTimeMillis();
+    executor.execute(new Runnable() {
+      public void run() {
+        try {
+          job.run();
+        } finally {
+          finished(executor, job);
+        }
+      }
+    });
+  }
+
+  /**
+   * <p>
+   * Called by a worker thread when the given job has been compiled. Starts the downstream jobs that are ready now or
+   * skips them if the job failed.
+   * </p>
+   */
+  private synchronized void finished(ExecutorService executor, Job job) {
+    this._finished++;
+    for (Job downstream : job._downstream) {
+      if (!job.succeeded()) {
+        skip(downstream, job);
+      } else if (--downstream._pendingUpstream == 0 && !downstream._skipped) {
+        submit(executor, downstream);
+      }
+    }
+    notifyAll();
+  }
+
+  /**
+   * <p>
+   * Skips the given job and all of its downstream jobs.
+   * </p>
+   */
+  private void skip(Job job, Job failedUpstream) {
+    if (job._skipped) {
+      return;
+    }
+    A4ELogging.warn("Skipping compile job '%s' because the upstream job '%s' failed.", job._name,
+        failedUpstream._name);
+    job._skipped = true;
+    this._finished++;
+    for (Job downstream : job._downstream) {
+      skip(downstream, failedUpstream);
+    }
+  }
+
+  /**
+   * <p>
+   * A compile job of the {@link CompileService}.
+   * </p>
+   */
+  public static class Job {
+
+    /** the name of the job */
+    private String                    _name;
+
+    /** the description of the job */
+    private CompileJobDescription     _description;
+
+    /** the jobs this job depends on */
+    private List<Job>                 _upstream;
+
+    /** the jobs that depend on this job */
+    private List<Job>                 _downstream;
+
+    /** the number of upstream jobs that haven't been compiled yet */
+    private int                       _pendingUpstream;
+
+    /** <code>true</code> if the job has been skipped because an upstream job failed */
+    private volatile boolean          _skipped;
+
+    /** the result of the job */
+    private volatile CompileJobResult _result;
+
+    /** the exception that aborted the job */
+    private volatile RuntimeException _exception;
+
+    /** the time the job became ready */
+    private volatile long             _readyTime;
+
+    /** the time a worker started the job */
+    private volatile long             _startTime;
+
+    /** the time the job has been finished */
+    private volatile long             _endTime;
+
+    private Job(String name, CompileJobDescription description) {
+      this._name = name;
+      this._description = description;
+      this._upstream = new ArrayList<Job>();
+      this._downstream = new ArrayList<Job>();
+    }
+
+    /**
+     * <p>
+     * Returns the name of the job.
+     * </p>
+     *
+     * @return the name of the job.
+     */
+    public String getName() {
+      return this._name;
+    }
+
+    /**
+     * <p>
+     * Returns the description of the job.
+     * </p>
+     *
+     * @return the description of the job.
+     */
+    public CompileJobDescription getDescription() {
+      return this._description;
+    }
+
+    /**
+     * <p>
+     * Returns the names of the jobs this job depends on.
+     * </p>
+     *
+     * @return the names of the upstream jobs.
+     */
+    public String[] getUpstreamJobs() {
+      String[] result = new String[this._upstream.size()];
+      for (int i = 0; i < result.length; i++) {
+        result[i] = this._upstream.get(i)._name;
+      }
+      return result;
+    }
+
+    /**
+     * <p>
+     * Returns the result of the job or <code>null</code> if the job has been skipped or aborted.
+     * </p>
+     *
+     * @return the result of the job or <code>null</code>.
+     */
+    public CompileJobResult getResult() {
+      return this._result;
+    }
+
+    /**
+     * <p>
+     * Returns the exception that aborted the job or <code>null</code>.
+     * </p>
+     *
+     * @return the exception that aborted the job or <code>null</code>.
+     */
+    public RuntimeException getException() {
+      return this._exception;
+    }
+
+    /**
+     * <p>
+     * Returns <code>true</code> if the job has been skipped because one of its upstream jobs failed.
+     * </p>
+     *
+     * @return <code>true</code> if the job has been skipped.
+     */
+    public boolean isSkipped() {
+      return this._skipped;
+    }
+
+    /**
+     * <p>
+     * Returns <code>true</code> if the job has been compiled without errors.
+     * </p>
+     *
+     * @return <code>true</code> if the job has been compiled without errors.
+     */
+    public boolean succeeded() {
+      return (this._result != null) && this._result.succeeded();
+    }
+
+    /**
+     * <p>
+     * Returns the time in milliseconds the job waited for a free worker thread after its upstream jobs had been
+     * compiled.
+     * </p>
+     *
+     * @return the queue time in milliseconds (0 if the job hasn't been started).
+     */
+    public long getQueueTime() {
+      return this._startTime == 0 ? 0 : this._startTime - this._readyTime;
+    }
+
+    /**
+     * <p>
+     * Returns the time in milliseconds that has been needed to compile the job.
+     * </p>
+     *
+     * @return the wall time in milliseconds (0 if the job hasn't been finished).
+     */
+    public long getWallTime() {
+      return this._endTime == 0 ? 0 : this._endTime - this._startTime;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+      return "[CompileService.Job: " + this._name + ", upstream=" + this._upstream.size() + ", queueTime="
+          + getQueueTime() + ", wallTime=" + getWallTime() + "]";
+    }
+
+    private void reset() {
+      this._pendingUpstream = this._upstream.size();
+      this._skipped = false;
+      this._result = null;
+      this._exception = null;
+      this._readyTime = 0;
+      this._startTime = 0;
+      this._endTime = 0;
+    }
+
+    private void run() {
+      this._startTime = System.currentTimeMillis();
+      try {
+        this._result = EcjAdapter.Factory.create().compile(this._description);
+      } catch (RuntimeException ex) {
+        A4ELogging.error("Compile job '%s' failed: %s", this._name, ex);
+        this._exception = ex;
+      } finally {
+        this._endTime = System.currentTimeMillis();
+      }
+      A4ELogging.debug("Compile job '%s' waited %d ms and took %d ms.", this._name, Long.valueOf(getQueueTime()),
+          Long.valueOf(getWallTime()));
+    }
+  }
+
+  /**
+   * <p>
+   * Creates named daemon threads for the workers.
+   * </p>
+   */
+  private static class WorkerThreadFactory implements ThreadFactory {
+
+    /** the number of created threads */
+    private int _count;
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "ant4eclipse-compile-" + (++this._count));
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
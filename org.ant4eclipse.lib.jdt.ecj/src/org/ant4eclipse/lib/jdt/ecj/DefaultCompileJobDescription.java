@@ -35,6 +35,9 @@ public class DefaultCompileJobDescription implements CompileJobDescription {
   /** the source files */
   private SourceFile[]        _sourceFiles;
 
+  /** indicates if the results of the compiled source files should be recorded */
+  private boolean             _recordCompilationUnitResults;
+
   /**
    * <p>
    * Creates a new instance of type {@link DefaultCompileJobDescription}.
@@ -84,6 +87,13 @@ public class DefaultCompileJobDescription implements CompileJobDescription {
     return this._sourceFiles;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public boolean isRecordCompilationUnitResults() {
+    return this._recordCompilationUnitResults;
+  }
+
   /**
    * <p>
    * Sets the class file loader.
@@ -123,6 +133,18 @@ public class DefaultCompileJobDescription implements CompileJobDescription {
     this._sourceFiles = sourceFiles;
   }
 
+  /**
+   * <p>
+   * Specifies if the results of the compiled source files should be recorded.
+   * </p>
+   * 
+   * @param recordCompilationUnitResults
+   *          <code>true</code> if the results of the compiled source files should be recorded.
+   */
+  public void setRecordCompilationUnitResults(boolean recordCompilationUnitResults) {
+    this._recordCompilationUnitResults = recordCompilationUnitResults;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -38,6 +38,38 @@ public interface EcjAdapter {
    */
   CompileJobResult compile(CompileJobDescription description);
 
+  /**
+   * <p>
+   * Performs a compile based on the given {@link CompileJobDescription}. The compiled class files are not written to
+   * the destination folders of the source files, they are written into the given jar archive instead. The archive is
+   * only written if the compilation was successful.
+   * </p>
+   *
+   * @param description
+   *          the {@link CompileJobDescription} that describes the compile job.
+   * @param jarOutput
+   *          the jar archive that receives the compiled class files.
+   * @return the result of the compile job. The compiled class files refer to the locations the class files would have
+   *         in the destination folders.
+   */
+  CompileJobResult compile(CompileJobDescription description, JarOutput jarOutput);
+
+  /**
+   * <p>
+   * Performs the given compile jobs within a single compiler session, so the bindings of the compiled types are shared
+   * between the jobs. The source files of all jobs are visible to each other and the class files are looked up using
+   * the {@link ClassFileLoader ClassFileLoaders} of the jobs in the given order. All jobs must use the same compiler
+   * options. As a type that is visible to one job is visible to all jobs, entries shared by the class paths of the jobs
+   * should have the same access restrictions, and the output folders of the given jobs should not be restricted, as
+   * their types are resolved from source.
+   * </p>
+   *
+   * @param descriptions
+   *          the {@link CompileJobDescription CompileJobDescriptions} that describe the compile jobs.
+   * @return the results of the compile jobs (in the order of the descriptions).
+   */
+  CompileJobResult[] compile(CompileJobDescription[] descriptions);
+
   /**
    * <p>
    * Inner factory to allow the creation of new {@link EcjAdapter} instances.
@@ -27,6 +27,9 @@ public class EcjExceptionCodes extends ExceptionCode {
   @NLSMessage("Could not create jar file from file '%s'.")
   public static ExceptionCode     COULD_NOT_CREATE_JAR_FILE_FROM_FILE_EXCEPTION = null;
 
+  @NLSMessage("The jar file '%s' exceeds the limits of the zip format: %s.")
+  public static ExceptionCode     JAR_FILE_EXCEEDS_ZIP_LIMITS_EXCEPTION;
+
   @NLSMessage("Unknown target option '%s' in javac task.")
   public static ExceptionCode     UNKNOWN_JAVA_TARGET_OPTION_EXCEPTION;
 
@@ -36,6 +39,12 @@ public class EcjExceptionCodes extends ExceptionCode {
   @NLSMessage("Unable to read binary type '%s' from jar file '%s'.")
   public static ExceptionCode     UNABLE_TO_READ_BINARY_TYPE_FROM_JAR_EXCEPTION;
 
+  @NLSMessage("Unable to read '%s' from the java runtime image '%s'.")
+  public static ExceptionCode     UNABLE_TO_READ_FROM_RUNTIME_IMAGE_EXCEPTION;
+
+  @NLSMessage("Unable to create the API stubs for the library '%s'.")
+  public static ExceptionCode     UNABLE_TO_CREATE_API_STUB_EXCEPTION;
+
   @NLSMessage("The ant reference id '%s' doesn't point to an EcjAdditionalCompilerArguments object.")
   public static EcjExceptionCodes NO_ECJ_ADDITIONAL_COMPILER_ARGUMENTS_OBJECT;
 
@@ -0,0 +1,575 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.CompileJobResultImpl;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.incremental.AbiFingerprint;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.incremental.BuildState;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.incremental.BuildState.SourceEntry;
+import org.eclipse.jdt.core.compiler.CategorizedProblem;
+
+/**
+ * <p>
+ * The {@link IncrementalCompilation} determines which source files need to be compiled based on the {@link BuildState}
+ * recorded by the previous compilation into the same output folder(s). The compilation runs in rounds:
+ * </p>
+ * <ol>
+ * <li>the first round compiles all new or changed source files (and the ones which class files are missing),</li>
+ * <li>each following round compiles the source files that refer to a type which class file has been changed, added or
+ * removed in the previous round,</li>
+ * <li>the compilation is finished as soon as a round doesn't affect any further source file.</li>
+ * </ol>
+ * <p>
+ * Class files that belong to removed source files or to types that no longer exist are deleted. A full compilation is
+ * done if there's no usable state or if the configuration (compiler options, compiler version, the API of the class
+ * path or its access restrictions) has been changed since the previous compilation. If neither a source file nor the
+ * configuration changed, no compilation is required at all.
+ * </p>
+ * <p>
+ * Usage:
+ * </p>
+ *
+ * <pre>
+ * IncrementalCompilation compilation = new IncrementalCompilation(sourceFiles, compilerOptions, classpath,
+ *     accessRestrictions);
+ * SourceFile[] sources = compilation.nextSourceFiles();
+ * while (sources.length &gt; 0) {
+ *   description.setSourceFiles(sources);
+ *   compilation.addResult(ecjAdapter.compile(description));
+ *   sources = compilation.nextSourceFiles();
+ * }
+ * compilation.save();
+ * </pre>
+ */
+public class IncrementalCompilation {
+
+  /** all source files (key: absolute path), in the order they have been passed */
+  private Map<String, SourceFile>  _sourceFiles;
+
+  /** the build states (key: output folder) */
+  private Map<File, BuildState>    _states;
+
+  /** the source files for the first round */
+  private List<SourceFile>         _initialSourceFiles;
+
+  /** the source files that have been compiled so far */
+  private Set<String>              _compiled;
+
+  /** the changed types of the last round (key: simple name of the top level type, value: package names) */
+  private Map<String, Set<String>> _changedTypes;
+
+  /** the hashes of the source files that have been calculated while checking for changes */
+  private Map<String, String>      _sourceHashes;
+
+  /** <code>true</code> if all source files are compiled */
+  private boolean                  _fullBuild;
+
+  /** the number of rounds */
+  private int                      _rounds;
+
+  /** the merged results of all rounds */
+  private List<CompileJobResult>   _results;
+
+  /** the names of the class files that have been deleted from the output folders */
+  private Set<String>              _deletedClassFiles;
+
+  /** the API fingerprints of the class path entries */
+  private AbiFingerprint           _fingerprints;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link IncrementalCompilation}.
+   * </p>
+   *
+   * @param sourceFiles
+   *          all source files of the compilation (not only the changed ones)
+   * @param compilerOptions
+   *          the compiler options
+   * @param classpath
+   *          the class path used for the compilation
+   * @param accessRestrictions
+   *          the formatted access restrictions of the class path entries (key: path of the class path entry)
+   */
+  public IncrementalCompilation(SourceFile[] sourceFiles, Map<String, String> compilerOptions, File[] classpath,
+      Map<String, String> accessRestrictions) {
+    Assure.notNull("sourceFiles", sourceFiles);
+    Assure.notNull("compilerOptions", compilerOptions);
+    Assure.notNull("classpath", classpath);
+    Assure.notNull("accessRestrictions", accessRestrictions);
+
+    this._sourceFiles = new LinkedHashMap<String, SourceFile>();
+    this._states = new HashMap<File, BuildState>();
+    this._compiled = new HashSet<String>();
+    this._changedTypes = new HashMap<String, Set<String>>();
+    this._sourceHashes = new HashMap<String, String>();
+    this._results = new LinkedList<CompileJobResult>();
+    this._deletedClassFiles = new HashSet<String>();
+
+    for (SourceFile sourceFile : sourceFiles) {
+      this._sourceFiles.put(sourceFile.getSourceFile().getAbsolutePath(), sourceFile);
+      this._states.put(getOutputFolder(sourceFile), null);
+    }
+
+    // the fingerprints of the class path are recorded next to the state of the first output folder
+    Set<File> outputFolders = new TreeSet<File>(this._states.keySet());
+    this._fingerprints = new AbiFingerprint(outputFolders.isEmpty() ? null : AbiFingerprint
+        .getAbiFile(outputFolders.iterator().next()));
+    String configuration = getConfigurationFingerprint(compilerOptions, classpath, accessRestrictions, outputFolders,
+        this._fingerprints);
+
+    // load the states and check whether they are still usable
+    Map<File, BuildState> previousStates = new HashMap<File, BuildState>();
+    for (File outputFolder : this._states.keySet()) {
+      BuildState state = BuildState.load(outputFolder);
+      previousStates.put(outputFolder, state);
+      if ((state == null) || !configuration.equals(state.getConfiguration())) {
+        A4ELogging.debug("No usable build state for output folder '%s'.", outputFolder);
+        this._fullBuild = true;
+      }
+    }
+
+    if (this._fullBuild) {
+      initializeFullBuild(previousStates, configuration);
+    } else {
+      this._states.putAll(previousStates);
+      initializeIncrementalBuild();
+    }
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if all source files are compiled.
+   * </p>
+   *
+   * @return <code>true</code> if all source files are compiled.
+   */
+  public boolean isFullBuild() {
+    return this._fullBuild;
+  }
+
+  /**
+   * <p>
+   * Returns the source files that have to be compiled in the next round. An empty array indicates that the compilation
+   * is complete.
+   * </p>
+   *
+   * @return the source files of the next round. Not <code>null</code>.
+   */
+  public SourceFile[] nextSourceFiles() {
+    List<SourceFile> result = new LinkedList<SourceFile>();
+    if (this._initialSourceFiles != null) {
+      result.addAll(this._initialSourceFiles);
+      this._initialSourceFiles = null;
+    } else if (!this._changedTypes.isEmpty()) {
+      for (Map.Entry<String, SourceFile> entry : this._sourceFiles.entrySet()) {
+        if (!this._compiled.contains(entry.getKey()) && isAffected(entry.getKey(), entry.getValue())) {
+          result.add(entry.getValue());
+        }
+      }
+    }
+    this._changedTypes.clear();
+    if (!result.isEmpty()) {
+      this._rounds++;
+      if (this._rounds > 1) {
+        A4ELogging.info("Compiling %d dependent source file(s) (round %d).", Integer.valueOf(result.size()), Integer
+            .valueOf(this._rounds));
+      }
+    }
+    return result.toArray(new SourceFile[result.size()]);
+  }
+
+  /**
+   * <p>
+   * Adds the result of a round. The build states are updated, class files of types that no longer exist are deleted
+   * and the changed types are recorded to determine the source files of the next round.
+   * </p>
+   *
+   * @param result
+   *          the result of the compilation of the source files returned by {@link #nextSourceFiles()}.
+   */
+  public void addResult(CompileJobResult result) {
+    Assure.notNull("result", result);
+
+    this._results.add(result);
+
+    for (CompilationUnitResult unitResult : result.getCompilationUnitResults()) {
+
+      SourceFile sourceFile = unitResult.getSourceFile();
+      String sourcePath = sourceFile.getSourceFile().getAbsolutePath();
+      BuildState state = this._states.get(getOutputFolder(sourceFile));
+      if (state == null) {
+        continue;
+      }
+      this._compiled.add(sourcePath);
+
+      SourceEntry previous = state.removeEntry(sourcePath);
+      Map<String, String> previousClassFiles = previous != null ? previous.getClassFiles()
+          : new HashMap<String, String>();
+
+      if (unitResult.hasErrors()) {
+        // no entry is recorded, so the source file will be compiled again next time. the dependents are
+        // compiled in this run, so they'll report problems caused by this source file
+        addChangedTypes(previousClassFiles.keySet());
+        continue;
+      }
+
+      // record changed, added and removed types
+      Map<String, String> classFiles = new HashMap<String, String>(unitResult.getClassFiles());
+      for (Map.Entry<String, String> classFile : classFiles.entrySet()) {
+        if (!classFile.getValue().equals(previousClassFiles.get(classFile.getKey()))) {
+          addChangedType(classFile.getKey());
+        }
+      }
+      for (String classFileName : previousClassFiles.keySet()) {
+        if (!classFiles.containsKey(classFileName)) {
+          deleteClassFile(state, classFileName);
+          addChangedType(classFileName);
+        }
+      }
+
+      File file = sourceFile.getSourceFile();
+      state.putEntry(new SourceEntry(sourcePath, file.length(), file.lastModified(), getSourceHash(sourcePath, file),
+          classFiles, unitResult.getQualifiedReferences(), unitResult.getSimpleNameReferences()));
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the merged result of all rounds.
+   * </p>
+   *
+   * @return the merged result of all rounds. Not <code>null</code>.
+   */
+  public CompileJobResult getResult() {
+    boolean succeeded = true;
+    List<CategorizedProblem> problems = new ArrayList<CategorizedProblem>();
+    Map<String, File> compiledClassFiles = new HashMap<String, File>();
+    List<CompilationUnitResult> unitResults = new ArrayList<CompilationUnitResult>();
+    for (CompileJobResult result : this._results) {
+      succeeded = succeeded && result.succeeded();
+      problems.addAll(Arrays.asList(result.getCategorizedProblems()));
+      compiledClassFiles.putAll(result.getCompiledClassFiles());
+      unitResults.addAll(Arrays.asList(result.getCompilationUnitResults()));
+    }
+    CompileJobResultImpl result = new CompileJobResultImpl();
+    result.setSucceeded(succeeded);
+    result.setCategorizedProblems(problems.toArray(new CategorizedProblem[problems.size()]));
+    result.setCompiledClassFiles(compiledClassFiles);
+    result.setCompilationUnitResults(unitResults.toArray(new CompilationUnitResult[unitResults.size()]));
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns the recorded results of all source files, including the ones that didn't need to be compiled. This
+   * describes the complete content of the output folders, f.e. for the {@link BuildCache}.
+   * </p>
+   *
+   * @return the results of all source files or <code>null</code> if a source file has no recorded result (f.e.
+   *         because it contains errors).
+   */
+  public CompilationUnitResult[] getRecordedResults() {
+    List<CompilationUnitResult> result = new ArrayList<CompilationUnitResult>();
+    for (Map.Entry<String, SourceFile> entry : this._sourceFiles.entrySet()) {
+      SourceEntry sourceEntry = this._states.get(getOutputFolder(entry.getValue())).getEntry(entry.getKey());
+      if (sourceEntry == null) {
+        return null;
+      }
+      Set<String> qualifiedReferences = sourceEntry.getQualifiedReferences();
+      Set<String> simpleNameReferences = sourceEntry.getSimpleNameReferences();
+      result.add(new CompilationUnitResult(entry.getValue(), false, sourceEntry.getClassFiles(), qualifiedReferences
+          .toArray(new String[qualifiedReferences.size()]), simpleNameReferences
+          .toArray(new String[simpleNameReferences.size()])));
+    }
+    return result.toArray(new CompilationUnitResult[result.size()]);
+  }
+
+  /**
+   * <p>
+   * Returns the names of the class files (relative to their output folder) that have been deleted because their source
+   * file or their type has been removed. Class files that have been created again by a later round are not contained.
+   * Copies of these class files (f.e. in the destination directory of the javac task) are stale.
+   * </p>
+   *
+   * @return the names of the deleted class files. Not <code>null</code>.
+   */
+  public Set<String> getDeletedClassFiles() {
+    Set<String> result = new TreeSet<String>(this._deletedClassFiles);
+    for (CompileJobResult compileJobResult : this._results) {
+      result.removeAll(compileJobResult.getCompiledClassFiles().keySet());
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Stores the build states, so they can be used by the next compilation.
+   * </p>
+   */
+  public void save() {
+    for (BuildState state : this._states.values()) {
+      state.save();
+    }
+    this._fingerprints.save();
+    if (this._rounds == 0) {
+      A4ELogging.info("Skipped compilation: neither the %d source file(s) nor the API of the class path changed.",
+          Integer.valueOf(this._sourceFiles.size()));
+    } else {
+      A4ELogging.info("Compiled %d of %d source file(s) in %d round(s)%s.", Integer.valueOf(this._compiled.size()),
+          Integer.valueOf(this._sourceFiles.size()), Integer.valueOf(this._rounds), this._fullBuild ? " (full build)"
+              : "");
+    }
+  }
+
+  /**
+   * <p>
+   * Prepares a full build: all source files are compiled and all class files recorded in the previous states are
+   * removed, so no class files of types that no longer exist remain.
+   * </p>
+   */
+  private void initializeFullBuild(Map<File, BuildState> previousStates, String configuration) {
+    for (Map.Entry<File, BuildState> entry : previousStates.entrySet()) {
+      BuildState previous = entry.getValue();
+      if (previous != null) {
+        for (SourceEntry sourceEntry : previous.getEntries()) {
+          for (String classFileName : sourceEntry.getClassFiles().keySet()) {
+            deleteClassFile(previous, classFileName);
+          }
+        }
+      }
+      this._states.put(entry.getKey(), new BuildState(entry.getKey(), configuration));
+    }
+    this._initialSourceFiles = new ArrayList<SourceFile>(this._sourceFiles.values());
+  }
+
+  /**
+   * <p>
+   * Prepares an incremental build: determines the changed source files and handles the removed ones.
+   * </p>
+   */
+  private void initializeIncrementalBuild() {
+    this._initialSourceFiles = new ArrayList<SourceFile>();
+    Set<String> initial = new HashSet<String>();
+    int changed = 0;
+    for (Map.Entry<String, SourceFile> entry : this._sourceFiles.entrySet()) {
+      SourceFile sourceFile = entry.getValue();
+      BuildState state = this._states.get(getOutputFolder(sourceFile));
+      SourceEntry sourceEntry = state.getEntry(entry.getKey());
+      if ((sourceEntry == null) || !isUnchanged(sourceEntry, sourceFile.getSourceFile())
+          || !hasClassFiles(state, sourceEntry)) {
+        this._initialSourceFiles.add(sourceFile);
+        initial.add(entry.getKey());
+        changed++;
+      }
+    }
+
+    // source files that have been removed
+    int removed = 0;
+    for (BuildState state : this._states.values()) {
+      for (SourceEntry sourceEntry : new ArrayList<SourceEntry>(state.getEntries())) {
+        if (!this._sourceFiles.containsKey(sourceEntry.getSourcePath())) {
+          state.removeEntry(sourceEntry.getSourcePath());
+          for (String classFileName : sourceEntry.getClassFiles().keySet()) {
+            deleteClassFile(state, classFileName);
+          }
+          addChangedTypes(sourceEntry.getClassFiles().keySet());
+          removed++;
+        }
+      }
+    }
+
+    // dependents of removed source files have to be compiled in the first round as well
+    if (!this._changedTypes.isEmpty()) {
+      for (Map.Entry<String, SourceFile> entry : this._sourceFiles.entrySet()) {
+        if (!initial.contains(entry.getKey()) && isAffected(entry.getKey(), entry.getValue())) {
+          this._initialSourceFiles.add(entry.getValue());
+        }
+      }
+      this._changedTypes.clear();
+    }
+
+    A4ELogging.info("Incremental compilation: %d of %d source file(s) changed, %d removed.", Integer.valueOf(changed),
+        Integer.valueOf(this._sourceFiles.size()), Integer.valueOf(removed));
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the content of the source file didn't change. The hash is only calculated if size or
+   * modification time differ from the recorded ones.
+   * </p>
+   */
+  private boolean isUnchanged(SourceEntry sourceEntry, File file) {
+    if (sourceEntry.hasSameTimestamp(file)) {
+      return true;
+    }
+    if (sourceEntry.getHash().equals(getSourceHash(sourceEntry.getSourcePath(), file))) {
+      sourceEntry.updateTimestamp(file);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if all class files produced by the source file still exist.
+   * </p>
+   */
+  private boolean hasClassFiles(BuildState state, SourceEntry sourceEntry) {
+    for (String classFileName : sourceEntry.getClassFiles().keySet()) {
+      if (!new File(state.getOutputFolder(), classFileName).isFile()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the source file refers to one of the changed types.
+   * </p>
+   */
+  private boolean isAffected(String sourcePath, SourceFile sourceFile) {
+    BuildState state = this._states.get(getOutputFolder(sourceFile));
+    SourceEntry sourceEntry = state.getEntry(sourcePath);
+    if (sourceEntry == null) {
+      return true;
+    }
+    for (String simpleName : sourceEntry.getSimpleNameReferences()) {
+      Set<String> packageNames = this._changedTypes.get(simpleName);
+      if (packageNames != null) {
+        for (String packageName : packageNames) {
+          if (sourceEntry.references(packageName, simpleName)) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  private void addChangedTypes(Iterable<String> classFileNames) {
+    for (String classFileName : classFileNames) {
+      addChangedType(classFileName);
+    }
+  }
+
+  /**
+   * <p>
+   * Records the top level type of the given class file (f.e. <code>foo/bar/Bazz$Inner.class</code>) as changed.
+   * </p>
+   */
+  private void addChangedType(String classFileName) {
+    String typeName = Utilities.stripSuffix(classFileName);
+    int slash = typeName.lastIndexOf('/');
+    String packageName = slash == -1 ? "" : typeName.substring(0, slash).replace('/', '.');
+    String simpleName = typeName.substring(slash + 1);
+    int dollar = simpleName.indexOf('$');
+    if (dollar > 0) {
+      simpleName = simpleName.substring(0, dollar);
+    }
+    Set<String> packageNames = this._changedTypes.get(simpleName);
+    if (packageNames == null) {
+      packageNames = new HashSet<String>();
+      this._changedTypes.put(simpleName, packageNames);
+    }
+    packageNames.add(packageName);
+  }
+
+  private void deleteClassFile(BuildState state, String classFileName) {
+    File classFile = new File(state.getOutputFolder(), classFileName);
+    if (classFile.exists()) {
+      A4ELogging.debug("deleting class file: '%s'", classFile);
+      Utilities.delete(classFile);
+    }
+    this._deletedClassFiles.add(classFileName);
+  }
+
+  private String getSourceHash(String sourcePath, File file) {
+    String result = this._sourceHashes.get(sourcePath);
+    if (result == null) {
+      result = Utilities.digest(Utilities.readFile(file));
+      this._sourceHashes.put(sourcePath, result);
+    }
+    return result;
+  }
+
+  private static File getOutputFolder(SourceFile sourceFile) {
+    return sourceFile.getDestinationFolder().getAbsoluteFile();
+  }
+
+  /**
+   * <p>
+   * Calculates the fingerprint of the configuration: the compiler options, the version of the compiler, the access
+   * restrictions and the {@link AbiFingerprint API fingerprints} of all class path entries, so changes that don't
+   * affect the API of a class path entry (f.e. changed method bodies) don't require a compilation. The output folders
+   * of the compilation itself are ignored as they are changed by the compilation.
+   * </p>
+   *
+   * @param compilerOptions
+   *          the compiler options
+   * @param classpath
+   *          the class path
+   * @param accessRestrictions
+   *          the formatted access restrictions of the class path entries
+   * @param outputFolders
+   *          the output folders of the compilation
+   * @param fingerprints
+   *          the API fingerprints of the class path entries
+   * @return the fingerprint
+   */
+  static String getConfigurationFingerprint(Map<String, String> compilerOptions, File[] classpath,
+      Map<String, String> accessRestrictions, Set<File> outputFolders, AbiFingerprint fingerprints) {
+    Set<File> ignored = new HashSet<File>();
+    for (File outputFolder : outputFolders) {
+      ignored.add(Utilities.getCanonicalFile(outputFolder));
+    }
+    StringBuffer buffer = new StringBuffer();
+    buffer.append(BuildCache.COMPILER_VERSION).append('\n');
+    for (Map.Entry<String, String> entry : new TreeMap<String, String>(compilerOptions).entrySet()) {
+      buffer.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+    }
+    for (Map.Entry<String, String> entry : accessRestrictions.entrySet()) {
+      buffer.append(entry.getKey()).append('|').append(entry.getValue()).append('\n');
+    }
+    for (File entry : classpath) {
+      File canonical = Utilities.getCanonicalFile(entry);
+      if (ignored.contains(canonical)) {
+        buffer.append(canonical).append('\n');
+      } else {
+        buffer.append(canonical).append(':').append(fingerprints.getFingerprint(canonical)).append('\n');
+      }
+    }
+    try {
+      return Utilities.digest(buffer.toString().getBytes("UTF-8"));
+    } catch (UnsupportedEncodingException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+}
@@ -0,0 +1,415 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.Utilities;
+
+/**
+ * <p>
+ * A {@link JarOutput} collects compiled class files in memory and writes them into a jar archive, so the class files
+ * don't have to be written to disc and packed afterwards.
+ * </p>
+ * <p>
+ * The archive is reproducible: the entries are written in the order of their names (after the manifest), all entries
+ * use the same time stamp and the parent directories of all entries are added. The entries can be compressed in
+ * parallel before they are written. Each compressed entry is written as soon as it (and all entries before it) is
+ * available, so only a few compressed entries are kept in memory at the same time.
+ * </p>
+ * <p>
+ * The zip64 extensions are not supported: writing an archive with more than 65535 entries or with more than 4 GB
+ * fails.
+ * </p>
+ */
+public class JarOutput {
+
+  /** the name of the manifest entry */
+  public static final String   MANIFEST_NAME = "META-INF/MANIFEST.MF";
+
+  /** the default manifest */
+  private static final String  MANIFEST      = "Manifest-Version: 1.0\r\nCreated-By: ant4eclipse\r\n\r\n";
+
+  /** the maximum number of entries of a zip archive (without zip64 extensions) */
+  private static final int     MAX_ENTRIES   = 0xffff;
+
+  /** the maximum size and offset within a zip archive (without zip64 extensions) */
+  private static final long    MAX_SIZE      = 0xffffffffL;
+
+  /** the jar file */
+  private File                 _jarFile;
+
+  /** the entries of the archive (key: entry name, value: content) */
+  private Map<String, byte[]>  _entries;
+
+  /** <code>true</code> if the entries are compressed */
+  private boolean              _compress;
+
+  /** the number of threads used to compress the entries */
+  private int                  _threadCount;
+
+  /** the time stamp of all entries in MS-DOS format (date in the upper, time in the lower 16 bits) */
+  private long                 _dosTime;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link JarOutput}. The entries are compressed using all available processors and
+   * get the earliest time stamp supported by the zip format.
+   * </p>
+   *
+   * @param jarFile
+   *          the jar file to create.
+   */
+  public JarOutput(File jarFile) {
+    this(jarFile, true, Runtime.getRuntime().availableProcessors(), -1);
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link JarOutput}.
+   * </p>
+   *
+   * @param jarFile
+   *          the jar file to create.
+   * @param compress
+   *          <code>true</code> if the entries should be compressed.
+   * @param threadCount
+   *          the number of threads used to compress the entries.
+   * @param timestamp
+   *          the time stamp of all entries (or a negative value for the earliest time stamp of the zip format).
+   */
+  public JarOutput(File jarFile, boolean compress, int threadCount, long timestamp) {
+    Assure.notNull("jarFile", jarFile);
+    Assure.assertTrue(threadCount > 0, "threadCount must be positive");
+    this._jarFile = jarFile;
+    this._compress = compress;
+    this._threadCount = threadCount;
+    this._dosTime = toDosTime(timestamp);
+    this._entries = new TreeMap<String, byte[]>();
+  }
+
+  /**
+   * <p>
+   * Returns the jar file.
+   * </p>
+   *
+   * @return the jar file.
+   */
+  public File getJarFile() {
+    return this._jarFile;
+  }
+
+  /**
+   * <p>
+   * Adds an entry. An existing entry with the same name is replaced.
+   * </p>
+   *
+   * @param name
+   *          the name of the entry (using '/' as separator).
+   * @param content
+   *          the content of the entry (must not be modified afterwards).
+   */
+  public synchronized void addEntry(String name, byte[] content) {
+    Assure.nonEmpty("name", name);
+    Assure.notNull("content", content);
+    this._entries.put(name, content);
+  }
+
+  /**
+   * <p>
+   * Returns the content of the given entry or <code>null</code> if there's no such entry.
+   * </p>
+   *
+   * @param name
+   *          the name of the entry.
+   * @return the content of the entry or <code>null</code>.
+   */
+  public synchronized byte[] getEntry(String name) {
+    return this._entries.get(name);
+  }
+
+  /**
+   * <p>
+   * Returns the number of entries that have been added.
+   * </p>
+   *
+   * @return the number of entries that have been added.
+   */
+  public synchronized int getEntryCount() {
+    return this._entries.size();
+  }
+
+  /**
+   * <p>
+   * Writes the jar file. If no manifest has been added, a default manifest is created.
+   * </p>
+   */
+  public synchronized void write() {
+
+    // the manifest comes first, followed by all entries and their parent directories in the order of their names
+    List<String> names = new ArrayList<String>();
+    names.add("META-INF/");
+    names.add(MANIFEST_NAME);
+    TreeMap<String, byte[]> entries = new TreeMap<String, byte[]>();
+    for (Map.Entry<String, byte[]> entry : this._entries.entrySet()) {
+      String name = entry.getKey();
+      entries.put(name, entry.getValue());
+      for (int idx = name.indexOf('/'); idx != -1 && idx < name.length() - 1; idx = name.indexOf('/', idx + 1)) {
+        entries.put(name.substring(0, idx + 1), new byte[0]);
+      }
+    }
+    entries.remove("META-INF/");
+    byte[] manifest = entries.remove(MANIFEST_NAME);
+    names.addAll(entries.keySet());
+    entries.put("META-INF/", new byte[0]);
+    entries.put(MANIFEST_NAME, manifest != null ? manifest : getBytes(MANIFEST));
+
+    if (names.size() > MAX_ENTRIES) {
+      throw new Ant4EclipseException(EcjExceptionCodes.JAR_FILE_EXCEEDS_ZIP_LIMITS_EXCEPTION, this._jarFile,
+          "more than " + MAX_ENTRIES + " entries");
+    }
+
+    // compress the entries (in parallel) and write them
+    long start = System.currentTimeMillis();
+    ExecutorService executor = Executors.newFixedThreadPool(this._threadCount);
+    File tempFile = new File(this._jarFile.getParentFile(), this._jarFile.getName() + ".tmp");
+    boolean written = false;
+    try {
+      Utilities.mkdirs(tempFile.getAbsoluteFile().getParentFile());
+      OutputStream output = new BufferedOutputStream(new FileOutputStream(tempFile));
+      try {
+        writeArchive(output, names, entries, executor);
+      } finally {
+        Utilities.close((Closeable) output);
+      }
+      written = true;
+    } catch (IOException ex) {
+      throw new Ant4EclipseException(ex, EcjExceptionCodes.COULD_NOT_CREATE_JAR_FILE_FROM_FILE_EXCEPTION, this._jarFile);
+    } finally {
+      executor.shutdownNow();
+      if (!written) {
+        tempFile.delete();
+      }
+    }
+    if ((this._jarFile.exists() && !this._jarFile.delete()) || !tempFile.renameTo(this._jarFile)) {
+      tempFile.delete();
+      throw new Ant4EclipseException(EcjExceptionCodes.COULD_NOT_CREATE_JAR_FILE_FROM_FILE_EXCEPTION, this._jarFile);
+    }
+    A4ELogging.info("Wrote %d entries to '%s' in %d ms.", Integer.valueOf(names.size()), this._jarFile, Long
+        .valueOf(System.currentTimeMillis() - start));
+  }
+
+  /**
+   * <p>
+   * Compresses the given entries using the given executor and writes them in the zip format. At most a few entries
+   * per thread are compressed ahead of the entry that is written next. The written entries are removed from the given
+   * map.
+   * </p>
+   */
+  private void writeArchive(OutputStream output, List<String> names, Map<String, byte[]> entries,
+      ExecutorService executor) throws IOException {
+    LinkedList<Future<CompressedEntry>> pending = new LinkedList<Future<CompressedEntry>>();
+    Iterator<String> iterator = names.iterator();
+    ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+    long offset = 0;
+    while (iterator.hasNext() || !pending.isEmpty()) {
+      while (iterator.hasNext() && (pending.size() < this._threadCount * 4)) {
+        final String entryName = iterator.next();
+        final byte[] content = entries.remove(entryName);
+        pending.add(executor.submit(new Callable<CompressedEntry>() {
+          public CompressedEntry call() {
+            return new CompressedEntry(entryName, content, JarOutput.this._compress && !entryName.endsWith("/"));
+          }
+        }));
+      }
+      CompressedEntry entry;
+      try {
+        entry = pending.removeFirst().get();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while compressing the entries");
+      } catch (ExecutionException ex) {
+        throw new IOException("Could not compress an entry: " + ex.getCause());
+      }
+      byte[] name = getBytes(entry._name);
+      if ((offset + 30 + name.length + entry._dataLength) > MAX_SIZE) {
+        throw new Ant4EclipseException(EcjExceptionCodes.JAR_FILE_EXCEEDS_ZIP_LIMITS_EXCEPTION, this._jarFile,
+            "more than " + MAX_SIZE + " bytes");
+      }
+
+      // local file header
+      writeInt(output, 0x04034b50);
+      writeEntryHeader(output, entry, name.length);
+      output.write(name);
+      output.write(entry._data, 0, entry._dataLength);
+
+      // central directory file header
+      writeInt(centralDirectory, 0x02014b50);
+      writeShort(centralDirectory, 20);
+      writeEntryHeader(centralDirectory, entry, name.length);
+      writeShort(centralDirectory, 0);
+      writeShort(centralDirectory, 0);
+      writeShort(centralDirectory, 0);
+      writeInt(centralDirectory, 0);
+      writeInt(centralDirectory, offset);
+      centralDirectory.write(name);
+
+      offset += 30 + name.length + entry._dataLength;
+    }
+    if ((offset + centralDirectory.size()) > MAX_SIZE) {
+      throw new Ant4EclipseException(EcjExceptionCodes.JAR_FILE_EXCEEDS_ZIP_LIMITS_EXCEPTION, this._jarFile,
+          "more than " + MAX_SIZE + " bytes");
+    }
+    centralDirectory.writeTo(output);
+
+    // end of central directory record
+    writeInt(output, 0x06054b50);
+    writeShort(output, 0);
+    writeShort(output, 0);
+    writeShort(output, names.size());
+    writeShort(output, names.size());
+    writeInt(output, centralDirectory.size());
+    writeInt(output, offset);
+    writeShort(output, 0);
+  }
+
+  /**
+   * <p>
+   * Writes the part of the header that is shared by the local file header and the central directory file header.
+   * </p>
+   */
+  private void writeEntryHeader(OutputStream output, CompressedEntry entry, int nameLength) throws IOException {
+    writeShort(output, entry._compressed ? 20 : 10);
+    // general purpose flag: the names are UTF-8 encoded
+    writeShort(output, 0x0800);
+    writeShort(output, entry._compressed ? Deflater.DEFLATED : 0);
+    writeInt(output, this._dosTime);
+    writeInt(output, entry._crc);
+    writeInt(output, entry._dataLength);
+    writeInt(output, entry._size);
+    writeShort(output, nameLength);
+    writeShort(output, 0);
+  }
+
+  private static void writeShort(OutputStream output, int value) throws IOException {
+    output.write(value & 0xff);
+    output.write((value >>> 8) & 0xff);
+  }
+
+  private static void writeInt(OutputStream output, long value) throws IOException {
+    writeShort(output, (int) (value & 0xffff));
+    writeShort(output, (int) ((value >>> 16) & 0xffff));
+  }
+
+  private static byte[] getBytes(String value) {
+    try {
+      return value.getBytes("UTF-8");
+    } catch (UnsupportedEncodingException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  /**
+   * <p>
+   * Converts the given time stamp into the MS-DOS format used by the zip format.
+   * </p>
+   */
+  private static long toDosTime(long timestamp) {
+    if (timestamp < 0) {
+      // 1980-01-01 00:00:00
+      return (1 << 21) | (1 << 16);
+    }
+    Calendar calendar = Calendar.getInstance();
+    calendar.setTimeInMillis(timestamp);
+    int year = Math.max(calendar.get(Calendar.YEAR), 1980);
+    return ((long) (year - 1980) << 25) | ((long) (calendar.get(Calendar.MONTH) + 1) << 21)
+        | ((long) calendar.get(Calendar.DAY_OF_MONTH) << 16) | (calendar.get(Calendar.HOUR_OF_DAY) << 11)
+        | (calendar.get(Calendar.MINUTE) << 5) | (calendar.get(Calendar.SECOND) >> 1);
+  }
+
+  /**
+   * <p>
+   * An entry that is ready to be written.
+   * </p>
+   */
+  private static class CompressedEntry {
+
+    /** the name of the entry */
+    private String  _name;
+
+    /** <code>true</code> if the data is compressed */
+    private boolean _compressed;
+
+    /** the (compressed) data */
+    private byte[]  _data;
+
+    /** the length of the (compressed) data */
+    private int     _dataLength;
+
+    /** the uncompressed size */
+    private int     _size;
+
+    /** the crc of the uncompressed content */
+    private long    _crc;
+
+    private CompressedEntry(String name, byte[] content, boolean compress) {
+      this._name = name;
+      this._size = content.length;
+      CRC32 crc = new CRC32();
+      crc.update(content);
+      this._crc = crc.getValue();
+      if (compress) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+          deflater.setInput(content);
+          deflater.finish();
+          ByteArrayOutputStream output = new ByteArrayOutputStream(content.length / 2 + 64);
+          byte[] buffer = new byte[8192];
+          while (!deflater.finished()) {
+            output.write(buffer, 0, deflater.deflate(buffer));
+          }
+          this._data = output.toByteArray();
+        } finally {
+          deflater.end();
+        }
+        this._compressed = true;
+      } else {
+        this._data = content;
+      }
+      this._dataLength = this._data.length;
+    }
+  }
+}
@@ -0,0 +1,286 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.Utilities;
+
+/**
+ * <p>
+ * The {@link ClassFileWriter} writes class files on a background thread, so the compiler doesn't have to wait for the
+ * disc while it compiles the next compilation unit. The number of pending class files is bounded: if the writer falls
+ * behind, the compiler blocks until there's room in the queue again.
+ * </p>
+ * <p>
+ * A class file is only written if its content differs from the file that already exists, so the time stamps of
+ * unchanged class files stay stable for tasks that check whether their output is up-to-date (f.e. <code>jar</code>).
+ * Directories are created once for all class files of a package.
+ * </p>
+ * <p>
+ * The class files are available on disc after {@link #close()} has been called. If the writer thread stops
+ * unexpectedly (f.e. because of an {@link Error} or an interrupt), pending and subsequent calls fail instead of
+ * waiting for room in the queue forever, and {@link #close()} rethrows the cause.
+ * </p>
+ */
+public class ClassFileWriter {
+
+  /** the default number of class files that may be pending */
+  public static final int             DEFAULT_CAPACITY = 256;
+
+  /** the time in milliseconds to wait for room in the queue before the writer thread is checked again */
+  private static final long           POLL_INTERVAL    = 100;
+
+  /** marks the end of the queue */
+  private static final PendingWrite   END              = new PendingWrite(null, null);
+
+  /** the class files that haven't been written yet */
+  private BlockingQueue<PendingWrite> _queue;
+
+  /** the writer thread, <code>null</code> if no class file has been passed yet */
+  private Thread                      _thread;
+
+  /** <code>true</code> if the writer has been closed */
+  private boolean                     _closed;
+
+  /** the directories that are known to exist (only accessed by the writer thread) */
+  private Set<File>                   _directories;
+
+  /** the class files that couldn't be written (value: the reason) */
+  private Map<File, String>           _failures;
+
+  /** the number of written class files */
+  private int                         _written;
+
+  /** the number of class files that haven't been written as they didn't change */
+  private int                         _unchanged;
+
+  /** the reason why the writer thread stopped unexpectedly, <code>null</code> if it didn't */
+  private volatile Throwable          _fatal;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link ClassFileWriter}.
+   * </p>
+   *
+   * @param capacity
+   *          the maximum number of class files that may be pending.
+   */
+  public ClassFileWriter(int capacity) {
+    Assure.assertTrue(capacity > 0, "capacity must be positive");
+    this._queue = new ArrayBlockingQueue<PendingWrite>(capacity);
+    this._directories = new HashSet<File>();
+    this._failures = Collections.synchronizedMap(new HashMap<File, String>());
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link ClassFileWriter} with the default capacity.
+   * </p>
+   */
+  public ClassFileWriter() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * <p>
+   * Passes the given class file to the writer thread. Blocks if the maximum number of pending class files has been
+   * reached.
+   * </p>
+   *
+   * @param classFile
+   *          the location of the class file.
+   * @param content
+   *          the content of the class file (must not be modified afterwards).
+   */
+  public void write(File classFile, byte[] content) {
+    Assure.notNull("classFile", classFile);
+    Assure.notNull("content", content);
+    Thread thread;
+    synchronized (this) {
+      Assure.assertTrue(!this._closed, "The class file writer has already been closed");
+      if (this._thread == null) {
+        this._thread = new Thread(new Runnable() {
+          public void run() {
+            processQueue();
+          }
+        }, "ant4eclipse-classfile-writer");
+        this._thread.setDaemon(true);
+        this._thread.start();
+      }
+      thread = this._thread;
+    }
+    put(new PendingWrite(classFile, content), thread);
+  }
+
+  /**
+   * <p>
+   * Waits until all pending class files have been written and stops the writer thread. Calling this method more than
+   * once has no effect.
+   * </p>
+   */
+  public void close() {
+    Thread thread;
+    synchronized (this) {
+      if (this._closed) {
+        return;
+      }
+      this._closed = true;
+      thread = this._thread;
+    }
+    if (thread == null) {
+      return;
+    }
+    put(END, thread);
+    try {
+      thread.join();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while writing the class files", ex);
+    }
+    if (this._fatal != null) {
+      throw new RuntimeException("The class file writer stopped unexpectedly", this._fatal);
+    }
+    A4ELogging.debug("Wrote %d class file(s), %d class file(s) didn't change.", Integer.valueOf(this._written), Integer
+        .valueOf(this._unchanged));
+  }
+
+  /**
+   * <p>
+   * Returns the reason why the given class file couldn't be written or <code>null</code> if it has been written
+   * successfully. Only valid after {@link #close()} has been called.
+   * </p>
+   *
+   * @param classFile
+   *          the class file
+   * @return the reason of the failure or <code>null</code>.
+   */
+  public String getFailure(File classFile) {
+    return this._failures.get(classFile);
+  }
+
+  /**
+   * <p>
+   * Returns the number of written class files. Only valid after {@link #close()} has been called.
+   * </p>
+   *
+   * @return the number of written class files.
+   */
+  public int getWrittenCount() {
+    return this._written;
+  }
+
+  /**
+   * <p>
+   * Returns the number of class files that haven't been written as their content didn't change. Only valid after
+   * {@link #close()} has been called.
+   * </p>
+   *
+   * @return the number of unchanged class files.
+   */
+  public int getUnchangedCount() {
+    return this._unchanged;
+  }
+
+  /**
+   * <p>
+   * Adds the given element to the queue. Fails if the writer thread has stopped, as nobody would take the element.
+   * </p>
+   */
+  private void put(PendingWrite pendingWrite, Thread thread) {
+    try {
+      while ((this._fatal != null) || !this._queue.offer(pendingWrite, POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+        if ((this._fatal != null) || !thread.isAlive()) {
+          throw new RuntimeException("The class file writer stopped unexpectedly", this._fatal);
+        }
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while writing the class files", ex);
+    }
+  }
+
+  /**
+   * <p>
+   * Writes the pending class files until the end of the queue has been reached. If the thread is interrupted or an
+   * {@link Error} occurs, the cause is recorded so the producers don't wait for the queue forever.
+   * </p>
+   */
+  private void processQueue() {
+    try {
+      while (true) {
+        PendingWrite pendingWrite = this._queue.take();
+        if (pendingWrite == END) {
+          return;
+        }
+        try {
+          writeClassFile(pendingWrite._classFile, pendingWrite._content);
+        } catch (RuntimeException ex) {
+          this._failures.put(pendingWrite._classFile, ex.toString());
+        }
+      }
+    } catch (InterruptedException ex) {
+      this._fatal = ex;
+    } catch (Error error) {
+      this._fatal = error;
+    }
+  }
+
+  private void writeClassFile(File classFile, byte[] content) {
+    File classDir = classFile.getParentFile();
+    if (this._directories.add(classDir) && !classDir.isDirectory()) {
+      // a new directory can't contain an old version of the class file
+      classDir.mkdirs();
+    } else if (isUnchanged(classFile, content)) {
+      this._unchanged++;
+      return;
+    }
+    A4ELogging.debug("writing class file: '%s'", classFile);
+    Utilities.writeFile(classFile, content);
+    this._written++;
+  }
+
+  private boolean isUnchanged(File classFile, byte[] content) {
+    return classFile.isFile() && (classFile.length() == content.length)
+        && Arrays.equals(Utilities.readFile(classFile), content);
+  }
+
+  /**
+   * <p>
+   * A class file that hasn't been written yet.
+   * </p>
+   */
+  private static class PendingWrite {
+
+    /** the location of the class file */
+    private File   _classFile;
+
+    /** the content of the class file */
+    private byte[] _content;
+
+    private PendingWrite(File classFile, byte[] content) {
+      this._classFile = classFile;
+      this._content = content;
+    }
+  }
+}
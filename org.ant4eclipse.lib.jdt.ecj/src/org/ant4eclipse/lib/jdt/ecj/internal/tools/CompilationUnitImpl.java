@@ -12,16 +12,20 @@
 package org.ant4eclipse.lib.jdt.ecj.internal.tools;
 
 
-import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
 import java.util.StringTokenizer;
 
 import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
+import org.ant4eclipse.lib.core.util.Utilities;
 import org.ant4eclipse.lib.jdt.ecj.EcjExceptionCodes;
 import org.ant4eclipse.lib.jdt.ecj.SourceFile;
 import org.eclipse.jdt.internal.compiler.env.ICompilationUnit;
@@ -51,6 +55,9 @@ public class CompilationUnitImpl implements ICompilationUnit {
   /** the name of the package , e.g. {java, lang} */
   private char[][]            _packageName;
 
+  /** the contents of the source file (read on demand, released after the code generation) */
+  private char[]              _contents;
+
   /**
    * <p>
    * Creates a new instance of type {@link CompilationUnitImpl}.
@@ -107,41 +114,81 @@ public class CompilationUnitImpl implements ICompilationUnit {
   }
 
   /**
-   * {@inheritDoc}
+   * <p>
+   * Returns the contents of the source file. The file is read at once and decoded directly into a character array
+   * (keeping the original line endings). The contents are cached until {@link #releaseContents()} is called, as the
+   * compiler may request them several times.
+   * </p>
+   * 
+   * @return the contents of the source file.
    */
-  public final char[] getContents() {
+  public final synchronized char[] getContents() {
+    if (this._contents == null) {
+      this._contents = readContents();
+    }
+    return this._contents;
+  }
+
+  /**
+   * <p>
+   * Releases the cached contents of the source file. Should be called after the code for the compilation unit has
+   * been generated.
+   * </p>
+   */
+  public final synchronized void releaseContents() {
+    this._contents = null;
+  }
+
+  /**
+   * <p>
+   * </p>
+   * 
+   * @return
+   */
+  public SourceFile getSourceFile() {
+    return this._sourceFile;
+  }
+
+  /**
+   * <p>
+   * Reads and decodes the contents of the source file.
+   * </p>
+   * 
+   * @return the contents of the source file.
+   */
+  private char[] readContents() {
     String filename = new String(this._fileName);
     File sourceFile = new File(this._sourceFile.getSourceFolder(), filename);
 
-    StringBuffer result = new StringBuffer();
-
+    FileInputStream input = null;
     try {
-      BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(sourceFile), this._sourceFile
-          .getEncoding()));
+      input = new FileInputStream(sourceFile);
+      FileChannel channel = input.getChannel();
+      ByteBuffer bytes = ByteBuffer.allocate((int) channel.size());
+      while (bytes.hasRemaining() && (channel.read(bytes) != -1)) {
+        // read the whole file
+      }
+      bytes.flip();
 
-      String str;
-      while ((str = in.readLine()) != null) {
-        result.append(str);
-        result.append("\n");
+      // malformed input is replaced like the InputStreamReader did before
+      CharBuffer chars = Charset.forName(this._sourceFile.getEncoding()).newDecoder().onMalformedInput(
+          CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE).decode(bytes);
+      if (chars.hasArray() && (chars.arrayOffset() == 0) && (chars.array().length == chars.remaining())) {
+        return chars.array();
       }
-    } catch (UnsupportedEncodingException e) {
+      char[] result = new char[chars.remaining()];
+      chars.get(result);
+      return result;
+    } catch (IllegalArgumentException e) {
+      // unsupported or illegal encoding
       throw new Ant4EclipseException(e, EcjExceptionCodes.UNABLE_TO_READ_COMPILATION_CONTENT_EXCEPTION, filename,
           this._sourceFile.getSourceFolder(), this._sourceFile.getEncoding());
     } catch (IOException e) {
       throw new Ant4EclipseException(e, EcjExceptionCodes.UNABLE_TO_READ_COMPILATION_CONTENT_EXCEPTION, filename,
           this._sourceFile.getSourceFolder(), this._sourceFile.getEncoding());
+    } finally {
+      Utilities.close((Closeable) input);
     }
-    return result.toString().toCharArray();
-  }
-
-  /**
-   * <p>
-   * </p>
-   * 
-   * @return
-   */
-  public SourceFile getSourceFile() {
-    return this._sourceFile;
   }
 
   /**
@@ -11,6 +11,7 @@
  **********************************************************************/
 package org.ant4eclipse.lib.jdt.ecj.internal.tools;
 
+import org.ant4eclipse.lib.jdt.ecj.CompilationUnitResult;
 import org.ant4eclipse.lib.jdt.ecj.CompileJobResult;
 import org.eclipse.jdt.core.compiler.CategorizedProblem;
 
@@ -20,11 +21,13 @@ import java.util.Map;
 
 public class CompileJobResultImpl implements CompileJobResult {
 
-  private boolean              _succeeded;
+  private boolean                 _succeeded;
 
-  private CategorizedProblem[] _categorizedProblems;
+  private CategorizedProblem[]    _categorizedProblems;
 
-  private Map<String, File>    _compiledclassfiles;
+  private Map<String, File>       _compiledclassfiles;
+
+  private CompilationUnitResult[] _compilationUnitResults;
 
   /**
    * {@inheritDoc}
@@ -69,4 +72,15 @@ public class CompileJobResultImpl implements CompileJobResult {
     this._compiledclassfiles = compiledclasses;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public CompilationUnitResult[] getCompilationUnitResults() {
+    return this._compilationUnitResults == null ? new CompilationUnitResult[0] : this._compilationUnitResults;
+  }
+
+  public void setCompilationUnitResults(CompilationUnitResult[] compilationUnitResults) {
+    this._compilationUnitResults = compilationUnitResults;
+  }
+
 }
@@ -11,12 +11,15 @@
  **********************************************************************/
 package org.ant4eclipse.lib.jdt.ecj.internal.tools;
 
-import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
+import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
 import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.jdt.ecj.CompilationUnitResult;
+import org.ant4eclipse.lib.jdt.ecj.JarOutput;
 import org.ant4eclipse.lib.jdt.ecj.ReferableSourceFile;
 import org.ant4eclipse.lib.jdt.ecj.SourceFile;
 import org.eclipse.jdt.core.compiler.CategorizedProblem;
+import org.eclipse.jdt.core.compiler.CharOperation;
 import org.eclipse.jdt.internal.compiler.ClassFile;
 import org.eclipse.jdt.internal.compiler.CompilationResult;
 import org.eclipse.jdt.internal.compiler.ICompilerRequestor;
@@ -24,7 +27,9 @@ import org.eclipse.jdt.internal.compiler.ICompilerRequestor;
 import java.io.File;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -35,29 +40,62 @@ import java.util.Map;
  * {@link CompilerRequestorImpl} writes the compiled class files to disc or reports the errors in case the compilation
  * was not successful.
  * </p>
+ * <p>
+ * The class files are passed to a {@link ClassFileWriter}, so they are written while the compiler proceeds. They are
+ * available on disc after {@link #finish()} has been called. If a {@link JarOutput} has been specified, the class
+ * files are added to the jar archive instead.
+ * </p>
  * 
  * @author Nils Hartmann (nils@nilshartmann.net)
  */
 public class CompilerRequestorImpl implements ICompilerRequestor {
 
   /** indicates whether the compilation was successful or not */
-  protected boolean                  _compilationSuccessful;
+  protected boolean                   _compilationSuccessful;
 
   /** the list of categorized problems */
-  protected List<CategorizedProblem> _categorizedProblems;
+  protected List<CategorizedProblem>  _categorizedProblems;
 
   /** collection of class files which have been compiled */
-  private Map<String, File>          _compiledClassFiles;
+  private Map<String, File>           _compiledClassFiles;
+
+  /** the results of the compiled source files */
+  private List<CompilationUnitResult> _compilationUnitResults;
+
+  /** the writer for the class files */
+  private ClassFileWriter             _classFileWriter;
+
+  /** the jar archive that receives the class files, maybe <code>null</code> */
+  private JarOutput                   _jarOutput;
+
+  /** indicates if the results of the compiled source files should be recorded */
+  private boolean                     _recordCompilationUnitResults;
 
   /**
    * <p>
-   * Creates a new instance of type {@link CompilerRequestorImpl}.
+   * Creates a new instance of type {@link CompilerRequestorImpl}. The caller owns the given writer and has to call
+   * {@link #finish()} (or {@link ClassFileWriter#close()}) once the compilation is done.
    * </p>
+   * 
+   * @param classFileWriter
+   *          the writer for the class files (can be shared with other requestors of the same compilation).
+   * @param jarOutput
+   *          the jar archive that receives the class files or <code>null</code> to write them into the destination
+   *          folders.
+   * @param recordCompilationUnitResults
+   *          <code>true</code> if the results of the compiled source files should be recorded (see
+   *          {@link #getCompilationUnitResults()}).
    */
-  public CompilerRequestorImpl() {
+  public CompilerRequestorImpl(ClassFileWriter classFileWriter, JarOutput jarOutput,
+      boolean recordCompilationUnitResults) {
+    Assure.notNull("classFileWriter", classFileWriter);
+    this._classFileWriter = classFileWriter;
+    this._jarOutput = jarOutput;
+    this._recordCompilationUnitResults = recordCompilationUnitResults;
     this._compilationSuccessful = true;
     this._categorizedProblems = new LinkedList<CategorizedProblem>();
     this._compiledClassFiles = new Hashtable<String, File>();
+    this._compilationUnitResults = new LinkedList<CompilationUnitResult>();
   }
 
   /**
@@ -80,6 +118,9 @@ public class CompilerRequestorImpl implements ICompilerRequestor {
     // ...and the source file
     SourceFile sourceFile = compilationUnitImpl.getSourceFile();
 
+    // the code has been generated, so the contents of the compilation unit aren't needed anymore
+    compilationUnitImpl.releaseContents();
+
     // return immediately if the source file is a ReferableSourceFile
     if (sourceFile instanceof ReferableSourceFile) {
 
@@ -97,6 +138,9 @@ public class CompilerRequestorImpl implements ICompilerRequestor {
     // get the destination directory
     File destinationDirectory = sourceFile.getDestinationFolder();
 
+    // the hashes of the class files produced for this source file
+    Map<String, String> classFileHashes = new HashMap<String, String>();
+
     if (!result.hasErrors()) {
       ClassFile[] classFiles = result.getClassFiles();
       for (ClassFile classFile2 : classFiles) {
@@ -110,18 +154,15 @@ public class CompilerRequestorImpl implements ICompilerRequestor {
         }
         classFileName.append(".class");
         File classFile = new File(destinationDirectory, classFileName.toString());
-        File classDir = classFile.getParentFile();
-        if (!classDir.exists()) {
-          classDir.mkdirs();
+        byte[] bytes = classFile2.getBytes();
+        if (this._jarOutput != null) {
+          this._jarOutput.addEntry(classFileName.toString(), bytes);
+        } else {
+          this._classFileWriter.write(classFile, bytes);
         }
-        try {
-          A4ELogging.debug("writing class file: '%s'", classFile);
-          Utilities.writeFile(classFile, classFile2.getBytes());
-          this._compiledClassFiles.put(classFileName.toString(), classFile);
-        } catch (Ant4EclipseException ioe) {
-          A4ELogging.error("Could not write classfile '%s': %s", classFileName.toString(), ioe.toString());
-          ioe.printStackTrace();
-          this._compilationSuccessful = false;
+        this._compiledClassFiles.put(classFileName.toString(), classFile);
+        if (this._recordCompilationUnitResults) {
+          classFileHashes.put(classFileName.toString(), Utilities.digest(bytes));
         }
       }
     } else {
@@ -132,6 +173,83 @@ public class CompilerRequestorImpl implements ICompilerRequestor {
     if (result.getAllProblems() != null) {
       this._categorizedProblems.addAll(Arrays.asList(result.getAllProblems()));
     }
+
+    // record the result of the compilation unit
+    if (this._recordCompilationUnitResults) {
+      this._compilationUnitResults.add(new CompilationUnitResult(sourceFile, result.hasErrors(), classFileHashes,
+          toStrings(result.qualifiedReferences), toStrings(result.simpleNameReferences)));
+    }
+  }
+
+  /**
+   * <p>
+   * Waits until all class files have been written. Class files that couldn't be written are removed from the compiled
+   * class files and the compilation is marked as not successful.
+   * </p>
+   */
+  public void finish() {
+    this._classFileWriter.close();
+    for (Iterator<Map.Entry<String, File>> iterator = this._compiledClassFiles.entrySet().iterator(); iterator
+        .hasNext();) {
+      Map.Entry<String, File> entry = iterator.next();
+      String failure = this._classFileWriter.getFailure(entry.getValue());
+      if (failure != null) {
+        A4ELogging.error("Could not write classfile '%s': %s", entry.getKey(), failure);
+        iterator.remove();
+        this._compilationSuccessful = false;
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the results of the compiled source files (empty if the results aren't recorded).
+   * </p>
+   * 
+   * @return the results of the compiled source files.
+   */
+  public CompilationUnitResult[] getCompilationUnitResults() {
+    return this._compilationUnitResults.toArray(new CompilationUnitResult[this._compilationUnitResults.size()]);
+  }
+
+  /**
+   * <p>
+   * Converts the qualified names reported by the compiler into dot separated strings.
+   * </p>
+   * 
+   * @param names
+   *          the qualified names, maybe <code>null</code>.
+   * @return the dot separated names.
+   */
+  private static String[] toStrings(char[][][] names) {
+    if (names == null) {
+      return new String[0];
+    }
+    String[] result = new String[names.length];
+    for (int i = 0; i < names.length; i++) {
+      result[i] = new String(CharOperation.concatWith(names[i], '.'));
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Converts the simple names reported by the compiler into strings.
+   * </p>
+   * 
+   * @param names
+   *          the simple names, maybe <code>null</code>.
+   * @return the names.
+   */
+  private static String[] toStrings(char[][] names) {
+    if (names == null) {
+      return new String[0];
+    }
+    String[] result = new String[names.length];
+    for (int i = 0; i < names.length; i++) {
+      result[i] = new String(names[i]);
+    }
+    return result;
   }
 
   /**
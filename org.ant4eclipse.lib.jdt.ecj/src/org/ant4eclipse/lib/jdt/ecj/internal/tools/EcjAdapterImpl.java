@@ -11,6 +11,7 @@
  **********************************************************************/
 package org.ant4eclipse.lib.jdt.ecj.internal.tools;
 
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
@@ -18,12 +19,17 @@ import java.util.Map;
 
 import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoaderFactory;
 import org.ant4eclipse.lib.jdt.ecj.CompileJobDescription;
 import org.ant4eclipse.lib.jdt.ecj.CompileJobResult;
 import org.ant4eclipse.lib.jdt.ecj.EcjAdapter;
+import org.ant4eclipse.lib.jdt.ecj.JarOutput;
 import org.ant4eclipse.lib.jdt.ecj.SourceFile;
+import org.eclipse.jdt.internal.compiler.CompilationResult;
 import org.eclipse.jdt.internal.compiler.Compiler;
 import org.eclipse.jdt.internal.compiler.DefaultErrorHandlingPolicies;
+import org.eclipse.jdt.internal.compiler.ICompilerRequestor;
 import org.eclipse.jdt.internal.compiler.IErrorHandlingPolicy;
 import org.eclipse.jdt.internal.compiler.IProblemFactory;
 import org.eclipse.jdt.internal.compiler.env.ICompilationUnit;
@@ -48,15 +54,73 @@ public final class EcjAdapterImpl implements EcjAdapter {
    */
   public CompileJobResult compile(CompileJobDescription description) {
     Assure.notNull("description", description);
+    return compile(new CompileJobDescription[] { description })[0];
+  }
 
-    // create the name environment
-    INameEnvironment nameEnvironment = new NameEnvironmentImpl(description.getClassFileLoader());
+  /**
+   * {@inheritDoc}
+   */
+  public CompileJobResult compile(CompileJobDescription description, JarOutput jarOutput) {
+    Assure.notNull("description", description);
+    Assure.notNull("jarOutput", jarOutput);
+    return compile(new CompileJobDescription[] { description }, jarOutput)[0];
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public CompileJobResult[] compile(CompileJobDescription[] descriptions) {
+    return compile(descriptions, null);
+  }
+
+  /**
+   * <p>
+   * Performs the given compile jobs within a single compiler session.
+   * </p>
+   *
+   * @param descriptions
+   *          the compile jobs
+   * @param jarOutput
+   *          the jar archive that receives the class files or <code>null</code> to write them into the destination
+   *          folders.
+   * @return the results of the compile jobs.
+   */
+  private CompileJobResult[] compile(CompileJobDescription[] descriptions, JarOutput jarOutput) {
+    Assure.notNull("descriptions", descriptions);
+    Assure.assertTrue(descriptions.length > 0, "At least one compile job description must be provided.");
+
+    // get the compiler options (shared by all jobs)
+    Map<String, String> compilerOptions = descriptions[0].getCompilerOptions();
+    for (CompileJobDescription description : descriptions) {
+      Assure.assertTrue(compilerOptions.equals(description.getCompilerOptions()),
+          "All compile jobs of a session must use the same compiler options.");
+    }
 
-    // get the compiler options
-    Map<String, String> compilerOptions = description.getCompilerOptions();
+    // create the name environment
+    INameEnvironment nameEnvironment = new NameEnvironmentImpl(getClassFileLoader(descriptions));
+
+    // create the compiler requestors and retrieve the compilation units
+    ClassFileWriter classFileWriter = new ClassFileWriter();
+    final CompilerRequestorImpl[] requestors = new CompilerRequestorImpl[descriptions.length];
+    final Map<SourceFile, CompilerRequestorImpl> requestorTable =
+        new IdentityHashMap<SourceFile, CompilerRequestorImpl>();
+    List<SourceFile> sourceFiles = new LinkedList<SourceFile>();
+    boolean produceReferenceInfo = false;
+    for (int i = 0; i < descriptions.length; i++) {
+      boolean record = descriptions[i].isRecordCompilationUnitResults();
+      requestors[i] = new CompilerRequestorImpl(classFileWriter, jarOutput, record);
+      produceReferenceInfo = produceReferenceInfo || record;
+      for (SourceFile sourceFile : descriptions[i].getSourceFiles()) {
+        requestorTable.put(sourceFile, requestors[i]);
+        sourceFiles.add(sourceFile);
+      }
+    }
+    ICompilationUnit[] sources = getCompilationUnits(sourceFiles.toArray(new SourceFile[sourceFiles.size()]));
 
-    // retrieve the compilation units
-    ICompilationUnit[] sources = getCompilationUnits(description.getSourceFiles());
+    if (descriptions.length > 1) {
+      A4ELogging.info("Compiling %d source file(s) of %d compile jobs in a single session.", Integer
+          .valueOf(sources.length), Integer.valueOf(descriptions.length));
+    }
 
     // create the error handling policy
     IErrorHandlingPolicy policy = DefaultErrorHandlingPolicies.proceedWithAllProblems();
@@ -64,12 +128,19 @@ public final class EcjAdapterImpl implements EcjAdapter {
     // create the problem factory
     IProblemFactory problemFactory = new DefaultProblemFactory(Locale.getDefault());
 
-    // create the compiler requestor
-    CompilerRequestorImpl requestor = new CompilerRequestorImpl();
+    // create the compiler requestor (passes each result to the requestor of the job the source file belongs to)
+    ICompilerRequestor requestor = new ICompilerRequestor() {
+      public void acceptResult(CompilationResult result) {
+        SourceFile sourceFile = ((CompilationUnitImpl) result.getCompilationUnit()).getSourceFile();
+        CompilerRequestorImpl target = requestorTable.get(sourceFile);
+        (target != null ? target : requestors[0]).acceptResult(result);
+      }
+    };
 
-    // create the compiler
-    Compiler compiler = new Compiler(nameEnvironment, policy, new CompilerOptions(compilerOptions), requestor,
-        problemFactory);
+    // create the compiler (the reference info is only needed to determine the dependents of changed types)
+    CompilerOptions options = new CompilerOptions(compilerOptions);
+    options.produceReferenceInfo = produceReferenceInfo;
+    Compiler compiler = new Compiler(nameEnvironment, policy, options, requestor, problemFactory);
 
     if (Boolean.getBoolean("a4e.ecj.useMultiThreading")) {
       compiler.useSingleThread = false;
@@ -80,16 +151,58 @@ public final class EcjAdapterImpl implements EcjAdapter {
     setupAnnotationProcessor(compiler);
 
     // compile
-    compiler.compile(sources);
+    try {
+      compiler.compile(sources);
+    } finally {
+      nameEnvironment.cleanup();
+      // wait until the class files have been written
+      classFileWriter.close();
+    }
 
-    // create the compile job result
-    CompileJobResultImpl result = new CompileJobResultImpl();
-    result.setSucceeded(requestor.isCompilationSuccessful());
-    result.setCategorizedProblems(requestor.getCategorizedProblems());
-    result.setCompiledClassFiles(requestor.getCompiledClassFiles());
+    // create the compile job results
+    boolean succeeded = true;
+    CompileJobResult[] results = new CompileJobResult[descriptions.length];
+    for (int i = 0; i < results.length; i++) {
+      requestors[i].finish();
+      CompileJobResultImpl result = new CompileJobResultImpl();
+      result.setSucceeded(requestors[i].isCompilationSuccessful());
+      result.setCategorizedProblems(requestors[i].getCategorizedProblems());
+      result.setCompiledClassFiles(requestors[i].getCompiledClassFiles());
+      result.setCompilationUnitResults(requestors[i].getCompilationUnitResults());
+      results[i] = result;
+      succeeded = succeeded && result.succeeded();
+    }
 
-    // return the result
-    return result;
+    // write the archive
+    if ((jarOutput != null) && succeeded) {
+      jarOutput.write();
+    }
+
+    // return the results
+    return results;
+  }
+
+  /**
+   * <p>
+   * Returns the {@link ClassFileLoader} for the given compile jobs. If there's more than one job, the class file
+   * loaders of all jobs are combined (in the order of the jobs). The compiler uses a single name environment for all
+   * jobs, so the caller must make sure that the class paths of the jobs are compatible (see
+   * {@link EcjAdapter#compile(CompileJobDescription[])}).
+   * </p>
+   *
+   * @param descriptions
+   *          the compile jobs
+   * @return the {@link ClassFileLoader} for the given compile jobs.
+   */
+  private ClassFileLoader getClassFileLoader(CompileJobDescription[] descriptions) {
+    if (descriptions.length == 1) {
+      return descriptions[0].getClassFileLoader();
+    }
+    ClassFileLoader[] classFileLoaders = new ClassFileLoader[descriptions.length];
+    for (int i = 0; i < descriptions.length; i++) {
+      classFileLoaders[i] = descriptions[i].getClassFileLoader();
+    }
+    return ClassFileLoaderFactory.createCompoundClassFileLoader(classFileLoaders);
   }
 
   private void setupAnnotationProcessor(Compiler compiler) {
@@ -127,4 +240,4 @@ public final class EcjAdapterImpl implements EcjAdapter {
     // return the result
     return result.toArray(new ICompilationUnit[result.size()]);
   }
-}
\ No newline at end of file
+}
\ No newline at end of file
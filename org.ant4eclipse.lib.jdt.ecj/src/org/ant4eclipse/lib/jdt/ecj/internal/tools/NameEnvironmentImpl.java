@@ -24,6 +24,11 @@ import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
  * <p>
  * Adapter class to utilize class file loaders in the eclipse java compiler.
  * </p>
+ * <p>
+ * The compiler passes type and package names as <code>char[][]</code>. To avoid creating strings for each request,
+ * the results of package lookups and the types that couldn't be found are cached (keyed by the character arrays) for
+ * the lifetime of this name environment, which is a single compile.
+ * </p>
  * 
  * @author Gerd Wuetherich (gerd@gerd-wuetherich.de)
  * @author Nils Hartmann (nils@nilshartmann.net)
@@ -31,18 +36,39 @@ import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
 public class NameEnvironmentImpl implements INameEnvironment {
 
   // the debug flag
-  private static boolean  DEBUG_ALL            = false;
+  private static boolean                     DEBUG_ALL            = false;
 
   // the debug flag
-  private static boolean  DEBUG_TYPE_NOT_FOUND = false;
+  private static boolean                     DEBUG_TYPE_NOT_FOUND = false;
 
   static {
     DEBUG_ALL = "true".equals(System.getProperty("ant4eclipse.debug.nameenv"));
     DEBUG_TYPE_NOT_FOUND = "true".equals(System.getProperty("ant4eclipse.debug.nameenv.missingtypes"));
   }
 
+  /** the empty package name */
+  private static final char[][]              NO_SEGMENTS          = new char[0][];
+
   /** used to find binary type as requested by the compiler */
-  private ClassFileLoader _classFileLoader;
+  private ClassFileLoader                    _classFileLoader;
+
+  /** the results of the package lookups */
+  private QualifiedNameTable<Boolean>        _packages;
+
+  /** the types that could not be found */
+  private QualifiedNameTable<Boolean>        _missingTypes;
+
+  /** the number of type lookups */
+  private int                                _lookups;
+
+  /** the number of type lookups that could be answered */
+  private int                                _hits;
+
+  /** the number of type lookups that could not be answered */
+  private int                                _misses;
+
+  /** the number of misses that have been answered by the cache of missing types */
+  private int                                _cachedMisses;
 
   /**
    * <p>
@@ -55,6 +81,8 @@ public class NameEnvironmentImpl implements INameEnvironment {
   public NameEnvironmentImpl(ClassFileLoader classFileLoader) {
     Assure.notNull("classFileLoader", classFileLoader);
     this._classFileLoader = classFileLoader;
+    this._packages = new QualifiedNameTable<Boolean>();
+    this._missingTypes = new QualifiedNameTable<Boolean>();
 
     if (DEBUG_ALL || DEBUG_TYPE_NOT_FOUND) {
       A4ELogging.info("NameEnvironment tracing enabled.");
@@ -66,43 +94,62 @@ public class NameEnvironmentImpl implements INameEnvironment {
    * @see org.eclipse.jdt.internal.compiler.env.INameEnvironment#cleanup()
    */
   public void cleanup() {
-    // nothing to do here...
+    if (A4ELogging.isDebuggingEnabled()) {
+      A4ELogging.debug("NameEnvironment: %d type lookups, %d hits, %d misses (%d answered from the cache).", Integer
+          .valueOf(this._lookups), Integer.valueOf(this._hits), Integer.valueOf(this._misses), Integer
+          .valueOf(this._cachedMisses));
+    }
   }
 
   /**
-   * {@inheritDoc}
+   * <p>
+   * Returns the number of type lookups.
+   * </p>
+   * 
+   * @return the number of type lookups.
    */
-  public NameEnvironmentAnswer findType(char[][] compoundTypeName) {
+  public int getLookupCount() {
+    return this._lookups;
+  }
 
-    // convert char array to string(buffer)
-    StringBuffer buffer = new StringBuffer();
-    for (int i = 0; i < compoundTypeName.length; i++) {
-      buffer.append(new String(compoundTypeName[i]));
-      if (i < compoundTypeName.length - 1) {
-        buffer.append(".");
-      }
-    }
+  /**
+   * <p>
+   * Returns the number of type lookups that could be answered.
+   * </p>
+   * 
+   * @return the number of type lookups that could be answered.
+   */
+  public int getHitCount() {
+    return this._hits;
+  }
 
-    // find class
-    NameEnvironmentAnswer answer = findClass(buffer.toString());
-    return answer;
+  /**
+   * <p>
+   * Returns the number of type lookups that could not be answered.
+   * </p>
+   * 
+   * @return the number of type lookups that could not be answered.
+   */
+  public int getMissCount() {
+    return this._misses;
+  }
 
+  /**
+   * {@inheritDoc}
+   */
+  public NameEnvironmentAnswer findType(char[][] compoundTypeName) {
+    int last = compoundTypeName.length - 1;
+    return findType(compoundTypeName, last, compoundTypeName[last]);
   }
 
   /**
    * {@inheritDoc}
    */
   public NameEnvironmentAnswer findType(char[] typeName, char[][] packageName) {
-
-    StringBuffer result = new StringBuffer();
-    if (packageName != null) {
-      for (char[] element : packageName) {
-        result.append(new String(element)).append(".");
-      }
+    if (packageName == null) {
+      return findType(NO_SEGMENTS, 0, typeName);
     }
-    result.append(new String(typeName));
-
-    return findClass(result.toString());
+    return findType(packageName, packageName.length, typeName);
   }
 
   /**
@@ -117,20 +164,14 @@ public class NameEnvironmentImpl implements INameEnvironment {
    */
   public boolean isPackage(char[][] parentPackageName, char[] packageName) {
 
-    String qualifiedPackageName = toJavaName(parentPackageName);
-    if (qualifiedPackageName.length() > 0) {
-      qualifiedPackageName += "." + new String(packageName);
-    } else {
-      qualifiedPackageName = new String(packageName);
-    }
-
-    boolean packageFound = this._classFileLoader.hasPackage(qualifiedPackageName);
+    char[][] segments = parentPackageName != null ? parentPackageName : NO_SEGMENTS;
+    boolean packageFound = hasPackage(segments, segments.length, packageName);
 
     if (DEBUG_ALL) {
       if (packageFound) {
-        A4ELogging.info("Package '%s' found...", qualifiedPackageName);
+        A4ELogging.info("Package '%s' found...", toJavaName(segments, segments.length, packageName));
       } else {
-        A4ELogging.info("Package '%s' not found...", qualifiedPackageName);
+        A4ELogging.info("Package '%s' not found...", toJavaName(segments, segments.length, packageName));
       }
     }
 
@@ -197,24 +238,301 @@ public class NameEnvironmentImpl implements INameEnvironment {
 
   /**
    * <p>
-   * Converts the given char array to a java name (e.g. "net.sf.ant4eclipse").
+   * Returns a {@link NameEnvironmentAnswer} for the given type. Types that are known to be missing and types in
+   * unknown packages are answered without creating any strings.
+   * </p>
+   * 
+   * @param packageName
+   *          the segments of the package name
+   * @param segments
+   *          the number of segments that belong to the package name
+   * @param typeName
+   *          the simple type name
+   * @return a {@link NameEnvironmentAnswer} or <code>null</code>.
+   */
+  private NameEnvironmentAnswer findType(char[][] packageName, int segments, char[] typeName) {
+    this._lookups++;
+
+    // the type is known to be missing
+    if (this._missingTypes.get(packageName, segments, typeName) != null) {
+      this._misses++;
+      this._cachedMisses++;
+      return null;
+    }
+
+    // a type can only be found if its package is known
+    NameEnvironmentAnswer answer = null;
+    if (hasPackage(packageName, segments, null)) {
+      answer = findClass(toJavaName(packageName, segments, typeName));
+    } else if (DEBUG_TYPE_NOT_FOUND) {
+      A4ELogging.info("Could not load class '%s'.", toJavaName(packageName, segments, typeName));
+    }
+
+    if (answer == null) {
+      this._misses++;
+      this._missingTypes.put(packageName, segments, typeName, Boolean.TRUE);
+    } else {
+      this._hits++;
+    }
+    return answer;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the class file loader knows the given package. The result is cached.
+   * </p>
+   * 
+   * @param packageName
+   *          the segments of the package name
+   * @param segments
+   *          the number of segments to use
+   * @param last
+   *          an additional last segment, maybe <code>null</code>
+   * @return <code>true</code> if the class file loader knows the given package.
+   */
+  private boolean hasPackage(char[][] packageName, int segments, char[] last) {
+    Boolean result = this._packages.get(packageName, segments, last);
+    if (result == null) {
+      result = Boolean.valueOf(this._classFileLoader.hasPackage(toJavaName(packageName, segments, last)));
+      this._packages.put(packageName, segments, last, result);
+    }
+    return result.booleanValue();
+  }
+
+  /**
+   * <p>
+   * Converts the given char arrays to a java name (e.g. "net.sf.ant4eclipse").
    * </p>
    * 
    * @param array
-   *          the array to convert.
-   * @return the
+   *          the segments of the name
+   * @param segments
+   *          the number of segments to use
+   * @param last
+   *          an additional last segment, maybe <code>null</code>
+   * @return the java name
    */
-  private static String toJavaName(char[][] array) {
-    StringBuffer result = new StringBuffer();
-
-    if (array != null) {
-      for (int i = 0; i < array.length; i++) {
-        result.append(new String(array[i]));
-        if (i < array.length - 1) {
-          result.append(".");
+  private static String toJavaName(char[][] array, int segments, char[] last) {
+    return new String(QualifiedNameTable.flatten(array, segments, last));
+  }
+
+  /**
+   * <p>
+   * Open addressing hash table with qualified names as keys. A name is given as an array of segments (like the compiler
+   * passes them) and is compared without converting it to a string.
+   * </p>
+   */
+  private static final class QualifiedNameTable<V> {
+
+    /** the keys (flattened names with '.' as separator) */
+    private char[][] _keys;
+
+    /** the values */
+    private Object[] _values;
+
+    /** the number of entries */
+    private int      _size;
+
+    /**
+     * <p>
+     * Creates a new instance of type {@link QualifiedNameTable}.
+     * </p>
+     */
+    QualifiedNameTable() {
+      this._keys = new char[64][];
+      this._values = new Object[64];
+    }
+
+    /**
+     * <p>
+     * Returns the value for the given name or <code>null</code>.
+     * </p>
+     */
+    @SuppressWarnings("unchecked")
+    V get(char[][] segments, int count, char[] last) {
+      int mask = this._keys.length - 1;
+      for (int slot = hash(segments, count, last) & mask;; slot = (slot + 1) & mask) {
+        char[] key = this._keys[slot];
+        if (key == null) {
+          return null;
+        }
+        if (matches(key, segments, count, last)) {
+          return (V) this._values[slot];
+        }
+      }
+    }
+
+    /**
+     * <p>
+     * Stores the value for the given name.
+     * </p>
+     */
+    void put(char[][] segments, int count, char[] last, V value) {
+      if ((this._size + 1) * 2 > this._keys.length) {
+        grow();
+      }
+      int mask = this._keys.length - 1;
+      for (int slot = hash(segments, count, last) & mask;; slot = (slot + 1) & mask) {
+        char[] key = this._keys[slot];
+        if (key == null) {
+          this._keys[slot] = flatten(segments, count, last);
+          this._values[slot] = value;
+          this._size++;
+          return;
+        }
+        if (matches(key, segments, count, last)) {
+          this._values[slot] = value;
+          return;
+        }
+      }
+    }
+
+    /**
+     * <p>
+     * Doubles the capacity of the table.
+     * </p>
+     */
+    private void grow() {
+      char[][] keys = this._keys;
+      Object[] values = this._values;
+      this._keys = new char[keys.length * 2][];
+      this._values = new Object[keys.length * 2];
+      int mask = this._keys.length - 1;
+      for (int i = 0; i < keys.length; i++) {
+        if (keys[i] != null) {
+          int slot = hash(keys[i]) & mask;
+          while (this._keys[slot] != null) {
+            slot = (slot + 1) & mask;
+          }
+          this._keys[slot] = keys[i];
+          this._values[slot] = values[i];
+        }
+      }
+    }
+
+    /**
+     * <p>
+     * Returns the given name as a single char array with '.' as separator.
+     * </p>
+     */
+    static char[] flatten(char[][] segments, int count, char[] last) {
+      int length = count > 0 ? count - 1 : 0;
+      for (int i = 0; i < count; i++) {
+        length += segments[i].length;
+      }
+      if (last != null) {
+        length += count > 0 ? last.length + 1 : last.length;
+      }
+      char[] result = new char[length];
+      int position = 0;
+      for (int i = 0; i < count; i++) {
+        if (i > 0) {
+          result[position++] = '.';
+        }
+        System.arraycopy(segments[i], 0, result, position, segments[i].length);
+        position += segments[i].length;
+      }
+      if (last != null) {
+        if (count > 0) {
+          result[position++] = '.';
+        }
+        System.arraycopy(last, 0, result, position, last.length);
+      }
+      return result;
+    }
+
+    /**
+     * <p>
+     * Computes the hash of the given name. The result equals the hash of the flattened name.
+     * </p>
+     */
+    private static int hash(char[][] segments, int count, char[] last) {
+      int result = 0;
+      boolean first = true;
+      for (int i = 0; i < count; i++) {
+        if (!first) {
+          result = 31 * result + '.';
+        }
+        first = false;
+        for (char c : segments[i]) {
+          result = 31 * result + c;
+        }
+      }
+      if (last != null) {
+        if (!first) {
+          result = 31 * result + '.';
+        }
+        for (char c : last) {
+          result = 31 * result + c;
+        }
+      }
+      return mix(result);
+    }
+
+    /**
+     * <p>
+     * Computes the hash of the given flattened name.
+     * </p>
+     */
+    private static int hash(char[] name) {
+      int result = 0;
+      for (char c : name) {
+        result = 31 * result + c;
+      }
+      return mix(result);
+    }
+
+    /**
+     * <p>
+     * Spreads the bits of the given hash code, so the low bits can be used to address the table.
+     * </p>
+     */
+    private static int mix(int hash) {
+      hash ^= (hash >>> 20) ^ (hash >>> 12);
+      return hash ^ (hash >>> 7) ^ (hash >>> 4);
+    }
+
+    /**
+     * <p>
+     * Compares the given flattened name with the given segments.
+     * </p>
+     */
+    private static boolean matches(char[] key, char[][] segments, int count, char[] last) {
+      int position = 0;
+      for (int i = 0; i < count; i++) {
+        position = matches(key, position, i > 0, segments[i]);
+        if (position == -1) {
+          return false;
+        }
+      }
+      if (last != null) {
+        position = matches(key, position, count > 0, last);
+      }
+      return position == key.length;
+    }
+
+    /**
+     * <p>
+     * Compares a single segment (optionally preceded by a '.') at the given position of a flattened name. Returns the
+     * position behind the segment or -1 if the segment doesn't match.
+     * </p>
+     */
+    private static int matches(char[] key, int position, boolean separator, char[] segment) {
+      if (separator) {
+        if ((position >= key.length) || (key[position] != '.')) {
+          return -1;
+        }
+        position++;
+      }
+      if (position + segment.length > key.length) {
+        return -1;
+      }
+      for (char c : segment) {
+        if (key[position++] != c) {
+          return -1;
         }
       }
+      return position;
     }
-    return result.toString();
   }
 }
@@ -0,0 +1,539 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.incremental;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileConstants;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
+import org.eclipse.jdt.internal.compiler.env.IBinaryAnnotation;
+import org.eclipse.jdt.internal.compiler.env.IBinaryElementValuePair;
+import org.eclipse.jdt.internal.compiler.env.IBinaryField;
+import org.eclipse.jdt.internal.compiler.env.IBinaryMethod;
+import org.eclipse.jdt.internal.compiler.env.IBinaryNestedType;
+import org.eclipse.jdt.internal.compiler.env.IBinaryTypeAnnotation;
+import org.eclipse.jdt.internal.compiler.impl.Constant;
+
+/**
+ * <p>
+ * The {@link AbiFingerprint} calculates a hash of the API (the application binary interface) of a class path entry.
+ * Only the parts of the class files that are visible to a compiler are considered: the signatures of types, fields and
+ * methods that are not private, constant values and annotations. Method bodies, debug information and private members
+ * don't contribute, so changing an implementation doesn't change the fingerprint.
+ * </p>
+ * <p>
+ * For a folder the hashes of the single class files are recorded together with size and modification time of each
+ * class file, so only class files that changed since the fingerprint has been recorded need to be parsed again. The
+ * records of all class path entries (keyed by the path of the entry) are stored in a single file that belongs to the
+ * compilation using them (f.e. <code>bin.a4e-abi</code> next to the state of the output folder <code>bin</code>).
+ * Nothing is written into or next to the class path entries themselves, as they may belong to other projects or may be
+ * read-only. For an archive the hash of its content is used as the fingerprint. It is recorded together with size and
+ * modification time of the archive, so the archive is only read again if it has been changed.
+ * </p>
+ * <p>
+ * An {@link AbiFingerprint} may be used by several threads concurrently.
+ * </p>
+ */
+public class AbiFingerprint {
+
+  /** the suffix of a fingerprint file */
+  public static final String               ABI_FILE_SUFFIX = ".a4e-abi";
+
+  /** the magic number of a fingerprint file */
+  private static final int                 MAGIC           = 0x41344541;
+
+  /** the version of the file format */
+  private static final int                 VERSION         = 2;
+
+  /** the access flags that don't belong to the API */
+  private static final int                 IGNORED_FLAGS   = ClassFileConstants.AccSuper
+                                                             | ClassFileConstants.AccSynchronized;
+
+  /** the file the records are stored in (maybe <code>null</code>) */
+  private File                             _file;
+
+  /** the records of the class path entries (key: path of the class path entry) */
+  private Map<String, Map<String, Record>> _entries;
+
+  /** indicates if the records have been changed since they have been loaded */
+  private boolean                          _changed;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link AbiFingerprint}. The records stored in the given file are loaded.
+   * </p>
+   *
+   * @param file
+   *          the file the records are stored in or <code>null</code> if the records shouldn't be stored.
+   */
+  public AbiFingerprint(File file) {
+    this._file = file != null ? file.getAbsoluteFile() : null;
+    this._entries = new TreeMap<String, Map<String, Record>>();
+    if (this._file != null) {
+      load();
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the fingerprint of the API of the given class path entry (a folder or an archive). The records of the entry
+   * are updated, class files and archives that didn't change since the last call are not read again.
+   * </p>
+   *
+   * @param classpathEntry
+   *          the class path entry
+   * @return the fingerprint. Not <code>null</code>.
+   */
+  public synchronized String getFingerprint(File classpathEntry) {
+    Assure.notNull("classpathEntry", classpathEntry);
+    if (!classpathEntry.exists()) {
+      return "0:0";
+    }
+
+    String key = classpathEntry.getAbsolutePath();
+    Map<String, Record> previous = this._entries.get(key);
+    Map<String, Record> records = new TreeMap<String, Record>();
+    if (classpathEntry.isDirectory()) {
+      collect(classpathEntry, "", previous != null ? previous : Collections.<String, Record> emptyMap(), records);
+    } else {
+      Record record = previous != null ? previous.get("") : null;
+      if ((record == null) || !record.matches(classpathEntry)) {
+        record = new Record("", classpathEntry.length(), classpathEntry.lastModified(), getContentHash(classpathEntry));
+      }
+      records.put("", record);
+    }
+    if (!records.equals(previous)) {
+      this._entries.put(key, records);
+      this._changed = true;
+    }
+
+    StringBuffer buffer = new StringBuffer();
+    for (Record record : records.values()) {
+      if (record._hash.length() > 0) {
+        buffer.append(record._name).append('=').append(record._hash).append('\n');
+      }
+    }
+    return digest(buffer.toString());
+  }
+
+  /**
+   * <p>
+   * Stores the records (if they have been changed). The records of class path entries that no longer exist are
+   * dropped. Failures are ignored as the records can be recalculated.
+   * </p>
+   */
+  public synchronized void save() {
+    for (Iterator<String> iterator = this._entries.keySet().iterator(); iterator.hasNext();) {
+      if (!new File(iterator.next()).exists()) {
+        iterator.remove();
+        this._changed = true;
+      }
+    }
+    if ((this._file == null) || !this._changed) {
+      return;
+    }
+    File tempFile = null;
+    try {
+      ByteArrayOutputStream byteout = new ByteArrayOutputStream();
+      DataOutputStream output = new DataOutputStream(byteout);
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeInt(this._entries.size());
+      for (Map.Entry<String, Map<String, Record>> entry : this._entries.entrySet()) {
+        output.writeUTF(entry.getKey());
+        output.writeInt(entry.getValue().size());
+        for (Record record : entry.getValue().values()) {
+          output.writeUTF(record._name);
+          output.writeLong(record._length);
+          output.writeLong(record._lastModified);
+          output.writeUTF(record._hash);
+        }
+      }
+      output.flush();
+      Utilities.mkdirs(this._file.getParentFile());
+      tempFile = File.createTempFile(this._file.getName(), ".tmp", this._file.getParentFile());
+      Utilities.writeFile(tempFile, byteout.toByteArray());
+      Utilities.delete(this._file);
+      if (tempFile.renameTo(this._file)) {
+        this._changed = false;
+      }
+    } catch (Exception ex) {
+      A4ELogging.debug("Could not write API fingerprints '%s': %s", this._file, ex.getMessage());
+    } finally {
+      if (tempFile != null) {
+        tempFile.delete();
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Calculates the API hash of a single class file. Returns an empty string for class files that don't belong to the
+   * API at all (anonymous and local types).
+   * </p>
+   *
+   * @param content
+   *          the content of the class file
+   * @param name
+   *          the name of the class file
+   * @return the API hash. Not <code>null</code>.
+   * @throws Exception
+   *           if the class file can't be parsed
+   */
+  public static String getClassHash(byte[] content, String name) throws Exception {
+    ClassFileReader reader = new ClassFileReader(content, name.toCharArray(), true);
+    if (reader.isAnonymous() || reader.isLocal() || (reader.isMember() && !isVisible(reader.getModifiers()))) {
+      return "";
+    }
+
+    StringBuffer buffer = new StringBuffer();
+    buffer.append("type ").append(reader.getModifiers() & ~IGNORED_FLAGS).append(' ').append(reader.getName());
+    buffer.append(' ').append(toString(reader.getSuperclassName()));
+    buffer.append(' ').append(toString(reader.getGenericSignature()));
+    append(buffer, reader.getInterfaceNames());
+    buffer.append('\n');
+    appendAnnotations(buffer, reader.getAnnotations());
+    appendTypeAnnotations(buffer, reader.getTypeAnnotations());
+
+    List<String> members = new ArrayList<String>();
+    IBinaryNestedType[] memberTypes = reader.getMemberTypes();
+    if (memberTypes != null) {
+      for (IBinaryNestedType memberType : memberTypes) {
+        if (isVisible(memberType.getModifiers())) {
+          members.add("member " + memberType.getModifiers() + " " + new String(memberType.getName()));
+        }
+      }
+    }
+    IBinaryField[] fields = reader.getFields();
+    if (fields != null) {
+      for (IBinaryField field : fields) {
+        if (isVisible(field.getModifiers())) {
+          StringBuffer member = new StringBuffer();
+          member.append("field ").append(field.getModifiers()).append(' ').append(field.getName()).append(' ');
+          member.append(field.getTypeName()).append(' ').append(toString(field.getGenericSignature()));
+          Constant constant = field.getConstant();
+          if ((constant != null) && (constant != Constant.NotAConstant)) {
+            member.append(" = ").append(constant.toString());
+          }
+          member.append('\n');
+          appendAnnotations(member, field.getAnnotations());
+          appendTypeAnnotations(member, field.getTypeAnnotations());
+          members.add(member.toString());
+        }
+      }
+    }
+    IBinaryMethod[] methods = reader.getMethods();
+    if (methods != null) {
+      for (IBinaryMethod method : methods) {
+        if (isVisible(method.getModifiers()) && !method.isClinit()) {
+          StringBuffer member = new StringBuffer();
+          member.append("method ").append(method.getModifiers() & ~IGNORED_FLAGS).append(' ');
+          member.append(method.getSelector()).append(method.getMethodDescriptor()).append(' ');
+          member.append(toString(method.getGenericSignature()));
+          append(member, method.getExceptionTypeNames());
+          if (method.getDefaultValue() != null) {
+            member.append(" default ");
+            appendValue(member, method.getDefaultValue());
+          }
+          member.append('\n');
+          appendAnnotations(member, method.getAnnotations());
+          for (int i = 0; i < method.getAnnotatedParametersCount(); i++) {
+            member.append(" parameter ").append(i).append('\n');
+            appendAnnotations(member, method.getParameterAnnotations(i));
+          }
+          appendTypeAnnotations(member, method.getTypeAnnotations());
+          members.add(member.toString());
+        }
+      }
+    }
+
+    // the order of the members within the class file isn't relevant
+    Collections.sort(members);
+    for (String member : members) {
+      buffer.append(member);
+    }
+    return digest(buffer.toString());
+  }
+
+  /**
+   * <p>
+   * Returns the file the fingerprints of the class path of a compilation into the given output folder are recorded in
+   * (next to the state of the output folder).
+   * </p>
+   *
+   * @param outputFolder
+   *          the output folder of the compilation
+   * @return the fingerprint file.
+   */
+  public static File getAbiFile(File outputFolder) {
+    File absolute = outputFolder.getAbsoluteFile();
+    return new File(absolute.getParentFile(), absolute.getName() + ABI_FILE_SUFFIX);
+  }
+
+  /**
+   * <p>
+   * Collects the records for all class files within the given directory.
+   * </p>
+   */
+  private static void collect(File directory, String prefix, Map<String, Record> previous, Map<String, Record> records) {
+    String[] children = directory.list();
+    if (children == null) {
+      return;
+    }
+    for (String child : children) {
+      File file = new File(directory, child);
+      String name = prefix + child;
+      if (file.isDirectory()) {
+        collect(file, name + '/', previous, records);
+      } else if (child.endsWith(".class")) {
+        Record record = previous.get(name);
+        if ((record == null) || !record.matches(file)) {
+          record = new Record(name, file.length(), file.lastModified(), getClassHash(file, name));
+        }
+        records.put(name, record);
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Calculates the API hash of the given class file. If the class file can't be parsed the hash of its content is
+   * used, so the fingerprint will change whenever the class file changes.
+   * </p>
+   */
+  private static String getClassHash(File file, String name) {
+    byte[] content = Utilities.readFile(file);
+    try {
+      return getClassHash(content, name);
+    } catch (Exception ex) {
+      A4ELogging.debug("Could not parse class file '%s': %s", file, ex.getMessage());
+      return Utilities.digest(content);
+    }
+  }
+
+  /**
+   * <p>
+   * Calculates the hash of the content of the given archive. If the archive can't be read its size and modification
+   * time are used instead.
+   * </p>
+   */
+  private static String getContentHash(File archive) {
+    InputStream input = null;
+    try {
+      MessageDigest digest = MessageDigest.getInstance("MD5");
+      input = new FileInputStream(archive);
+      byte[] buffer = new byte[8192];
+      for (int read = input.read(buffer); read != -1; read = input.read(buffer)) {
+        digest.update(buffer, 0, read);
+      }
+      StringBuffer result = new StringBuffer();
+      for (byte b : digest.digest()) {
+        result.append(Character.forDigit((b >> 4) & 0x0F, 16));
+        result.append(Character.forDigit(b & 0x0F, 16));
+      }
+      return result.toString();
+    } catch (IOException ex) {
+      A4ELogging.debug("Could not read archive '%s': %s", archive, ex.getMessage());
+      return archive.length() + ":" + archive.lastModified();
+    } catch (NoSuchAlgorithmException ex) {
+      throw new RuntimeException(ex);
+    } finally {
+      Utilities.close((Closeable) input);
+    }
+  }
+
+  private static boolean isVisible(int modifiers) {
+    return ((modifiers & ClassFileConstants.AccPrivate) == 0) && ((modifiers & ClassFileConstants.AccSynthetic) == 0);
+  }
+
+  private static String toString(char[] value) {
+    return value == null ? "-" : new String(value);
+  }
+
+  private static void append(StringBuffer buffer, char[][] names) {
+    if (names != null) {
+      for (char[] name : names) {
+        buffer.append(' ').append(name);
+      }
+    }
+  }
+
+  private static void appendAnnotations(StringBuffer buffer, IBinaryAnnotation[] annotations) {
+    if (annotations == null) {
+      return;
+    }
+    List<String> rendered = new ArrayList<String>();
+    for (IBinaryAnnotation annotation : annotations) {
+      StringBuffer value = new StringBuffer(" @");
+      appendValue(value, annotation);
+      rendered.add(value.append('\n').toString());
+    }
+    Collections.sort(rendered);
+    for (String annotation : rendered) {
+      buffer.append(annotation);
+    }
+  }
+
+  private static void appendTypeAnnotations(StringBuffer buffer, IBinaryTypeAnnotation[] annotations) {
+    if (annotations == null) {
+      return;
+    }
+    for (IBinaryTypeAnnotation annotation : annotations) {
+      buffer.append(" type-annotation ").append(annotation.getTargetType()).append(' ');
+      buffer.append(Arrays.toString(annotation.getTypePath())).append(' ');
+      appendValue(buffer, annotation.getAnnotation());
+      buffer.append('\n');
+    }
+  }
+
+  /**
+   * <p>
+   * Appends an annotation value (a constant, a class or enum constant signature, an annotation or an array of these).
+   * </p>
+   */
+  private static void appendValue(StringBuffer buffer, Object value) {
+    if (value instanceof IBinaryAnnotation) {
+      IBinaryAnnotation annotation = (IBinaryAnnotation) value;
+      buffer.append(annotation.getTypeName()).append('(');
+      IBinaryElementValuePair[] pairs = annotation.getElementValuePairs();
+      if (pairs != null) {
+        for (IBinaryElementValuePair pair : pairs) {
+          buffer.append(pair.getName()).append('=');
+          appendValue(buffer, pair.getValue());
+          buffer.append(',');
+        }
+      }
+      buffer.append(')');
+    } else if (value instanceof Object[]) {
+      buffer.append('{');
+      for (Object element : (Object[]) value) {
+        appendValue(buffer, element);
+        buffer.append(',');
+      }
+      buffer.append('}');
+    } else {
+      buffer.append(value);
+    }
+  }
+
+  private static String digest(String content) {
+    try {
+      return Utilities.digest(content.getBytes("UTF-8"));
+    } catch (UnsupportedEncodingException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  /**
+   * <p>
+   * Loads the records from the file. Nothing is loaded if the file doesn't exist or can't be read.
+   * </p>
+   */
+  private void load() {
+    if (!this._file.isFile()) {
+      return;
+    }
+    try {
+      DataInputStream input = new DataInputStream(new ByteArrayInputStream(Utilities.readFile(this._file)));
+      if ((input.readInt() == MAGIC) && (input.readInt() == VERSION)) {
+        int entries = input.readInt();
+        for (int i = 0; i < entries; i++) {
+          String key = input.readUTF();
+          Map<String, Record> records = new TreeMap<String, Record>();
+          int count = input.readInt();
+          for (int j = 0; j < count; j++) {
+            Record record = new Record(input.readUTF(), input.readLong(), input.readLong(), input.readUTF());
+            records.put(record._name, record);
+          }
+          this._entries.put(key, records);
+        }
+      }
+    } catch (Exception ex) {
+      A4ELogging.debug("Could not read API fingerprints '%s': %s", this._file, ex.getMessage());
+      this._entries.clear();
+    }
+  }
+
+  /**
+   * <p>
+   * The API hash of a single class file (or the content hash of an archive) together with its size and modification
+   * time.
+   * </p>
+   */
+  private static class Record {
+
+    /** the name of the class file (relative to the folder, empty for an archive) */
+    private String _name;
+
+    /** the size of the file */
+    private long   _length;
+
+    /** the modification time of the file */
+    private long   _lastModified;
+
+    /** the API hash */
+    private String _hash;
+
+    private Record(String name, long length, long lastModified, String hash) {
+      this._name = name;
+      this._length = length;
+      this._lastModified = lastModified;
+      this._hash = hash;
+    }
+
+    private boolean matches(File file) {
+      return (this._length == file.length()) && (this._lastModified == file.lastModified());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object object) {
+      if (!(object instanceof Record)) {
+        return false;
+      }
+      Record other = (Record) object;
+      return this._name.equals(other._name) && (this._length == other._length)
+          && (this._lastModified == other._lastModified) && this._hash.equals(other._hash);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+      return this._name.hashCode() ^ this._hash.hashCode();
+    }
+  }
+}
@@ -0,0 +1,466 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.incremental;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.Utilities;
+
+/**
+ * <p>
+ * The {@link BuildState} records the outcome of the last compilation into an output folder: the fingerprint of the
+ * configuration that has been used, and for each source file its hash, the class files it produced and the names it
+ * refers to. The state is stored as a sibling of the output folder (f.e. <code>bin.a4e-state</code> for the output
+ * folder <code>bin</code>), so it doesn't end up in archives created from the output folder.
+ * </p>
+ */
+public class BuildState {
+
+  /** the suffix of a state file */
+  public static final String       STATE_FILE_SUFFIX = ".a4e-state";
+
+  /** the magic number of a state file */
+  private static final int         MAGIC             = 0x41344553;
+
+  /** the version of the file format */
+  private static final int         VERSION           = 1;
+
+  /** the output folder */
+  private File                     _outputFolder;
+
+  /** the fingerprint of the configuration used for the compilation */
+  private String                   _configuration;
+
+  /** maps the absolute path of a source file to its entry */
+  private Map<String, SourceEntry> _entries;
+
+  /**
+   * <p>
+   * Creates a new (empty) instance of type {@link BuildState}.
+   * </p>
+   *
+   * @param outputFolder
+   *          the output folder
+   * @param configuration
+   *          the fingerprint of the configuration used for the compilation
+   */
+  public BuildState(File outputFolder, String configuration) {
+    Assure.notNull("outputFolder", outputFolder);
+    Assure.notNull("configuration", configuration);
+
+    this._outputFolder = outputFolder;
+    this._configuration = configuration;
+    this._entries = new HashMap<String, SourceEntry>();
+  }
+
+  /**
+   * <p>
+   * Returns the output folder.
+   * </p>
+   *
+   * @return the output folder.
+   */
+  public File getOutputFolder() {
+    return this._outputFolder;
+  }
+
+  /**
+   * <p>
+   * Returns the fingerprint of the configuration used for the compilation.
+   * </p>
+   *
+   * @return the fingerprint of the configuration.
+   */
+  public String getConfiguration() {
+    return this._configuration;
+  }
+
+  /**
+   * <p>
+   * Returns the entry for the given source file or <code>null</code> if there's none.
+   * </p>
+   *
+   * @param sourcePath
+   *          the absolute path of the source file
+   * @return the entry or <code>null</code>.
+   */
+  public SourceEntry getEntry(String sourcePath) {
+    return this._entries.get(sourcePath);
+  }
+
+  /**
+   * <p>
+   * Adds (or replaces) the given entry.
+   * </p>
+   *
+   * @param entry
+   *          the entry
+   */
+  public void putEntry(SourceEntry entry) {
+    Assure.notNull("entry", entry);
+    this._entries.put(entry.getSourcePath(), entry);
+  }
+
+  /**
+   * <p>
+   * Removes the entry for the given source file.
+   * </p>
+   *
+   * @param sourcePath
+   *          the absolute path of the source file
+   * @return the removed entry or <code>null</code>.
+   */
+  public SourceEntry removeEntry(String sourcePath) {
+    return this._entries.remove(sourcePath);
+  }
+
+  /**
+   * <p>
+   * Returns all entries of this state.
+   * </p>
+   *
+   * @return all entries of this state.
+   */
+  public Collection<SourceEntry> getEntries() {
+    return Collections.unmodifiableCollection(this._entries.values());
+  }
+
+  /**
+   * <p>
+   * Returns the file the state of the given output folder is stored in.
+   * </p>
+   *
+   * @param outputFolder
+   *          the output folder
+   * @return the state file.
+   */
+  public static File getStateFile(File outputFolder) {
+    File absolute = outputFolder.getAbsoluteFile();
+    return new File(absolute.getParentFile(), absolute.getName() + STATE_FILE_SUFFIX);
+  }
+
+  /**
+   * <p>
+   * Loads the state of the given output folder. Returns <code>null</code> if there's no state or if it can't be read
+   * (f.e. because it has been written by a different version).
+   * </p>
+   *
+   * @param outputFolder
+   *          the output folder
+   * @return the state or <code>null</code>.
+   */
+  public static BuildState load(File outputFolder) {
+    File stateFile = getStateFile(outputFolder);
+    if (!stateFile.isFile()) {
+      return null;
+    }
+    try {
+      DataInputStream input = new DataInputStream(new ByteArrayInputStream(Utilities.readFile(stateFile)));
+      if ((input.readInt() != MAGIC) || (input.readInt() != VERSION)) {
+        return null;
+      }
+      BuildState result = new BuildState(outputFolder, input.readUTF());
+      int count = input.readInt();
+      for (int i = 0; i < count; i++) {
+        result.putEntry(SourceEntry.read(input));
+      }
+      return result;
+    } catch (Exception ex) {
+      A4ELogging.warn("Could not read build state '%s': %s", stateFile, ex.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * <p>
+   * Stores this state. The state is written to a temporary file first, so an interrupted build doesn't leave a damaged
+   * state behind.
+   * </p>
+   */
+  public void save() {
+    File stateFile = getStateFile(this._outputFolder);
+    try {
+      ByteArrayOutputStream byteout = new ByteArrayOutputStream();
+      DataOutputStream output = new DataOutputStream(byteout);
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeUTF(this._configuration);
+      output.writeInt(this._entries.size());
+      for (SourceEntry entry : this._entries.values()) {
+        entry.write(output);
+      }
+      output.flush();
+      File tempFile = new File(stateFile.getParentFile(), stateFile.getName() + ".tmp");
+      Utilities.writeFile(tempFile, byteout.toByteArray());
+      Utilities.delete(stateFile);
+      if (!tempFile.renameTo(stateFile)) {
+        Utilities.delete(tempFile);
+      }
+    } catch (Exception ex) {
+      A4ELogging.warn("Could not write build state '%s': %s", stateFile, ex.getMessage());
+    }
+  }
+
+  /**
+   * <p>
+   * The recorded state of a single source file.
+   * </p>
+   */
+  public static class SourceEntry {
+
+    /** the absolute path of the source file */
+    private String              _sourcePath;
+
+    /** the size of the source file */
+    private long                _length;
+
+    /** the modification time of the source file */
+    private long                _lastModified;
+
+    /** the hash of the source file */
+    private String              _hash;
+
+    /** maps the names of the produced class files to the hash of their content */
+    private Map<String, String> _classFiles;
+
+    /** the qualified names the source file refers to */
+    private Set<String>         _qualifiedReferences;
+
+    /** the simple names the source file refers to */
+    private Set<String>         _simpleNameReferences;
+
+    /**
+     * <p>
+     * Creates a new instance of type {@link SourceEntry}.
+     * </p>
+     *
+     * @param sourcePath
+     *          the absolute path of the source file
+     * @param length
+     *          the size of the source file
+     * @param lastModified
+     *          the modification time of the source file
+     * @param hash
+     *          the hash of the source file
+     * @param classFiles
+     *          maps the names of the produced class files to the hash of their content
+     * @param qualifiedReferences
+     *          the qualified names the source file refers to
+     * @param simpleNameReferences
+     *          the simple names the source file refers to
+     */
+    public SourceEntry(String sourcePath, long length, long lastModified, String hash, Map<String, String> classFiles,
+        String[] qualifiedReferences, String[] simpleNameReferences) {
+      Assure.nonEmpty("sourcePath", sourcePath);
+      Assure.notNull("hash", hash);
+      Assure.notNull("classFiles", classFiles);
+
+      this._sourcePath = sourcePath;
+      this._length = length;
+      this._lastModified = lastModified;
+      this._hash = hash;
+      this._classFiles = classFiles;
+      this._qualifiedReferences = toSet(qualifiedReferences);
+      this._simpleNameReferences = toSet(simpleNameReferences);
+    }
+
+    /**
+     * <p>
+     * Returns the absolute path of the source file.
+     * </p>
+     *
+     * @return the absolute path of the source file.
+     */
+    public String getSourcePath() {
+      return this._sourcePath;
+    }
+
+    /**
+     * <p>
+     * Returns the hash of the source file.
+     * </p>
+     *
+     * @return the hash of the source file.
+     */
+    public String getHash() {
+      return this._hash;
+    }
+
+    /**
+     * <p>
+     * Returns a map with the names of the produced class files as keys and the hash of their content as values.
+     * </p>
+     *
+     * @return the produced class files.
+     */
+    public Map<String, String> getClassFiles() {
+      return this._classFiles;
+    }
+
+    /**
+     * <p>
+     * Returns <code>true</code> if size and modification time of the given file match the recorded ones.
+     * </p>
+     *
+     * @param sourceFile
+     *          the source file
+     * @return <code>true</code> if size and modification time match.
+     */
+    public boolean hasSameTimestamp(File sourceFile) {
+      return (this._length == sourceFile.length()) && (this._lastModified == sourceFile.lastModified());
+    }
+
+    /**
+     * <p>
+     * Updates size and modification time after the content of the source file has been found to be unchanged.
+     * </p>
+     *
+     * @param sourceFile
+     *          the source file
+     */
+    public void updateTimestamp(File sourceFile) {
+      this._length = sourceFile.length();
+      this._lastModified = sourceFile.lastModified();
+    }
+
+    /**
+     * <p>
+     * Returns <code>true</code> if the source file refers to the type with the given simple name within the given
+     * package. Like the Eclipse builder this check is based on names only, so it may report references that don't
+     * exist but it doesn't miss any. The compiler records the qualified names of referenced types (f.e.
+     * <code>p.C</code>) as well as the names of referenced packages, so both are checked.
+     * </p>
+     *
+     * @param packageName
+     *          the dot separated package name (empty for the default package)
+     * @param simpleName
+     *          the simple name of the (top level) type
+     * @return <code>true</code> if the source file refers to the type.
+     */
+    public boolean references(String packageName, String simpleName) {
+      if (!this._simpleNameReferences.contains(simpleName)) {
+        return false;
+      }
+      if ((packageName.length() == 0) || this._qualifiedReferences.contains(packageName)) {
+        return true;
+      }
+      return this._qualifiedReferences.contains(packageName + "." + simpleName);
+    }
+
+    /**
+     * <p>
+     * Returns the simple names the source file refers to.
+     * </p>
+     *
+     * @return the simple names the source file refers to.
+     */
+    public Set<String> getSimpleNameReferences() {
+      return this._simpleNameReferences;
+    }
+
+    /**
+     * <p>
+     * Returns the qualified names the source file refers to.
+     * </p>
+     *
+     * @return the qualified names the source file refers to.
+     */
+    public Set<String> getQualifiedReferences() {
+      return this._qualifiedReferences;
+    }
+
+    /**
+     * <p>
+     * Writes this entry.
+     * </p>
+     *
+     * @param output
+     *          the output stream
+     * @throws IOException
+     */
+    private void write(DataOutputStream output) throws IOException {
+      output.writeUTF(this._sourcePath);
+      output.writeLong(this._length);
+      output.writeLong(this._lastModified);
+      output.writeUTF(this._hash);
+      output.writeInt(this._classFiles.size());
+      for (Map.Entry<String, String> classFile : this._classFiles.entrySet()) {
+        output.writeUTF(classFile.getKey());
+        output.writeUTF(classFile.getValue());
+      }
+      writeStrings(output, this._qualifiedReferences);
+      writeStrings(output, this._simpleNameReferences);
+    }
+
+    /**
+     * <p>
+     * Reads an entry.
+     * </p>
+     *
+     * @param input
+     *          the input stream
+     * @return the entry
+     * @throws IOException
+     */
+    private static SourceEntry read(DataInputStream input) throws IOException {
+      String sourcePath = input.readUTF();
+      long length = input.readLong();
+      long lastModified = input.readLong();
+      String hash = input.readUTF();
+      int count = input.readInt();
+      Map<String, String> classFiles = new HashMap<String, String>();
+      for (int i = 0; i < count; i++) {
+        classFiles.put(input.readUTF(), input.readUTF());
+      }
+      String[] qualifiedReferences = readStrings(input);
+      String[] simpleNameReferences = readStrings(input);
+      return new SourceEntry(sourcePath, length, lastModified, hash, classFiles, qualifiedReferences,
+          simpleNameReferences);
+    }
+
+    private static Set<String> toSet(String[] values) {
+      Set<String> result = new HashSet<String>();
+      if (values != null) {
+        Collections.addAll(result, values);
+      }
+      return result;
+    }
+
+    private static void writeStrings(DataOutputStream output, Set<String> values) throws IOException {
+      output.writeInt(values.size());
+      for (String value : values) {
+        output.writeUTF(value);
+      }
+    }
+
+    private static String[] readStrings(DataInputStream input) throws IOException {
+      String[] result = new String[input.readInt()];
+      for (int i = 0; i < result.length; i++) {
+        result[i] = input.readUTF();
+      }
+      return result;
+    }
+  }
+}
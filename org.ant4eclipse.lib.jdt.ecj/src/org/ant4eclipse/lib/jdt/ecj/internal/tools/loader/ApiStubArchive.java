@@ -0,0 +1,317 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.jdt.ecj.EcjExceptionCodes;
+import org.ant4eclipse.lib.jdt.ecj.JarOutput;
+
+/**
+ * <p>
+ * Creates API stub archives for boot class paths. An API stub archive contains all classes of the given libraries
+ * without method bodies. Resources are dropped. Access rules are not applied to the archive, they are enforced by the
+ * class file loader that reads it (so forbidden and discouraged classes are still reported as such).
+ * </p>
+ * <p>
+ * The archives are cached in the directory specified by the system property <code>ant4eclipse.apiStubDirectory</code>
+ * (which enables the stubs). The name of an archive is derived from the libraries (including their time stamps), so
+ * an archive is created once for each JRE. An archive is written to a temporary file first and renamed afterwards, so
+ * concurrent builds never see an incomplete archive.
+ * </p>
+ */
+public class ApiStubArchive {
+
+  /** the system property that specifies the directory for the API stub archives (and enables them) */
+  public static final String  STUB_DIRECTORY_PROPERTY = "ant4eclipse.apiStubDirectory";
+
+  /** the suffix of class files */
+  private static final String CLASS_SUFFIX            = ".class";
+
+  /** the magic number of class files */
+  private static final int    MAGIC                   = 0xCAFEBABE;
+
+  /** the name of the code attribute */
+  private static final String CODE_ATTRIBUTE          = "Code";
+
+  /** the constant pool tags that need special treatment */
+  private static final int    UTF8                    = 1;
+
+  private static final int    LONG                    = 5;
+
+  private static final int    DOUBLE                  = 6;
+
+  /** the size of the constant pool entries without the tag (indexed by the tag, -1 for unknown tags) */
+  private static final int[]  CONSTANT_SIZES          = new int[] { -1, -1, -1, 4, 4, 8, 8, 2, 2, 4, 4, 4, 4, -1,
+      -1, 3, 2, 4, 4, 2, 2                           };
+
+  /**
+   * <p>
+   * Returns the directory for the API stub archives or <code>null</code> if the stubs are not enabled.
+   * </p>
+   *
+   * @return the directory for the API stub archives or <code>null</code>.
+   */
+  public static File getStubDirectory() {
+    String directory = Utilities.cleanup(System.getProperty(STUB_DIRECTORY_PROPERTY));
+    return directory != null ? new File(directory).getAbsoluteFile() : null;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if an API stub archive can be created for the given libraries. Only (existing) jar files
+   * are supported.
+   * </p>
+   *
+   * @param libraries
+   *          the libraries.
+   * @return <code>true</code> if an API stub archive can be created for the given libraries.
+   */
+  public static boolean isSupported(File[] libraries) {
+    Assure.notNull("libraries", libraries);
+    for (File library : libraries) {
+      if (!library.isFile() || JrtImage.isModulesImage(library)) {
+        return false;
+      }
+    }
+    return libraries.length > 0;
+  }
+
+  /**
+   * <p>
+   * Returns the API stub archive for the given libraries. The archive is created if it doesn't exist within the given
+   * directory. If several threads or processes create the same archive at the same time, the first one that finishes
+   * wins.
+   * </p>
+   *
+   * @param libraries
+   *          the libraries (jar files).
+   * @param directory
+   *          the directory for the API stub archives.
+   * @return the API stub archive.
+   */
+  public static File getStubArchive(File[] libraries, File directory) {
+    Assure.notNull("libraries", libraries);
+    Assure.notNull("directory", directory);
+
+    // the key contains the libraries (including their time stamps)
+    StringBuffer key = new StringBuffer();
+    for (File library : libraries) {
+      key.append(library.getAbsolutePath()).append('|').append(library.length()).append('|').append(
+          library.lastModified()).append(File.pathSeparatorChar);
+    }
+
+    File result = new File(directory, "apistubs-" + Utilities.digest(getBytes(key.toString())) + ".jar");
+    if (!result.isFile()) {
+      long start = System.currentTimeMillis();
+      File tempFile = null;
+      try {
+        Utilities.mkdirs(directory);
+        tempFile = File.createTempFile("apistubs-", ".tmp", directory);
+        JarOutput jarOutput = new JarOutput(tempFile);
+        for (Map.Entry<String, byte[]> entry : createStubs(libraries).entrySet()) {
+          jarOutput.addEntry(entry.getKey() + CLASS_SUFFIX, entry.getValue());
+        }
+        jarOutput.write();
+        if (!tempFile.renameTo(result) && !result.isFile()) {
+          throw new Ant4EclipseException(EcjExceptionCodes.UNABLE_TO_CREATE_API_STUB_EXCEPTION, result);
+        }
+      } catch (IOException ex) {
+        throw new Ant4EclipseException(ex, EcjExceptionCodes.UNABLE_TO_CREATE_API_STUB_EXCEPTION, result);
+      } finally {
+        if (tempFile != null) {
+          tempFile.delete();
+        }
+      }
+      A4ELogging.info("Created API stub archive '%s' in %d ms.", result, Long.valueOf(System.currentTimeMillis()
+          - start));
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns the stubs of all classes.
+   * </p>
+   *
+   * @return the stubs (key: class file name without the '.class' suffix).
+   */
+  private static Map<String, byte[]> createStubs(File[] libraries) {
+
+    // strip all classes (the first library that contains a class wins)
+    Map<String, byte[]> result = new HashMap<String, byte[]>();
+    for (File library : libraries) {
+      ZipFile zipFile = null;
+      try {
+        zipFile = new ZipFile(library);
+        Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements()) {
+          ZipEntry entry = entries.nextElement();
+          String name = entry.getName();
+          if (entry.isDirectory() || !name.endsWith(CLASS_SUFFIX)) {
+            continue;
+          }
+          name = name.substring(0, name.length() - CLASS_SUFFIX.length());
+          if (!result.containsKey(name)) {
+            InputStream input = zipFile.getInputStream(entry);
+            try {
+              result.put(name, createStub(input));
+            } finally {
+              Utilities.close((Closeable) input);
+            }
+          }
+        }
+      } catch (IOException ex) {
+        throw new Ant4EclipseException(ex, EcjExceptionCodes.UNABLE_TO_CREATE_API_STUB_EXCEPTION, library);
+      } finally {
+        if (zipFile != null) {
+          try {
+            zipFile.close();
+          } catch (IOException ex) {
+            // nothing to do
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Reads the given class file and removes the bodies of all methods. All other parts of the class file (f.e. the
+   * constant pool, constant values, signatures and annotations) are copied.
+   * </p>
+   *
+   * @param input
+   *          the class file.
+   * @return the content of the stub.
+   * @throws IOException
+   *           if the class file can't be read.
+   */
+  static byte[] createStub(InputStream input) throws IOException {
+    DataInputStream in = new DataInputStream(input);
+    ByteArrayOutputStream byteout = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(byteout);
+
+    // header
+    int magic = in.readInt();
+    if (magic != MAGIC) {
+      throw new IOException("Not a class file");
+    }
+    out.writeInt(magic);
+    out.writeInt(in.readInt());
+
+    // the constant pool (the utf8 entries are kept to resolve the attribute names)
+    int count = in.readUnsignedShort();
+    out.writeShort(count);
+    String[] utf8 = new String[count];
+    for (int i = 1; i < count; i++) {
+      int tag = in.readUnsignedByte();
+      out.writeByte(tag);
+      if (tag == UTF8) {
+        utf8[i] = in.readUTF();
+        out.writeUTF(utf8[i]);
+      } else if ((tag < CONSTANT_SIZES.length) && (CONSTANT_SIZES[tag] > 0)) {
+        byte[] value = new byte[CONSTANT_SIZES[tag]];
+        in.readFully(value);
+        out.write(value);
+        if ((tag == LONG) || (tag == DOUBLE)) {
+          // eight byte constants take two entries
+          i++;
+        }
+      } else {
+        throw new IOException("Unknown constant pool tag " + tag);
+      }
+    }
+
+    // access flags, this class, super class and interfaces
+    out.writeShort(in.readUnsignedShort());
+    out.writeShort(in.readUnsignedShort());
+    out.writeShort(in.readUnsignedShort());
+    int interfaceCount = in.readUnsignedShort();
+    out.writeShort(interfaceCount);
+    for (int i = 0; i < interfaceCount; i++) {
+      out.writeShort(in.readUnsignedShort());
+    }
+
+    // fields are copied, methods are copied without their code attribute
+    copyMembers(in, out, utf8, null);
+    copyMembers(in, out, utf8, CODE_ATTRIBUTE);
+
+    // class attributes
+    copyAttributes(in, out, utf8, null);
+
+    out.flush();
+    return byteout.toByteArray();
+  }
+
+  private static void copyMembers(DataInputStream in, DataOutputStream out, String[] utf8, String skippedAttribute)
+      throws IOException {
+    int count = in.readUnsignedShort();
+    out.writeShort(count);
+    for (int i = 0; i < count; i++) {
+      // access flags, name and descriptor
+      out.writeShort(in.readUnsignedShort());
+      out.writeShort(in.readUnsignedShort());
+      out.writeShort(in.readUnsignedShort());
+      copyAttributes(in, out, utf8, skippedAttribute);
+    }
+  }
+
+  private static void copyAttributes(DataInputStream in, DataOutputStream out, String[] utf8, String skippedAttribute)
+      throws IOException {
+    int count = in.readUnsignedShort();
+    byte[][] attributes = new byte[count][];
+    int[] names = new int[count];
+    int kept = 0;
+    for (int i = 0; i < count; i++) {
+      int name = in.readUnsignedShort();
+      byte[] value = new byte[in.readInt()];
+      in.readFully(value);
+      if ((skippedAttribute == null) || !skippedAttribute.equals(utf8[name])) {
+        names[kept] = name;
+        attributes[kept] = value;
+        kept++;
+      }
+    }
+    out.writeShort(kept);
+    for (int i = 0; i < kept; i++) {
+      out.writeShort(names[i]);
+      out.writeInt(attributes[i].length);
+      out.write(attributes[i]);
+    }
+  }
+
+  private static byte[] getBytes(String value) {
+    try {
+      return value.getBytes("UTF-8");
+    } catch (UnsupportedEncodingException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+}
@@ -0,0 +1,241 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.ant4eclipse.lib.core.Lifecycle;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.service.ServiceRegistryAccess;
+import org.eclipse.jdt.internal.compiler.env.IBinaryType;
+
+/**
+ * <p>
+ * Process wide cache of parsed {@link IBinaryType} instances. Each project compile requests the same types from the
+ * JRE and the shared libraries (<code>java.lang.Object</code>, <code>java.lang.String</code>, ...), so parsing them only
+ * once saves a lot of time in large workspaces.
+ * </p>
+ * <p>
+ * Entries are keyed by the library location, the entry name and the time stamp of the library, so a changed library
+ * never returns an outdated type. The cache is bounded by the size of the parsed class files; the least recently used
+ * types are evicted first. The cache is enabled with the system property
+ * <code>ant4eclipse.enableBinaryTypeCache</code>, the bound (in bytes, default: 64 MB) can be changed with the system
+ * property <code>ant4eclipse.binaryTypeCache.maxBytes</code>.
+ * </p>
+ */
+public class BinaryTypeCache implements Lifecycle {
+
+  /** System-Property that enables the BinaryTypeCache */
+  public static final String                      ENABLE_CACHE_PROPERTY = "ant4eclipse.enableBinaryTypeCache";
+
+  /** System-Property that specifies the maximum size of the cached class files (in bytes) */
+  public static final String                      MAX_BYTES_PROPERTY    = "ant4eclipse.binaryTypeCache.maxBytes";
+
+  /** the default maximum size of the cached class files */
+  private static final long                       DEFAULT_MAX_BYTES     = 64L * 1024 * 1024;
+
+  /** <code>true</code> if the cache is enabled */
+  private boolean                                 _enabled;
+
+  /** the maximum size of the cached class files */
+  private long                                    _maxBytes;
+
+  /** the size of the cached class files */
+  private long                                    _bytes;
+
+  /** the cached types in LRU order (least recently used first) */
+  private LinkedHashMap<String, CachedBinaryType> _cache;
+
+  /** hit counter */
+  private int                                     _hits;
+
+  /** miss counter */
+  private int                                     _missed;
+
+  /** the number of evicted types */
+  private int                                     _evicted;
+
+  /** - */
+  private boolean                                 _initialized;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link BinaryTypeCache}.
+   * </p>
+   */
+  public BinaryTypeCache() {
+    this._cache = new LinkedHashMap<String, CachedBinaryType>(1024, 0.75f, true);
+    this._enabled = Boolean.getBoolean(ENABLE_CACHE_PROPERTY);
+    this._maxBytes = Long.getLong(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES).longValue();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public boolean isInitialized() {
+    return this._initialized;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void initialize() {
+    this._initialized = true;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public synchronized void dispose() {
+    this._initialized = false;
+    dump();
+    this._cache.clear();
+    this._bytes = 0;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the cache has been enabled using the system property {@link #ENABLE_CACHE_PROPERTY}.
+   * </p>
+   *
+   * @return <code>true</code> if the cache is enabled.
+   */
+  public boolean isEnabled() {
+    return this._enabled;
+  }
+
+  /**
+   * <p>
+   * Returns the cached type for the given entry or <code>null</code> if the type is not cached or if the cached type
+   * has been read from a different version of the library.
+   * </p>
+   *
+   * @param libraryLocation
+   *          the location of the library (jar file or directory)
+   * @param entryName
+   *          the name of the class file within the library
+   * @param timestamp
+   *          the time stamp of the library or class file
+   * @return the cached type or <code>null</code>.
+   */
+  public synchronized IBinaryType getBinaryType(String libraryLocation, String entryName, long timestamp) {
+    if (!this._enabled) {
+      return null;
+    }
+    CachedBinaryType cached = this._cache.get(key(libraryLocation, entryName));
+    if ((cached != null) && (cached._timestamp == timestamp)) {
+      this._hits++;
+      return cached._binaryType;
+    }
+    this._missed++;
+    return null;
+  }
+
+  /**
+   * <p>
+   * Stores the given type in the cache.
+   * </p>
+   *
+   * @param libraryLocation
+   *          the location of the library (jar file or directory)
+   * @param entryName
+   *          the name of the class file within the library
+   * @param timestamp
+   *          the time stamp of the library or class file
+   * @param binaryType
+   *          the parsed type
+   * @param size
+   *          the size of the class file the type has been parsed from
+   */
+  public synchronized void storeBinaryType(String libraryLocation, String entryName, long timestamp,
+      IBinaryType binaryType, int size) {
+    if (!this._enabled || (binaryType == null) || (size > this._maxBytes)) {
+      return;
+    }
+    CachedBinaryType previous = this._cache.put(key(libraryLocation, entryName), new CachedBinaryType(binaryType,
+        timestamp, size));
+    if (previous != null) {
+      this._bytes -= previous._size;
+    }
+    this._bytes += size;
+
+    // evict the least recently used types
+    Iterator<CachedBinaryType> iterator = this._cache.values().iterator();
+    while ((this._bytes > this._maxBytes) && iterator.hasNext()) {
+      this._bytes -= iterator.next()._size;
+      iterator.remove();
+      this._evicted++;
+    }
+  }
+
+  /**
+   * <p>
+   * Dumps the statistics of the BinaryTypeCache via A4ELogging
+   * </p>
+   */
+  public synchronized void dump() {
+    if (this._enabled) {
+      A4ELogging.info("BinaryTypeCache contains %d types (%d bytes). There have been %d hits, %d misses and %d "
+          + "evictions.", Integer.valueOf(this._cache.size()), Long.valueOf(this._bytes), Integer.valueOf(this._hits),
+          Integer.valueOf(this._missed), Integer.valueOf(this._evicted));
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the {@link BinaryTypeCache} instance.
+   * </p>
+   *
+   * @return the {@link BinaryTypeCache} instance.
+   */
+  public static BinaryTypeCache getInstance() {
+    return ServiceRegistryAccess.instance().getService(BinaryTypeCache.class);
+  }
+
+  /**
+   * <p>
+   * Returns the key for the given entry.
+   * </p>
+   */
+  private static String key(String libraryLocation, String entryName) {
+    return libraryLocation + '!' + entryName;
+  }
+
+  /**
+   * <p>
+   * A cached type together with the time stamp of its library.
+   * </p>
+   */
+  private static class CachedBinaryType {
+
+    /** the parsed type */
+    private IBinaryType _binaryType;
+
+    /** the time stamp of the library */
+    private long        _timestamp;
+
+    /** the size of the class file */
+    private int         _size;
+
+    /**
+     * <p>
+     * Creates a new instance of type {@link CachedBinaryType}.
+     * </p>
+     */
+    CachedBinaryType(IBinaryType binaryType, long timestamp, int size) {
+      this._binaryType = binaryType;
+      this._timestamp = timestamp;
+      this._size = size;
+    }
+  }
+}
@@ -3,6 +3,7 @@ package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.ant4eclipse.lib.core.Lifecycle;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
@@ -32,14 +33,14 @@ public class ClassFileLoaderCache implements Lifecycle {
   private Map<Object, ClassFileLoader> _classFileLoaderMap;
 
   /**
-   * Hit counter
+   * Hit counter (the cache is shared by parallel compile jobs)
    */
-  private int                          _hits        = 0;
+  private AtomicInteger                _hits        = new AtomicInteger();
 
   /**
    * Miss counter
    */
-  private int                          _missed      = 0;
+  private AtomicInteger                _missed      = new AtomicInteger();
 
   /** - */
   private boolean                      _initialized;
@@ -81,8 +82,8 @@ public class ClassFileLoaderCache implements Lifecycle {
    */
   public void clear() {
     this._classFileLoaderMap.clear();
-    this._hits = 0;
-    this._missed = 0;
+    this._hits.set(0);
+    this._missed.set(0);
 
   }
 
@@ -113,12 +114,12 @@ public class ClassFileLoaderCache implements Lifecycle {
   public ClassFileLoader getClassFileLoader(Object key) {
     ClassFileLoader classFileLoader = this._classFileLoaderMap.get(key);
     if (classFileLoader != null) {
-      this._hits++;
+      this._hits.incrementAndGet();
       if (ENABLE_CACHE && TRACE_CACHE) {
         A4ELogging.debug("Got ClassFileLoader from cache for: " + key);
       }
     } else {
-      this._missed++;
+      this._missed.incrementAndGet();
       if (ENABLE_CACHE && TRACE_CACHE) {
         A4ELogging.debug("Missed ClassFileLoader in cache for: " + key);
       }
@@ -143,11 +144,12 @@ public class ClassFileLoaderCache implements Lifecycle {
   public void dump() {
 
     if (!ENABLE_CACHE) {
-      A4ELogging.info("ClassFileLoaderCache has been disabled. Anyway there have been " + (this._missed + this._hits)
+      A4ELogging.info("ClassFileLoaderCache has been disabled. Anyway there have been " + (this._missed.get() + this._hits.get())
           + " calls to the cache.");
     } else {
       A4ELogging.info("ClassFileLoaderCache contains " + this._classFileLoaderMap.size() + " entries.");
-      A4ELogging.info("There has been " + this._hits + " hits and " + this._missed + " misses");
+      A4ELogging.info("There has been " + this._hits.get() + " hits and " + this._missed.get()
+          + " misses");
       for (Map.Entry<Object, ClassFileLoader> entry : this._classFileLoaderMap.entrySet()) {
         A4ELogging.info("  " + entry.getKey() + " -> " + entry.getValue());
         A4ELogging.info("  Packages: " + Arrays.asList(entry.getValue().getAllPackages()));
@@ -16,6 +16,7 @@ import java.io.FileFilter;
 import java.io.IOException;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -27,6 +28,7 @@ import java.util.jar.JarFile;
 import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.ClassName;
 import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
+import org.ant4eclipse.lib.core.util.JarFilePool;
 import org.ant4eclipse.lib.jdt.ecj.ClassFile;
 import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
 import org.ant4eclipse.lib.jdt.ecj.EcjExceptionCodes;
@@ -231,13 +233,13 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
     // create allPackages hash map
     this._allPackages = new HashMap<String, PackageProvider>();
 
+    // the (optional) persistent package index
+    PackageIndexStore packageIndexStore = PackageIndexStore.getInstance();
+
     // add all existing packages to the hash map
     for (File file : this._classpathEntries) {
-      if (file.isDirectory()) {
-        String[] allPackages = getAllPackagesFromDirectory(file);
-        addAllPackagesFromClassPathEntry(allPackages, file);
-      } else if (file.isFile()) {
-        String[] allPackages = getAllPackagesFromJar(file);
+      if (file.isDirectory() || file.isFile()) {
+        String[] allPackages = getAllPackages(file, packageIndexStore);
         addAllPackagesFromClassPathEntry(allPackages, file);
       }
     }
@@ -245,13 +247,42 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
     // add all existing packages to the hash map
     for (File file : this._sourcepathEntries) {
       if (file.isDirectory()) {
-        String[] allPackages = getAllPackagesFromDirectory(file);
+        String[] allPackages = getAllPackages(file, packageIndexStore);
         addAllPackagesFromSourcePathEntry(allPackages, file);
       }
       // we do not support source in jars or zips
     }
   }
 
+  /**
+   * <p>
+   * Returns all the names of the packages that are contained in the specified jar file or directory. If a
+   * {@link PackageIndexStore} is available, the packages are taken from the index as long as the entry didn't change.
+   * </p>
+   * 
+   * @param entry
+   *          the jar file or directory
+   * @param packageIndexStore
+   *          the package index, may be <code>null</code>
+   * @return all the names of the packages that are contained in the specified entry.
+   */
+  private String[] getAllPackages(File entry, PackageIndexStore packageIndexStore) {
+
+    // try the index first...
+    String[] result = packageIndexStore != null ? packageIndexStore.getPackages(entry) : null;
+
+    // ...and scan the entry if necessary
+    if (result == null) {
+      long start = System.nanoTime();
+      result = entry.isDirectory() ? getAllPackagesFromDirectory(entry) : getAllPackagesFromJar(entry);
+      if (packageIndexStore != null) {
+        packageIndexStore.storePackages(entry, result, System.nanoTime() - start);
+      }
+    }
+
+    return result;
+  }
+
   /**
    * <p>
    * Returns a new {@link PackageProvider}. This method returns a {@link PackageProvider} of type
@@ -332,56 +363,64 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
     Assure.isFile("jar", jar);
 
     // prepare result...
-    List<String> result = new LinkedList<String>();
+    Set<String> result = new LinkedHashSet<String>();
 
-    // create the jarFile wrapper...
+    // get the jarFile wrapper from the pool...
+    JarFilePool jarFilePool = JarFilePool.getInstance();
     JarFile jarFile = null;
 
     try {
-      jarFile = new JarFile(jar);
+      jarFile = jarFilePool.acquire(jar);
     } catch (IOException e) {
       throw new Ant4EclipseException(EcjExceptionCodes.COULD_NOT_CREATE_JAR_FILE_FROM_FILE_EXCEPTION,
           jar.getAbsolutePath());
     }
 
-    // Iterate over entries...
-    Enumeration<?> enumeration = jarFile.entries();
-    while (enumeration.hasMoreElements()) {
-      JarEntry jarEntry = (JarEntry) enumeration.nextElement();
+    try {
 
-      // add package for each found directory...
-      String directoryName = null;
+      // Iterate over entries...
+      Enumeration<?> enumeration = jarFile.entries();
+      while (enumeration.hasMoreElements()) {
+        JarEntry jarEntry = (JarEntry) enumeration.nextElement();
 
-      // if the jar entry is a directory, the directory name is the name of the jar entry...
-      if (jarEntry.isDirectory()) {
-        directoryName = jarEntry.getName();
-      }
-      // otherwise the directory name has to be computed
-      else {
-        int splitIndex = jarEntry.getName().lastIndexOf('/');
-        if (splitIndex != -1) {
-          directoryName = jarEntry.getName().substring(0, splitIndex);
+        // add package for each found directory...
+        String directoryName = null;
+
+        // if the jar entry is a directory, the directory name is the name of the jar entry...
+        if (jarEntry.isDirectory()) {
+          directoryName = jarEntry.getName();
+        }
+        // otherwise the directory name has to be computed
+        else {
+          int splitIndex = jarEntry.getName().lastIndexOf('/');
+          if (splitIndex != -1) {
+            directoryName = jarEntry.getName().substring(0, splitIndex);
+          }
         }
-      }
 
-      // directoryName can be null if a top level entry is processed
-      if (directoryName != null) {
-        // convert path to package name
-        String packageName = directoryName.replace('/', '.');
-        packageName = packageName.endsWith(".") ? packageName.substring(0, packageName.length() - 1) : packageName;
-
-        // at package with all the parent packages (!) to the result list
-        String[] packages = allPackages(packageName);
-        for (int i = 0; i < packages.length; i++) {
-          if (!result.contains(packages[i])) {
-            result.add(packages[i]);
+        // directoryName can be null if a top level entry is processed
+        if (directoryName != null) {
+          // convert path to package name
+          String packageName = directoryName.replace('/', '.');
+          packageName = packageName.endsWith(".") ? packageName.substring(0, packageName.length() - 1) : packageName;
+
+          // at package with all the parent packages (!) to the result list. If the package is already known, all of
+          // its parent packages are known, too.
+          if (!result.contains(packageName)) {
+            String[] packages = allPackages(packageName);
+            for (int i = 0; i < packages.length; i++) {
+              result.add(packages[i]);
+            }
           }
         }
       }
+
+    } finally {
+      jarFilePool.release(jarFile);
     }
 
     // return result...
-    return result.toArray(new String[0]);
+    return result.toArray(new String[result.size()]);
 
   }
 
@@ -523,10 +562,13 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
   public class PackageProvider {
 
     /** the class path entries */
-    private List<File> _classpathEntries;
+    private List<File>                   _classpathEntries;
 
     /** the source path entries */
-    private List<File> _sourcepathEntries;
+    private List<File>                   _sourcepathEntries;
+
+    /** the snapshots of the package directories (key: the class or source path entry, value: null for jar files) */
+    private Map<File, DirectorySnapshot> _snapshots;
 
     /**
      * <p>
@@ -536,6 +578,7 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
     public PackageProvider() {
       this._classpathEntries = new LinkedList<File>();
       this._sourcepathEntries = new LinkedList<File>();
+      this._snapshots = new HashMap<File, DirectorySnapshot>();
     }
 
     /**
@@ -576,32 +619,32 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
       for (File file : this._classpathEntries) {
         File classpathEntry = file;
 
-        if (classpathEntry.isDirectory()) {
-          File result = new File(classpathEntry, className.asClassFileName());
+        DirectorySnapshot snapshot = getSnapshot(classpathEntry, className);
 
-          if (result.exists()) {
+        if (snapshot != null) {
 
-            try {
-              if (result.getName().equals(result.getCanonicalFile().getName())) {
-                return new FileClassFileImpl(result, classpathEntry.getAbsolutePath(),
-                    ClasspathClassFileLoaderImpl.this._type);
-              }
-            } catch (IOException e) {
-              // do nothing
-            }
+          // the snapshot is case sensitive, so there's no need to check the canonical file name
+          String classFileName = className.getClassName() + ".class";
+          if (snapshot.contains(classFileName)) {
+            return new FileClassFileImpl(new File(snapshot.getDirectory(), classFileName), classpathEntry
+                .getAbsolutePath(), ClasspathClassFileLoaderImpl.this._type);
           }
         } else {
+          JarFilePool jarFilePool = JarFilePool.getInstance();
+          JarFile jarFile = null;
           try {
-            JarFile jarFile = new JarFile(classpathEntry);
+            jarFile = jarFilePool.acquire(classpathEntry);
 
             JarEntry entry = jarFile.getJarEntry(className.asClassFileName());
 
             if ((entry != null)) {
-              return new JarClassFileImpl(className.asClassFileName(), jarFile, classpathEntry.getAbsolutePath(),
-                  ClasspathClassFileLoaderImpl.this._type);
+              return new JarClassFileImpl(className.asClassFileName(), classpathEntry, classpathEntry
+                  .getAbsolutePath(), ClasspathClassFileLoaderImpl.this._type);
             }
           } catch (IOException e) {
             // nothing to do here...
+          } finally {
+            jarFilePool.release(jarFile);
           }
         }
       }
@@ -621,19 +664,11 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
 
       for (File classpathEntry : this._sourcepathEntries) {
 
-        if (classpathEntry.isDirectory()) {
-          File packageDir = new File(classpathEntry, className.getPackageAsDirectoryName());
-          if (packageDir.isDirectory()) {
-            for (String name : packageDir.list()) {
-              if (javaFileName.equals(name)
-                  && new File(classpathEntry, className.asSourceFileName().replace('/', File.separatorChar)
-                      .replace('\\', File.separatorChar)).exists()) {
-                return new ReferableSourceFileImpl(classpathEntry, className.asSourceFileName()
-                    .replace('/', File.separatorChar).replace('\\', File.separatorChar),
-                    classpathEntry.getAbsolutePath(), ClasspathClassFileLoaderImpl.this._type);
-              }
-            }
-          }
+        DirectorySnapshot snapshot = getSnapshot(classpathEntry, className);
+        if ((snapshot != null) && snapshot.contains(javaFileName)) {
+          return new ReferableSourceFileImpl(classpathEntry, className.asSourceFileName().replace('/',
+              File.separatorChar).replace('\\', File.separatorChar), classpathEntry.getAbsolutePath(),
+              ClasspathClassFileLoaderImpl.this._type);
         }
 
         // we do not support source jars here...
@@ -655,5 +690,25 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
       }
       return null;
     }
+
+    /**
+     * <p>
+     * Returns the snapshot of the package directory of the given class within the given class or source path entry.
+     * Returns <code>null</code> if the entry is not a directory. Each entry is checked and listed once.
+     * </p>
+     * 
+     * @param entry
+     *          the class or source path entry.
+     * @param className
+     *          the name of a class within the package of this {@link PackageProvider}.
+     * @return the snapshot of the package directory or <code>null</code>.
+     */
+    private synchronized DirectorySnapshot getSnapshot(File entry, ClassName className) {
+      if (!this._snapshots.containsKey(entry)) {
+        this._snapshots.put(entry, entry.isDirectory() ? new DirectorySnapshot(new File(entry, className
+            .getPackageAsDirectoryName())) : null);
+      }
+      return this._snapshots.get(entry);
+    }
   }
 }
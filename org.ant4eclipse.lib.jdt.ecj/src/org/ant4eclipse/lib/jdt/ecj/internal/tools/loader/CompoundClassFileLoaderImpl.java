@@ -21,23 +21,48 @@ import org.ant4eclipse.lib.jdt.ecj.ReferableSourceFile;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.Set;
+
+/**
+ * <p>
+ * Immutable {@link ClassFileLoader} that loads classes from a list of underlying class file loaders. Each package is
+ * mapped to the (ascending) indices of the class file loaders that contain it. The package names are interned and the
+ * index is computed once, so a compound class file loader (f.e. for the boot class path) can be shared by several
+ * compilations and added to other compound class file loaders without being rebuilt.
+ * </p>
+ */
 public class CompoundClassFileLoaderImpl implements ClassFileLoader {
 
-  private ClassFileLoader[]                  _classFileLoaders;
+  /** the underlying class file loaders */
+  private ClassFileLoader[]  _classFileLoaders;
+
+  /** maps (interned) packages to the indices of the class file loaders that contain the package */
+  private Map<String, int[]> _allPackages;
+
+  /** all packages (computed on demand) */
+  private String[]           _packageNames;
 
-  /** maps packages to a package provider that contains a list of one or more class path entries */
-  private Map<String, List<ClassFileLoader>> _allPackages;
+  /** the class path (computed on demand) */
+  private File[]             _classpath;
 
   public CompoundClassFileLoaderImpl(ClassFileLoader[] classFileLoaders) {
     Assure.notNull("classFileLoaders", classFileLoaders);
 
-    this._classFileLoaders = classFileLoaders;
+    // remove duplicate class file loaders
+    Map<ClassFileLoader, Boolean> distinct = new IdentityHashMap<ClassFileLoader, Boolean>();
+    List<ClassFileLoader> loaders = new ArrayList<ClassFileLoader>(classFileLoaders.length);
+    for (ClassFileLoader classFileLoader : classFileLoaders) {
+      if (distinct.put(classFileLoader, Boolean.TRUE) == null) {
+        loaders.add(classFileLoader);
+      }
+    }
+    this._classFileLoaders = loaders.toArray(new ClassFileLoader[loaders.size()]);
 
-    this._allPackages = new HashMap<String, List<ClassFileLoader>>();
+    this._allPackages = new HashMap<String, int[]>();
 
     initialise();
   }
@@ -45,32 +70,37 @@ public class CompoundClassFileLoaderImpl implements ClassFileLoader {
   /**
    * {@inheritDoc}
    */
-  public File[] getClasspath() {
-    List<File> files = new ArrayList<File>();
-    List<String> set = new ArrayList<String>();
-    for (ClassFileLoader loader : this._classFileLoaders) {
-      File[] entries = loader.getClasspath();
-      for (File entry : entries) {
-        entry = Utilities.getCanonicalFile(entry);
-        String path = entry.getAbsolutePath();
-        if (Utilities.isWindows()) {
-          // for windows the case makes no difference
-          path = path.toLowerCase();
-        }
-        if (!set.contains(path)) {
-          set.add(path);
-          files.add(entry);
+  public synchronized File[] getClasspath() {
+    if (this._classpath == null) {
+      List<File> files = new ArrayList<File>();
+      Set<String> set = new HashSet<String>();
+      for (ClassFileLoader loader : this._classFileLoaders) {
+        File[] entries = loader.getClasspath();
+        for (File entry : entries) {
+          entry = Utilities.getCanonicalFile(entry);
+          String path = entry.getAbsolutePath();
+          if (Utilities.isWindows()) {
+            // for windows the case makes no difference
+            path = path.toLowerCase();
+          }
+          if (set.add(path)) {
+            files.add(entry);
+          }
         }
       }
+      this._classpath = files.toArray(new File[files.size()]);
     }
-    return files.toArray(new File[files.size()]);
+    return this._classpath.clone();
   }
 
   /**
    * {@inheritDoc}
    */
-  public String[] getAllPackages() {
-    return this._allPackages.keySet().toArray(new String[0]);
+  public synchronized String[] getAllPackages() {
+    if (this._packageNames == null) {
+      this._packageNames = this._allPackages.keySet().toArray(new String[this._allPackages.size()]);
+    }
+    return this._packageNames.clone();
   }
 
   /**
@@ -85,11 +115,11 @@ public class CompoundClassFileLoaderImpl implements ClassFileLoader {
    */
   public ClassFile loadClass(ClassName className) {
 
-    // get the class file loader list
-    List<ClassFileLoader> classFileLoaderList = this._allPackages.get(className.getPackageName());
+    // get the indices of the class file loaders
+    int[] indices = this._allPackages.get(className.getPackageName());
 
-    // return if class file loader list is null
-    if (classFileLoaderList == null) {
+    // return if the package is unknown
+    if (indices == null) {
       return null;
     }
 
@@ -97,10 +127,10 @@ public class CompoundClassFileLoaderImpl implements ClassFileLoader {
     ClassFile result = null;
 
     // try to find the class file...
-    for (ClassFileLoader classFileLoader : classFileLoaderList) {
+    for (int index : indices) {
 
       // try to load class file...
-      ClassFile classFile = classFileLoader.loadClass(className);
+      ClassFile classFile = this._classFileLoaders[index].loadClass(className);
 
       // class file was found...
       if (classFile != null) {
@@ -128,14 +158,14 @@ public class CompoundClassFileLoaderImpl implements ClassFileLoader {
     // TODO: Access restrictions for source files!!
 
     // if the package name is not in the map of all packages, return immediately
-    List<ClassFileLoader> classFileLoaderList = this._allPackages.get(className.getPackageName());
-    if (classFileLoaderList == null) {
+    int[] indices = this._allPackages.get(className.getPackageName());
+    if (indices == null) {
       return null;
     }
 
     // search for the source file
-    for (ClassFileLoader classFileLoader : classFileLoaderList) {
-      ReferableSourceFile sourceFile = classFileLoader.loadSource(className);
+    for (int index : indices) {
+      ReferableSourceFile sourceFile = this._classFileLoaders[index].loadSource(className);
       if (sourceFile != null) {
         return sourceFile;
       }
@@ -166,19 +196,21 @@ public class CompoundClassFileLoaderImpl implements ClassFileLoader {
 
   private void initialise() {
 
-    for (ClassFileLoader classFileLoader : this._classFileLoaders) {
-      String[] packages = classFileLoader.getAllPackages();
-
-      for (String aPackage : packages) {
-        if (this._allPackages.containsKey(aPackage)) {
-          List<ClassFileLoader> classFileLoaderList = this._allPackages.get(aPackage);
-          if (!classFileLoaderList.contains(classFileLoader)) {
-            classFileLoaderList.add(classFileLoader);
-          }
-        } else {
-          List<ClassFileLoader> classFileLoaderList = new LinkedList<ClassFileLoader>();
-          classFileLoaderList.add(classFileLoader);
-          this._allPackages.put(aPackage, classFileLoaderList);
+    for (int i = 0; i < this._classFileLoaders.length; i++) {
+
+      // most packages are provided by a single class file loader, so they can share the index array
+      int[] single = new int[] { i };
+
+      for (String aPackage : this._classFileLoaders[i].getAllPackages()) {
+        int[] indices = this._allPackages.get(aPackage);
+        if (indices == null) {
+          this._allPackages.put(aPackage.intern(), single);
+        } else if (indices[indices.length - 1] != i) {
+          // the loaders are processed in ascending order, so a package listed twice by a loader is the last index
+          int[] extended = new int[indices.length + 1];
+          System.arraycopy(indices, 0, extended, 0, indices.length);
+          extended[indices.length] = i;
+          this._allPackages.put(aPackage, extended);
         }
       }
     }
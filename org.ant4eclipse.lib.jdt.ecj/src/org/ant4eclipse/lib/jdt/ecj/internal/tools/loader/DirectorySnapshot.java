@@ -0,0 +1,117 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.ant4eclipse.lib.core.Assure;
+
+/**
+ * <p>
+ * Snapshot of the names of the files within a (package) directory. The directory is listed once and the names are kept
+ * as a sorted array, so checking whether a file exists doesn't require a file system access. As the names are returned
+ * by the file system, the check is case sensitive even on case insensitive file systems.
+ * </p>
+ * <p>
+ * If the system property <code>ant4eclipse.directorySnapshot.revalidate</code> is set to <code>true</code>, the
+ * modification time of the directory is compared before each check and the directory is listed again if it changed.
+ * This is only necessary if class file loaders are reused while the directories change (f.e. if the
+ * <code>ClassFileLoaderCache</code> is enabled).
+ * </p>
+ */
+class DirectorySnapshot {
+
+  /** the system property that enables the revalidation of the snapshots */
+  static final String           REVALIDATE_PROPERTY = "ant4eclipse.directorySnapshot.revalidate";
+
+  /** - */
+  private static final String[] NO_NAMES            = new String[0];
+
+  /** the directory */
+  private File                  _directory;
+
+  /** <code>true</code> if the modification time of the directory should be checked */
+  private boolean               _revalidate;
+
+  /** the sorted names of the files within the directory (<code>null</code> until the directory has been listed) */
+  private String[]              _names;
+
+  /** the modification time of the directory when it has been listed */
+  private long                  _lastModified;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link DirectorySnapshot}.
+   * </p>
+   *
+   * @param directory
+   *          the directory (doesn't need to exist).
+   */
+  DirectorySnapshot(File directory) {
+    this(directory, Boolean.getBoolean(REVALIDATE_PROPERTY));
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link DirectorySnapshot}.
+   * </p>
+   *
+   * @param directory
+   *          the directory (doesn't need to exist).
+   * @param revalidate
+   *          <code>true</code> if the modification time of the directory should be checked before each lookup.
+   */
+  DirectorySnapshot(File directory, boolean revalidate) {
+    Assure.notNull("directory", directory);
+    this._directory = directory;
+    this._revalidate = revalidate;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the directory contains a file with the given name.
+   * </p>
+   *
+   * @param name
+   *          the (case sensitive) name of the file.
+   * @return <code>true</code> if the directory contains a file with the given name.
+   */
+  synchronized boolean contains(String name) {
+    if ((this._names == null) || (this._revalidate && (this._directory.lastModified() != this._lastModified))) {
+      list();
+    }
+    return Arrays.binarySearch(this._names, name) >= 0;
+  }
+
+  /**
+   * <p>
+   * Returns the directory.
+   * </p>
+   *
+   * @return the directory.
+   */
+  File getDirectory() {
+    return this._directory;
+  }
+
+  private void list() {
+    this._lastModified = this._directory.lastModified();
+    String[] names = this._directory.list();
+    if (names == null) {
+      // the directory doesn't exist (anymore)
+      names = NO_NAMES;
+    }
+    Arrays.sort(names);
+    this._names = names;
+  }
+}
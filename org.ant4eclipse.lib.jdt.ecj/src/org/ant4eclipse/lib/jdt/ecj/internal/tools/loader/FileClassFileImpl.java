@@ -51,8 +51,20 @@ public class FileClassFileImpl extends DefaultReferableType implements ClassFile
    * {@inheritDoc}
    */
   public final IBinaryType getBinaryType() {
+
+    // try to get the parsed type from the cache
+    BinaryTypeCache cache = BinaryTypeCache.getInstance();
+    long timestamp = cache.isEnabled() ? this._classfile.lastModified() : 0;
+    IBinaryType result = cache.getBinaryType(getLibraryLocation(), this._classfile.getPath(), timestamp);
+    if (result != null) {
+      return result;
+    }
+
     try {
-      return ClassFileReader.read(this._classfile, true);
+      byte[] bytes = Util.getFileByteContent(this._classfile);
+      result = new ClassFileReader(bytes, this._classfile.getAbsolutePath().toCharArray(), true);
+      cache.storeBinaryType(getLibraryLocation(), this._classfile.getPath(), timestamp, result, bytes.length);
+      return result;
     } catch (Exception e) {
       // return null if an exception occurs
       e.printStackTrace();
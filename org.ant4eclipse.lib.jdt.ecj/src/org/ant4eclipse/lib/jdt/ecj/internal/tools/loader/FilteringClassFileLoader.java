@@ -12,13 +12,10 @@
 package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
 
 import java.io.File;
-import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Set;
 
 import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.ClassName;
+import org.ant4eclipse.lib.jdt.ecj.AccessRules;
 import org.ant4eclipse.lib.jdt.ecj.ClassFile;
 import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
 import org.ant4eclipse.lib.jdt.ecj.ReferableSourceFile;
@@ -39,17 +36,8 @@ public class FilteringClassFileLoader implements ClassFileLoader {
   /** the class file loader that should be filtered */
   private ClassFileLoader _classFileLoader;
 
-  /** the filter string */
-  private String          _filter;
-
-  /** the include patterns */
-  private List<String>    _includes;
-
-  /** the exclude patterns */
-  private List<String>    _excludes;
-
-  /** - */
-  private Set<String>     _containedPackages;
+  /** the precompiled access rules */
+  private AccessRules     _accessRules;
 
   /**
    * <p>
@@ -59,17 +47,27 @@ public class FilteringClassFileLoader implements ClassFileLoader {
    * @param filter
    */
   public FilteringClassFileLoader(ClassFileLoader classFileLoader, String filter) {
-
-    Assure.notNull("classFileLoader", classFileLoader);
+    this(classFileLoader, AccessRules.parse(filter));
     Assure.nonEmpty("filter", filter);
+  }
 
-    this._classFileLoader = classFileLoader;
-    this._filter = filter;
+  /**
+   * <p>
+   * Creates a new instance of type {@link FilteringClassFileLoader}.
+   * </p>
+   * 
+   * @param classFileLoader
+   *          the class file loader that should be filtered.
+   * @param accessRules
+   *          the access rules of the classes provided by the class file loader.
+   */
+  public FilteringClassFileLoader(ClassFileLoader classFileLoader, AccessRules accessRules) {
 
-    this._includes = new LinkedList<String>();
-    this._excludes = new LinkedList<String>();
+    Assure.notNull("classFileLoader", classFileLoader);
+    Assure.notNull("accessRules", accessRules);
 
-    init();
+    this._classFileLoader = classFileLoader;
+    this._accessRules = accessRules;
   }
 
   /**
@@ -119,10 +117,14 @@ public class FilteringClassFileLoader implements ClassFileLoader {
 
   /**
    * <p>
+   * Sets an {@link AccessRestriction} on the given type if it isn't accessible.
    * </p>
    * 
    * @param referableType
-   * @return
+   *          the loaded type (maybe <code>null</code>).
+   * @param className
+   *          the name of the loaded type.
+   * @return the given type.
    */
   private ReferableType setAccessRestrictions(ReferableType referableType, ClassName className) {
 
@@ -131,78 +133,19 @@ public class FilteringClassFileLoader implements ClassFileLoader {
       return referableType;
     }
 
-    // try 'shortcut'
-    if (this._containedPackages != null && this._containedPackages.contains(className.getPackageName())) {
-      return referableType;
-    }
-
-    //
+    // the class file name without the '.class' suffix
     String classFileName = className.asClassFileName();
+    classFileName = classFileName.substring(0, classFileName.length() - ".class".length());
 
     //
-    for (String includePattern : this._includes) {
-      if (classFileName.matches(includePattern)) {
-        return referableType;
-      }
-    }
-
-    //
-    for (String exludePattern : this._excludes) {
-      if (classFileName.matches(exludePattern)) {
+    if ((referableType instanceof DefaultReferableType) && this._accessRules.isForbidden(classFileName)) {
 
-        if (referableType instanceof DefaultReferableType) {
+      AccessRestriction accessRestriction = new AccessRestriction(new AccessRule("**".toCharArray(),
+          IProblem.ForbiddenReference), referableType.getLibraryType(), referableType.getLibraryLocation());
 
-          AccessRestriction accessRestriction = new AccessRestriction(new AccessRule("**".toCharArray(),
-              IProblem.ForbiddenReference), referableType.getLibraryType(), referableType.getLibraryLocation());
-
-          ((DefaultReferableType) referableType).setAccessRestriction(accessRestriction);
-        }
-        return referableType;
-      }
+      ((DefaultReferableType) referableType).setAccessRestriction(accessRestriction);
     }
 
     return referableType;
   }
-
-  /**
-   * <p>
-   * </p>
-   */
-  private void init() {
-
-    //
-    this._containedPackages = new HashSet<String>();
-
-    //
-    for (String part : this._filter.split(";")) {
-
-      // step 0:
-      if (part.matches("\\+.*/\\*")) {
-        this._containedPackages.add(part.substring(1, part.length() - 2).replace('/', '.'));
-      } else if (part.matches("\\-\\*\\*/\\*")) {
-        //
-      } else {
-        this._containedPackages = null;
-      }
-
-      // step 1: replace all occurrences of '**/*' with '###' (temporary step)
-      String transformedPart = part.substring(1).replaceAll("\\*\\*/\\*", "###");
-
-      // step 2: replace all occurrences of '*' with '[^\.]*'
-      transformedPart = transformedPart.replaceAll("\\*", "[^\\\\.]*");
-
-      // step 3: replace all occurrences of '###' (formally '**/*') with '.*'
-      transformedPart = transformedPart.replaceAll("###", ".*");
-
-      // step 4: append '\.class'
-      transformedPart = transformedPart.concat("\\.class");
-
-      if (part.startsWith("+")) {
-        this._includes.add(transformedPart);
-      }
-      if (part.startsWith("-")) {
-        this._excludes.add(transformedPart);
-      }
-    }
-  }
 }
@@ -11,11 +11,13 @@
  **********************************************************************/
 package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.zip.ZipFile;
+import java.util.jar.JarFile;
 
 import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
+import org.ant4eclipse.lib.core.util.JarFilePool;
 import org.ant4eclipse.lib.jdt.ecj.ClassFile;
 import org.ant4eclipse.lib.jdt.ecj.EcjExceptionCodes;
 import org.ant4eclipse.lib.jdt.ecj.internal.tools.DefaultReferableType;
@@ -27,36 +29,46 @@ import org.eclipse.jdt.internal.compiler.util.Util;
 /**
  * DefaultClassFile --
  * 
+ * <p>
+ * The archive is not kept open by this class. It's acquired from the {@link JarFilePool} whenever the content is
+ * requested.
+ * </p>
+ * 
  * @author Gerd Wuetherich (gerd@gerd-wuetherich.de)
  */
 public class JarClassFileImpl extends DefaultReferableType implements ClassFile {
 
-  /** the zip file */
-  private ZipFile _zipFile;
+  /** the jar file */
+  private File   _jarFile;
 
   /** the zip entry name */
-  private String  _zipEntryName;
+  private String _zipEntryName;
 
   /**
    * @param zipEntryName
-   * @param zipFile
+   * @param jarFile
    */
-  public JarClassFileImpl(String zipEntryName, ZipFile zipFile, String libraryLocation, byte libraryType) {
+  public JarClassFileImpl(String zipEntryName, File jarFile, String libraryLocation, byte libraryType) {
 
     super(libraryLocation, libraryType);
 
     Assure.nonEmpty("zipEntryName", zipEntryName);
-    Assure.notNull("zipFile", zipFile);
+    Assure.notNull("jarFile", jarFile);
 
     this._zipEntryName = zipEntryName;
-    this._zipFile = zipFile;
+    this._jarFile = jarFile;
   }
 
   public byte[] getBytes() {
+    JarFilePool pool = JarFilePool.getInstance();
+    JarFile jarFile = null;
     try {
-      return Util.getZipEntryByteContent(this._zipFile.getEntry(this._zipEntryName), this._zipFile);
+      jarFile = pool.acquire(this._jarFile);
+      return Util.getZipEntryByteContent(jarFile.getEntry(this._zipEntryName), jarFile);
     } catch (Exception e) {
       throw new RuntimeException(e.getMessage(), e);
+    } finally {
+      pool.release(jarFile);
     }
   }
 
@@ -64,17 +76,34 @@ public class JarClassFileImpl extends DefaultReferableType implements ClassFile
    * {@inheritDoc}
    */
   public final IBinaryType getBinaryType() {
+
+    // try to get the parsed type from the cache
+    BinaryTypeCache cache = BinaryTypeCache.getInstance();
+    long timestamp = cache.isEnabled() ? this._jarFile.lastModified() : 0;
+    IBinaryType result = cache.getBinaryType(this._jarFile.getAbsolutePath(), this._zipEntryName, timestamp);
+    if (result != null) {
+      return result;
+    }
+
+    JarFilePool pool = JarFilePool.getInstance();
+    JarFile jarFile = null;
     try {
-      return ClassFileReader.read(this._zipFile, this._zipEntryName, true);
+      jarFile = pool.acquire(this._jarFile);
+      byte[] bytes = Util.getZipEntryByteContent(jarFile.getEntry(this._zipEntryName), jarFile);
+      result = new ClassFileReader(bytes, this._zipEntryName.toCharArray(), true);
+      cache.storeBinaryType(this._jarFile.getAbsolutePath(), this._zipEntryName, timestamp, result, bytes.length);
+      return result;
     } catch (ClassFormatException e) {
       throw new Ant4EclipseException(e, EcjExceptionCodes.UNABLE_TO_READ_BINARY_TYPE_FROM_JAR_EXCEPTION,
-          this._zipFile.getName(), this._zipEntryName);
+          this._jarFile.getAbsolutePath(), this._zipEntryName);
     } catch (IOException e) {
       throw new Ant4EclipseException(e, EcjExceptionCodes.UNABLE_TO_READ_BINARY_TYPE_FROM_JAR_EXCEPTION,
-          this._zipFile.getName(), this._zipEntryName);
+          this._jarFile.getAbsolutePath(), this._zipEntryName);
     } catch (java.lang.SecurityException e) {
       throw new Ant4EclipseException(e, EcjExceptionCodes.UNABLE_TO_READ_BINARY_TYPE_FROM_JAR_EXCEPTION,
-          this._zipFile.getName(), this._zipEntryName);
+          this._jarFile.getAbsolutePath(), this._zipEntryName);
+    } finally {
+      pool.release(jarFile);
     }
   }
 
@@ -91,8 +120,8 @@ public class JarClassFileImpl extends DefaultReferableType implements ClassFile
     buffer.append(getLibraryType());
     buffer.append(" accessRestriction: ");
     buffer.append(getAccessRestriction());
-    buffer.append(" zipFile: ");
-    buffer.append(this._zipFile);
+    buffer.append(" jarFile: ");
+    buffer.append(this._jarFile);
     buffer.append(" zipEntryName: ");
     buffer.append(this._zipEntryName);
     buffer.append("]");
@@ -0,0 +1,114 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
+import org.ant4eclipse.lib.jdt.ecj.ClassFile;
+import org.ant4eclipse.lib.jdt.ecj.EcjExceptionCodes;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.DefaultReferableType;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFormatException;
+import org.eclipse.jdt.internal.compiler.env.IBinaryType;
+
+/**
+ * <p>
+ * {@link ClassFile} that is read from the runtime image of a modular JDK.
+ * </p>
+ */
+public class JrtClassFileImpl extends DefaultReferableType implements ClassFile {
+
+  /** the runtime image */
+  private JrtImage _image;
+
+  /** the module that contains the class file */
+  private String   _module;
+
+  /** the entry name (f.e. <code>java/lang/Object.class</code>) */
+  private String   _entryName;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link JrtClassFileImpl}.
+   * </p>
+   *
+   * @param image
+   *          the runtime image
+   * @param module
+   *          the module that contains the class file
+   * @param entryName
+   *          the name of the class file within the module
+   * @param libraryType
+   *          the library type
+   */
+  public JrtClassFileImpl(JrtImage image, String module, String entryName, byte libraryType) {
+    super(image.getModulesFile().getAbsolutePath(), libraryType);
+
+    Assure.nonEmpty("module", module);
+    Assure.nonEmpty("entryName", entryName);
+
+    this._image = image;
+    this._module = module;
+    this._entryName = entryName;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public byte[] getBytes() {
+    return this._image.getBytes(this._module, this._entryName);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public final IBinaryType getBinaryType() {
+
+    // try to get the parsed type from the cache (the image is shared as long as it doesn't change)
+    BinaryTypeCache cache = BinaryTypeCache.getInstance();
+    IBinaryType result = cache.getBinaryType(getLibraryLocation(), this._entryName, this._image.getLastModified());
+    if (result != null) {
+      return result;
+    }
+
+    try {
+      byte[] bytes = this._image.getBytes(this._module, this._entryName);
+      result = new ClassFileReader(bytes, this._entryName.toCharArray(), true);
+      cache.storeBinaryType(getLibraryLocation(), this._entryName, this._image.getLastModified(), result, bytes.length);
+      return result;
+    } catch (ClassFormatException e) {
+      throw new Ant4EclipseException(e, EcjExceptionCodes.UNABLE_TO_READ_FROM_RUNTIME_IMAGE_EXCEPTION, this._module
+          + "/" + this._entryName, getLibraryLocation());
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    StringBuffer buffer = new StringBuffer();
+    buffer.append("[JrtClassFileImpl:");
+    buffer.append(" bundleLocation: ");
+    buffer.append(getLibraryLocation());
+    buffer.append(" bundleType: ");
+    buffer.append(getLibraryType());
+    buffer.append(" accessRestriction: ");
+    buffer.append(getAccessRestriction());
+    buffer.append(" module: ");
+    buffer.append(this._module);
+    buffer.append(" entryName: ");
+    buffer.append(this._entryName);
+    buffer.append("]");
+    return buffer.toString();
+  }
+}
@@ -0,0 +1,104 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import java.io.File;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.ClassName;
+import org.ant4eclipse.lib.jdt.ecj.ClassFile;
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
+import org.ant4eclipse.lib.jdt.ecj.ReferableSourceFile;
+
+/**
+ * <p>
+ * {@link ClassFileLoader} that loads the classes from the runtime image (<code>lib/modules</code>) of a modular JDK.
+ * The package index is provided by the shared {@link JrtImage}, so it is built once per JDK.
+ * </p>
+ */
+public class JrtClassFileLoaderImpl implements ClassFileLoader {
+
+  /** the runtime image */
+  private JrtImage _image;
+
+  /** the type of the library */
+  private byte     _type;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link JrtClassFileLoaderImpl}.
+   * </p>
+   *
+   * @param modulesFile
+   *          the runtime image file (<code>lib/modules</code>)
+   * @param type
+   *          the type of the library
+   */
+  public JrtClassFileLoaderImpl(File modulesFile, byte type) {
+    Assure.notNull("modulesFile", modulesFile);
+    this._image = JrtImage.getInstance(modulesFile);
+    this._type = type;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public File[] getClasspath() {
+    return new File[] { this._image.getModulesFile() };
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public String[] getAllPackages() {
+    return this._image.getPackages();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public boolean hasPackage(String packageName) {
+    return this._image.hasPackage(packageName);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public ClassFile loadClass(ClassName className) {
+    String module = this._image.findModule(className.getPackageName(), className.getClassName() + ".class");
+    if (module == null) {
+      return null;
+    }
+    return new JrtClassFileImpl(this._image, module, className.asClassFileName(), this._type);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public ReferableSourceFile loadSource(ClassName className) {
+    // the runtime image doesn't contain sources
+    return null;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    StringBuffer buffer = new StringBuffer();
+    buffer.append("[JrtClassFileLoaderImpl:");
+    buffer.append(" _image: ");
+    buffer.append(this._image);
+    buffer.append("]");
+    return buffer.toString();
+  }
+}
@@ -0,0 +1,477 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.jdt.ecj.EcjExceptionCodes;
+
+/**
+ * <p>
+ * Provides access to the class files within the runtime image (<code>lib/modules</code>) of a modular JDK (java 9 or
+ * later). The image is read using the <code>jrt</code> file system. If ant4eclipse itself runs on a java 8 runtime,
+ * the file system provider is loaded from the <code>lib/jrt-fs.jar</code> of the JDK.
+ * </p>
+ * <p>
+ * The package index (package name to modules) is built once per image. The names of the class files within a package
+ * are listed on demand. Instances are shared (see {@link #getInstance(File)}) as long as the image doesn't change. At
+ * most {@link #MAX_SIZE_PROPERTY a few} images are kept (least recently used images are dropped first), images
+ * that have been replaced by a new version are dropped immediately. A dropped image closes its file system and the
+ * class loader of <code>jrt-fs.jar</code>. If it is still used by a loader afterwards, the file system is opened again.
+ * </p>
+ * <p>
+ * The <code>java.nio.file</code> API is accessed using reflection as ant4eclipse still supports java 5.
+ * </p>
+ */
+public class JrtImage {
+
+  /** System-Property that specifies the maximum number of shared images (default: 4) */
+  public static final String                 MAX_SIZE_PROPERTY = "ant4eclipse.jrtImage.maxImages";
+
+  /** the name of the runtime image file */
+  public static final String                 MODULES_FILE_NAME = "modules";
+
+  /** the magic number of a runtime image (little endian) */
+  private static final byte[]                MAGIC_LE          = { (byte) 0xDA, (byte) 0xDA, (byte) 0xFE, (byte) 0xCA };
+
+  /** the magic number of a runtime image (big endian) */
+  private static final byte[]                MAGIC_BE          = { (byte) 0xCA, (byte) 0xFE, (byte) 0xDA, (byte) 0xDA };
+
+  /** <code>FileSystems.getFileSystem(URI)</code> */
+  private static final Method                GET_FILE_SYSTEM;
+
+  /** <code>FileSystems.newFileSystem(URI, Map)</code> */
+  private static final Method                NEW_FILE_SYSTEM;
+
+  /** <code>FileSystems.newFileSystem(URI, Map, ClassLoader)</code> */
+  private static final Method                NEW_FILE_SYSTEM_WITH_LOADER;
+
+  /** <code>FileSystem.getPath(String, String...)</code> */
+  private static final Method                GET_PATH;
+
+  /** <code>Files.newDirectoryStream(Path)</code> */
+  private static final Method                NEW_DIRECTORY_STREAM;
+
+  /** <code>Files.readAllBytes(Path)</code> */
+  private static final Method                READ_ALL_BYTES;
+
+  /** <code>Path.getFileName()</code> */
+  private static final Method                GET_FILE_NAME;
+
+  /** <code>true</code> if the running java runtime provides the jrt file system itself (java 9 or later) */
+  private static final boolean               NATIVE_JRT;
+
+  /** the shared images in LRU order (key: the image file including its time stamp) */
+  private static final Map<String, JrtImage> IMAGES            = new ImageCache();
+
+  static {
+    Method getFileSystem = null;
+    Method newFileSystem = null;
+    Method newFileSystemWithLoader = null;
+    Method getPath = null;
+    Method newDirectoryStream = null;
+    Method readAllBytes = null;
+    Method getFileName = null;
+    try {
+      Class<?> fileSystems = Class.forName("java.nio.file.FileSystems");
+      Class<?> fileSystem = Class.forName("java.nio.file.FileSystem");
+      Class<?> path = Class.forName("java.nio.file.Path");
+      Class<?> files = Class.forName("java.nio.file.Files");
+      getFileSystem = fileSystems.getMethod("getFileSystem", URI.class);
+      newFileSystem = fileSystems.getMethod("newFileSystem", URI.class, Map.class);
+      newFileSystemWithLoader = fileSystems.getMethod("newFileSystem", URI.class, Map.class, ClassLoader.class);
+      getPath = fileSystem.getMethod("getPath", String.class, String[].class);
+      newDirectoryStream = files.getMethod("newDirectoryStream", path);
+      readAllBytes = files.getMethod("readAllBytes", path);
+      getFileName = path.getMethod("getFileName");
+    } catch (Exception ex) {
+      // java.nio.file is not supported by this java runtime
+      getFileSystem = null;
+    }
+    GET_FILE_SYSTEM = getFileSystem;
+    NEW_FILE_SYSTEM = newFileSystem;
+    NEW_FILE_SYSTEM_WITH_LOADER = newFileSystemWithLoader;
+    GET_PATH = getPath;
+    NEW_DIRECTORY_STREAM = newDirectoryStream;
+    READ_ALL_BYTES = readAllBytes;
+    GET_FILE_NAME = getFileName;
+
+    boolean nativeJrt = false;
+    try {
+      Class.forName("java.lang.Module");
+      nativeJrt = true;
+    } catch (ClassNotFoundException ex) {
+      nativeJrt = false;
+    }
+    NATIVE_JRT = nativeJrt;
+  }
+
+  /** the runtime image file */
+  private File                  _modulesFile;
+
+  /** the modification time of the runtime image */
+  private long                  _lastModified;
+
+  /** the jrt file system (a <code>java.nio.file.FileSystem</code>), <code>null</code> if it has been closed */
+  private Object                _fileSystem;
+
+  /** <code>true</code> if the file system has been created for this image and has to be closed */
+  private boolean               _ownFileSystem;
+
+  /** the class loader of <code>jrt-fs.jar</code>, maybe <code>null</code> */
+  private ClassLoader           _classLoader;
+
+  /** maps the packages to the modules that contain them */
+  private Map<String, String[]> _packages;
+
+  /** the sorted names of the files within a package of a module (key: module/package/path) */
+  private Map<String, String[]> _entries;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link JrtImage}.
+   * </p>
+   *
+   * @param modulesFile
+   *          the runtime image file
+   */
+  private JrtImage(File modulesFile) {
+    this._modulesFile = modulesFile;
+    this._lastModified = modulesFile.lastModified();
+    this._entries = new HashMap<String, String[]>();
+    this._packages = readPackages();
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the given file is the runtime image of a modular JDK (<code>lib/modules</code>) and
+   * the running java runtime is able to read it.
+   * </p>
+   *
+   * @param file
+   *          the file
+   * @return <code>true</code> if the given file is a runtime image that can be read.
+   */
+  public static boolean isModulesImage(File file) {
+    if ((GET_FILE_SYSTEM == null) || !MODULES_FILE_NAME.equals(file.getName()) || !file.isFile()) {
+      return false;
+    }
+    byte[] magic = new byte[4];
+    InputStream input = null;
+    try {
+      input = new FileInputStream(file);
+      if (input.read(magic) != magic.length) {
+        return false;
+      }
+    } catch (IOException ex) {
+      return false;
+    } finally {
+      Utilities.close((Closeable) input);
+    }
+    return Arrays.equals(magic, MAGIC_LE) || Arrays.equals(magic, MAGIC_BE);
+  }
+
+  /**
+   * <p>
+   * Returns the (shared) {@link JrtImage} for the given runtime image file.
+   * </p>
+   *
+   * @param modulesFile
+   *          the runtime image file (<code>lib/modules</code>)
+   * @return the {@link JrtImage} for the given runtime image file.
+   */
+  public static JrtImage getInstance(File modulesFile) {
+    Assure.isFile("modulesFile", modulesFile);
+    File file = Utilities.getCanonicalFile(modulesFile);
+    String prefix = file.getPath() + "|";
+    String key = prefix + file.lastModified() + "|" + file.length();
+    synchronized (IMAGES) {
+      JrtImage result = IMAGES.get(key);
+      if (result == null) {
+        // drop the outdated versions of the image
+        for (Iterator<Map.Entry<String, JrtImage>> iterator = IMAGES.entrySet().iterator(); iterator.hasNext();) {
+          Map.Entry<String, JrtImage> entry = iterator.next();
+          if (entry.getKey().startsWith(prefix)) {
+            iterator.remove();
+            entry.getValue().close();
+          }
+        }
+        result = new JrtImage(file);
+        IMAGES.put(key, result);
+      }
+      return result;
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the runtime image file.
+   * </p>
+   *
+   * @return the runtime image file.
+   */
+  public File getModulesFile() {
+    return this._modulesFile;
+  }
+
+  /**
+   * <p>
+   * Returns the modification time of the runtime image.
+   * </p>
+   *
+   * @return the modification time of the runtime image.
+   */
+  public long getLastModified() {
+    return this._lastModified;
+  }
+
+  /**
+   * <p>
+   * Returns the names of all packages within the runtime image.
+   * </p>
+   *
+   * @return the names of all packages within the runtime image.
+   */
+  public String[] getPackages() {
+    return this._packages.keySet().toArray(new String[this._packages.size()]);
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the runtime image contains the given package.
+   * </p>
+   *
+   * @param packageName
+   *          the (dot separated) name of the package
+   * @return <code>true</code> if the runtime image contains the given package.
+   */
+  public boolean hasPackage(String packageName) {
+    return this._packages.containsKey(packageName);
+  }
+
+  /**
+   * <p>
+   * Returns the module that contains the given file or <code>null</code> if the file doesn't exist.
+   * </p>
+   *
+   * @param packageName
+   *          the (dot separated) name of the package
+   * @param fileName
+   *          the name of the file (f.e. <code>Object.class</code>)
+   * @return the module that contains the given file or <code>null</code>.
+   */
+  public String findModule(String packageName, String fileName) {
+    String[] modules = this._packages.get(packageName);
+    if (modules == null) {
+      return null;
+    }
+    String packagePath = packageName.replace('.', '/');
+    for (String module : modules) {
+      if (Arrays.binarySearch(getEntries(module, packagePath), fileName) >= 0) {
+        return module;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * <p>
+   * Returns the content of the given file.
+   * </p>
+   *
+   * @param module
+   *          the module that contains the file
+   * @param entryName
+   *          the name of the file (f.e. <code>java/lang/Object.class</code>)
+   * @return the content of the given file.
+   */
+  public byte[] getBytes(String module, String entryName) {
+    try {
+      return (byte[]) invoke(READ_ALL_BYTES, null, getPath("/modules/" + module + "/" + entryName));
+    } catch (IOException ex) {
+      throw new Ant4EclipseException(ex, EcjExceptionCodes.UNABLE_TO_READ_FROM_RUNTIME_IMAGE_EXCEPTION, module + "/"
+          + entryName, this._modulesFile);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    return "[JrtImage: " + this._modulesFile + " packages: " + this._packages.size() + "]";
+  }
+
+  private synchronized String[] getEntries(String module, String packagePath) {
+    String key = module + "/" + packagePath;
+    String[] result = this._entries.get(key);
+    if (result == null) {
+      try {
+        result = list("/modules/" + key);
+      } catch (IOException ex) {
+        A4ELogging.debug("Could not list '%s' in '%s': %s", key, this._modulesFile, ex);
+        result = new String[0];
+      }
+      Arrays.sort(result);
+      this._entries.put(key, result);
+    }
+    return result;
+  }
+
+  private Map<String, String[]> readPackages() {
+    try {
+      Map<String, String[]> result = new HashMap<String, String[]>();
+      for (String packageName : list("/packages")) {
+        result.put(packageName.intern(), list("/packages/" + packageName));
+      }
+      return result;
+    } catch (IOException ex) {
+      throw new Ant4EclipseException(ex, EcjExceptionCodes.UNABLE_TO_READ_FROM_RUNTIME_IMAGE_EXCEPTION, "/packages",
+          this._modulesFile);
+    }
+  }
+
+  private String[] list(String directory) throws IOException {
+    List<String> result = new ArrayList<String>();
+    Object stream = invoke(NEW_DIRECTORY_STREAM, null, getPath(directory));
+    try {
+      for (Object path : (Iterable<?>) stream) {
+        result.add(String.valueOf(invoke(GET_FILE_NAME, path)));
+      }
+    } finally {
+      ((Closeable) stream).close();
+    }
+    return result.toArray(new String[result.size()]);
+  }
+
+  private Object getPath(String path) throws IOException {
+    return invoke(GET_PATH, getFileSystem(), path, new String[0]);
+  }
+
+  /**
+   * <p>
+   * Returns the jrt file system. The file system is opened if it hasn't been opened yet or if it has been closed.
+   * </p>
+   */
+  private synchronized Object getFileSystem() {
+    if (this._fileSystem != null) {
+      return this._fileSystem;
+    }
+    File javaHome = this._modulesFile.getParentFile().getParentFile();
+    try {
+      URI uri = URI.create("jrt:/");
+      File currentHome = Utilities.getCanonicalFile(new File(System.getProperty("java.home")));
+      if (!NATIVE_JRT) {
+        // load the file system provider from the JDK
+        File jrtFs = new File(javaHome, "lib/jrt-fs.jar");
+        this._classLoader = new URLClassLoader(new URL[] { jrtFs.toURI().toURL() });
+        this._fileSystem = invoke(NEW_FILE_SYSTEM_WITH_LOADER, null, uri, Collections.emptyMap(), this._classLoader);
+        this._ownFileSystem = true;
+      } else if (currentHome.equals(Utilities.getCanonicalFile(javaHome))) {
+        // the file system of the running java runtime can't be closed
+        this._fileSystem = invoke(GET_FILE_SYSTEM, null, uri);
+        this._ownFileSystem = false;
+      } else {
+        this._fileSystem = invoke(NEW_FILE_SYSTEM, null, uri, Collections.singletonMap("java.home", javaHome.getPath()));
+        this._ownFileSystem = true;
+      }
+      return this._fileSystem;
+    } catch (IOException ex) {
+      close();
+      throw new Ant4EclipseException(ex, EcjExceptionCodes.UNABLE_TO_READ_FROM_RUNTIME_IMAGE_EXCEPTION, "jrt:/",
+          this._modulesFile);
+    }
+  }
+
+  /**
+   * <p>
+   * Closes the jrt file system (if it has been created for this image) and the class loader of <code>jrt-fs.jar</code>.
+   * Called when the image is dropped from the shared images.
+   * </p>
+   */
+  private synchronized void close() {
+    if (this._ownFileSystem) {
+      Utilities.close((Closeable) this._fileSystem);
+    }
+    if (this._classLoader instanceof Closeable) {
+      // URLClassLoader is closeable since java 7
+      Utilities.close((Closeable) this._classLoader);
+    }
+    this._fileSystem = null;
+    this._ownFileSystem = false;
+    this._classLoader = null;
+  }
+
+  private static Object invoke(Method method, Object target, Object... args) throws IOException {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException ex) {
+      if (ex.getCause() instanceof IOException) {
+        throw (IOException) ex.getCause();
+      }
+      IOException ioException = new IOException(String.valueOf(ex.getCause()));
+      ioException.initCause(ex.getCause());
+      throw ioException;
+    } catch (IllegalAccessException ex) {
+      IOException ioException = new IOException(ex.getMessage());
+      ioException.initCause(ex);
+      throw ioException;
+    }
+  }
+
+  /**
+   * <p>
+   * The shared images. If there are more images than allowed, the least recently used image is removed and closed.
+   * </p>
+   */
+  private static class ImageCache extends LinkedHashMap<String, JrtImage> {
+
+    private static final long serialVersionUID = 1L;
+
+    private ImageCache() {
+      super(16, 0.75f, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, JrtImage> eldest) {
+      if (size() > Integer.getInteger(MAX_SIZE_PROPERTY, 4).intValue()) {
+        eldest.getValue().close();
+        return true;
+      }
+      return false;
+    }
+  }
+}
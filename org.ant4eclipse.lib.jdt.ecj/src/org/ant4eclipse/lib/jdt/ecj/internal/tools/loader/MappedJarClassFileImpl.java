@@ -0,0 +1,120 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import java.io.IOException;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
+import org.ant4eclipse.lib.jdt.ecj.ClassFile;
+import org.ant4eclipse.lib.jdt.ecj.EcjExceptionCodes;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.DefaultReferableType;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFormatException;
+import org.eclipse.jdt.internal.compiler.env.IBinaryType;
+
+/**
+ * <p>
+ * {@link ClassFile} that is read from a {@link MappedJarFile}.
+ * </p>
+ */
+public class MappedJarClassFileImpl extends DefaultReferableType implements ClassFile {
+
+  /** the mapped jar file */
+  private MappedJarFile _jarFile;
+
+  /** the entry name */
+  private String        _entryName;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link MappedJarClassFileImpl}.
+   * </p>
+   *
+   * @param entryName
+   *          the name of the entry within the archive
+   * @param jarFile
+   *          the mapped archive
+   * @param libraryLocation
+   *          the library location
+   * @param libraryType
+   *          the library type
+   */
+  public MappedJarClassFileImpl(String entryName, MappedJarFile jarFile, String libraryLocation, byte libraryType) {
+    super(libraryLocation, libraryType);
+
+    Assure.nonEmpty("entryName", entryName);
+    Assure.notNull("jarFile", jarFile);
+
+    this._entryName = entryName;
+    this._jarFile = jarFile;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public byte[] getBytes() {
+    try {
+      return this._jarFile.getBytes(this._entryName);
+    } catch (IOException e) {
+      throw new RuntimeException(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public final IBinaryType getBinaryType() {
+
+    // try to get the parsed type from the cache (a mapped jar file doesn't change)
+    BinaryTypeCache cache = BinaryTypeCache.getInstance();
+    String location = this._jarFile.getFile().getAbsolutePath();
+    IBinaryType result = cache.getBinaryType(location, this._entryName, this._jarFile.getLastModified());
+    if (result != null) {
+      return result;
+    }
+
+    try {
+      byte[] bytes = this._jarFile.getBytes(this._entryName);
+      result = new ClassFileReader(bytes, this._entryName.toCharArray(), true);
+      cache.storeBinaryType(location, this._entryName, this._jarFile.getLastModified(), result, bytes.length);
+      return result;
+    } catch (ClassFormatException e) {
+      throw new Ant4EclipseException(e, EcjExceptionCodes.UNABLE_TO_READ_BINARY_TYPE_FROM_JAR_EXCEPTION,
+          this._jarFile.getFile().getAbsolutePath(), this._entryName);
+    } catch (IOException e) {
+      throw new Ant4EclipseException(e, EcjExceptionCodes.UNABLE_TO_READ_BINARY_TYPE_FROM_JAR_EXCEPTION,
+          this._jarFile.getFile().getAbsolutePath(), this._entryName);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    StringBuffer buffer = new StringBuffer();
+    buffer.append("[MappedJarClassFileImpl:");
+    buffer.append(" bundleLocation: ");
+    buffer.append(getLibraryLocation());
+    buffer.append(" bundleType: ");
+    buffer.append(getLibraryType());
+    buffer.append(" accessRestriction: ");
+    buffer.append(getAccessRestriction());
+    buffer.append(" jarFile: ");
+    buffer.append(this._jarFile.getFile());
+    buffer.append(" entryName: ");
+    buffer.append(this._entryName);
+    buffer.append("]");
+    return buffer.toString();
+  }
+}
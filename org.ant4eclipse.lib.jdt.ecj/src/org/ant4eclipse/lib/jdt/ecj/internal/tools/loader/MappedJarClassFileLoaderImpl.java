@@ -0,0 +1,184 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.ClassName;
+import org.ant4eclipse.lib.jdt.ecj.ClassFile;
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
+import org.ant4eclipse.lib.jdt.ecj.ReferableSourceFile;
+
+/**
+ * <p>
+ * {@link ClassFileLoader} that loads the class files of a single jar file that is mapped into memory (see
+ * {@link MappedJarFile}). It's meant for archives that are read very often and don't change during a build, like the
+ * jar files of the JRE or of the target platform.
+ * </p>
+ * <p>
+ * The loader is used instead of the {@link ClasspathClassFileLoaderImpl} for jar files if the system property
+ * <code>ant4eclipse.mapJarFiles</code> is set to <code>true</code>.
+ * </p>
+ */
+public class MappedJarClassFileLoaderImpl implements ClassFileLoader {
+
+  /** System-Property that enables memory mapped jar files */
+  public static final String MAP_JAR_FILES_PROPERTY = "ant4eclipse.mapJarFiles";
+
+  /** the mapped jar file */
+  private MappedJarFile      _jarFile;
+
+  /** the location of the jar file */
+  private String             _location;
+
+  /** the type of the associated bundle (PROJECT or LIBRARY) */
+  private byte               _type;
+
+  /** the packages of the jar file */
+  private Set<String>        _allPackages;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link MappedJarClassFileLoaderImpl}.
+   * </p>
+   *
+   * @param jarFile
+   *          the jar file
+   * @param type
+   *          the type
+   * @throws IOException
+   *           if the jar file could not be mapped.
+   */
+  public MappedJarClassFileLoaderImpl(File jarFile, byte type) throws IOException {
+    Assure.isFile("jarFile", jarFile);
+
+    this._jarFile = new MappedJarFile(jarFile);
+    this._location = jarFile.getAbsolutePath();
+    this._type = type;
+    this._allPackages = new HashSet<String>();
+
+    // the (optional) persistent package index
+    PackageIndexStore packageIndexStore = PackageIndexStore.getInstance();
+    String[] packages = packageIndexStore != null ? packageIndexStore.getPackages(jarFile) : null;
+    if (packages != null) {
+      for (String packageName : packages) {
+        this._allPackages.add(packageName);
+      }
+    } else {
+      long start = System.nanoTime();
+      readPackages();
+      if (packageIndexStore != null) {
+        packageIndexStore.storePackages(jarFile, this._allPackages.toArray(new String[this._allPackages.size()]),
+            System.nanoTime() - start);
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if memory mapped jar files have been enabled using the system property
+   * {@link #MAP_JAR_FILES_PROPERTY}.
+   * </p>
+   *
+   * @return <code>true</code> if memory mapped jar files have been enabled.
+   */
+  public static boolean isEnabled() {
+    return Boolean.getBoolean(MAP_JAR_FILES_PROPERTY);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public String[] getAllPackages() {
+    return this._allPackages.toArray(new String[this._allPackages.size()]);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public boolean hasPackage(String packageName) {
+    return this._allPackages.contains(packageName);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public ClassFile loadClass(ClassName className) {
+    if (!hasPackage(className.getPackageName())) {
+      return null;
+    }
+    String entryName = className.asClassFileName();
+    if (!this._jarFile.hasEntry(entryName)) {
+      return null;
+    }
+    return new MappedJarClassFileImpl(entryName, this._jarFile, this._location, this._type);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public ReferableSourceFile loadSource(ClassName className) {
+    // we do not support source jars here...
+    return null;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public File[] getClasspath() {
+    return new File[] { this._jarFile.getFile() };
+  }
+
+  /**
+   * <p>
+   * Collects the names of all packages (including all parent packages) of the jar file.
+   * </p>
+   */
+  private void readPackages() {
+    for (int i = 0; i < this._jarFile.size(); i++) {
+      String name = this._jarFile.getName(i);
+      int splitIndex = name.lastIndexOf('/');
+      if (splitIndex <= 0) {
+        continue;
+      }
+      String packageName = name.substring(0, splitIndex).replace('/', '.');
+
+      // if the package is already known, all of its parent packages are known, too
+      while (this._allPackages.add(packageName)) {
+        int index = packageName.lastIndexOf('.');
+        if (index == -1) {
+          break;
+        }
+        packageName = packageName.substring(0, index);
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    StringBuffer buffer = new StringBuffer();
+    buffer.append("[MappedJarClassFileLoaderImpl:");
+    buffer.append(" _location: ");
+    buffer.append(this._location);
+    buffer.append(" _type: ");
+    buffer.append(this._type);
+    buffer.append("]");
+    return buffer.toString();
+  }
+}
@@ -0,0 +1,460 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.ant4eclipse.lib.core.Assure;
+
+/**
+ * <p>
+ * Read-only view on a jar file that is mapped into memory. The central directory of the archive is parsed once into a
+ * compact open addressing hash table that maps entry names to the position of their central directory header, so
+ * looking up an entry neither allocates entry objects nor needs any system call. The content of an entry is copied
+ * directly from the mapped region; it's only inflated if the entry is compressed.
+ * </p>
+ * <p>
+ * Archives in the ZIP64 format are not supported. The archive must not be modified as long as it's mapped.
+ * </p>
+ */
+public class MappedJarFile {
+
+  /** signature of the end of central directory record */
+  private static final int END_SIGNATURE            = 0x06054b50;
+
+  /** signature of a central directory file header */
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+
+  /** signature of a local file header */
+  private static final int LOCAL_HEADER_SIGNATURE   = 0x04034b50;
+
+  /** the size of the end of central directory record (without comment) */
+  private static final int END_HEADER_SIZE          = 22;
+
+  /** the size of a central directory file header (without name, extra field and comment) */
+  private static final int CENTRAL_HEADER_SIZE      = 46;
+
+  /** the size of a local file header (without name and extra field) */
+  private static final int LOCAL_HEADER_SIZE        = 30;
+
+  /** compression method 'stored' */
+  private static final int METHOD_STORED            = 0;
+
+  /** compression method 'deflated' */
+  private static final int METHOD_DEFLATED          = 8;
+
+  /** the mapped archive */
+  private File             _file;
+
+  /** the modification time of the archive when it has been mapped */
+  private long             _lastModified;
+
+  /** the mapped content of the archive (little endian) */
+  private ByteBuffer       _buffer;
+
+  /** the positions of the central directory headers of all entries */
+  private int[]            _headers;
+
+  /** the hash codes of the names of all entries */
+  private int[]            _hashes;
+
+  /** the hash table: entry index + 1 or 0 for an empty slot */
+  private int[]            _table;
+
+  /**
+   * <p>
+   * Maps the given archive into memory and reads its central directory.
+   * </p>
+   *
+   * @param file
+   *          the archive. Not <code>null</code>.
+   * @throws IOException
+   *           if the archive could not be mapped or if it is not a supported zip archive.
+   */
+  public MappedJarFile(File file) throws IOException {
+    Assure.isFile("file", file);
+
+    this._file = file;
+    this._lastModified = file.lastModified();
+
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = randomAccessFile.getChannel();
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Archive too large to be mapped: " + file);
+      }
+      // the mapping stays valid after the channel has been closed
+      this._buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      this._buffer.order(ByteOrder.LITTLE_ENDIAN);
+    } finally {
+      randomAccessFile.close();
+    }
+
+    readCentralDirectory();
+  }
+
+  /**
+   * <p>
+   * Returns the mapped archive.
+   * </p>
+   *
+   * @return the mapped archive.
+   */
+  public File getFile() {
+    return this._file;
+  }
+
+  /**
+   * <p>
+   * Returns the modification time of the archive at the time it has been mapped.
+   * </p>
+   *
+   * @return the modification time of the archive.
+   */
+  public long getLastModified() {
+    return this._lastModified;
+  }
+
+  /**
+   * <p>
+   * Returns the number of entries of this archive.
+   * </p>
+   *
+   * @return the number of entries of this archive.
+   */
+  public int size() {
+    return this._headers.length;
+  }
+
+  /**
+   * <p>
+   * Returns the name of the entry with the given index.
+   * </p>
+   *
+   * @param index
+   *          the index of the entry (0 &lt;= index &lt; {@link #size()})
+   * @return the name of the entry.
+   */
+  public String getName(int index) {
+    int header = this._headers[index];
+    int length = getUnsignedShort(header + 28);
+    byte[] name = new byte[length];
+    copy(header + CENTRAL_HEADER_SIZE, name, 0, length);
+    try {
+      return new String(name, "UTF-8");
+    } catch (UnsupportedEncodingException ex) {
+      // UTF-8 is always supported
+      throw new RuntimeException(ex.getMessage(), ex);
+    }
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the archive contains an entry with the given name.
+   * </p>
+   *
+   * @param name
+   *          the name of the entry. Not <code>null</code>.
+   * @return <code>true</code> if the archive contains an entry with the given name.
+   */
+  public boolean hasEntry(String name) {
+    return indexOf(name) != -1;
+  }
+
+  /**
+   * <p>
+   * Returns the (uncompressed) content of the entry with the given name.
+   * </p>
+   *
+   * @param name
+   *          the name of the entry. Not <code>null</code>.
+   * @return the content of the entry or <code>null</code> if there's no such entry.
+   * @throws IOException
+   *           if the content of the entry could not be read.
+   */
+  public byte[] getBytes(String name) throws IOException {
+    int index = indexOf(name);
+    if (index == -1) {
+      return null;
+    }
+
+    int header = this._headers[index];
+    int method = getUnsignedShort(header + 10);
+    int compressedSize = this._buffer.getInt(header + 20);
+    int size = this._buffer.getInt(header + 24);
+    int localHeader = this._buffer.getInt(header + 42);
+
+    // the sizes of name and extra field may differ between local and central header
+    if ((localHeader < 0) || (localHeader > this._buffer.limit() - LOCAL_HEADER_SIZE)
+        || (this._buffer.getInt(localHeader) != LOCAL_HEADER_SIGNATURE)) {
+      throw new IOException("Invalid local header for entry '" + name + "' in archive " + this._file);
+    }
+    int data = localHeader + LOCAL_HEADER_SIZE + getUnsignedShort(localHeader + 26)
+        + getUnsignedShort(localHeader + 28);
+    if ((compressedSize < 0) || (size < 0) || (data > this._buffer.limit() - compressedSize)) {
+      throw new IOException("Invalid size of entry '" + name + "' in archive " + this._file);
+    }
+
+    byte[] result = new byte[size];
+    if (method == METHOD_STORED) {
+      copy(data, result, 0, size);
+    } else if (method == METHOD_DEFLATED) {
+      // the inflater needs an extra dummy byte if the 'nowrap' option is used
+      byte[] compressed = new byte[compressedSize + 1];
+      copy(data, compressed, 0, compressedSize);
+      Inflater inflater = new Inflater(true);
+      try {
+        inflater.setInput(compressed);
+        int offset = 0;
+        while (offset < size) {
+          int count = inflater.inflate(result, offset, size - offset);
+          if ((count == 0) && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+            throw new IOException("Unexpected end of entry '" + name + "' in archive " + this._file);
+          }
+          offset += count;
+        }
+      } catch (DataFormatException ex) {
+        throw new IOException("Invalid compressed data of entry '" + name + "' in archive " + this._file + ": "
+            + ex.getMessage());
+      } finally {
+        inflater.end();
+      }
+    } else {
+      throw new IOException("Unsupported compression method " + method + " of entry '" + name + "' in archive "
+          + this._file);
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns the index of the entry with the given name or -1 if there's no such entry.
+   * </p>
+   *
+   * @param name
+   *          the name of the entry.
+   * @return the index of the entry or -1.
+   */
+  private int indexOf(String name) {
+    Assure.notNull("name", name);
+
+    // names are stored UTF-8 encoded, so only non-ascii names need to be converted
+    byte[] encoded = null;
+    for (int i = 0; i < name.length(); i++) {
+      if (name.charAt(i) >= 0x80) {
+        try {
+          encoded = name.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+          // UTF-8 is always supported
+          throw new RuntimeException(ex.getMessage(), ex);
+        }
+        break;
+      }
+    }
+
+    int hash = encoded != null ? hash(encoded) : hash(name);
+    int mask = this._table.length - 1;
+    for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+      int index = this._table[slot] - 1;
+      if (index == -1) {
+        return -1;
+      }
+      if ((this._hashes[index] == hash) && nameEquals(this._headers[index], name, encoded)) {
+        return index;
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Compares the name of the entry with the given central header to the specified name.
+   * </p>
+   */
+  private boolean nameEquals(int header, String name, byte[] encoded) {
+    int length = getUnsignedShort(header + 28);
+    int start = header + CENTRAL_HEADER_SIZE;
+    if (encoded != null) {
+      if (length != encoded.length) {
+        return false;
+      }
+      for (int i = 0; i < length; i++) {
+        if (this._buffer.get(start + i) != encoded[i]) {
+          return false;
+        }
+      }
+    } else {
+      if (length != name.length()) {
+        return false;
+      }
+      for (int i = 0; i < length; i++) {
+        if (this._buffer.get(start + i) != (byte) name.charAt(i)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * <p>
+   * Locates the central directory and builds the hash table of all entry names.
+   * </p>
+   *
+   * @throws IOException
+   */
+  private void readCentralDirectory() throws IOException {
+
+    // search the end of central directory record (it may be followed by a comment of up to 64k)
+    int limit = this._buffer.limit();
+    int end = -1;
+    for (int i = limit - END_HEADER_SIZE; (i >= 0) && (i >= limit - END_HEADER_SIZE - 0xFFFF); i--) {
+      if (this._buffer.getInt(i) == END_SIGNATURE) {
+        end = i;
+        break;
+      }
+    }
+    if (end == -1) {
+      throw new IOException("Not a zip archive: " + this._file);
+    }
+
+    int count = getUnsignedShort(end + 10);
+    int directoryOffset = this._buffer.getInt(end + 16);
+    if ((count == 0xFFFF) || (directoryOffset == 0xFFFFFFFF)) {
+      throw new IOException("ZIP64 archives are not supported: " + this._file);
+    }
+    if ((directoryOffset < 0) || (directoryOffset > end)) {
+      throw new IOException("Invalid central directory in archive " + this._file);
+    }
+
+    // the table has at least twice as many slots as there are entries
+    int capacity = 16;
+    while (capacity < count * 2) {
+      capacity <<= 1;
+    }
+    this._table = new int[capacity];
+    this._headers = new int[count];
+    this._hashes = new int[count];
+
+    int mask = capacity - 1;
+    int position = directoryOffset;
+    for (int index = 0; index < count; index++) {
+      if ((position > end - CENTRAL_HEADER_SIZE) || (this._buffer.getInt(position) != CENTRAL_HEADER_SIGNATURE)) {
+        throw new IOException("Invalid central directory in archive " + this._file);
+      }
+      int nameLength = getUnsignedShort(position + 28);
+      int hash = hash(position + CENTRAL_HEADER_SIZE, nameLength);
+
+      this._headers[index] = position;
+      this._hashes[index] = hash;
+
+      int slot = hash & mask;
+      while (this._table[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      this._table[slot] = index + 1;
+
+      position += CENTRAL_HEADER_SIZE + nameLength + getUnsignedShort(position + 30) + getUnsignedShort(position + 32);
+    }
+  }
+
+  /**
+   * <p>
+   * Computes the hash of the name stored at the given position of the mapped region.
+   * </p>
+   */
+  private int hash(int start, int length) {
+    int result = 0;
+    for (int i = 0; i < length; i++) {
+      result = 31 * result + (this._buffer.get(start + i) & 0xFF);
+    }
+    return mix(result);
+  }
+
+  /**
+   * <p>
+   * Computes the hash of the given (ascii) name.
+   * </p>
+   */
+  private static int hash(String name) {
+    int result = 0;
+    for (int i = 0; i < name.length(); i++) {
+      result = 31 * result + name.charAt(i);
+    }
+    return mix(result);
+  }
+
+  /**
+   * <p>
+   * Computes the hash of the given UTF-8 encoded name.
+   * </p>
+   */
+  private static int hash(byte[] name) {
+    int result = 0;
+    for (byte element : name) {
+      result = 31 * result + (element & 0xFF);
+    }
+    return mix(result);
+  }
+
+  /**
+   * <p>
+   * Spreads the bits of the given hash code, so the low bits can be used to address the table.
+   * </p>
+   */
+  private static int mix(int hash) {
+    hash ^= (hash >>> 20) ^ (hash >>> 12);
+    return hash ^ (hash >>> 7) ^ (hash >>> 4);
+  }
+
+  /**
+   * <p>
+   * Copies bytes from the mapped region without changing the state of the shared buffer.
+   * </p>
+   */
+  private void copy(int position, byte[] target, int offset, int length) {
+    ByteBuffer buffer = this._buffer.duplicate();
+    buffer.position(position);
+    buffer.get(target, offset, length);
+  }
+
+  /**
+   * <p>
+   * Reads an unsigned 16 bit value.
+   * </p>
+   */
+  private int getUnsignedShort(int position) {
+    return this._buffer.getShort(position) & 0xFFFF;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    StringBuffer buffer = new StringBuffer();
+    buffer.append("[MappedJarFile:");
+    buffer.append(" file: ");
+    buffer.append(this._file);
+    buffer.append(" entries: ");
+    buffer.append(this._headers.length);
+    buffer.append("]");
+    return buffer.toString();
+  }
+}
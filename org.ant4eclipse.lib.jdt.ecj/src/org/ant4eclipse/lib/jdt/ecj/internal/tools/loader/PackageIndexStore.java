@@ -0,0 +1,502 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.ant4eclipse.lib.core.Lifecycle;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.service.ServiceRegistryAccess;
+import org.ant4eclipse.lib.core.util.Utilities;
+
+/**
+ * <p>
+ * Persistent store for the package lists of class path entries. Scanning a jar file or an output folder for all
+ * contained packages is expensive, so the result is recorded together with a fingerprint of the entry (the size and the
+ * modification time for jar files, a hash of the directory tree for folders). As long as the fingerprint matches, the
+ * stored package list can be reused instead of scanning the entry again.
+ * </p>
+ * <p>
+ * The store is enabled by setting the system property <code>ant4eclipse.packageIndexFile</code> to the location of
+ * the index file. The whole file is loaded with a single read when the service is initialized. New or changed entries
+ * are appended to the file, so it doesn't need to be rewritten at the end of a build. Outdated records are dropped
+ * whenever the file is compacted on startup.
+ * </p>
+ */
+public class PackageIndexStore implements Lifecycle {
+
+  /** System-Property that specifies the location of the index file (and enables the store) */
+  public static final String         INDEX_FILE_PROPERTY = "ant4eclipse.packageIndexFile";
+
+  /** the magic number of an index file */
+  private static final int           MAGIC               = 0x41344550;
+
+  /** the version of the file format */
+  private static final int           VERSION             = 1;
+
+  /** record kind for jar files */
+  private static final byte          KIND_JAR            = 1;
+
+  /** record kind for directories */
+  private static final byte          KIND_DIRECTORY      = 2;
+
+  /** the index file, <code>null</code> if the store is disabled */
+  private File                       _indexFile;
+
+  /** maps the absolute path of a class path entry to its index record */
+  private Map<String, IndexRecord>   _records;
+
+  /** the number of records stored in the index file (including outdated ones) */
+  private int                        _recordsInFile;
+
+  /** hit counter */
+  private int                        _hits;
+
+  /** miss counter */
+  private int                        _missed;
+
+  /** the time (in nanoseconds) that would have been spent scanning entries that could be served from the index */
+  private long                       _savedNanos;
+
+  /** the time (in nanoseconds) spent scanning entries that were missing or outdated */
+  private long                       _scanNanos;
+
+  /** - */
+  private boolean                    _initialized;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link PackageIndexStore}.
+   * </p>
+   */
+  public PackageIndexStore() {
+    this._records = new HashMap<String, IndexRecord>();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public boolean isInitialized() {
+    return this._initialized;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public synchronized void initialize() {
+    String location = Utilities.cleanup(System.getProperty(INDEX_FILE_PROPERTY));
+    if (location != null) {
+      this._indexFile = new File(location).getAbsoluteFile();
+      load();
+    }
+    this._initialized = true;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public synchronized void dispose() {
+    this._initialized = false;
+    dump();
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the store has been enabled using the system property
+   * {@link #INDEX_FILE_PROPERTY}.
+   * </p>
+   *
+   * @return <code>true</code> if the store has been enabled.
+   */
+  public boolean isEnabled() {
+    return this._indexFile != null;
+  }
+
+  /**
+   * <p>
+   * Returns the packages of the given class path entry if they are known and the entry didn't change since they have
+   * been recorded. Otherwise <code>null</code> will be returned and the caller is supposed to scan the entry and to
+   * {@link #storePackages(File, String[], long) store} the result.
+   * </p>
+   *
+   * @param entry
+   *          the class path entry (a jar file or a directory). Not <code>null</code>.
+   * @return the packages of the entry or <code>null</code> if they have to be computed.
+   */
+  public synchronized String[] getPackages(File entry) {
+    if (!isEnabled()) {
+      return null;
+    }
+
+    long start = System.nanoTime();
+
+    IndexRecord record = this._records.get(entry.getAbsolutePath());
+    if ((record == null) || !record.matches(entry)) {
+      this._missed++;
+      return null;
+    }
+
+    this._hits++;
+    this._savedNanos += Math.max(0, record._scanNanos - (System.nanoTime() - start));
+    return record._packages;
+  }
+
+  /**
+   * <p>
+   * Records the packages of the given class path entry and appends them to the index file.
+   * </p>
+   *
+   * @param entry
+   *          the class path entry (a jar file or a directory). Not <code>null</code>.
+   * @param packages
+   *          all packages of the entry. Not <code>null</code>.
+   * @param scanNanos
+   *          the time in nanoseconds it took to scan the entry.
+   */
+  public synchronized void storePackages(File entry, String[] packages, long scanNanos) {
+    if (!isEnabled()) {
+      return;
+    }
+
+    this._scanNanos += scanNanos;
+
+    IndexRecord record = IndexRecord.create(entry, packages, scanNanos);
+    if (record == null) {
+      return;
+    }
+    this._records.put(record._path, record);
+
+    // append the record
+    try {
+      ByteArrayOutputStream byteout = new ByteArrayOutputStream();
+      DataOutputStream dataout = new DataOutputStream(byteout);
+      if (!this._indexFile.isFile()) {
+        Utilities.mkdirs(this._indexFile.getParentFile());
+        writeHeader(dataout);
+        this._recordsInFile = 0;
+      }
+      record.write(dataout);
+      dataout.flush();
+      Utilities.appendFile(this._indexFile, byteout.toByteArray());
+      this._recordsInFile++;
+    } catch (Exception ex) {
+      A4ELogging.warn("Could not update package index '%s': %s", this._indexFile, ex.getMessage());
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the number of entries that could be served from the index.
+   * </p>
+   *
+   * @return the number of entries that could be served from the index.
+   */
+  public synchronized int getHits() {
+    return this._hits;
+  }
+
+  /**
+   * <p>
+   * Returns the number of entries that had to be scanned.
+   * </p>
+   *
+   * @return the number of entries that had to be scanned.
+   */
+  public synchronized int getMisses() {
+    return this._missed;
+  }
+
+  /**
+   * <p>
+   * Returns the (estimated) time in milliseconds that has been saved by using the index. The estimation is based on the
+   * time it took to scan the entries when they have been recorded.
+   * </p>
+   *
+   * @return the time in milliseconds that has been saved by using the index.
+   */
+  public synchronized long getSavedMillis() {
+    return this._savedNanos / 1000000L;
+  }
+
+  /**
+   * Dumps the hit statistics of the PackageIndexStore via A4ELogging
+   */
+  public synchronized void dump() {
+    if (!isEnabled()) {
+      return;
+    }
+    A4ELogging.info("PackageIndexStore '%s' contains %d entries.", this._indexFile, Integer.valueOf(this._records
+        .size()));
+    A4ELogging.info("There has been %d hits and %d misses. The index saved %d ms (%d ms were spent scanning).",
+        Integer.valueOf(this._hits), Integer.valueOf(this._missed), Long.valueOf(this._savedNanos / 1000000L), Long
+            .valueOf(this._scanNanos / 1000000L));
+  }
+
+  /**
+   * <p>
+   * Loads the index file using a single read. Outdated records or a damaged tail (f.e. caused by an interrupted build)
+   * cause the file to be compacted.
+   * </p>
+   */
+  private void load() {
+    this._records.clear();
+    this._recordsInFile = 0;
+
+    if (!this._indexFile.isFile()) {
+      return;
+    }
+
+    boolean damaged = false;
+    try {
+      DataInputStream input = new DataInputStream(new ByteArrayInputStream(readFully(this._indexFile)));
+      if ((input.readInt() != MAGIC) || (input.readInt() != VERSION)) {
+        damaged = true;
+      } else {
+        while (input.available() > 0) {
+          IndexRecord record = IndexRecord.read(input);
+          this._records.put(record._path, record);
+          this._recordsInFile++;
+        }
+      }
+    } catch (IOException ex) {
+      // the records read so far are still valid
+      damaged = true;
+    }
+
+    if (damaged || (this._recordsInFile > (2 * this._records.size()) + 64)) {
+      compact();
+    }
+  }
+
+  /**
+   * <p>
+   * Rewrites the index file so that it only contains the currently known records.
+   * </p>
+   */
+  private void compact() {
+    try {
+      ByteArrayOutputStream byteout = new ByteArrayOutputStream();
+      DataOutputStream dataout = new DataOutputStream(byteout);
+      writeHeader(dataout);
+      for (IndexRecord record : this._records.values()) {
+        record.write(dataout);
+      }
+      dataout.flush();
+      File tempFile = new File(this._indexFile.getParentFile(), this._indexFile.getName() + ".tmp");
+      Utilities.writeFile(tempFile, byteout.toByteArray());
+      Utilities.delete(this._indexFile);
+      if (!tempFile.renameTo(this._indexFile)) {
+        Utilities.delete(tempFile);
+      }
+      this._recordsInFile = this._records.size();
+    } catch (Exception ex) {
+      A4ELogging.warn("Could not compact package index '%s': %s", this._indexFile, ex.getMessage());
+    }
+  }
+
+  /**
+   * <p>
+   * Writes the file header.
+   * </p>
+   *
+   * @param output
+   *          the output stream
+   * @throws IOException
+   */
+  private static void writeHeader(DataOutputStream output) throws IOException {
+    output.writeInt(MAGIC);
+    output.writeInt(VERSION);
+  }
+
+  /**
+   * <p>
+   * Reads the complete content of the given file.
+   * </p>
+   *
+   * @param file
+   *          the file to read
+   * @return the content of the file
+   * @throws IOException
+   */
+  private static byte[] readFully(File file) throws IOException {
+    InputStream input = new FileInputStream(file);
+    try {
+      byte[] result = new byte[(int) file.length()];
+      int offset = 0;
+      while (offset < result.length) {
+        int read = input.read(result, offset, result.length - offset);
+        if (read == -1) {
+          break;
+        }
+        offset += read;
+      }
+      if (offset < result.length) {
+        byte[] truncated = new byte[offset];
+        System.arraycopy(result, 0, truncated, 0, offset);
+        result = truncated;
+      }
+      return result;
+    } finally {
+      Utilities.close((Closeable) input);
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the {@link PackageIndexStore} if the service registry provides one, <code>null</code> otherwise.
+   * </p>
+   *
+   * @return the {@link PackageIndexStore} or <code>null</code>.
+   */
+  public static PackageIndexStore getInstance() {
+    if (!ServiceRegistryAccess.isConfigured()
+        || !ServiceRegistryAccess.instance().hasService(PackageIndexStore.class)) {
+      return null;
+    }
+    return ServiceRegistryAccess.instance().getService(PackageIndexStore.class);
+  }
+
+  /**
+   * <p>
+   * A single record of the index: the packages of a class path entry together with its fingerprint.
+   * </p>
+   */
+  private static class IndexRecord {
+
+    /** the absolute path of the entry */
+    private String   _path;
+
+    /** the kind of the entry */
+    private byte     _kind;
+
+    /** the size of a jar file */
+    private long     _length;
+
+    /** the modification time of the entry */
+    private long     _lastModified;
+
+    /** the hash of the directory tree (directories only) */
+    private long     _treeHash;
+
+    /** the time it took to scan the entry */
+    private long     _scanNanos;
+
+    /** the packages of the entry */
+    private String[] _packages;
+
+    /**
+     * <p>
+     * Creates a record for the given entry or returns <code>null</code> if the entry doesn't exist.
+     * </p>
+     */
+    static IndexRecord create(File entry, String[] packages, long scanNanos) {
+      IndexRecord result = new IndexRecord();
+      result._path = entry.getAbsolutePath();
+      result._packages = packages;
+      result._scanNanos = scanNanos;
+      result._lastModified = entry.lastModified();
+      if (entry.isFile()) {
+        result._kind = KIND_JAR;
+        result._length = entry.length();
+      } else if (entry.isDirectory()) {
+        result._kind = KIND_DIRECTORY;
+        result._treeHash = treeHash(entry, packages);
+      } else {
+        return null;
+      }
+      return result;
+    }
+
+    /**
+     * <p>
+     * Returns <code>true</code> if the given entry still matches the fingerprint of this record.
+     * </p>
+     */
+    boolean matches(File entry) {
+      if (this._kind == KIND_JAR) {
+        return entry.isFile() && (entry.length() == this._length) && (entry.lastModified() == this._lastModified);
+      } else {
+        return entry.isDirectory() && (entry.lastModified() == this._lastModified)
+            && (treeHash(entry, this._packages) == this._treeHash);
+      }
+    }
+
+    /**
+     * <p>
+     * Computes a hash for the directory tree of the given directory. Adding or removing a sub directory changes the
+     * modification time of its parent, so it's sufficient to combine the modification times of all package
+     * directories. No directory needs to be listed for this.
+     * </p>
+     */
+    private static long treeHash(File directory, String[] packages) {
+      long result = directory.lastModified();
+      for (String packageName : packages) {
+        File packageDirectory = new File(directory, packageName.replace('.', File.separatorChar));
+        result = (31 * result) + packageName.hashCode();
+        result = (31 * result) + packageDirectory.lastModified();
+      }
+      return result;
+    }
+
+    /**
+     * <p>
+     * Writes this record.
+     * </p>
+     */
+    void write(DataOutputStream output) throws IOException {
+      output.writeUTF(this._path);
+      output.writeByte(this._kind);
+      output.writeLong(this._length);
+      output.writeLong(this._lastModified);
+      output.writeLong(this._treeHash);
+      output.writeLong(this._scanNanos);
+      output.writeInt(this._packages.length);
+      for (String packageName : this._packages) {
+        output.writeUTF(packageName);
+      }
+    }
+
+    /**
+     * <p>
+     * Reads a record.
+     * </p>
+     */
+    static IndexRecord read(DataInputStream input) throws IOException {
+      IndexRecord result = new IndexRecord();
+      result._path = input.readUTF();
+      result._kind = input.readByte();
+      result._length = input.readLong();
+      result._lastModified = input.readLong();
+      result._treeHash = input.readLong();
+      result._scanNanos = input.readLong();
+      int count = input.readInt();
+      if ((count < 0) || (count > input.available())) {
+        throw new IOException("Invalid package count " + count);
+      }
+      result._packages = new String[count];
+      for (int i = 0; i < count; i++) {
+        result._packages[i] = input.readUTF().intern();
+      }
+      return result;
+    }
+  }
+}
@@ -0,0 +1,64 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.testframework;
+
+import java.io.File;
+
+import org.ant4eclipse.lib.jdt.ecj.SourceFile;
+import org.ant4eclipse.lib.jdt.ecj.SourceFileFactory;
+import org.junit.Assume;
+
+/**
+ * <p>
+ * Collection of utilities for tests that run the eclipse compiler.
+ * </p>
+ */
+public class EcjTestUtilities {
+
+  /**
+   * <p>
+   * Returns the <code>rt.jar</code> of the running java runtime. The calling test is skipped if there's none (the
+   * eclipse compiler can't read the class files of newer java runtimes).
+   * </p>
+   *
+   * @return the <code>rt.jar</code> of the running java runtime.
+   */
+  public static final File getRtJar() {
+    File rtJar = new File(System.getProperty("java.home"), "lib/rt.jar");
+    Assume.assumeTrue(rtJar.isFile());
+    return rtJar;
+  }
+
+  /**
+   * <p>
+   * Creates a project with a single source file. The project <code>name</code> contains the source folder
+   * <code>src</code> with the class <code>name.NAME</code> and the output folder <code>bin</code>.
+   * </p>
+   *
+   * @param testDirectory
+   *          the test directory the project is created in
+   * @param name
+   *          the name of the project (also used for the package and, in upper case, for the class)
+   * @param content
+   *          the content of the source file
+   * @return the source file.
+   */
+  public static final SourceFile createSourceFile(TestDirectory testDirectory, String name, String content) {
+    testDirectory.createSubDirectory(name + "/src/" + name);
+    testDirectory.createSubDirectory(name + "/bin");
+    String className = name.toUpperCase();
+    testDirectory.createFile(name + "/src/" + name + "/" + className + ".java", content);
+    File root = new File(testDirectory.getRootDir(), name);
+    return SourceFileFactory.createSourceFile(new File(root, "src"), name + File.separator + className + ".java",
+        new File(root, "bin"), "UTF-8");
+  }
+}
@@ -11,12 +11,38 @@
  **********************************************************************/
 package org.ant4eclipse.lib.jdt;
 
+import org.ant4eclipse.lib.jdt.ecj.AccessRulesTest;
+import org.ant4eclipse.lib.jdt.ecj.BuildCacheTest;
+import org.ant4eclipse.lib.jdt.ecj.CompileServiceTest;
+import org.ant4eclipse.lib.jdt.ecj.IncrementalCompilationTest;
+import org.ant4eclipse.lib.jdt.ecj.JarOutputTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.ClassFileWriterTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.CompilationUnitImplTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.EcjAdapterImplTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.NameEnvironmentImplTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.incremental.AbiFingerprintTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.ApiStubArchiveTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.BinaryTypeCacheTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.CompoundClassFileLoaderImplTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.DirectorySnapshotTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.JrtClassFileLoaderImplTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.MappedJarFileTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.PackageIndexStoreTest;
+import org.ant4eclipse.lib.jdt.internal.model.jre.JavaRuntimeProbeTest;
 import org.ant4eclipse.lib.jdt.internal.model.userlibrary.UserLibrariesFileParserImplTest;
 import org.ant4eclipse.lib.jdt.tools.BuildOrderResolverTest;
+import org.ant4eclipse.lib.jdt.tools.JdtResolverTest;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
-@Suite.SuiteClasses( { BuildOrderResolverTest.class, UserLibrariesFileParserImplTest.class })
+@Suite.SuiteClasses( { BuildOrderResolverTest.class, UserLibrariesFileParserImplTest.class,
+    PackageIndexStoreTest.class, MappedJarFileTest.class, BinaryTypeCacheTest.class,
+    NameEnvironmentImplTest.class, IncrementalCompilationTest.class, AbiFingerprintTest.class,
+    BuildCacheTest.class, EcjAdapterImplTest.class, CompileServiceTest.class,
+    ClassFileWriterTest.class, JarOutputTest.class, AccessRulesTest.class,
+    CompoundClassFileLoaderImplTest.class, DirectorySnapshotTest.class,
+    JrtClassFileLoaderImplTest.class, ApiStubArchiveTest.class,
+    CompilationUnitImplTest.class, JdtResolverTest.class, JavaRuntimeProbeTest.class })
 public class AllJDTTests {
 } /* ENDCLASS */
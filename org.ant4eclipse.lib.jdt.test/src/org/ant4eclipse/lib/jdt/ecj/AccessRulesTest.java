@@ -0,0 +1,54 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class AccessRulesTest {
+
+  @Test
+  public void packageRules() {
+    AccessRules accessRules = new AccessRules(Arrays.asList("org.example", "org.example.internal.api"), Arrays
+        .asList("org.example.internal"), true);
+    assertEquals("+org/example/*;+org/example/internal/api/*;-org/example/internal/*;-**/*", accessRules.toString());
+    assertEquals(AccessRules.parse(accessRules.toString()), accessRules);
+
+    assertFalse(accessRules.isForbidden("org/example/Foo"));
+    // a wildcard matches sub packages as well and includes take precedence
+    assertFalse(accessRules.isForbidden("org/example/internal/Foo"));
+    assertFalse(accessRules.isForbidden("org/example/internal/api/Foo"));
+    assertTrue(accessRules.isForbidden("org/Foo"));
+    assertTrue(accessRules.isForbidden("Foo"));
+
+    accessRules = AccessRules.parse("-org/example/internal/*");
+    assertTrue(accessRules.isForbidden("org/example/internal/Foo"));
+    assertTrue(accessRules.isForbidden("org/example/internal/sub/Foo"));
+    assertFalse(accessRules.isForbidden("org/example/Foo"));
+  }
+
+  @Test
+  public void patternRules() {
+    AccessRules accessRules = AccessRules.parse("+org/example/Foo;+org/**/api/*;-org/example/*Impl;-**/*Test");
+    assertFalse(accessRules.isForbidden("org/example/Foo"));
+    assertFalse(accessRules.isForbidden("org/example/api/BarImpl"));
+    assertTrue(accessRules.isForbidden("org/example/BarImpl"));
+    assertTrue(accessRules.isForbidden("FooTest"));
+    assertTrue(accessRules.isForbidden("org/example/FooTest"));
+    assertFalse(accessRules.isForbidden("org/example/Bar"));
+  }
+}
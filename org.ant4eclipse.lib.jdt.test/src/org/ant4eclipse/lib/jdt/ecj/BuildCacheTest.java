@@ -0,0 +1,108 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.testframework.AbstractTestDirectoryBasedTest;
+import org.junit.Test;
+
+public class BuildCacheTest extends AbstractTestDirectoryBasedTest {
+
+  private static final Map<String, String> NO_RESTRICTIONS = new HashMap<String, String>();
+
+  @Test
+  public void restoreIntoOtherLocation() {
+    BuildCache cache = new BuildCache(new File(getTestDirectoryRootDir(), "cache"), 1024 * 1024);
+
+    SourceFile[] sources = createProject("first", "class A {}");
+    String key = cache.getKey(sources, new HashMap<String, String>(), new File[0], NO_RESTRICTIONS);
+    assertNull(cache.restore(key, sources));
+    cache.store(key, sources, new CompilationUnitResult[] { unit(sources[0]) });
+
+    // same content at a different location
+    SourceFile[] other = createProject("second", "class A {}");
+    assertEquals(key, cache.getKey(other, new HashMap<String, String>(), new File[0], NO_RESTRICTIONS));
+    CompileJobResult result = cache.restore(key, other);
+    assertNotNull(result);
+    assertTrue(result.succeeded());
+    assertEquals(1, result.getCompilationUnitResults().length);
+    File classFile = new File(getTestDirectoryRootDir(), "second/bin/a/A.class");
+    assertEquals(classFile, result.getCompiledClassFiles().get("a/A.class"));
+    assertEquals("classes of first", new String(Utilities.readFile(classFile)));
+
+    // changed content or options lead to different keys
+    assertFalse(key.equals(cache.getKey(createProject("third", "class A { }"), new HashMap<String, String>(),
+        new File[0], NO_RESTRICTIONS)));
+    Map<String, String> options = new HashMap<String, String>();
+    options.put("org.eclipse.jdt.core.compiler.source", "1.5");
+    assertFalse(key.equals(cache.getKey(sources, options, new File[0], NO_RESTRICTIONS)));
+  }
+
+  @Test
+  public void accessRestrictionsArePartOfTheKey() {
+    BuildCache cache = new BuildCache(new File(getTestDirectoryRootDir(), "cache"), 1024 * 1024);
+    SourceFile[] sources = createProject("first", "class A {}");
+    File library = getTestDirectory().createSubDirectory("lib");
+    File[] classpath = new File[] { library };
+
+    String key = cache.getKey(sources, new HashMap<String, String>(), classpath, NO_RESTRICTIONS);
+    Map<String, String> restrictions = new HashMap<String, String>();
+    restrictions.put(library.getAbsolutePath(), "+a/**;-**");
+    String restrictedKey = cache.getKey(sources, new HashMap<String, String>(), classpath, restrictions);
+    assertFalse(key.equals(restrictedKey));
+    restrictions.put(library.getAbsolutePath(), "+a/**;~**");
+    assertFalse(restrictedKey.equals(cache.getKey(sources, new HashMap<String, String>(), classpath, restrictions)));
+  }
+
+  @Test
+  public void evictLeastRecentlyUsed() {
+    BuildCache cache = new BuildCache(new File(getTestDirectoryRootDir(), "cache"), 120);
+    SourceFile[] first = createProject("first", "class A {}");
+    String firstKey = cache.getKey(first, new HashMap<String, String>(), new File[0], NO_RESTRICTIONS);
+    cache.store(firstKey, first, new CompilationUnitResult[] { unit(first[0]) });
+    new File(getTestDirectoryRootDir(), "cache/" + firstKey + BuildCache.ENTRY_SUFFIX).setLastModified(0);
+
+    SourceFile[] second = createProject("second", "class B {}");
+    String secondKey = cache.getKey(second, new HashMap<String, String>(), new File[0], NO_RESTRICTIONS);
+    cache.store(secondKey, second, new CompilationUnitResult[] { unit(second[0]) });
+
+    assertNull(cache.restore(firstKey, first));
+    assertNotNull(cache.restore(secondKey, second));
+    assertTrue(cache.getStatistics(), cache.getStatistics().contains("1 evicted"));
+  }
+
+  private SourceFile[] createProject(String name, String content) {
+    getTestDirectory().createSubDirectory(name + "/src/a");
+    getTestDirectory().createSubDirectory(name + "/bin/a");
+    getTestDirectory().createFile(name + "/src/a/A.java", "package a; " + content);
+    getTestDirectory().createFile(name + "/bin/a/A.class", "classes of " + name);
+    File root = new File(getTestDirectoryRootDir(), name);
+    return new SourceFile[] { SourceFileFactory.createSourceFile(new File(root, "src"), "a" + File.separator
+        + "A.java", new File(root, "bin"), "UTF-8") };
+  }
+
+  private CompilationUnitResult unit(SourceFile sourceFile) {
+    Map<String, String> classFiles = new HashMap<String, String>();
+    classFiles.put("a/A.class", "1");
+    return new CompilationUnitResult(sourceFile, false, classFiles, new String[] { "a" }, new String[] { "A" });
+  }
+}
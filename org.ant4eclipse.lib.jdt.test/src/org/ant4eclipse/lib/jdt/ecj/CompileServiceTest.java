@@ -0,0 +1,108 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.ant4eclipse.lib.core.util.StringMap;
+import org.ant4eclipse.testframework.AbstractTestDirectoryBasedTest;
+import org.ant4eclipse.testframework.EcjTestUtilities;
+import org.junit.Test;
+
+public class CompileServiceTest extends AbstractTestDirectoryBasedTest {
+
+  @Test
+  public void compileDependentJobs() {
+    File rtJar = EcjTestUtilities.getRtJar();
+
+    CompileService service = new CompileService(4);
+    service.addJob("a", description(rtJar, createSourceFile("a", "package a; public class A {}")));
+    service.addJob("b", description(rtJar, createSourceFile("b", "package b; public class B extends a.A {}"), "a"), "a");
+    service.addJob("c", description(rtJar, createSourceFile("c", "package c; public class C extends b.B {}"), "a",
+        "b"), "b");
+    service.addJob("d", description(rtJar, createSourceFile("d", "package d; public class D {}")));
+
+    CompileService.Job[] jobs = service.compile();
+    assertEquals(4, jobs.length);
+    for (CompileService.Job job : jobs) {
+      assertTrue(job.getName(), job.succeeded());
+      assertFalse(job.isSkipped());
+      assertTrue(job.getQueueTime() >= 0);
+      assertTrue(job.getWallTime() >= 0);
+    }
+    assertArrayEquals(new String[] { "b" }, jobs[2].getUpstreamJobs());
+    assertTrue(new File(getTestDirectoryRootDir(), "c/bin/c/C.class").isFile());
+  }
+
+  @Test
+  public void skipJobsOfFailedUpstreamJobs() {
+    File rtJar = EcjTestUtilities.getRtJar();
+
+    CompileService service = new CompileService(2);
+    service.addJob("a", description(rtJar, createSourceFile("a", "package a; public class A extends Unknown {}")));
+    service.addJob("b", description(rtJar, createSourceFile("b", "package b; public class B extends a.A {}"), "a"), "a");
+    service.addJob("c", description(rtJar, createSourceFile("c", "package c; public class C {}")));
+
+    CompileService.Job[] jobs = service.compile();
+    assertFalse(jobs[0].succeeded());
+    assertFalse(Arrays.asList(jobs[0].getResult().getCategorizedProblems()).isEmpty());
+    assertTrue(jobs[1].isSkipped());
+    assertNull(jobs[1].getResult());
+    assertTrue(jobs[2].succeeded());
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void rejectUnknownUpstreamJob() {
+    new CompileService(1).addJob("a", new DefaultCompileJobDescription(), "b");
+  }
+
+  private CompileJobDescription description(final File rtJar, final SourceFile sourceFile, final String... upstream) {
+    return new CompileJobDescription() {
+
+      public ClassFileLoader getClassFileLoader() {
+        // the output folders of the upstream jobs contain the class files when the job is started
+        ClassFileLoader[] loaders = new ClassFileLoader[upstream.length + 1];
+        loaders[0] = ClassFileLoaderFactory.createClasspathClassFileLoader(rtJar, EcjAdapter.LIBRARY);
+        for (int i = 0; i < upstream.length; i++) {
+          File output = new File(getTestDirectoryRootDir(), upstream[i] + "/bin");
+          loaders[i + 1] = ClassFileLoaderFactory.createClasspathClassFileLoader(output, EcjAdapter.PROJECT,
+              new File[] { output }, new File[0]);
+        }
+        return ClassFileLoaderFactory.createCompoundClassFileLoader(loaders);
+      }
+
+      public Map<String, String> getCompilerOptions() {
+        return new StringMap();
+      }
+
+      public SourceFile[] getSourceFiles() {
+        return new SourceFile[] { sourceFile };
+      }
+
+      public boolean isRecordCompilationUnitResults() {
+        return false;
+      }
+    };
+  }
+
+  private SourceFile createSourceFile(String name, String content) {
+    return EcjTestUtilities.createSourceFile(getTestDirectory(), name, content);
+  }
+}
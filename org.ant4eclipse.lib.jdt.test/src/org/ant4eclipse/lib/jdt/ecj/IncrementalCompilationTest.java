@@ -0,0 +1,140 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ant4eclipse.lib.core.util.StringMap;
+import org.ant4eclipse.testframework.AbstractTestDirectoryBasedTest;
+import org.ant4eclipse.testframework.EcjTestUtilities;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class IncrementalCompilationTest extends AbstractTestDirectoryBasedTest {
+
+  @Test
+  public void compileChangedSourcesAndDependents() {
+    File rtJar = new File(System.getProperty("java.home"), "lib/rt.jar");
+    Assume.assumeTrue(rtJar.isFile());
+
+    createSource("p/C.java", "package p; public class C { public void m() {} }");
+    createSource("q/E.java", "package q; import p.C; public class E { void f(C c) { c.m(); } }");
+    createSource("r/U.java", "package r; public class U {}");
+
+    // no state: everything is compiled
+    IncrementalCompilation compilation = newCompilation("p/C.java", "q/E.java", "r/U.java");
+    assertTrue(compilation.isFullBuild());
+    assertEquals("[[C.java, E.java, U.java]]", compile(compilation, rtJar));
+    assertTrue(compilation.getResult().succeeded());
+
+    // nothing changed
+    compilation = newCompilation("p/C.java", "q/E.java", "r/U.java");
+    assertFalse(compilation.isFullBuild());
+    assertEquals("[]", compile(compilation, rtJar));
+
+    // removing a method of C requires the dependent E to be compiled (in another package), but not U
+    createSource("p/C.java", "package p; public class C {}");
+    compilation = newCompilation("p/C.java", "q/E.java", "r/U.java");
+    assertEquals("[[C.java], [E.java]]", compile(compilation, rtJar));
+    CompileJobResult result = compilation.getResult();
+    assertFalse(result.succeeded());
+    assertTrue(Arrays.asList(result.getCategorizedProblems()).toString().contains("m()"));
+
+    // the class file of a removed source file is deleted
+    File classFile = new File(getTestDirectoryRootDir(), "bin/r/U.class");
+    assertTrue(classFile.isFile());
+    createSource("q/E.java", "package q; public class E {}");
+    compilation = newCompilation("p/C.java", "q/E.java");
+    assertEquals("[[E.java]]", compile(compilation, rtJar));
+    assertTrue(compilation.getResult().succeeded());
+    assertFalse(classFile.exists());
+    assertEquals("[r/U.class]", compilation.getDeletedClassFiles().toString());
+  }
+
+  @Test
+  public void fullBuildIfAccessRestrictionsChange() {
+    File rtJar = EcjTestUtilities.getRtJar();
+    createSource("p/C.java", "package p; public class C {}");
+    assertEquals("[[C.java]]", compile(newCompilation("p/C.java"), rtJar));
+    assertEquals("[]", compile(newCompilation("p/C.java"), rtJar));
+
+    Map<String, String> accessRestrictions = new HashMap<String, String>();
+    accessRestrictions.put(rtJar.getAbsolutePath(), "+java/lang/*;-**/*");
+    IncrementalCompilation compilation = newCompilation(accessRestrictions, "p/C.java");
+    assertTrue(compilation.isFullBuild());
+    assertEquals("[[C.java]]", compile(compilation, rtJar));
+    assertTrue(compilation.getDeletedClassFiles().isEmpty());
+  }
+
+  private void createSource(String name, String content) {
+    getTestDirectory().createSubDirectory("src/" + name.substring(0, name.lastIndexOf('/')));
+    getTestDirectory().createSubDirectory("bin");
+    getTestDirectory().createFile("src/" + name, content);
+  }
+
+  private IncrementalCompilation newCompilation(String... names) {
+    return newCompilation(new HashMap<String, String>(), names);
+  }
+
+  private IncrementalCompilation newCompilation(Map<String, String> accessRestrictions, String... names) {
+    File src = new File(getTestDirectoryRootDir(), "src");
+    File bin = new File(getTestDirectoryRootDir(), "bin");
+    SourceFile[] sourceFiles = new SourceFile[names.length];
+    for (int i = 0; i < names.length; i++) {
+      sourceFiles[i] = SourceFileFactory.createSourceFile(src, names[i].replace('/', File.separatorChar), bin);
+    }
+    return new IncrementalCompilation(sourceFiles, new StringMap(), new File[0], accessRestrictions);
+  }
+
+  /**
+   * <p>
+   * Compiles all rounds of the given compilation (like the <code>A4ECompilerAdapter</code> does) and returns the names
+   * of the source files compiled in each round.
+   * </p>
+   */
+  private String compile(IncrementalCompilation compilation, File rtJar) {
+    File bin = new File(getTestDirectoryRootDir(), "bin");
+    ClassFileLoader classFileLoader = ClassFileLoaderFactory.createCompoundClassFileLoader(new ClassFileLoader[] {
+        ClassFileLoaderFactory.createClasspathClassFileLoader(rtJar, EcjAdapter.LIBRARY),
+        ClassFileLoaderFactory.createClasspathClassFileLoader(bin, EcjAdapter.PROJECT, new File[] { bin },
+            new File[0]) });
+    List<String> rounds = new ArrayList<String>();
+    SourceFile[] sources = compilation.nextSourceFiles();
+    while (sources.length > 0) {
+      DefaultCompileJobDescription description = new DefaultCompileJobDescription(classFileLoader, new StringMap(),
+          sources);
+      description.setRecordCompilationUnitResults(true);
+      compilation.addResult(EcjAdapter.Factory.create().compile(description));
+      rounds.add(names(sources));
+      sources = compilation.nextSourceFiles();
+    }
+    compilation.save();
+    return rounds.toString();
+  }
+
+  private String names(SourceFile[] sourceFiles) {
+    List<String> result = new ArrayList<String>();
+    for (SourceFile sourceFile : sourceFiles) {
+      result.add(sourceFile.getSourceFile().getName());
+    }
+    return result.toString();
+  }
+}
@@ -0,0 +1,119 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+
+import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.testframework.AbstractTestDirectoryBasedTest;
+import org.junit.Test;
+
+public class JarOutputTest extends AbstractTestDirectoryBasedTest {
+
+  @Test
+  public void writeReproducibleArchive() throws IOException {
+    File first = new File(getTestDirectoryRootDir(), "first.jar");
+    File second = new File(getTestDirectoryRootDir(), "second.jar");
+    write(new JarOutput(first, true, 4, -1));
+    write(new JarOutput(second, true, 1, -1));
+    assertArrayEquals(Utilities.readFile(first), Utilities.readFile(second));
+
+    JarFile jarFile = new JarFile(first);
+    try {
+      List<String> names = new ArrayList<String>();
+      Enumeration<? extends ZipEntry> entries = jarFile.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        names.add(entry.getName());
+        assertEquals(entry.getName(), first(jarFile).getTime(), entry.getTime());
+      }
+      assertEquals("[META-INF/, META-INF/MANIFEST.MF, a/, a/A.class, a/b/, a/b/B.class, c/, c/C.class]", names
+          .toString());
+      assertNotNull(jarFile.getManifest());
+      assertEquals("B", read(jarFile, "a/b/B.class"));
+      assertEquals("C", read(jarFile, "c/C.class"));
+    } finally {
+      jarFile.close();
+    }
+  }
+
+  @Test
+  public void writeUncompressedArchive() throws IOException {
+    File file = new File(getTestDirectoryRootDir(), "stored.jar");
+    JarOutput jarOutput = new JarOutput(file, false, 1, 0);
+    jarOutput.addEntry(JarOutput.MANIFEST_NAME, "Manifest-Version: 1.0\r\nBundle-Name: test\r\n\r\n".getBytes());
+    jarOutput.addEntry("a/A.class", "A".getBytes());
+    jarOutput.write();
+
+    JarFile jarFile = new JarFile(file);
+    try {
+      assertEquals(ZipEntry.STORED, jarFile.getEntry("a/A.class").getMethod());
+      assertEquals("A", read(jarFile, "a/A.class"));
+      assertEquals("test", jarFile.getManifest().getMainAttributes().getValue("Bundle-Name"));
+    } finally {
+      jarFile.close();
+    }
+  }
+
+  @Test
+  public void rejectTooManyEntries() {
+    File file = new File(getTestDirectoryRootDir(), "large.jar");
+    JarOutput jarOutput = new JarOutput(file, false, 1, 0);
+    for (int i = 0; i < 0xffff; i++) {
+      jarOutput.addEntry("C" + i + ".class", new byte[0]);
+    }
+    try {
+      jarOutput.write();
+      fail("The zip format doesn't support more than 65535 entries");
+    } catch (Ant4EclipseException ex) {
+      assertEquals(EcjExceptionCodes.JAR_FILE_EXCEEDS_ZIP_LIMITS_EXCEPTION, ex.getExceptionCode());
+    }
+    assertFalse(file.exists());
+  }
+
+  private void write(JarOutput jarOutput) {
+    // the order of the entries doesn't matter
+    jarOutput.addEntry("c/C.class", "C".getBytes());
+    jarOutput.addEntry("a/b/B.class", "B".getBytes());
+    jarOutput.addEntry("a/A.class", "A".getBytes());
+    jarOutput.write();
+  }
+
+  private ZipEntry first(JarFile jarFile) {
+    return jarFile.entries().nextElement();
+  }
+
+  private String read(JarFile jarFile, String name) throws IOException {
+    InputStream input = jarFile.getInputStream(jarFile.getEntry(name));
+    try {
+      byte[] buffer = new byte[1024];
+      int length = input.read(buffer);
+      return new String(buffer, 0, length);
+    } finally {
+      input.close();
+    }
+  }
+}
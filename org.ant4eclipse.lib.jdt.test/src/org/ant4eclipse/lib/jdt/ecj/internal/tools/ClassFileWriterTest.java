@@ -0,0 +1,94 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.testframework.AbstractTestDirectoryBasedTest;
+import org.junit.Test;
+
+public class ClassFileWriterTest extends AbstractTestDirectoryBasedTest {
+
+  @Test
+  public void writeChangedClassFilesOnly() {
+    File a = new File(getTestDirectoryRootDir(), "bin/a/b/A.class");
+    File b = new File(getTestDirectoryRootDir(), "bin/a/b/B.class");
+
+    ClassFileWriter writer = new ClassFileWriter(1);
+    writer.write(a, "A".getBytes());
+    writer.write(b, "B".getBytes());
+    writer.close();
+    assertEquals(2, writer.getWrittenCount());
+    assertEquals(0, writer.getUnchangedCount());
+    assertNull(writer.getFailure(a));
+
+    a.setLastModified(10000);
+    b.setLastModified(10000);
+    writer = new ClassFileWriter();
+    writer.write(a, "A".getBytes());
+    writer.write(b, "B2".getBytes());
+    writer.close();
+    assertEquals(1, writer.getWrittenCount());
+    assertEquals(1, writer.getUnchangedCount());
+    assertEquals(10000, a.lastModified());
+    assertEquals("B2", new String(Utilities.readFile(b)));
+
+    // closing twice has no effect
+    writer.close();
+  }
+
+  @Test
+  public void reportFailures() {
+    // a directory with the name of the class file can't be overwritten
+    File a = new File(getTestDirectoryRootDir(), "bin/A.class");
+    a.mkdirs();
+
+    ClassFileWriter writer = new ClassFileWriter();
+    writer.write(a, "A".getBytes());
+    writer.close();
+    assertNotNull(writer.getFailure(a));
+    assertEquals(0, writer.getWrittenCount());
+  }
+
+  @Test
+  public void failIfTheWriterThreadStopped() throws Exception {
+    ClassFileWriter writer = new ClassFileWriter(1);
+    writer.write(new File(getTestDirectoryRootDir(), "bin/A.class"), "A".getBytes());
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if ("ant4eclipse-classfile-writer".equals(thread.getName())) {
+        thread.interrupt();
+        thread.join();
+      }
+    }
+
+    // neither writing nor closing waits for the stopped thread
+    try {
+      writer.write(new File(getTestDirectoryRootDir(), "bin/B.class"), "B".getBytes());
+      fail();
+    } catch (RuntimeException ex) {
+      assertTrue(ex.getCause() instanceof InterruptedException);
+    }
+    try {
+      writer.close();
+      fail();
+    } catch (RuntimeException ex) {
+      assertTrue(ex.getCause() instanceof InterruptedException);
+    }
+  }
+}
@@ -0,0 +1,48 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.jdt.ecj.SourceFileFactory;
+import org.ant4eclipse.testframework.AbstractTestDirectoryBasedTest;
+import org.junit.Test;
+
+public class CompilationUnitImplTest extends AbstractTestDirectoryBasedTest {
+
+  @Test
+  public void readContents() throws Exception {
+    File sourceFolder = getTestDirectory().createSubDirectory("src");
+    String source = "package a;\r\n\r\npublic class A {\n  String s = \"\u00e4\u00f6\u00fc\";\r\n}";
+    new File(sourceFolder, "a").mkdirs();
+    Utilities.writeFile(new File(sourceFolder, "a/A.java"), source.getBytes("UTF-8"));
+
+    CompilationUnitImpl compilationUnit = new CompilationUnitImpl(SourceFileFactory.createSourceFile(sourceFolder,
+        "a" + File.separator + "A.java", getTestDirectory().createSubDirectory("bin"), "UTF-8"));
+    assertEquals("A", new String(compilationUnit.getMainTypeName()));
+
+    // the line endings are kept and the contents are cached
+    char[] contents = compilationUnit.getContents();
+    assertEquals(source, new String(contents));
+    assertSame(contents, compilationUnit.getContents());
+
+    // the contents are read again after they have been released
+    compilationUnit.releaseContents();
+    assertNotSame(contents, compilationUnit.getContents());
+    assertEquals(source, new String(compilationUnit.getContents()));
+  }
+}
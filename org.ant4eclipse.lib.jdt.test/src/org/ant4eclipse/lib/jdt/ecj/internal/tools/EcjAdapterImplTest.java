@@ -0,0 +1,95 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.jar.JarFile;
+
+import org.ant4eclipse.lib.core.util.StringMap;
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoaderFactory;
+import org.ant4eclipse.lib.jdt.ecj.CompileJobDescription;
+import org.ant4eclipse.lib.jdt.ecj.CompileJobResult;
+import org.ant4eclipse.lib.jdt.ecj.DefaultCompileJobDescription;
+import org.ant4eclipse.lib.jdt.ecj.EcjAdapter;
+import org.ant4eclipse.lib.jdt.ecj.JarOutput;
+import org.ant4eclipse.lib.jdt.ecj.SourceFile;
+import org.ant4eclipse.testframework.AbstractTestDirectoryBasedTest;
+import org.ant4eclipse.testframework.EcjTestUtilities;
+import org.junit.Test;
+
+public class EcjAdapterImplTest extends AbstractTestDirectoryBasedTest {
+
+  @Test
+  public void compileSeveralJobsInOneSession() {
+    ClassFileLoader jre = ClassFileLoaderFactory.createClasspathClassFileLoader(EcjTestUtilities.getRtJar(),
+        EcjAdapter.LIBRARY);
+
+    // the project 'b' depends on the project 'a' which hasn't been compiled yet
+    SourceFile a = createSourceFile("a", "package a; public class A {}");
+    SourceFile b = createSourceFile("b", "package b; public class B extends a.A {}");
+    File aOutput = a.getDestinationFolder();
+    ClassFileLoader aOutputLoader = ClassFileLoaderFactory.createClasspathClassFileLoader(aOutput,
+        EcjAdapter.PROJECT, new File[] { aOutput }, new File[0]);
+
+    // only the second job records the results of its source files
+    StringMap options = new StringMap();
+    DefaultCompileJobDescription second = new DefaultCompileJobDescription(ClassFileLoaderFactory
+        .createCompoundClassFileLoader(new ClassFileLoader[] { jre, aOutputLoader }), options, new SourceFile[] { b });
+    second.setRecordCompilationUnitResults(true);
+    CompileJobDescription[] descriptions = new CompileJobDescription[] {
+        new DefaultCompileJobDescription(jre, options, new SourceFile[] { a }), second };
+
+    CompileJobResult[] results = EcjAdapter.Factory.create().compile(descriptions);
+    assertEquals(2, results.length);
+    for (CompileJobResult result : results) {
+      assertTrue(Arrays.asList(result.getCategorizedProblems()).toString(), result.succeeded());
+    }
+    assertEquals(0, results[0].getCompilationUnitResults().length);
+    assertEquals(1, results[1].getCompilationUnitResults().length);
+    assertTrue(Arrays.asList(results[1].getCompilationUnitResults()[0].getSimpleNameReferences()).contains("A"));
+    assertEquals(new File(aOutput, "a/A.class"), results[0].getCompiledClassFiles().get("a/A.class"));
+    assertTrue(new File(aOutput, "a/A.class").isFile());
+    assertTrue(new File(b.getDestinationFolder(), "b/B.class").isFile());
+  }
+
+  @Test
+  public void compileIntoArchive() throws IOException {
+    ClassFileLoader jre = ClassFileLoaderFactory.createClasspathClassFileLoader(EcjTestUtilities.getRtJar(),
+        EcjAdapter.LIBRARY);
+    SourceFile a = createSourceFile("a", "package a; public class A {}");
+    File archive = new File(getTestDirectoryRootDir(), "a.jar");
+
+    CompileJobResult result = EcjAdapter.Factory.create().compile(
+        new DefaultCompileJobDescription(jre, new StringMap(), new SourceFile[] { a }), new JarOutput(archive));
+    assertTrue(result.succeeded());
+    assertEquals(1, result.getCompiledClassFiles().size());
+    assertFalse(new File(a.getDestinationFolder(), "a/A.class").exists());
+    JarFile jarFile = new JarFile(archive);
+    try {
+      assertNotNull(jarFile.getEntry("a/A.class"));
+    } finally {
+      jarFile.close();
+    }
+  }
+
+  private SourceFile createSourceFile(String name, String content) {
+    return EcjTestUtilities.createSourceFile(getTestDirectory(), name, content);
+  }
+}
@@ -0,0 +1,86 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ant4eclipse.lib.core.ClassName;
+import org.ant4eclipse.lib.jdt.ecj.ClassFile;
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
+import org.ant4eclipse.lib.jdt.ecj.ReferableSourceFile;
+import org.junit.Test;
+
+public class NameEnvironmentImplTest {
+
+  @Test
+  public void cachePackagesAndMissingTypes() {
+    RecordingClassFileLoader loader = new RecordingClassFileLoader();
+    NameEnvironmentImpl nameEnvironment = new NameEnvironmentImpl(loader);
+
+    char[][] javaLang = new char[][] { "java".toCharArray(), "lang".toCharArray() };
+    assertTrue(nameEnvironment.isPackage(new char[][] { "java".toCharArray() }, "lang".toCharArray()));
+    assertTrue(nameEnvironment.isPackage(null, "java".toCharArray()));
+    assertFalse(nameEnvironment.isPackage(javaLang, "Missing".toCharArray()));
+
+    // the same type is requested with both signatures
+    assertNull(nameEnvironment.findType("Missing".toCharArray(), javaLang));
+    assertNull(nameEnvironment.findType(new char[][] { "java".toCharArray(), "lang".toCharArray(),
+        "Missing".toCharArray() }));
+
+    // types in unknown packages are not requested from the loader at all
+    assertNull(nameEnvironment.findType(new char[][] { "org".toCharArray(), "Unknown".toCharArray() }));
+    assertNull(nameEnvironment.findType("Unknown".toCharArray(), null));
+
+    assertEquals("[java.lang, java, java.lang.Missing, org, ]", loader._packageRequests.toString());
+    assertEquals("[java.lang.Missing, java.lang.Missing]", loader._classRequests.toString());
+    assertEquals(4, nameEnvironment.getLookupCount());
+    assertEquals(0, nameEnvironment.getHitCount());
+    assertEquals(4, nameEnvironment.getMissCount());
+  }
+
+  private static class RecordingClassFileLoader implements ClassFileLoader {
+
+    private List<String> _packageRequests = new ArrayList<String>();
+
+    private List<String> _classRequests   = new ArrayList<String>();
+
+    public String[] getAllPackages() {
+      return new String[] { "java", "java.lang" };
+    }
+
+    public boolean hasPackage(String packageName) {
+      this._packageRequests.add(packageName);
+      return "java".equals(packageName) || "java.lang".equals(packageName);
+    }
+
+    public ClassFile loadClass(ClassName className) {
+      this._classRequests.add(className.getQualifiedClassName());
+      return null;
+    }
+
+    public ReferableSourceFile loadSource(ClassName className) {
+      this._classRequests.add(className.getQualifiedClassName());
+      return null;
+    }
+
+    public File[] getClasspath() {
+      return new File[0];
+    }
+  }
+}
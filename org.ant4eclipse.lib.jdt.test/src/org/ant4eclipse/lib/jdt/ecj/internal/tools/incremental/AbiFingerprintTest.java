@@ -0,0 +1,80 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.incremental;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.ant4eclipse.testframework.AbstractTestDirectoryBasedTest;
+import org.ant4eclipse.testframework.EcjTestUtilities;
+import org.eclipse.jdt.core.compiler.batch.BatchCompiler;
+import org.junit.Test;
+
+public class AbiFingerprintTest extends AbstractTestDirectoryBasedTest {
+
+  @Test
+  public void ignoreImplementationChanges() {
+    EcjTestUtilities.getRtJar();
+    File classes = getTestDirectory().createSubDirectory("classes");
+    File abiFile = AbiFingerprint.getAbiFile(new File(getTestDirectoryRootDir(), "bin"));
+    AbiFingerprint fingerprints = new AbiFingerprint(abiFile);
+
+    String original = compile(classes, "public class A { public int get() { return 1; } private void helper() {} }");
+    assertEquals(original, fingerprints.getFingerprint(classes));
+    fingerprints.save();
+    assertTrue(abiFile.isFile());
+
+    // nothing is written next to the class path entry
+    assertFalse(AbiFingerprint.getAbiFile(classes).exists());
+
+    // the records are loaded again
+    assertEquals(original, new AbiFingerprint(abiFile).getFingerprint(classes));
+
+    // changed method bodies and private members don't change the API
+    assertEquals(original, compile(classes, "public class A { public int get() { return 2; } }"));
+
+    // changed signatures and constants do
+    assertFalse(original.equals(compile(classes, "public class A { public long get() { return 1; } }")));
+    String constant = compile(classes, "public class A { public static final int C = 1; }");
+    assertFalse(constant.equals(compile(classes, "public class A { public static final int C = 2; }")));
+  }
+
+  @Test
+  public void hashArchiveContent() {
+    File first = getTestDirectory().createFile("first.jar", "content 1");
+    File second = getTestDirectory().createFile("second.jar", "content 2");
+    File copy = getTestDirectory().createFile("copy.jar", "content 1");
+    second.setLastModified(first.lastModified());
+
+    // size and modification time don't identify the content of an archive
+    AbiFingerprint fingerprints = new AbiFingerprint(null);
+    assertFalse(fingerprints.getFingerprint(first).equals(fingerprints.getFingerprint(second)));
+    assertEquals(fingerprints.getFingerprint(first), fingerprints.getFingerprint(copy));
+  }
+
+  private String compile(File classes, String source) {
+    File sourceFile = getTestDirectory().createFile("A.java", source);
+    StringWriter errors = new StringWriter();
+    boolean succeeded = BatchCompiler.compile(new String[] { "-1.5", "-nowarn", "-d", classes.getAbsolutePath(),
+        sourceFile.getAbsolutePath() }, new PrintWriter(new StringWriter()), new PrintWriter(errors), null);
+    assertTrue(errors.toString(), succeeded);
+    // make sure the changed class file is detected
+    File classFile = new File(classes, "A.class");
+    classFile.setLastModified(classFile.lastModified() + 2000);
+    return new AbiFingerprint(null).getFingerprint(classes);
+  }
+}
@@ -0,0 +1,121 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.ant4eclipse.lib.core.ClassName;
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.jdt.ecj.AccessRules;
+import org.ant4eclipse.lib.jdt.ecj.ClassFile;
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoaderFactory;
+import org.ant4eclipse.lib.jdt.ecj.EcjAdapter;
+import org.ant4eclipse.testframework.AbstractTestDirectoryBasedTest;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
+import org.junit.Test;
+
+public class ApiStubArchiveTest extends AbstractTestDirectoryBasedTest {
+
+  @Test
+  public void stripMethodBodies() throws Exception {
+    byte[] original = getClassBytes(ClasspathClassFileLoaderImpl.class);
+    byte[] stub = ApiStubArchive.createStub(new ByteArrayInputStream(original));
+    assertTrue(stub.length < original.length);
+
+    // the stub is still a valid class file with the same members
+    ClassFileReader originalReader = new ClassFileReader(original, null);
+    ClassFileReader stubReader = new ClassFileReader(stub, null);
+    assertEquals(originalReader.getMethods().length, stubReader.getMethods().length);
+    assertEquals(originalReader.getFields().length, stubReader.getFields().length);
+    assertEquals(new String(originalReader.getName()), new String(stubReader.getName()));
+  }
+
+  @Test
+  public void createStubArchive() throws IOException {
+    File library = new File(getTestDirectoryRootDir(), "rt.jar");
+    JarOutputStream output = new JarOutputStream(new FileOutputStream(library));
+    try {
+      addClass(output, ClasspathClassFileLoaderImpl.class);
+      addClass(output, ClassFileLoader.class);
+      addClass(output, AccessRules.class);
+      output.putNextEntry(new ZipEntry("org/ant4eclipse/resource.txt"));
+      output.closeEntry();
+    } finally {
+      output.close();
+    }
+
+    // all classes are kept, resources are dropped
+    File directory = getTestDirectory().createSubDirectory("stubs");
+    File archive = ApiStubArchive.getStubArchive(new File[] { library }, directory);
+    JarFile jarFile = new JarFile(archive);
+    try {
+      assertNotNull(jarFile.getEntry("org/ant4eclipse/lib/jdt/ecj/internal/tools/loader/"
+          + "ClasspathClassFileLoaderImpl.class"));
+      assertNotNull(jarFile.getEntry("org/ant4eclipse/lib/jdt/ecj/ClassFileLoader.class"));
+      assertNotNull(jarFile.getEntry("org/ant4eclipse/lib/jdt/ecj/AccessRules.class"));
+      assertNull(jarFile.getEntry("org/ant4eclipse/resource.txt"));
+    } finally {
+      jarFile.close();
+    }
+    assertEquals(1, directory.list().length);
+
+    // the access rules are applied by the class file loader
+    AccessRules accessRules = AccessRules.parse("+org/ant4eclipse/lib/jdt/ecj/internal/**;-**/*");
+    ClassFileLoader loader = ClassFileLoaderFactory.createFilteringClassFileLoader(ClassFileLoaderFactory
+        .createClasspathClassFileLoader(archive, EcjAdapter.LIBRARY), accessRules);
+    ClassFile forbidden = loader.loadClass(ClassName.fromQualifiedClassName(AccessRules.class.getName()));
+    assertNotNull(forbidden);
+    assertTrue(forbidden.hasAccessRestriction());
+    ClassFile accessible = loader.loadClass(ClassName.fromQualifiedClassName(ClasspathClassFileLoaderImpl.class
+        .getName()));
+    assertFalse(accessible.hasAccessRestriction());
+
+    // the archive is reused
+    long lastModified = archive.lastModified();
+    assertEquals(archive, ApiStubArchive.getStubArchive(new File[] { library }, directory));
+    assertEquals(lastModified, archive.lastModified());
+  }
+
+  private void addClass(JarOutputStream output, Class<?> type) throws IOException {
+    output.putNextEntry(new ZipEntry(type.getName().replace('.', '/') + ".class"));
+    output.write(getClassBytes(type));
+    output.closeEntry();
+  }
+
+  private byte[] getClassBytes(Class<?> type) throws IOException {
+    String name = type.getName();
+    InputStream input = type.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class");
+    try {
+      ByteArrayOutputStream byteout = new ByteArrayOutputStream();
+      Utilities.copy(input, byteout, new byte[8192]);
+      return byteout.toByteArray();
+    } finally {
+      Utilities.close((Closeable) input);
+    }
+  }
+}
@@ -0,0 +1,57 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
+import org.eclipse.jdt.internal.compiler.env.IBinaryType;
+import org.eclipse.jdt.internal.compiler.util.Util;
+import org.junit.Test;
+
+public class BinaryTypeCacheTest {
+
+  @Test
+  public void timestampAndEviction() throws Exception {
+    BinaryTypeCache cache = newCache(100);
+    IBinaryType type = readType();
+
+    cache.storeBinaryType("lib.jar", "A.class", 1L, type, 60);
+    assertSame(type, cache.getBinaryType("lib.jar", "A.class", 1L));
+
+    // a changed library doesn't return the cached type
+    assertNull(cache.getBinaryType("lib.jar", "A.class", 2L));
+
+    // storing B exceeds the limit, so A (least recently used) is evicted
+    cache.storeBinaryType("lib.jar", "B.class", 1L, type, 60);
+    assertNull(cache.getBinaryType("lib.jar", "A.class", 1L));
+    assertSame(type, cache.getBinaryType("lib.jar", "B.class", 1L));
+  }
+
+  private BinaryTypeCache newCache(long maxBytes) {
+    System.setProperty(BinaryTypeCache.ENABLE_CACHE_PROPERTY, "true");
+    System.setProperty(BinaryTypeCache.MAX_BYTES_PROPERTY, String.valueOf(maxBytes));
+    try {
+      return new BinaryTypeCache();
+    } finally {
+      System.getProperties().remove(BinaryTypeCache.ENABLE_CACHE_PROPERTY);
+      System.getProperties().remove(BinaryTypeCache.MAX_BYTES_PROPERTY);
+    }
+  }
+
+  private IBinaryType readType() throws Exception {
+    String name = getClass().getName().replace('.', '/') + ".class";
+    byte[] bytes = Util.getInputStreamAsByteArray(getClass().getClassLoader().getResourceAsStream(name), -1);
+    return new ClassFileReader(bytes, name.toCharArray(), true);
+  }
+}
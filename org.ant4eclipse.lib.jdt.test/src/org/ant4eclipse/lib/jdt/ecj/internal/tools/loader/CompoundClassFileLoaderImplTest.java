@@ -0,0 +1,74 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.ant4eclipse.lib.core.ClassName;
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoaderFactory;
+import org.ant4eclipse.lib.jdt.ecj.EcjAdapter;
+import org.ant4eclipse.testframework.AbstractTestDirectoryBasedTest;
+import org.junit.Test;
+
+public class CompoundClassFileLoaderImplTest extends AbstractTestDirectoryBasedTest {
+
+  @Test
+  public void indexPackages() throws IOException {
+    File first = getTestDirectory().createJarFile("first.jar", "org/example/A.class", "org/example/sub/B.class");
+    File second = getTestDirectory().createJarFile("second.jar", "org/example/A.class", "org/other/C.class");
+    ClassFileLoader firstLoader = new ClasspathClassFileLoaderImpl(first, EcjAdapter.LIBRARY);
+    ClassFileLoader secondLoader = new ClasspathClassFileLoaderImpl(second, EcjAdapter.LIBRARY);
+
+    // duplicate loaders are ignored
+    ClassFileLoader compound = new CompoundClassFileLoaderImpl(new ClassFileLoader[] { firstLoader, secondLoader,
+        firstLoader });
+    assertEquals(new HashSet<String>(Arrays.asList("org", "org.example", "org.example.sub", "org.other")),
+        new HashSet<String>(Arrays.asList(compound.getAllPackages())));
+    assertTrue(compound.hasPackage("org.other"));
+    assertFalse(compound.hasPackage("org.unknown"));
+    assertEquals(2, compound.getClasspath().length);
+
+    // the first loader that contains the class wins
+    assertEquals(firstLoader.getClasspath()[0].getPath(), compound.loadClass(
+        ClassName.fromQualifiedClassName("org.example.A")).getLibraryLocation());
+    assertEquals(secondLoader.getClasspath()[0].getPath(), compound.loadClass(
+        ClassName.fromQualifiedClassName("org.other.C")).getLibraryLocation());
+    assertNull(compound.loadClass(ClassName.fromQualifiedClassName("org.unknown.D")));
+
+    // a compound loader can be nested without rebuilding its index
+    ClassFileLoader nested = new CompoundClassFileLoaderImpl(new ClassFileLoader[] { compound, secondLoader });
+    assertEquals(compound.getAllPackages().length, nested.getAllPackages().length);
+  }
+
+  @Test
+  public void shareCompoundLoader() throws IOException {
+    File jar = getTestDirectory().createJarFile("boot.jar", "java/lang/Object.class");
+    File[] entries = new File[] { jar };
+    ClassFileLoader loader = ClassFileLoaderFactory.createSharedCompoundClassFileLoader(entries, EcjAdapter.LIBRARY);
+    assertSame(loader, ClassFileLoaderFactory.createSharedCompoundClassFileLoader(entries, EcjAdapter.LIBRARY));
+
+    // a changed jar file requires a new loader
+    jar.setLastModified(jar.lastModified() + 2000);
+    assertNotSame(loader, ClassFileLoaderFactory.createSharedCompoundClassFileLoader(entries, EcjAdapter.LIBRARY));
+  }
+}
@@ -0,0 +1,74 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.ant4eclipse.lib.core.ClassName;
+import org.ant4eclipse.lib.jdt.ecj.EcjAdapter;
+import org.ant4eclipse.testframework.AbstractTestDirectoryBasedTest;
+import org.junit.Test;
+
+public class DirectorySnapshotTest extends AbstractTestDirectoryBasedTest {
+
+  @Test
+  public void listDirectoryOnce() throws IOException {
+    File directory = getTestDirectory().createSubDirectory("bin/org/example");
+    new File(directory, "A.class").createNewFile();
+
+    DirectorySnapshot snapshot = new DirectorySnapshot(directory, false);
+    assertTrue(snapshot.contains("A.class"));
+    assertFalse(snapshot.contains("a.class"));
+
+    // new files are not visible without revalidation
+    new File(directory, "B.class").createNewFile();
+    assertFalse(snapshot.contains("B.class"));
+
+    // a missing directory is empty
+    assertFalse(new DirectorySnapshot(new File(directory, "missing"), false).contains("A.class"));
+  }
+
+  @Test
+  public void revalidate() throws IOException {
+    File directory = getTestDirectory().createSubDirectory("bin/org/example");
+    DirectorySnapshot snapshot = new DirectorySnapshot(directory, true);
+    assertFalse(snapshot.contains("A.class"));
+
+    new File(directory, "A.class").createNewFile();
+    directory.setLastModified(directory.lastModified() + 2000);
+    assertTrue(snapshot.contains("A.class"));
+  }
+
+  @Test
+  public void loadFromDirectory() throws IOException {
+    File classes = getTestDirectory().createSubDirectory("bin");
+    File sources = getTestDirectory().createSubDirectory("src");
+    new File(classes, "org/example").mkdirs();
+    new File(sources, "org/example").mkdirs();
+    new File(classes, "org/example/A.class").createNewFile();
+    new File(sources, "org/example/A.java").createNewFile();
+
+    ClasspathClassFileLoaderImpl loader = new ClasspathClassFileLoaderImpl(classes, EcjAdapter.PROJECT,
+        new File[] { classes }, new File[] { sources });
+    assertNotNull(loader.loadClass(ClassName.fromQualifiedClassName("org.example.A")));
+    assertNull(loader.loadClass(ClassName.fromQualifiedClassName("org.example.a")));
+    assertNull(loader.loadClass(ClassName.fromQualifiedClassName("org.example.B")));
+    assertNotNull(loader.loadSource(ClassName.fromQualifiedClassName("org.example.A")));
+    assertNull(loader.loadSource(ClassName.fromQualifiedClassName("org.example.B")));
+  }
+}
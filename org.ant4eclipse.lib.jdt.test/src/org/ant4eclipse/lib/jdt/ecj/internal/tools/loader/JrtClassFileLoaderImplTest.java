@@ -0,0 +1,57 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.ant4eclipse.lib.core.ClassName;
+import org.ant4eclipse.lib.jdt.ecj.ClassFile;
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoaderFactory;
+import org.ant4eclipse.lib.jdt.ecj.EcjAdapter;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class JrtClassFileLoaderImplTest extends ConfigurableAnt4EclipseTestCase {
+
+  @Test
+  public void loadFromRuntimeImage() {
+    // only possible if the tests run on a modular JDK
+    File modules = new File(System.getProperty("java.home"), "lib/modules");
+    Assume.assumeTrue(JrtImage.isModulesImage(modules));
+    assertFalse(JrtImage.isModulesImage(new File(System.getProperty("java.home"), "lib/jrt-fs.jar")));
+
+    ClassFileLoader loader = ClassFileLoaderFactory.createClasspathClassFileLoader(modules, EcjAdapter.LIBRARY);
+    assertTrue(loader instanceof JrtClassFileLoaderImpl);
+    assertTrue(loader.hasPackage("java.lang"));
+    assertTrue(Arrays.asList(loader.getAllPackages()).contains("java.util.concurrent"));
+    assertFalse(loader.hasPackage("org.unknown"));
+
+    ClassFile classFile = loader.loadClass(ClassName.fromQualifiedClassName("java.lang.Object"));
+    assertNotNull(classFile);
+    assertEquals("java/lang/Object", new String(classFile.getBinaryType().getName()));
+    assertNull(loader.loadClass(ClassName.fromQualifiedClassName("java.lang.Unknown")));
+    assertNull(loader.loadSource(ClassName.fromQualifiedClassName("java.lang.Object")));
+
+    // the index is shared
+    assertSame(JrtImage.getInstance(modules), JrtImage.getInstance(modules));
+  }
+}
@@ -0,0 +1,82 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import org.ant4eclipse.lib.jdt.ecj.EcjAdapter;
+import org.ant4eclipse.testframework.AbstractTestDirectoryBasedTest;
+import org.junit.Test;
+
+public class MappedJarFileTest extends AbstractTestDirectoryBasedTest {
+
+  @Test
+  public void readStoredAndDeflatedEntries() throws IOException {
+    byte[] stored = content(100);
+    byte[] deflated = content(5000);
+    File jar = new File(getTestDirectoryRootDir(), "lib.jar");
+    JarOutputStream output = new JarOutputStream(new FileOutputStream(jar));
+    try {
+      ZipEntry entry = new ZipEntry("org/example/Stored.class");
+      entry.setMethod(ZipEntry.STORED);
+      entry.setSize(stored.length);
+      CRC32 crc = new CRC32();
+      crc.update(stored);
+      entry.setCrc(crc.getValue());
+      output.putNextEntry(entry);
+      output.write(stored);
+      output.closeEntry();
+      output.putNextEntry(new ZipEntry("org/example/sub/Deflated.class"));
+      output.write(deflated);
+      output.closeEntry();
+      output.putNextEntry(new ZipEntry("org/\u00e4/Umlaut.class"));
+      output.write(stored);
+      output.closeEntry();
+    } finally {
+      output.close();
+    }
+
+    MappedJarFile mappedJarFile = new MappedJarFile(jar);
+    assertEquals(3, mappedJarFile.size());
+    assertArrayEquals(stored, mappedJarFile.getBytes("org/example/Stored.class"));
+    assertArrayEquals(deflated, mappedJarFile.getBytes("org/example/sub/Deflated.class"));
+    assertArrayEquals(stored, mappedJarFile.getBytes("org/\u00e4/Umlaut.class"));
+    assertTrue(mappedJarFile.hasEntry("org/example/Stored.class"));
+    assertFalse(mappedJarFile.hasEntry("org/example/Missing.class"));
+    assertNull(mappedJarFile.getBytes("org/example"));
+
+    MappedJarClassFileLoaderImpl loader = new MappedJarClassFileLoaderImpl(jar, EcjAdapter.LIBRARY);
+    assertEquals(new HashSet<String>(Arrays.asList("org", "org.example", "org.example.sub", "org.\u00e4")),
+        new HashSet<String>(Arrays.asList(loader.getAllPackages())));
+  }
+
+  private byte[] content(int length) {
+    byte[] result = new byte[length];
+    for (int i = 0; i < length; i++) {
+      result[i] = (byte) (i % 7);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,76 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.ant4eclipse.testframework.AbstractTestDirectoryBasedTest;
+import org.junit.Test;
+
+public class PackageIndexStoreTest extends AbstractTestDirectoryBasedTest {
+
+  @Test
+  public void reuseAndInvalidateJarEntry() throws IOException {
+    File indexFile = new File(getTestDirectoryRootDir(), "index/packages.idx");
+    File jar = getTestDirectory().createJarFile("lib.jar", "org/example/A.class", "org/example/sub/B.class");
+    String[] packages = new String[] { "org", "org.example", "org.example.sub" };
+
+    PackageIndexStore store = newStore(indexFile);
+    assertNull(store.getPackages(jar));
+    store.storePackages(jar, packages, 1000000L);
+
+    // a new store has to read the entry from disc
+    store = newStore(indexFile);
+    String[] result = store.getPackages(jar);
+    assertNotNull(result);
+    assertEquals(Arrays.asList(packages), Arrays.asList(result));
+    assertEquals(1, store.getHits());
+
+    // changing the jar invalidates the entry
+    jar.setLastModified(jar.lastModified() + 2000);
+    assertNull(newStore(indexFile).getPackages(jar));
+  }
+
+  @Test
+  public void invalidateDirectoryEntry() {
+    File indexFile = new File(getTestDirectoryRootDir(), "index/packages.idx");
+    File classes = getTestDirectory().createSubDirectory("classes");
+    File packageDir = new File(classes, "org/example");
+    packageDir.mkdirs();
+    String[] packages = new String[] { "org", "org.example" };
+
+    newStore(indexFile).storePackages(classes, packages, 1000000L);
+    assertNotNull(newStore(indexFile).getPackages(classes));
+
+    // adding a sub package changes the modification time of its parent
+    new File(packageDir, "sub").mkdir();
+    packageDir.setLastModified(packageDir.lastModified() + 2000);
+    assertNull(newStore(indexFile).getPackages(classes));
+  }
+
+  private PackageIndexStore newStore(File indexFile) {
+    System.setProperty(PackageIndexStore.INDEX_FILE_PROPERTY, indexFile.getAbsolutePath());
+    try {
+      PackageIndexStore result = new PackageIndexStore();
+      result.initialize();
+      return result;
+    } finally {
+      System.getProperties().remove(PackageIndexStore.INDEX_FILE_PROPERTY);
+    }
+  }
+}
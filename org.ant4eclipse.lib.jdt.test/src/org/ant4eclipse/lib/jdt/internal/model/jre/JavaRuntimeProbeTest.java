@@ -0,0 +1,121 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.internal.model.jre;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.testframework.AbstractTestDirectoryBasedTest;
+import org.junit.Test;
+
+public class JavaRuntimeProbeTest extends AbstractTestDirectoryBasedTest {
+
+  @Test
+  public void readReleaseFile() {
+    File jre = createRuntime("jdk11", "JAVA_VERSION=\"11.0.2\"\nIMPLEMENTOR=\"Acme\"\n", true);
+    assertEquals("11.0.2|null|null|null|11|Java Platform API Specification|Acme", JavaRuntimeProbe
+        .readReleaseFile(jre));
+
+    // runtimes without a runtime image or with an old version have to be forked
+    assertNull(JavaRuntimeProbe.readReleaseFile(createRuntime("nomodules", "JAVA_VERSION=\"11.0.2\"\n", false)));
+    assertNull(JavaRuntimeProbe.readReleaseFile(createRuntime("jdk8", "JAVA_VERSION=\"1.8.0_202\"\n", true)));
+  }
+
+  @Test
+  public void probeUsesCache() {
+    // the fake java executable can't be executed, so the results never come from a forked runtime
+    File jre = createRuntime("cached", "JAVA_VERSION=\"11.0.2\"\n", true);
+    assertTrue(JavaRuntimeProbe.probe(jre).startsWith("11.0.2|"));
+
+    // the runtime is unchanged, so the cached result is used
+    assertTrue(new File(jre, "lib/modules").delete());
+    assertTrue(JavaRuntimeProbe.probe(jre).startsWith("11.0.2|"));
+
+    // a changed release file invalidates the cached result
+    getTestDirectory().createFile("cached/lib/modules", "");
+    getTestDirectory().createFile("cached/release", "JAVA_VERSION=\"11.0.10\"\n");
+    assertTrue(JavaRuntimeProbe.probe(jre).startsWith("11.0.10|"));
+  }
+
+  @Test
+  public void probeUsesCacheFile() throws Exception {
+    File jre = Utilities.getCanonicalFile(createRuntime("persisted", null, false));
+    String result = "1.6.0_45|boot.jar|ext|endorsed|1.6|Java Platform API Specification|Acme";
+
+    Properties properties = new Properties();
+    properties.setProperty(jre.getPath(), JavaRuntimeProbe.getStamp(jre) + "|" + result);
+    File cacheFile = new File(getTestDirectoryRootDir(), "probe.properties");
+    OutputStream outstream = new FileOutputStream(cacheFile);
+    try {
+      properties.store(outstream, null);
+    } finally {
+      Utilities.close((Closeable) outstream);
+    }
+
+    System.setProperty(JavaRuntimeProbe.CACHE_FILE_PROPERTY, cacheFile.getAbsolutePath());
+    try {
+      assertEquals(result, JavaRuntimeProbe.probe(jre));
+    } finally {
+      System.clearProperty(JavaRuntimeProbe.CACHE_FILE_PROPERTY);
+    }
+  }
+
+  @Test
+  public void probeReplacesCacheFile() throws Exception {
+    File jre = Utilities.getCanonicalFile(createRuntime("written", "JAVA_VERSION=\"11.0.2\"\n", true));
+    getTestDirectory().createSubDirectory("cache");
+    File cacheFile = getTestDirectory().createFile("cache/probe.properties", "other=value\n");
+
+    System.setProperty(JavaRuntimeProbe.CACHE_FILE_PROPERTY, cacheFile.getAbsolutePath());
+    try {
+      JavaRuntimeProbe.probe(jre);
+    } finally {
+      System.clearProperty(JavaRuntimeProbe.CACHE_FILE_PROPERTY);
+    }
+
+    Properties properties = new Properties();
+    InputStream instream = new FileInputStream(cacheFile);
+    try {
+      properties.load(instream);
+    } finally {
+      Utilities.close((Closeable) instream);
+    }
+    assertEquals("value", properties.getProperty("other"));
+    assertTrue(properties.getProperty(jre.getPath()).startsWith(JavaRuntimeProbe.getStamp(jre) + "|11.0.2|"));
+
+    // the temporary file has been renamed
+    assertEquals(1, cacheFile.getParentFile().list().length);
+  }
+
+  private File createRuntime(String name, String release, boolean modular) {
+    getTestDirectory().createSubDirectory(name + "/bin");
+    getTestDirectory().createSubDirectory(name + "/lib");
+    getTestDirectory().createFile(name + "/bin/java", "");
+    if (release != null) {
+      getTestDirectory().createFile(name + "/release", release);
+    }
+    if (modular) {
+      getTestDirectory().createFile(name + "/lib/modules", "");
+    }
+    return new File(getTestDirectoryRootDir(), name);
+  }
+}
@@ -0,0 +1,267 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.tools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.ant4eclipse.lib.core.service.ServiceRegistryAccess;
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.jdt.internal.tools.ClasspathEntryResolverExecutor;
+import org.ant4eclipse.lib.jdt.internal.tools.ClasspathModelResolver;
+import org.ant4eclipse.lib.jdt.internal.tools.ClasspathResolverContextImpl;
+import org.ant4eclipse.lib.jdt.internal.tools.ResolvedClasspathImpl;
+import org.ant4eclipse.lib.jdt.internal.tools.ResolverJob;
+import org.ant4eclipse.lib.jdt.internal.tools.WorkspaceClasspathResolver;
+import org.ant4eclipse.lib.jdt.internal.tools.classpathentry.ClasspathEntryResolver;
+import org.ant4eclipse.lib.jdt.internal.tools.classpathentry.ContainerClasspathEntryResolver;
+import org.ant4eclipse.lib.jdt.internal.tools.classpathentry.LibraryClasspathEntryResolver;
+import org.ant4eclipse.lib.jdt.internal.tools.classpathentry.OutputClasspathEntryResolver;
+import org.ant4eclipse.lib.jdt.internal.tools.classpathentry.ProjectClasspathEntryResolver;
+import org.ant4eclipse.lib.jdt.internal.tools.classpathentry.SourceClasspathEntryResolver;
+import org.ant4eclipse.lib.jdt.internal.tools.classpathentry.VariableClasspathEntryResolver;
+import org.ant4eclipse.lib.jdt.internal.tools.container.JdtResolverCache;
+import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
+import org.ant4eclipse.lib.platform.model.resource.Workspace;
+import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.DefaultEclipseWorkspaceDefinition;
+import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.WorkspaceRegistry;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.JdtProjectBuilder;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.junit.Test;
+
+public class JdtResolverTest extends ConfigurableAnt4EclipseTestCase {
+
+  private TestDirectory _testWorkspace;
+
+  @Override
+  public void setup() {
+    super.setup();
+
+    this._testWorkspace = new TestDirectory();
+
+    JdtProjectBuilder.getPreConfiguredJdtBuilder("simpleproject1").createIn(this._testWorkspace.getRootDir());
+    JdtProjectBuilder.getPreConfiguredJdtBuilder("simpleproject2").withClasspathEntry(
+        "<classpathentry combineaccessrules=\"false\" kind=\"src\" path=\"/simpleproject1\"/>").createIn(
+        this._testWorkspace.getRootDir());
+  }
+
+  @Override
+  public void dispose() {
+    this._testWorkspace.dispose();
+
+    super.dispose();
+  }
+
+  @Test
+  public void cachedClasspath() {
+    EclipseProject project = registerWorkspace().getProject("simpleproject2");
+    ResolvedClasspath classpath = JdtResolver.resolveProjectClasspath(project, false, false, null);
+    assertSame(classpath, JdtResolver.resolveProjectClasspath(project, false, false, null));
+
+    // other requests are cached separately
+    assertNotSame(classpath, JdtResolver.resolveProjectClasspath(project, true, false, null));
+
+    // unchanged project files don't require a new resolution
+    EclipseProject reloaded = registerWorkspace().getProject("simpleproject2");
+    assertSame(classpath, JdtResolver.resolveProjectClasspath(reloaded, false, false, null));
+  }
+
+  @Test
+  public void changedClasspathFile() {
+    EclipseProject project = registerWorkspace().getProject("simpleproject2");
+    ResolvedClasspath classpath = JdtResolver.resolveProjectClasspath(project, false, false, null);
+
+    // export a library from the referenced project
+    File projectFolder = new File(this._testWorkspace.getRootDir(), "simpleproject1");
+    File library = new File(projectFolder, "library.jar");
+    Utilities.writeFile(library, new byte[0]);
+    File classpathFile = new File(projectFolder, ".classpath");
+    String content = Utilities.readTextContent(classpathFile, "UTF-8", true).toString();
+    content = content.replace("</classpath>",
+        "<classpathentry exported=\"true\" kind=\"lib\" path=\"library.jar\"/></classpath>");
+    Utilities.writeFile(classpathFile, content, "UTF-8");
+
+    EclipseProject reloaded = registerWorkspace().getProject("simpleproject2");
+    ResolvedClasspath changed = JdtResolver.resolveProjectClasspath(reloaded, false, false, null);
+    assertNotSame(classpath, changed);
+    assertFalse(Arrays.asList(classpath.getClasspathFiles()).contains(library));
+    assertTrue(Arrays.asList(changed.getClasspathFiles()).contains(library));
+  }
+
+  @Test
+  public void persistentCache() {
+    EclipseProject project = registerWorkspace().getProject("simpleproject2");
+    ResolvedClasspath classpath = JdtResolver.resolveProjectClasspath(project, false, false, null);
+    String key = JdtResolverCache.getCacheKey(project, false, false, null);
+
+    File cacheFile = new File(this._testWorkspace.getRootDir(), "jdtresolver.cache");
+    System.setProperty(JdtResolverCache.CACHE_FILE_PROPERTY, cacheFile.getAbsolutePath());
+    try {
+      JdtResolverCache cache = new JdtResolverCache();
+      cache.initialize();
+      cache.storeResolvedClasspath(key, "fingerprint", Collections.singletonList(project), classpath);
+      cache.dispose();
+      assertTrue(cacheFile.isFile());
+
+      // a new cache instance reads the stored class path
+      cache = new JdtResolverCache();
+      cache.initialize();
+      ResolvedClasspath restored = cache.getResolvedClasspath(key, "fingerprint");
+      assertNotNull(restored);
+      assertArrayEquals(classpath.getClasspathFiles(), restored.getClasspathFiles());
+      assertEquals(classpath.getBootClasspath(), restored.getBootClasspath());
+      assertEquals(classpath.getBootClasspath().getAccessRestrictions() == null, restored.getBootClasspath()
+          .getAccessRestrictions() == null);
+
+      // a different fingerprint doesn't match
+      assertEquals(null, cache.getResolvedClasspath(key, "other"));
+      cache.dispose();
+    } finally {
+      System.clearProperty(JdtResolverCache.CACHE_FILE_PROPERTY);
+    }
+  }
+
+  @Test
+  public void workspaceResolver() {
+    Workspace workspace = createReferencingProjects();
+
+    // the shared resolver returns the same class paths as a separate resolution of each project
+    for (boolean relative : new boolean[] { false, true }) {
+      for (boolean runtime : new boolean[] { false, true }) {
+        WorkspaceClasspathResolver resolver = new WorkspaceClasspathResolver(workspace, relative, runtime, null,
+            createEntryResolvers());
+        for (String name : new String[] { "g", "d", "c", "b", "a", "f", "e", "simpleproject2" }) {
+          EclipseProject project = workspace.getProject(name);
+          ResolvedClasspath expected = resolveWithExecutor(project, relative, runtime);
+          ResolvedClasspath actual = resolver.resolve(project, null);
+          assertArrayEquals(name, expected.getClasspathFiles(), actual.getClasspathFiles());
+          assertEquals(name, expected.getBootClasspath(), actual.getBootClasspath());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void classpathModel() {
+    Workspace workspace = createReferencingProjects();
+
+    // all flavours derived from the model are the same as the separately resolved class paths
+    for (String name : new String[] { "g", "d", "c", "b", "a", "f", "e", "simpleproject2" }) {
+      EclipseProject project = workspace.getProject(name);
+      ResolvedClasspathModel model = new ClasspathModelResolver(true, null, createEntryResolvers()).resolve(project);
+      for (boolean relative : new boolean[] { false, true }) {
+        for (boolean runtime : new boolean[] { false, true }) {
+          ResolvedClasspath expected = resolveWithExecutor(project, relative, runtime);
+          ResolvedClasspath actual = model.getClasspath(relative, runtime);
+          assertArrayEquals(name, expected.getClasspath(), actual.getClasspath());
+          assertEquals(name, expected.getBootClasspath(), actual.getBootClasspath());
+        }
+      }
+    }
+
+    // the library of project 'c' isn't exported, so it's only part of the runtime class path of project 'd'
+    EclipseProject c = workspace.getProject("c");
+    ResolvedClasspathModel model = JdtResolver.resolveProjectClasspathModel(workspace.getProject("d"), true, null);
+    ResolvedClasspathEntry library = new ResolvedClasspathEntry(c.getChild("c.jar"));
+    assertSame(c, model.getOriginProject(library, false));
+    assertTrue(model.isRuntimeOnly(library, false));
+    ResolvedClasspathEntry exported = new ResolvedClasspathEntry(workspace.getProject("a").getChild("a.jar"));
+    assertSame(workspace.getProject("a"), model.getOriginProject(exported, false));
+    assertFalse(model.isRuntimeOnly(exported, false));
+
+    // the derived class paths are cached
+    assertSame(model.getClasspath(true, true), JdtResolver.resolveProjectClasspath(workspace.getProject("d"), true,
+        true, null));
+  }
+
+  @Test
+  public void concurrentResolution() {
+    Workspace workspace = createReferencingProjects();
+    EclipseProject[] projects = workspace.getProjects(new String[] { "g", "d", "c", "b", "a", "f", "e",
+        "simpleproject2" }, true);
+
+    // the concurrently resolved class paths are the same as the class paths resolved by the executor
+    for (boolean relative : new boolean[] { false, true }) {
+      for (boolean runtime : new boolean[] { false, true }) {
+        List<ResolvedClasspath> classpaths = JdtResolver.resolveProjectClasspaths(Arrays.asList(projects), relative,
+            runtime, null, 4);
+        assertEquals(projects.length, classpaths.size());
+        for (int i = 0; i < projects.length; i++) {
+          ResolvedClasspath expected = resolveWithExecutor(projects[i], relative, runtime);
+          assertArrayEquals(projects[i].getSpecifiedName(), expected.getClasspath(), classpaths.get(i).getClasspath());
+        }
+      }
+    }
+
+    // same for the class path models
+    List<ResolvedClasspathModel> models = JdtResolver.resolveProjectClasspathModels(Arrays.asList(projects), true,
+        null, 4);
+    for (int i = 0; i < projects.length; i++) {
+      assertSame(projects[i], models.get(i).getRootProject());
+      ResolvedClasspath expected = resolveWithExecutor(projects[i], true, true);
+      assertArrayEquals(projects[i].getSpecifiedName(), expected.getClasspath(), models.get(i).getClasspath(true,
+          true).getClasspath());
+    }
+  }
+
+  private Workspace createReferencingProjects() {
+    createProject("a", "<classpathentry exported=\"true\" kind=\"lib\" path=\"a.jar\"/>");
+    createProject("b", "<classpathentry exported=\"true\" kind=\"src\" path=\"/a\"/>",
+        "<classpathentry exported=\"true\" kind=\"lib\" path=\"b.jar\"/>");
+    createProject("c", "<classpathentry kind=\"src\" path=\"/a\"/>",
+        "<classpathentry kind=\"lib\" path=\"c.jar\"/>");
+    createProject("d", "<classpathentry kind=\"src\" path=\"/b\"/>", "<classpathentry kind=\"src\" path=\"/c\"/>");
+    createProject("e", "<classpathentry exported=\"true\" kind=\"src\" path=\"/f\"/>");
+    createProject("f", "<classpathentry exported=\"true\" kind=\"src\" path=\"/e\"/>");
+    createProject("g", "<classpathentry kind=\"src\" path=\"/d\"/>", "<classpathentry kind=\"src\" path=\"/e\"/>");
+    return registerWorkspace();
+  }
+
+  private ResolvedClasspath resolveWithExecutor(EclipseProject project, boolean relative, boolean runtime) {
+    ClasspathEntryResolverExecutor executor = new ClasspathEntryResolverExecutor(true);
+    ResolverJob job = new ResolverJob(project, project.getWorkspace(), relative, runtime, null);
+    ResolvedClasspathImpl result = new ResolvedClasspathImpl();
+    executor.resolve(project, createEntryResolvers(), new ClasspathResolverContextImpl(executor, job, result));
+    return result;
+  }
+
+  private ClasspathEntryResolver[] createEntryResolvers() {
+    return new ClasspathEntryResolver[] { new VariableClasspathEntryResolver(), new ContainerClasspathEntryResolver(),
+        new SourceClasspathEntryResolver(), new ProjectClasspathEntryResolver(), new LibraryClasspathEntryResolver(),
+        new OutputClasspathEntryResolver() };
+  }
+
+  private void createProject(String name, String... classpathEntries) {
+    JdtProjectBuilder builder = JdtProjectBuilder.getPreConfiguredJdtBuilder(name);
+    for (String classpathEntry : classpathEntries) {
+      builder.withClasspathEntry(classpathEntry);
+    }
+    builder.createIn(this._testWorkspace.getRootDir());
+  }
+
+  private Workspace registerWorkspace() {
+    WorkspaceRegistry workspaceRegistry = ServiceRegistryAccess.instance().getService(WorkspaceRegistry.class);
+    return workspaceRegistry.registerWorkspace(this._testWorkspace.getRootDir().getAbsolutePath(),
+        new DefaultEclipseWorkspaceDefinition(this._testWorkspace.getRootDir()));
+  }
+}
@@ -91,14 +91,8 @@ public class JavaExecuter {
   public static JavaExecuter createWithA4eClasspath(File jreLocation) {
     Assure.isDirectory("jreLocation", jreLocation);
 
-    // check if the location points to a JDK (instead a JRE)...
-    File jreDirectory = new File(jreLocation, "jre");
-    if (!jreDirectory.isDirectory()) {
-      jreDirectory = jreLocation;
-    }
-
     // create new java launcher
-    JavaExecuter javaExecuter = new JavaExecuter(jreDirectory);
+    JavaExecuter javaExecuter = new JavaExecuter(getJreDirectory(jreLocation));
 
     // resolve the class path entries
     String[] classpathentries = ClassLoadingHelper.getClasspathEntriesFor(JavaRuntimeImpl.class);
@@ -122,6 +116,26 @@ public class JavaExecuter {
     return javaExecuter;
   }
 
+  /**
+   * <p>
+   * Returns the directory of the java runtime environment for the given location. If the location points to a JDK that
+   * contains a 'jre' directory, this directory is returned.
+   * </p>
+   * 
+   * @param jreLocation
+   *          the location of the java runtime
+   * @return the directory of the java runtime environment
+   */
+  static File getJreDirectory(File jreLocation) {
+
+    // check if the location points to a JDK (instead a JRE)...
+    File jreDirectory = new File(jreLocation, "jre");
+    if (!jreDirectory.isDirectory()) {
+      jreDirectory = jreLocation;
+    }
+    return jreDirectory;
+  }
+
   /**
    * <p>
    * Creates a new instance of type {@link JavaExecuter}.
@@ -350,7 +364,7 @@ public class JavaExecuter {
    * 
    * @return the java executable
    */
-  private File getJavaExecutable() {
+  File getJavaExecutable() {
     // try 'bin/java'
     File result = new File(this._jreDirectory, "bin/java");
 
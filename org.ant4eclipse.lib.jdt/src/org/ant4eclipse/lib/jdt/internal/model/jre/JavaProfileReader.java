@@ -40,7 +40,7 @@ public class JavaProfileReader implements Lifecycle {
   /**
    * {@inheritDoc}
    */
-  public void initialize() {
+  public synchronized void initialize() {
 
     this._javaProfileCache = new HashMap<String, JavaProfile>();
 
@@ -63,14 +63,14 @@ public class JavaProfileReader implements Lifecycle {
   /**
    * {@inheritDoc}
    */
-  public boolean isInitialized() {
+  public synchronized boolean isInitialized() {
     return this._javaProfileCache != null;
   }
 
   /**
    * @return
    */
-  public JavaProfile readDefaultProfile() {
+  public synchronized JavaProfile readDefaultProfile() {
     return this._defaultProfile;
   }
 
@@ -79,7 +79,7 @@ public class JavaProfileReader implements Lifecycle {
    * 
    * @return string containing all profile names
    */
-  public String getAllProfileNames() {
+  public synchronized String getAllProfileNames() {
     final List<String> profileNames = new LinkedList<String>(this._javaProfileCache.keySet());
     Collections.sort(profileNames);
     return String.valueOf(profileNames);
@@ -88,12 +88,12 @@ public class JavaProfileReader implements Lifecycle {
   /**
    * {@inheritDoc}
    */
-  public JavaProfile getJavaProfile(String path) {
+  public synchronized JavaProfile getJavaProfile(String path) {
     Assure.nonEmpty("path", path);
     return this._javaProfileCache.get(path);
   }
 
-  public boolean hasJavaProfile(String path) {
+  public synchronized boolean hasJavaProfile(String path) {
     Assure.nonEmpty("path", path);
     return this._javaProfileCache.containsKey(path);
   }
@@ -105,7 +105,7 @@ public class JavaProfileReader implements Lifecycle {
    * @param profileFile
    * @return
    */
-  public void registerProfile(File profileFile, String jreId) {
+  public synchronized void registerProfile(File profileFile, String jreId) {
     Assure.exists("profileFile", profileFile);
     Assure.nonEmpty("jreId", jreId);
 
@@ -153,4 +153,4 @@ public class JavaProfileReader implements Lifecycle {
   public static JavaProfileReader getInstance() {
     return ServiceRegistryAccess.instance().getService(JavaProfileReader.class);
   }
-}
\ No newline at end of file
+}
\ No newline at end of file
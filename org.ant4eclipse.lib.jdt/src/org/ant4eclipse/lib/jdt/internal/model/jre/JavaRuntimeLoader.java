@@ -24,9 +24,7 @@ import org.ant4eclipse.lib.core.data.Version;
 import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
 import org.ant4eclipse.lib.core.service.ServiceRegistryAccess;
-import org.ant4eclipse.lib.core.util.Utilities;
 import org.ant4eclipse.lib.jdt.JdtExceptionCode;
-import org.ant4eclipse.lib.jdt.internal.model.jre.support.LibraryDetector;
 import org.ant4eclipse.lib.jdt.model.jre.JavaProfile;
 import org.ant4eclipse.lib.jdt.model.jre.JavaRuntime;
 import org.ant4eclipse.lib.jdt.model.jre.JavaRuntimeRegistry;
@@ -50,6 +48,12 @@ public class JavaRuntimeLoader {
   /**  */
   private static String       JAVASE                          = "JavaSE-";                    //$NON-NLS-1$
 
+  /** the profile that is used for java runtimes without a profile of their own (java 9 or later) */
+  private static final String LATEST_JAVASE_PROFILE           = "JavaSE-1.8";                 //$NON-NLS-1$
+
+  /** the runtime image of a modular JDK (java 9 or later) */
+  private static final String MODULES_IMAGE                   = "lib/modules";
+
   /**
    * @param id
    * @param location
@@ -62,29 +66,12 @@ public class JavaRuntimeLoader {
     Assure.nonEmpty("id", id);
     Assure.isDirectory("location", location);
 
-    String outfileName = System.getProperty("java.io.tmpdir") + File.separatorChar + "ant4eclipse_jdk_props_"
-        + Math.round(Math.random() * 1000000000);
-    // System.out.println(outfileName);
-
-    JavaExecuter javaLauncher = JavaExecuter.createWithA4eClasspath(location);
-    javaLauncher.setMainClass(LibraryDetector.class.getName());
-    javaLauncher.setArgs(new String[] { outfileName });
-
-    javaLauncher.execute();
-
-    // TODO
-    StringBuffer contents = new StringBuffer();
-    try {
-      File file = new File(outfileName);
-      contents = Utilities.readTextContent(file, Utilities.ENCODING, false);
-      file.deleteOnExit();
-    } catch (Throwable e) {
-      e.printStackTrace();
-    }
-
-    String result = contents.toString();
-    // System.out.println(result);
+    // determine the properties of the java runtime (the probe results are cached)
+    String result = JavaRuntimeProbe.probe(location);
     String[] values = result.split("\\|");
+    if (values.length < 6) {
+      throw new Ant4EclipseException(JdtExceptionCode.INVALID_JRE_DIRECTORY, location.getAbsolutePath());
+    }
     Version javaVersion = Version.newStandardVersion(values[0]);
     String sunbootclasspath = values[1];
     String javaextdirs = (extDirs != null ? extDirs : values[2]);
@@ -100,6 +87,13 @@ public class JavaRuntimeLoader {
       addFiles(sunbootclasspath, false, files);
       A4ELogging.debug("Adding ext files from exts dirs for JRE '%s': '%s'", id, javaextdirs);
       addFiles(javaextdirs, true, files);
+
+      // modular JDKs (java 9 or later) don't have a boot class path but a runtime image
+      File modulesImage = new File(location, MODULES_IMAGE);
+      if (files.isEmpty() && modulesImage.isFile()) {
+        A4ELogging.debug("Using runtime image for JRE '%s': '%s'", id, modulesImage);
+        files.add(modulesImage);
+      }
     }
 
     File[] libraries = files.toArray(new File[0]);
@@ -111,6 +105,12 @@ public class JavaRuntimeLoader {
 
     String javaProfileName = getVmProfile(properties);
     JavaRuntimeRegistry javaRuntimeRegistry = ServiceRegistryAccess.instance().getService(JavaRuntimeRegistry.class);
+    if (!javaRuntimeRegistry.hasJavaProfile(javaProfileName) && isModularRuntime(values[4])
+        && javaRuntimeRegistry.hasJavaProfile(LATEST_JAVASE_PROFILE)) {
+      A4ELogging.debug("No Java-Profile with name '%s' found for JRE '%s'. Using '%s'.", javaProfileName, id,
+          LATEST_JAVASE_PROFILE);
+      javaProfileName = LATEST_JAVASE_PROFILE;
+    }
     if (!javaRuntimeRegistry.hasJavaProfile(javaProfileName)) {
       A4ELogging.error("No Java-Profile with name '%s' found for JRE '%s' located at '%s'. Known Profiles: '%s'",
           javaProfileName, id, location, javaRuntimeRegistry.getAllJavaProfileNames());
@@ -181,7 +181,7 @@ public class JavaRuntimeLoader {
         } else {
           javaEdition = J2SE;
 
-          if (Integer.parseInt(javaSpecVersion.split("\\.")[1]) >= 6) {
+          if (isModularRuntime(javaSpecVersion) || (Integer.parseInt(javaSpecVersion.split("\\.")[1]) >= 6)) {
             javaEdition = JAVASE;
           }
 
@@ -193,6 +193,20 @@ public class JavaRuntimeLoader {
     return vmProfile;
   }
 
+  /**
+   * <p>
+   * Returns <code>true</code> if the given specification version denotes a modular java runtime (java 9 or later). As
+   * of java 9, the specification version doesn't start with '1.' anymore.
+   * </p>
+   * 
+   * @param javaSpecVersion
+   *          the java specification version
+   * @return <code>true</code> if the given specification version denotes a modular java runtime.
+   */
+  private static boolean isModularRuntime(String javaSpecVersion) {
+    return (javaSpecVersion != null) && (javaSpecVersion.length() > 0) && !javaSpecVersion.startsWith("1.");
+  }
+
   /**
    * Returns the result of converting a list of tokens into an array. The tokens are split using the specified
    * separator.
@@ -0,0 +1,319 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.internal.model.jre;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.jdt.internal.model.jre.support.LibraryDetector;
+
+/**
+ * <p>
+ * Determines the system properties of a java runtime that are printed by the {@link LibraryDetector} (
+ * <code>java.version</code>, <code>sun.boot.class.path</code>, <code>java.ext.dirs</code>,
+ * <code>java.endorsed.dirs</code>, <code>java.specification.version</code>, <code>java.specification.name</code> and
+ * <code>java.vendor</code>, separated by '|').
+ * </p>
+ * <p>
+ * Forking a java runtime to execute the {@link LibraryDetector} is expensive, so the probe results are cached. A cached
+ * result is keyed by the canonical location of the java runtime and is only used as long as the size and the
+ * modification time of its java executable and its <code>release</code> file haven't changed. The results can be
+ * persisted across builds by setting the system property <code>ant4eclipse.jreProbeCacheFile</code> to the location
+ * of the cache file.
+ * </p>
+ * <p>
+ * Modular java runtimes (java 9 or later) don't have a boot class path nor extension or endorsed directories. Their
+ * properties are read from the <code>release</code> file, so the java runtime is only forked for older runtimes.
+ * </p>
+ */
+public class JavaRuntimeProbe {
+
+  /** System-Property that specifies the location of the cache file (and enables the persistence) */
+  public static final String               CACHE_FILE_PROPERTY = "ant4eclipse.jreProbeCacheFile";
+
+  /** the release file of a JDK */
+  private static final String              RELEASE_FILE        = "release";
+
+  /** the runtime image of a modular JDK (java 9 or later) */
+  private static final String              MODULES_IMAGE       = "lib/modules";
+
+  /** the specification name of the java platform */
+  private static final String              SPECIFICATION_NAME  = "Java Platform API Specification";
+
+  /** the cached probe results (location -> stamp and result) */
+  private static final Map<String, String> CACHE               = new HashMap<String, String>();
+
+  /** the cache file (maybe null) */
+  private static File                      _cacheFile;
+
+  /** indicates if the cache file has been loaded */
+  private static boolean                   _cacheFileLoaded    = false;
+
+  /**
+   * <p>
+   * Returns the properties of the java runtime at the given location as printed by the {@link LibraryDetector}.
+   * </p>
+   *
+   * @param location
+   *          the location of the java runtime
+   * @return the properties of the java runtime, separated by '|'
+   */
+  public static String probe(File location) {
+    Assure.isDirectory("location", location);
+
+    File canonicalLocation = Utilities.getCanonicalFile(location);
+    String key = canonicalLocation.getPath();
+    String stamp = getStamp(canonicalLocation);
+
+    // return the cached result if the java runtime hasn't changed
+    String cached = getCachedResult(key, stamp);
+    if (cached != null) {
+      A4ELogging.debug("Using cached properties for JRE at '%s': '%s'", key, cached);
+      return cached;
+    }
+
+    // read the release file if possible, fork the java runtime otherwise
+    String result = readReleaseFile(canonicalLocation);
+    if (result != null) {
+      A4ELogging.debug("Read properties for JRE at '%s' from the release file: '%s'", key, result);
+    } else {
+      result = executeLibraryDetector(canonicalLocation);
+    }
+
+    // don't cache incomplete results (f.e. if the java runtime couldn't be executed)
+    if (result.split("\\|").length >= 6) {
+      storeResult(key, stamp, result);
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns the stamp of the java runtime at the given location, consisting of the size and the modification time of
+   * the java executable and of the <code>release</code> file.
+   * </p>
+   *
+   * @param location
+   *          the canonical location of the java runtime
+   * @return the stamp of the java runtime
+   */
+  static String getStamp(File location) {
+    File executable = new JavaExecuter(JavaExecuter.getJreDirectory(location)).getJavaExecutable();
+    return getFileStamp(executable) + "," + getFileStamp(new File(location, RELEASE_FILE));
+  }
+
+  /**
+   * <p>
+   * Returns the size and the modification time of the given file.
+   * </p>
+   */
+  private static String getFileStamp(File file) {
+    if (!file.isFile()) {
+      return "-";
+    }
+    return file.length() + ":" + file.lastModified();
+  }
+
+  /**
+   * <p>
+   * Returns the cached result for the given location if the stamp matches, <code>null</code> otherwise.
+   * </p>
+   */
+  private static synchronized String getCachedResult(String key, String stamp) {
+    loadCacheFile();
+    String value = CACHE.get(key);
+    if ((value != null) && value.startsWith(stamp + "|")) {
+      return value.substring(stamp.length() + 1);
+    }
+    return null;
+  }
+
+  /**
+   * <p>
+   * Caches the result for the given location and writes the cache file (if enabled). The cache file is written to a
+   * temporary file first that replaces the cache file afterwards, so other builds never read a partially written file.
+   * </p>
+   */
+  private static synchronized void storeResult(String key, String stamp, String result) {
+    CACHE.put(key, stamp + "|" + result);
+    if (_cacheFile == null) {
+      return;
+    }
+
+    Properties properties = new Properties();
+    properties.putAll(CACHE);
+    File tempFile = null;
+    OutputStream outstream = null;
+    try {
+      Utilities.mkdirs(_cacheFile.getParentFile());
+      tempFile = File.createTempFile("jreprobe-", ".tmp", _cacheFile.getParentFile());
+      outstream = new FileOutputStream(tempFile);
+      properties.store(outstream, "ant4eclipse JRE probe cache");
+      outstream.close();
+      outstream = null;
+
+      // File.renameTo() doesn't replace an existing file on all platforms
+      if (!tempFile.renameTo(_cacheFile) && !(_cacheFile.delete() && tempFile.renameTo(_cacheFile))) {
+        A4ELogging.warn("Could not replace the JRE probe cache file '%s'.", _cacheFile);
+      }
+    } catch (IOException ex) {
+      A4ELogging.warn("Could not write the JRE probe cache file '%s': %s", _cacheFile, ex.getMessage());
+    } finally {
+      Utilities.close((Closeable) outstream);
+      if (tempFile != null) {
+        tempFile.delete();
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Loads the cache file (if enabled). The file is only loaded again if the system property
+   * <code>ant4eclipse.jreProbeCacheFile</code> has been changed.
+   * </p>
+   */
+  private static void loadCacheFile() {
+    String location = Utilities.cleanup(System.getProperty(CACHE_FILE_PROPERTY));
+    File cacheFile = location != null ? new File(location).getAbsoluteFile() : null;
+    if (_cacheFileLoaded && Utilities.equals(cacheFile, _cacheFile)) {
+      return;
+    }
+    _cacheFileLoaded = true;
+    _cacheFile = cacheFile;
+    if ((cacheFile == null) || !cacheFile.isFile()) {
+      return;
+    }
+
+    Properties properties = new Properties();
+    InputStream instream = null;
+    try {
+      instream = new FileInputStream(_cacheFile);
+      properties.load(instream);
+    } catch (IOException ex) {
+      A4ELogging.warn("Could not read the JRE probe cache file '%s': %s", _cacheFile, ex.getMessage());
+    } finally {
+      Utilities.close((Closeable) instream);
+    }
+    for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+      CACHE.put((String) entry.getKey(), (String) entry.getValue());
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the properties of a modular java runtime (java 9 or later) as read from its <code>release</code> file. If
+   * the java runtime isn't modular or if the release file doesn't contain the version, <code>null</code> is returned.
+   * </p>
+   *
+   * @param location
+   *          the location of the java runtime
+   * @return the properties of the java runtime or <code>null</code>
+   */
+  static String readReleaseFile(File location) {
+    File releaseFile = new File(location, RELEASE_FILE);
+    if (!releaseFile.isFile() || !new File(location, MODULES_IMAGE).isFile()) {
+      return null;
+    }
+
+    Properties release = new Properties();
+    InputStream instream = null;
+    try {
+      instream = new FileInputStream(releaseFile);
+      release.load(instream);
+    } catch (IOException ex) {
+      A4ELogging.debug("Could not read the release file '%s': %s", releaseFile, ex.getMessage());
+      return null;
+    } finally {
+      Utilities.close((Closeable) instream);
+    }
+
+    String version = unquote(release.getProperty("JAVA_VERSION"));
+    if ((version == null) || (version.length() == 0) || version.startsWith("1.")) {
+      return null;
+    }
+
+    // the specification version is the feature release number (f.e. '11' for '11.0.2')
+    String specificationVersion = version.split("[.\\-+_]")[0];
+    if (!specificationVersion.matches("\\d+")) {
+      return null;
+    }
+
+    // java 9 or later don't define 'sun.boot.class.path', 'java.ext.dirs' and 'java.endorsed.dirs'
+    StringBuffer buffer = new StringBuffer();
+    buffer.append(version);
+    buffer.append("|");
+    buffer.append((String) null);
+    buffer.append("|");
+    buffer.append((String) null);
+    buffer.append("|");
+    buffer.append((String) null);
+    buffer.append("|");
+    buffer.append(specificationVersion);
+    buffer.append("|");
+    buffer.append(SPECIFICATION_NAME);
+    buffer.append("|");
+    buffer.append(unquote(release.getProperty("IMPLEMENTOR")));
+    return buffer.toString();
+  }
+
+  /**
+   * <p>
+   * Removes the quotes of a value of the <code>release</code> file.
+   * </p>
+   */
+  private static String unquote(String value) {
+    if ((value != null) && (value.length() >= 2) && value.startsWith("\"") && value.endsWith("\"")) {
+      return value.substring(1, value.length() - 1);
+    }
+    return value;
+  }
+
+  /**
+   * <p>
+   * Executes the {@link LibraryDetector} using the java runtime at the given location.
+   * </p>
+   */
+  private static String executeLibraryDetector(File location) {
+    File outfile = null;
+    try {
+      outfile = File.createTempFile("ant4eclipse_jdk_props_", null);
+    } catch (IOException ex) {
+      throw new RuntimeException("Could not create a temporary file", ex);
+    }
+
+    try {
+      JavaExecuter javaLauncher = JavaExecuter.createWithA4eClasspath(location);
+      javaLauncher.setMainClass(LibraryDetector.class.getName());
+      javaLauncher.setArgs(new String[] { outfile.getAbsolutePath() });
+      javaLauncher.execute();
+
+      if (!outfile.isFile() || (outfile.length() == 0)) {
+        A4ELogging.error("The JRE at '%s' didn't report its properties.", location);
+        return "";
+      }
+      return Utilities.readTextContent(outfile, Utilities.ENCODING, false).toString();
+    } finally {
+      Utilities.delete(outfile);
+    }
+  }
+}
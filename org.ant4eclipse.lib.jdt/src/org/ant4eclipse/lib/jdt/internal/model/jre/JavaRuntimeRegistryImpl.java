@@ -31,6 +31,10 @@ import org.ant4eclipse.lib.jdt.model.jre.JavaRuntimeRegistry;
  * <p>
  * Implementation of the {@link JavaRuntimeRegistry}.
  * </p>
+ * <p>
+ * The registry is thread safe, so class paths may be resolved concurrently. Java runtimes are loaded outside of the
+ * lock.
+ * </p>
  * 
  * @author Daniel Kasmeroglu (daniel.kasmeroglu@kasisoft.net)
  * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
@@ -92,7 +96,7 @@ public class JavaRuntimeRegistryImpl implements JavaRuntimeRegistry {
   /**
    * {@inheritDoc}
    */
-  public void setDefaultJavaRuntime(String id) {
+  public synchronized void setDefaultJavaRuntime(String id) {
     Assure.notNull("id", id);
     Assure.assertTrue(hasJavaRuntime(id), "No JavaRuntime with id '" + id + "' registered!");
 
@@ -102,7 +106,7 @@ public class JavaRuntimeRegistryImpl implements JavaRuntimeRegistry {
   /**
    * {@inheritDoc}
    */
-  public boolean hasJavaRuntime(String path) {
+  public synchronized boolean hasJavaRuntime(String path) {
     Assure.nonEmpty("path", path);
 
     // return true if a java runtime exists
@@ -134,7 +138,7 @@ public class JavaRuntimeRegistryImpl implements JavaRuntimeRegistry {
   /**
    * {@inheritDoc}
    */
-  public JavaRuntime getJavaRuntime(String path) {
+  public synchronized JavaRuntime getJavaRuntime(String path) {
     Assure.nonEmpty("path", path);
 
     // return true if a java runtime exists
@@ -196,7 +200,7 @@ public class JavaRuntimeRegistryImpl implements JavaRuntimeRegistry {
   /**
    * {@inheritDoc}
    */
-  public JavaRuntime getDefaultJavaRuntime() {
+  public synchronized JavaRuntime getDefaultJavaRuntime() {
 
     if (this._defaultJavaRuntime != null) {
       return this._defaultJavaRuntime;
@@ -288,7 +292,7 @@ public class JavaRuntimeRegistryImpl implements JavaRuntimeRegistry {
    * @return the path under this java runtime is stored, e.g.
    *         <code>org.eclipse.jdt.launching.JRE_CONTAINER/org.eclipse.jdt.internal.debug.ui.launcher.StandardVMType/jdk15</code>
    */
-  private JavaRuntime registerJavaRuntime(JavaRuntime javaRuntime, boolean isDefault) {
+  private synchronized JavaRuntime registerJavaRuntime(JavaRuntime javaRuntime, boolean isDefault) {
     Assure.notNull("javaRuntime", javaRuntime);
 
     // create path
@@ -19,6 +19,7 @@ import java.util.Map;
 
 /**
  * This class provides the content of a user library configuration.
+ * The libraries are kept in a synchronized map, so this data structure can be read concurrently.
  * 
  * @author Daniel Kasmeroglu (daniel.kasmeroglu@kasisoft.net)
  */
@@ -64,9 +65,8 @@ public final class UserLibrariesImpl implements UserLibraries {
    * {@inheritDoc}
    */
   public String[] getAvailableLibraries() {
-    String[] result = new String[this._libraries.size()];
-    this._libraries.keySet().toArray(result);
-    return result;
+    // the key set of the hashtable is synchronized, so the names are copied atomically
+    return this._libraries.keySet().toArray(new String[0]);
   }
 
 } /* ENDCLASS */
@@ -23,8 +23,10 @@ import org.ant4eclipse.lib.jdt.tools.container.ClasspathResolverContext;
 import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
 
 import java.util.EmptyStackException;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 import java.util.Stack;
 
 /**
@@ -47,10 +49,10 @@ public class ClasspathEntryResolverExecutor {
   private Stack<EclipseProject>    _currentProject;
 
   /** list with all projects that are (transitively) resolved */
-  private List<EclipseProject>     _resolvedProjects;
+  private Set<EclipseProject>      _resolvedProjects;
 
   /** list with all projects that references. These projects are not transitively resolved */
-  private List<EclipseProject>     _referencedProjects;
+  private Set<EclipseProject>      _referencedProjects;
 
   /** array that contains all resolvers for raw class path entries * */
   private ClasspathEntryResolver[] _entryResolvers;
@@ -71,8 +73,8 @@ public class ClasspathEntryResolverExecutor {
   public ClasspathEntryResolverExecutor(boolean failOnNonHandledEntry) {
 
     // initialize the executor attributes
-    this._resolvedProjects = new LinkedList<EclipseProject>();
-    this._referencedProjects = new LinkedList<EclipseProject>();
+    this._resolvedProjects = new LinkedHashSet<EclipseProject>();
+    this._referencedProjects = new LinkedHashSet<EclipseProject>();
     this._currentProject = new Stack<EclipseProject>();
     this._failOnNonHandledEntry = failOnNonHandledEntry;
   }
@@ -115,20 +117,16 @@ public class ClasspathEntryResolverExecutor {
   public List<EclipseProject> getReferencedProjects() {
 
     // create the result
-    List<EclipseProject> result = new LinkedList<EclipseProject>();
+    Set<EclipseProject> result = new LinkedHashSet<EclipseProject>();
 
     // add all resolved projects
     result.addAll(this._resolvedProjects);
 
     // add all referenced projects
-    for (EclipseProject eclipseProject : this._referencedProjects) {
-      if (!result.contains(eclipseProject)) {
-        result.add(eclipseProject);
-      }
-    }
+    result.addAll(this._referencedProjects);
 
     // return result
-    return result;
+    return new LinkedList<EclipseProject>(result);
   }
 
   /**
@@ -157,10 +155,13 @@ public class ClasspathEntryResolverExecutor {
     // set the resolver context
     this._resolverContext = classpathResolverContext;
 
-    // Initialize Entry Resolvers
+    // Initialize Entry Resolvers. Resolvers that have been initialized already (e.g. the resolvers of a
+    // WorkspaceClasspathResolver that are shared by concurrent resolutions) are neither initialized nor disposed here
+    List<Lifecycle> initializedResolvers = new LinkedList<Lifecycle>();
     for (ClasspathEntryResolver entryResolver : this._entryResolvers) {
-      if (entryResolver instanceof Lifecycle) {
+      if ((entryResolver instanceof Lifecycle) && !((Lifecycle) entryResolver).isInitialized()) {
         ((Lifecycle) entryResolver).initialize();
+        initializedResolvers.add((Lifecycle) entryResolver);
       }
     }
 
@@ -168,10 +169,8 @@ public class ClasspathEntryResolverExecutor {
     resolveReferencedProject(rootProject);
 
     // Dispose Entry Resolvers
-    for (ClasspathEntryResolver entryResolver : this._entryResolvers) {
-      if (entryResolver instanceof Lifecycle) {
-        ((Lifecycle) entryResolver).dispose();
-      }
+    for (Lifecycle entryResolver : initializedResolvers) {
+      entryResolver.dispose();
     }
   }
 
@@ -187,9 +186,7 @@ public class ClasspathEntryResolverExecutor {
     Assure.notNull("project", project);
 
     // adds the referenced project
-    if (!this._referencedProjects.contains(project)) {
-      this._referencedProjects.add(project);
-    }
+    this._referencedProjects.add(project);
   }
 
   /**
@@ -212,14 +209,11 @@ public class ClasspathEntryResolverExecutor {
       return;
     }
 
-    // return if project already has been resolved
-    if (this._resolvedProjects.contains(project)) {
+    // add project to the list of all resolved projects (return if project already has been resolved)
+    if (!this._resolvedProjects.add(project)) {
       return;
     }
 
-    // add project to the list of all resolved projects
-    this._resolvedProjects.add(project);
-
     // push the project to the stack
     this._currentProject.push(project);
 
@@ -270,22 +264,41 @@ public class ClasspathEntryResolverExecutor {
   private final void resolveClasspathEntry(ClasspathEntry entry) {
     Assure.notNull("entry", entry);
 
-    // initialize handled
-    boolean handled = false;
+    ClasspathEntryResolver entryResolver = getEntryResolver(this._entryResolvers, entry, this._failOnNonHandledEntry);
+    if (entryResolver != null) {
+      entryResolver.resolve(entry, this._resolverContext);
+    }
+  }
 
-    // iterate over all the entry resolvers and try to resolve the entry
-    for (ClasspathEntryResolver entryResolver : this._entryResolvers) {
+  /**
+   * <p>
+   * Returns the first entry resolver that is able to resolve the given class path entry.
+   * </p>
+   * 
+   * @param entryResolvers
+   *          the entry resolvers.
+   * @param entry
+   *          the class path entry to resolve.
+   * @param failOnNonHandledEntry
+   *          indicates if an exception should be thrown if none of the entry resolvers is able to resolve the entry.
+   * @return the entry resolver or <code>null</code> if there's none (and <code>failOnNonHandledEntry</code> is
+   *         <code>false</code>).
+   */
+  static ClasspathEntryResolver getEntryResolver(ClasspathEntryResolver[] entryResolvers, ClasspathEntry entry,
+      boolean failOnNonHandledEntry) {
+
+    // iterate over all the entry resolvers and try to find one that handles the entry
+    for (ClasspathEntryResolver entryResolver : entryResolvers) {
       if (entryResolver.canResolve(entry)) {
-        handled = true;
-        entryResolver.resolve(entry, this._resolverContext);
-        break;
+        return entryResolver;
       }
     }
 
     // if the entry is not handled, we have to throw an exception here
-    if (!handled && this._failOnNonHandledEntry) {
+    if (failOnNonHandledEntry) {
       // TODO: NLS
       throw new RuntimeException("Unsupported Entrykind!" + entry);
     }
+    return null;
   }
 }
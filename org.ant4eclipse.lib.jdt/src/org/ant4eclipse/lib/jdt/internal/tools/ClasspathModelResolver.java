@@ -0,0 +1,246 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.internal.tools;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.Lifecycle;
+import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
+import org.ant4eclipse.lib.jdt.JdtExceptionCode;
+import org.ant4eclipse.lib.jdt.internal.tools.ResolvedClasspathModelImpl.Event;
+import org.ant4eclipse.lib.jdt.internal.tools.ResolvedClasspathModelImpl.Resolution;
+import org.ant4eclipse.lib.jdt.internal.tools.classpathentry.ClasspathEntryResolver;
+import org.ant4eclipse.lib.jdt.model.ClasspathEntry;
+import org.ant4eclipse.lib.jdt.model.project.JavaProjectRole;
+import org.ant4eclipse.lib.jdt.tools.ResolvedClasspathEntry;
+import org.ant4eclipse.lib.jdt.tools.ResolvedClasspathModel;
+import org.ant4eclipse.lib.jdt.tools.container.JdtClasspathContainerArgument;
+import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Resolves the class path of a project in a single pass and returns a {@link ResolvedClasspathModel} from which all
+ * flavours (absolute or workspace relative, compile time or runtime) of the class path can be derived.
+ * </p>
+ * <p>
+ * Each raw class path entry of each (transitively) referenced project is resolved for the absolute class path first.
+ * The resolver context records whether the entry resolver asks if the class path is workspace relative or a runtime
+ * class path. Only in this case the result may differ for another flavour, so the entry is resolved again for these
+ * flavours. Most entries (e.g. the JRE container or exported entries) are resolved only once.
+ * </p>
+ */
+public class ClasspathModelResolver {
+
+  /** the class path container arguments */
+  private List<JdtClasspathContainerArgument>   _classpathContainerArguments;
+
+  /** the entry resolvers */
+  private ClasspathEntryResolver[]              _entryResolvers;
+
+  /** indicates if the runtime class path should be resolved */
+  private boolean                               _runtime;
+
+  /** the root project */
+  private EclipseProject                        _rootProject;
+
+  /** the resolved entries of all projects */
+  private Map<EclipseProject, List<Resolution>> _projects;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link ClasspathModelResolver}.
+   * </p>
+   *
+   * @param runtime
+   *          indicates if the runtime class path should be resolved as well (otherwise only the compile time class
+   *          path is resolved)
+   * @param classpathContainerArguments
+   *          an optional list with class path container arguments
+   * @param entryResolvers
+   *          the entry resolvers
+   */
+  public ClasspathModelResolver(boolean runtime, List<JdtClasspathContainerArgument> classpathContainerArguments,
+      ClasspathEntryResolver[] entryResolvers) {
+    Assure.notNull("entryResolvers", entryResolvers);
+
+    this._runtime = runtime;
+    this._classpathContainerArguments = classpathContainerArguments;
+    this._entryResolvers = entryResolvers;
+  }
+
+  /**
+   * <p>
+   * Resolves the class path of the given project.
+   * </p>
+   *
+   * @param rootProject
+   *          the project whose class path should be resolved.
+   * @return the resolved class path model.
+   */
+  public ResolvedClasspathModel resolve(EclipseProject rootProject) {
+    Assure.notNull("rootProject", rootProject);
+
+    this._rootProject = rootProject;
+    this._projects = new IdentityHashMap<EclipseProject, List<Resolution>>();
+
+    // Initialize Entry Resolvers
+    for (ClasspathEntryResolver entryResolver : this._entryResolvers) {
+      if (entryResolver instanceof Lifecycle) {
+        ((Lifecycle) entryResolver).initialize();
+      }
+    }
+
+    // resolve the class path
+    resolveProject(rootProject);
+
+    // Dispose Entry Resolvers
+    for (ClasspathEntryResolver entryResolver : this._entryResolvers) {
+      if (entryResolver instanceof Lifecycle) {
+        ((Lifecycle) entryResolver).dispose();
+      }
+    }
+
+    return new ResolvedClasspathModelImpl(rootProject, this._runtime, this._projects);
+  }
+
+  /**
+   * <p>
+   * Resolves all raw class path entries of the given project (unless they have been resolved already).
+   * </p>
+   */
+  private void resolveProject(EclipseProject project) {
+
+    // the project has been resolved already (or is currently resolved)
+    if (this._projects.containsKey(project)) {
+      return;
+    }
+
+    List<Resolution> resolutions = new LinkedList<Resolution>();
+    this._projects.put(project, resolutions);
+
+    // assert raw class path entries
+    // TODO: NLS
+    Assure.assertTrue(project.getRole(JavaProjectRole.class).hasRawClasspathEntries(), String.format(
+        "The JDT project '%s' (%s) doesn't contain any class path entries.", project.getFolderName(), project
+            .getFolder().getAbsolutePath()));
+
+    for (ClasspathEntry classpathEntry : project.getRole(JavaProjectRole.class).getRawClasspathEntries()) {
+      try {
+        resolutions.add(resolveEntry(project, classpathEntry));
+      } catch (Ant4EclipseException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new Ant4EclipseException(e, JdtExceptionCode.EXCEPTION_WHILE_RESOLVING_CLASSPATH_ENTRY, classpathEntry,
+            project.getSpecifiedName(), e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Resolves a single class path entry for all flavours the entry resolver distinguishes.
+   * </p>
+   */
+  private Resolution resolveEntry(EclipseProject project, ClasspathEntry entry) {
+
+    ClasspathEntryResolver entryResolver = ClasspathEntryResolverExecutor.getEntryResolver(this._entryResolvers, entry,
+        true);
+
+    // resolve the entry for the absolute class path first, and for every flavour the resolver asked for afterwards
+    Resolution resolution = new Resolution();
+    boolean resolved = true;
+    while (resolved) {
+      resolved = false;
+      for (boolean relative : resolution._relativeQueried ? new boolean[] { false, true } : new boolean[] { false }) {
+        for (boolean runtime : resolution._runtimeQueried ? new boolean[] { this._runtime, !this._runtime }
+            : new boolean[] { this._runtime }) {
+          if ((!runtime || this._runtime) && !resolution.hasEvents(relative, runtime)) {
+            EventTarget target = new EventTarget(project);
+            ClasspathResolverContextImpl context = new ClasspathResolverContextImpl(new ResolverJob(
+                this._rootProject, this._rootProject.getWorkspace(), relative, runtime,
+                this._classpathContainerArguments), target);
+            entryResolver.resolve(entry, context);
+            resolution._relativeQueried |= context.isWorkspaceRelativeQueried();
+            resolution._runtimeQueried |= context.isRuntimeQueried();
+            resolution.setEvents(relative, runtime, target._events);
+            resolved = true;
+          }
+        }
+      }
+    }
+    return resolution;
+  }
+
+  /**
+   * <p>
+   * Records the results of a single entry resolver call.
+   * </p>
+   */
+  private class EventTarget implements ClasspathResolverContextImpl.Target {
+
+    /** the project whose entry is resolved */
+    private EclipseProject _project;
+
+    /** the recorded events */
+    private List<Event>    _events;
+
+    /**
+     * <p>
+     * Creates a new instance of type {@link EventTarget}.
+     * </p>
+     */
+    EventTarget(EclipseProject project) {
+      this._project = project;
+      this._events = new LinkedList<Event>();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public EclipseProject getCurrentProject() {
+      return this._project;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void resolveProjectClasspath(EclipseProject project) {
+      this._events.add(new Event(ResolvedClasspathModelImpl.PROJECT, null, project));
+      resolveProject(project);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addReferencedProject(EclipseProject project) {
+      this._events.add(new Event(ResolvedClasspathModelImpl.REFERENCED_PROJECT, null, project));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addClasspathEntry(ResolvedClasspathEntry entry) {
+      this._events.add(new Event(ResolvedClasspathModelImpl.ENTRY, entry, null));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addBootClasspathEntry(ResolvedClasspathEntry entry) {
+      this._events.add(new Event(ResolvedClasspathModelImpl.BOOT_ENTRY, entry, null));
+    }
+  }
+}
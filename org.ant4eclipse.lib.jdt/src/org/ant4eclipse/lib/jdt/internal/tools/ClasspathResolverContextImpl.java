@@ -18,25 +18,49 @@ import org.ant4eclipse.lib.jdt.tools.container.JdtClasspathContainerArgument;
 import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
 import org.ant4eclipse.lib.platform.model.resource.Workspace;
 
-import java.util.EmptyStackException;
 import java.util.List;
 
 /**
+ * <p>
+ * The {@link ClasspathResolverContext} used by all class path resolvers. The settings are taken from a
+ * {@link ResolverJob}, the current project and the results of the entry resolvers are handled by a {@link Target}.
+ * The context records whether an entry resolver asked if the class path is workspace relative or a runtime class path.
+ * </p>
+ *
  * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
  */
 public class ClasspathResolverContextImpl implements ClasspathResolverContext {
 
-  private ClasspathEntryResolverExecutor _executor;
+  private ResolverJob _resolverJob;
+
+  private Target      _target;
 
-  private ResolverJob                    _resolverJob;
+  /** indicates if {@link #isWorkspaceRelative()} has been called */
+  private boolean     _relativeQueried;
 
-  private ResolvedClasspathImpl          _resolvedClasspath;
+  /** indicates if {@link #isRuntime()} has been called */
+  private boolean     _runtimeQueried;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link ClasspathResolverContextImpl}.
+   * </p>
+   *
+   * @param resolverJob
+   *          the resolver job
+   * @param target
+   *          the target that provides the current project and receives the results
+   */
+  public ClasspathResolverContextImpl(ResolverJob resolverJob, Target target) {
+    Assure.notNull("resolverJob", resolverJob);
+    Assure.notNull("target", target);
+    this._resolverJob = resolverJob;
+    this._target = target;
+  }
 
   public ClasspathResolverContextImpl(ClasspathEntryResolverExecutor executor, ResolverJob resolverJob,
       ResolvedClasspathImpl resolvedClasspath) {
-    this._executor = executor;
-    this._resolverJob = resolverJob;
-    this._resolvedClasspath = resolvedClasspath;
+    this(resolverJob, new ExecutorTarget(executor, resolvedClasspath));
   }
 
   public ClasspathResolverContextImpl(ClasspathEntryResolverExecutor executor, ResolverJob resolverJob) {
@@ -47,25 +71,22 @@ public class ClasspathResolverContextImpl implements ClasspathResolverContext {
    * {@inheritDoc}
    */
   public EclipseProject getCurrentProject() {
-    try {
-      return this._executor.getCurrentProject();
-    } catch (EmptyStackException e) {
-      return null;
-    }
+    return this._target.getCurrentProject();
   }
 
   /**
    * {@inheritDoc}
    */
   public boolean hasCurrentProject() {
-    return this._executor.hasCurrentProject();
+    return this._target.getCurrentProject() != null;
   }
 
   /**
    * {@inheritDoc}
    */
   public void resolveProjectClasspath(EclipseProject project) {
-    this._executor.resolveReferencedProject(project);
+    Assure.notNull("project", project);
+    this._target.resolveProjectClasspath(project);
   }
 
   /**
@@ -86,6 +107,7 @@ public class ClasspathResolverContextImpl implements ClasspathResolverContext {
    * {@inheritDoc}
    */
   public final boolean isRuntime() {
+    this._runtimeQueried = true;
     return this._resolverJob.isRuntimeClasspath();
   }
 
@@ -100,23 +122,14 @@ public class ClasspathResolverContextImpl implements ClasspathResolverContext {
    * {@inheritDoc}
    */
   public JdtClasspathContainerArgument getJdtClasspathContainerArgument(String key) {
-    Assure.nonEmpty("key", key);
-
-    List<JdtClasspathContainerArgument> arguments = this._resolverJob.getJdtClasspathContainerArguments();
-
-    for (JdtClasspathContainerArgument jdtClasspathContainerArgument : arguments) {
-      if (key.equalsIgnoreCase(jdtClasspathContainerArgument.getKey())) {
-        return jdtClasspathContainerArgument;
-      }
-    }
-
-    return null;
+    return JdtClasspathContainerArgument.find(this._resolverJob.getJdtClasspathContainerArguments(), key);
   }
 
   /**
    * {@inheritDoc}
    */
   public final boolean isWorkspaceRelative() {
+    this._relativeQueried = true;
     return this._resolverJob.isRelative();
   }
 
@@ -124,24 +137,159 @@ public class ClasspathResolverContextImpl implements ClasspathResolverContext {
    * {@inheritDoc}
    */
   public void setBootClasspathEntry(ResolvedClasspathEntry resolvedClasspathEntry) {
-    if (this._resolvedClasspath != null) {
-      this._resolvedClasspath.addBootClasspathEntry(resolvedClasspathEntry);
-    }
+    Assure.notNull("resolvedClasspathEntry", resolvedClasspathEntry);
+    this._target.addBootClasspathEntry(resolvedClasspathEntry);
   }
 
   /**
    * {@inheritDoc}
    */
   public void addClasspathEntry(ResolvedClasspathEntry resolvedClasspathEntry) {
-    if (this._resolvedClasspath != null) {
-      this._resolvedClasspath.addClasspathEntry(resolvedClasspathEntry);
-    }
+    Assure.notNull("resolvedClasspathEntry", resolvedClasspathEntry);
+    this._target.addClasspathEntry(resolvedClasspathEntry);
   }
 
   /**
    * {@inheritDoc}
    */
   public void addReferencedProjects(EclipseProject eclipseProject) {
-    this._executor.addReferencedProject(eclipseProject);
+    this._target.addReferencedProject(eclipseProject);
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if an entry resolver asked if the class path is workspace relative.
+   * </p>
+   *
+   * @return <code>true</code> if an entry resolver asked if the class path is workspace relative.
+   */
+  public boolean isWorkspaceRelativeQueried() {
+    return this._relativeQueried;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if an entry resolver asked if the class path is a runtime class path.
+   * </p>
+   *
+   * @return <code>true</code> if an entry resolver asked if the class path is a runtime class path.
+   */
+  public boolean isRuntimeQueried() {
+    return this._runtimeQueried;
+  }
+
+  /**
+   * <p>
+   * Provides the current project and receives the results of the entry resolvers.
+   * </p>
+   */
+  public static interface Target {
+
+    /**
+     * <p>
+     * Returns the project whose entries are currently resolved or <code>null</code> if there's none.
+     * </p>
+     *
+     * @return the current project or <code>null</code>.
+     */
+    EclipseProject getCurrentProject();
+
+    /**
+     * <p>
+     * Resolves the class path of the given referenced project.
+     * </p>
+     *
+     * @param project
+     *          the referenced project
+     */
+    void resolveProjectClasspath(EclipseProject project);
+
+    /**
+     * <p>
+     * Adds a project that is referenced but not resolved.
+     * </p>
+     *
+     * @param project
+     *          the referenced project
+     */
+    void addReferencedProject(EclipseProject project);
+
+    /**
+     * <p>
+     * Adds a resolved class path entry.
+     * </p>
+     *
+     * @param entry
+     *          the resolved class path entry
+     */
+    void addClasspathEntry(ResolvedClasspathEntry entry);
+
+    /**
+     * <p>
+     * Adds a resolved boot class path entry.
+     * </p>
+     *
+     * @param entry
+     *          the resolved boot class path entry
+     */
+    void addBootClasspathEntry(ResolvedClasspathEntry entry);
+  }
+
+  /**
+   * <p>
+   * The {@link Target} of a resolution that is driven by a {@link ClasspathEntryResolverExecutor}. Resolved entries
+   * are added to the given resolved class path (if any).
+   * </p>
+   */
+  private static class ExecutorTarget implements Target {
+
+    private ClasspathEntryResolverExecutor _executor;
+
+    private ResolvedClasspathImpl          _resolvedClasspath;
+
+    ExecutorTarget(ClasspathEntryResolverExecutor executor, ResolvedClasspathImpl resolvedClasspath) {
+      Assure.notNull("executor", executor);
+      this._executor = executor;
+      this._resolvedClasspath = resolvedClasspath;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public EclipseProject getCurrentProject() {
+      return this._executor.getCurrentProject();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void resolveProjectClasspath(EclipseProject project) {
+      this._executor.resolveReferencedProject(project);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addReferencedProject(EclipseProject project) {
+      this._executor.addReferencedProject(project);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addClasspathEntry(ResolvedClasspathEntry entry) {
+      if (this._resolvedClasspath != null) {
+        this._resolvedClasspath.addClasspathEntry(entry);
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addBootClasspathEntry(ResolvedClasspathEntry entry) {
+      if (this._resolvedClasspath != null) {
+        this._resolvedClasspath.addBootClasspathEntry(entry);
+      }
+    }
   }
 }
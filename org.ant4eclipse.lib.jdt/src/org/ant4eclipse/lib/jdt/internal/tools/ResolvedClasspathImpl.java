@@ -12,8 +12,9 @@
 package org.ant4eclipse.lib.jdt.internal.tools;
 
 import java.io.File;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.jdt.tools.ResolvedClasspath;
@@ -28,11 +29,11 @@ import org.ant4eclipse.lib.jdt.tools.ResolvedClasspathEntry;
  */
 public final class ResolvedClasspathImpl implements ResolvedClasspath {
 
-  /** the list with all the resolved path entries */
-  private List<ResolvedClasspathEntry> _classpath;
+  /** the (ordered) set with all the resolved path entries */
+  private Set<ResolvedClasspathEntry> _classpath;
 
   /** the boot class path. Might be null * */
-  private ResolvedClasspathEntry       _bootclasspath;
+  private ResolvedClasspathEntry      _bootclasspath;
 
   /**
    * <p>
@@ -40,7 +41,7 @@ public final class ResolvedClasspathImpl implements ResolvedClasspath {
    * </p>
    */
   public ResolvedClasspathImpl() {
-    this._classpath = new LinkedList<ResolvedClasspathEntry>();
+    this._classpath = new LinkedHashSet<ResolvedClasspathEntry>();
   }
 
   /**
@@ -91,9 +92,7 @@ public final class ResolvedClasspathImpl implements ResolvedClasspath {
    */
   public final void addClasspathEntry(ResolvedClasspathEntry resolvedClasspathEntry) {
     Assure.notNull("resolvedClasspathEntry", resolvedClasspathEntry);
-    if (!this._classpath.contains(resolvedClasspathEntry)) {
-      this._classpath.add(resolvedClasspathEntry);
-    }
+    this._classpath.add(resolvedClasspathEntry);
   }
 
   /**
@@ -121,19 +120,17 @@ public final class ResolvedClasspathImpl implements ResolvedClasspath {
    *          the class path
    * @return a list with all class path entries as files.
    */
-  private File[] resolveClasspathToFiles(List<ResolvedClasspathEntry> classpath) {
+  private File[] resolveClasspathToFiles(Collection<ResolvedClasspathEntry> classpath) {
 
     // create result
-    List<File> result = new LinkedList<File>();
+    Set<File> result = new LinkedHashSet<File>();
 
     // add all files
     for (Object element : classpath) {
       ResolvedClasspathEntry resolvedClasspathEntry = (ResolvedClasspathEntry) element;
       File[] files = resolvedClasspathEntry.getClassPathEntries();
       for (int i = 0; i < files.length; i++) {
-        if (!result.contains(files[i])) {
-          result.add(files[i]);
-        }
+        result.add(files[i]);
       }
     }
 
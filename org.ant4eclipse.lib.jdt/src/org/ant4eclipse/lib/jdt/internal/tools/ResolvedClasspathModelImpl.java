@@ -0,0 +1,326 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.internal.tools;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.jdt.tools.ResolvedClasspath;
+import org.ant4eclipse.lib.jdt.tools.ResolvedClasspathEntry;
+import org.ant4eclipse.lib.jdt.tools.ResolvedClasspathModel;
+import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+
+/**
+ * <p>
+ * Implementation of a {@link ResolvedClasspathModel}. The model contains the results of all class path entry resolvers
+ * that have been executed by the {@link ClasspathModelResolver}. Each flavour of the class path is derived by
+ * replaying these results in the same order (and with the same handling of duplicate and circular project references)
+ * as the {@link ClasspathEntryResolverExecutor} would resolve them.
+ * </p>
+ */
+public final class ResolvedClasspathModelImpl implements ResolvedClasspathModel {
+
+  /** event kind: a class path entry has been added */
+  static final int                              ENTRY              = 0;
+
+  /** event kind: the boot class path entry has been set */
+  static final int                              BOOT_ENTRY         = 1;
+
+  /** event kind: the class path of a project has been resolved */
+  static final int                              PROJECT            = 2;
+
+  /** event kind: a (not resolved) project has been referenced */
+  static final int                              REFERENCED_PROJECT = 3;
+
+  /** the root project */
+  private EclipseProject                        _rootProject;
+
+  /** indicates if the model contains the runtime class path */
+  private boolean                               _runtime;
+
+  /** the resolved entries of all projects */
+  private Map<EclipseProject, List<Resolution>> _projects;
+
+  /** the flavours that have been derived so far */
+  private Flavour[]                             _flavours;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link ResolvedClasspathModelImpl}.
+   * </p>
+   *
+   * @param rootProject
+   *          the root project
+   * @param runtime
+   *          indicates if the model contains the runtime class path (or only the compile time class path)
+   * @param projects
+   *          the resolved entries of all projects
+   */
+  ResolvedClasspathModelImpl(EclipseProject rootProject, boolean runtime,
+      Map<EclipseProject, List<Resolution>> projects) {
+    Assure.notNull("rootProject", rootProject);
+    Assure.notNull("projects", projects);
+
+    this._rootProject = rootProject;
+    this._runtime = runtime;
+    this._projects = projects;
+    this._flavours = new Flavour[4];
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public EclipseProject getRootProject() {
+    return this._rootProject;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the model contains the runtime class path.
+   * </p>
+   *
+   * @return <code>true</code> if the model contains the runtime class path.
+   */
+  public boolean hasRuntimeClasspath() {
+    return this._runtime;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public ResolvedClasspath getClasspath(boolean relative, boolean runtime) {
+    return getFlavour(relative, runtime)._classpath;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<EclipseProject> getReferencedProjects(boolean runtime) {
+    Flavour flavour = getFlavour(false, runtime);
+    Set<EclipseProject> result = new LinkedHashSet<EclipseProject>(flavour._resolvedProjects);
+    result.addAll(flavour._referencedProjects);
+    return new LinkedList<EclipseProject>(result);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public EclipseProject getOriginProject(ResolvedClasspathEntry entry, boolean relative) {
+    Assure.notNull("entry", entry);
+    return getFlavour(relative, this._runtime)._origins.get(entry);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public boolean isRuntimeOnly(ResolvedClasspathEntry entry, boolean relative) {
+    Assure.notNull("entry", entry);
+    return this._runtime && getFlavour(relative, true)._origins.containsKey(entry)
+        && !getFlavour(relative, false)._origins.containsKey(entry);
+  }
+
+  /**
+   * <p>
+   * Returns the requested flavour. The flavour is derived if necessary.
+   * </p>
+   */
+  private synchronized Flavour getFlavour(boolean relative, boolean runtime) {
+    Assure.assertTrue(!runtime || this._runtime, "The runtime class path hasn't been resolved.");
+    int index = index(relative, runtime);
+    if (this._flavours[index] == null) {
+      Flavour flavour = new Flavour(relative, runtime);
+      flavour.replay(this._rootProject);
+      this._flavours[index] = flavour;
+    }
+    return this._flavours[index];
+  }
+
+  /**
+   * <p>
+   * Returns the index of the given flavour.
+   * </p>
+   */
+  static int index(boolean relative, boolean runtime) {
+    return (relative ? 1 : 0) + (runtime ? 2 : 0);
+  }
+
+  /**
+   * <p>
+   * The results of resolving a single raw class path entry. An entry resolver is executed once and only executed again
+   * for the flavours it has asked for (e.g. a library entry is resolved once for absolute and once for workspace
+   * relative class paths, a container is resolved once for the compile time and once for the runtime class path if the
+   * container resolver distinguishes between them).
+   * </p>
+   */
+  static class Resolution {
+
+    /** the recorded events for each flavour (<code>null</code> if the entry hasn't been resolved for a flavour) */
+    private Event[][] _events = new Event[4][];
+
+    /** indicates if the entry resolver asked if the class path is workspace relative */
+    boolean           _relativeQueried;
+
+    /** indicates if the entry resolver asked if the class path is a runtime class path */
+    boolean           _runtimeQueried;
+
+    /**
+     * <p>
+     * Returns <code>true</code> if the entry has been resolved for the given flavour.
+     * </p>
+     */
+    boolean hasEvents(boolean relative, boolean runtime) {
+      return this._events[index(relative, runtime)] != null;
+    }
+
+    /**
+     * <p>
+     * Sets the recorded events for the given flavour.
+     * </p>
+     */
+    void setEvents(boolean relative, boolean runtime, List<Event> events) {
+      this._events[index(relative, runtime)] = events.toArray(new Event[events.size()]);
+    }
+
+    /**
+     * <p>
+     * Returns the recorded events for the given flavour.
+     * </p>
+     */
+    Event[] getEvents(boolean relative, boolean runtime, boolean resolvedRuntime) {
+      return this._events[index(this._relativeQueried && relative, this._runtimeQueried ? runtime : resolvedRuntime)];
+    }
+  }
+
+  /**
+   * <p>
+   * A single call of a class path entry resolver to the resolver context.
+   * </p>
+   */
+  static class Event {
+
+    /** the kind of the event */
+    private int                    _kind;
+
+    /** the added class path entry (if any) */
+    private ResolvedClasspathEntry _entry;
+
+    /** the resolved or referenced project (if any) */
+    private EclipseProject         _project;
+
+    /**
+     * <p>
+     * Creates a new instance of type {@link Event}.
+     * </p>
+     */
+    Event(int kind, ResolvedClasspathEntry entry, EclipseProject project) {
+      this._kind = kind;
+      this._entry = entry;
+      this._project = project;
+    }
+  }
+
+  /**
+   * <p>
+   * A flavour of the class path.
+   * </p>
+   */
+  private class Flavour {
+
+    /** indicates if the class path is workspace relative */
+    private boolean                                     _relative;
+
+    /** indicates if the class path is a runtime class path */
+    private boolean                                     _runtime;
+
+    /** the class path */
+    private ResolvedClasspathImpl                       _classpath;
+
+    /** maps the class path entries to the projects that contributed them */
+    private Map<ResolvedClasspathEntry, EclipseProject> _origins;
+
+    /** stack of 'current projects' */
+    private Stack<EclipseProject>                       _currentProject;
+
+    /** all projects that are (transitively) resolved */
+    private Set<EclipseProject>                         _resolvedProjects;
+
+    /** all projects that are referenced but not resolved */
+    private Set<EclipseProject>                         _referencedProjects;
+
+    /**
+     * <p>
+     * Creates a new instance of type {@link Flavour}.
+     * </p>
+     */
+    Flavour(boolean relative, boolean runtime) {
+      this._relative = relative;
+      this._runtime = runtime;
+      this._classpath = new ResolvedClasspathImpl();
+      this._origins = new HashMap<ResolvedClasspathEntry, EclipseProject>();
+      this._currentProject = new Stack<EclipseProject>();
+      this._resolvedProjects = new LinkedHashSet<EclipseProject>();
+      this._referencedProjects = new LinkedHashSet<EclipseProject>();
+    }
+
+    /**
+     * <p>
+     * Replays the recorded events of the given project (see
+     * {@link ClasspathEntryResolverExecutor#resolveReferencedProject(EclipseProject)}).
+     * </p>
+     */
+    void replay(EclipseProject project) {
+
+      // detect circular dependencies
+      if (this._currentProject.contains(project)) {
+        A4ELogging.warn("Circular dependency detected! Project: '%s'", project.getFolderName());
+        return;
+      }
+
+      // return if project already has been resolved
+      if (!this._resolvedProjects.add(project)) {
+        return;
+      }
+
+      this._currentProject.push(project);
+      for (Resolution resolution : ResolvedClasspathModelImpl.this._projects.get(project)) {
+        for (Event event : resolution.getEvents(this._relative, this._runtime,
+            ResolvedClasspathModelImpl.this._runtime)) {
+          switch (event._kind) {
+          case ENTRY:
+            this._classpath.addClasspathEntry(event._entry);
+            if (!this._origins.containsKey(event._entry)) {
+              this._origins.put(event._entry, project);
+            }
+            break;
+          case BOOT_ENTRY:
+            this._classpath.addBootClasspathEntry(event._entry);
+            break;
+          case PROJECT:
+            replay(event._project);
+            break;
+          case REFERENCED_PROJECT:
+            this._referencedProjects.add(event._project);
+            break;
+          }
+        }
+      }
+      this._currentProject.pop();
+    }
+  }
+}
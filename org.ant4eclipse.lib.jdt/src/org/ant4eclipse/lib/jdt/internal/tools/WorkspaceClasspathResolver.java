@@ -0,0 +1,465 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.internal.tools;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.Lifecycle;
+import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.jdt.JdtExceptionCode;
+import org.ant4eclipse.lib.jdt.internal.tools.classpathentry.ClasspathEntryResolver;
+import org.ant4eclipse.lib.jdt.internal.tools.container.JdtResolverCache;
+import org.ant4eclipse.lib.jdt.model.ClasspathEntry;
+import org.ant4eclipse.lib.jdt.model.project.JavaProjectRole;
+import org.ant4eclipse.lib.jdt.tools.ResolvedClasspath;
+import org.ant4eclipse.lib.jdt.tools.ResolvedClasspathEntry;
+import org.ant4eclipse.lib.jdt.tools.container.ClasspathResolverContext;
+import org.ant4eclipse.lib.jdt.tools.container.JdtClasspathContainerArgument;
+import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
+import org.ant4eclipse.lib.platform.model.resource.Workspace;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ * Resolves the class paths of the projects of a workspace. In contrast to the {@link ClasspathEntryResolverExecutor}
+ * the class path contribution of a referenced project (the entries it exports to the projects that reference it) is
+ * only computed once and reused for all projects that (directly or transitively) reference it. The contributions are
+ * computed depth first, so each project is resolved after all projects it references.
+ * </p>
+ * <p>
+ * The contribution of a referenced project doesn't depend on the project that references it, so the result is the
+ * same as the result of the {@link ClasspathEntryResolverExecutor}. The only exception are cyclic project references:
+ * if a cycle is detected, the class path of the root project is resolved using the
+ * {@link ClasspathEntryResolverExecutor}.
+ * </p>
+ * <p>
+ * A {@link WorkspaceClasspathResolver} may be used by several threads concurrently. Each call of
+ * {@link #resolve(EclipseProject, Collection)} tracks the contributions it is computing on its own, so a contribution
+ * may be computed more than once if two threads request it at the same time. As contributions don't depend on the
+ * referencing project, the first computed contribution is kept.
+ * </p>
+ * <p>
+ * Each contribution is stamped with size and modification time of the project files (see
+ * {@link JdtResolverCache#getProjectFiles(EclipseProject)}) of all projects involved in computing it. A contribution
+ * is computed again if one of these files has been changed since.
+ * </p>
+ */
+public class WorkspaceClasspathResolver {
+
+  /** the workspace */
+  private Workspace                           _workspace;
+
+  /** indicates if the class paths are resolved relative to the workspace */
+  private boolean                             _relative;
+
+  /** indicates if the class paths are runtime class paths */
+  private boolean                             _runtime;
+
+  /** the class path container arguments */
+  private List<JdtClasspathContainerArgument> _classpathContainerArguments;
+
+  /** the entry resolvers */
+  private ClasspathEntryResolver[]            _entryResolvers;
+
+  /** the contributions of all referenced projects that have been resolved so far (guarded by itself) */
+  private Map<EclipseProject, Contribution>   _contributions;
+
+  /** indicates if the entry resolvers have been initialized */
+  private boolean                             _initialized;
+
+  /** the number of running resolutions */
+  private int                                 _running;
+
+  /** indicates if the entry resolvers should be disposed as soon as no resolution is running */
+  private boolean                             _disposed;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link WorkspaceClasspathResolver}.
+   * </p>
+   *
+   * @param workspace
+   *          the workspace
+   * @param relative
+   *          indicates if the class paths should be resolved relative to the workspace or not.
+   * @param runtime
+   *          indicates if the class paths are runtime class paths or not
+   * @param classpathContainerArguments
+   *          an optional list with class path container arguments
+   * @param entryResolvers
+   *          the entry resolvers
+   */
+  public WorkspaceClasspathResolver(Workspace workspace, boolean relative, boolean runtime,
+      List<JdtClasspathContainerArgument> classpathContainerArguments, ClasspathEntryResolver[] entryResolvers) {
+    Assure.notNull("workspace", workspace);
+    Assure.notNull("entryResolvers", entryResolvers);
+
+    this._workspace = workspace;
+    this._relative = relative;
+    this._runtime = runtime;
+    this._classpathContainerArguments = classpathContainerArguments;
+    this._entryResolvers = entryResolvers;
+    this._contributions = new IdentityHashMap<EclipseProject, Contribution>();
+  }
+
+  /**
+   * <p>
+   * Returns the workspace.
+   * </p>
+   *
+   * @return the workspace.
+   */
+  public Workspace getWorkspace() {
+    return this._workspace;
+  }
+
+  /**
+   * <p>
+   * Resolves the class path of the given project.
+   * </p>
+   *
+   * @param rootProject
+   *          the project whose class path should be resolved.
+   * @param referencedProjects
+   *          receives all projects that are referenced by the root project (including the root project). Maybe
+   *          <code>null</code>.
+   * @return the resolved class path.
+   */
+  public ResolvedClasspath resolve(EclipseProject rootProject, Collection<EclipseProject> referencedProjects) {
+    Assure.notNull("rootProject", rootProject);
+
+    Contribution result = new Contribution();
+    result._projects.add(rootProject);
+    begin();
+    try {
+
+      // the contributions computed by this call (incomplete ones are discarded if a cyclic reference is detected)
+      Map<EclipseProject, EclipseProject> computing = new IdentityHashMap<EclipseProject, EclipseProject>();
+      ResolverJob job = new ResolverJob(rootProject, this._workspace, this._relative, this._runtime,
+          this._classpathContainerArguments);
+      resolveEntries(rootProject, new ContributionTarget(rootProject, result, job, computing));
+    } catch (CyclicReferenceException ex) {
+      A4ELogging.debug("Cyclic reference detected while resolving '%s'.", rootProject.getSpecifiedName());
+      return resolveWithExecutor(rootProject, referencedProjects);
+    } finally {
+      end();
+    }
+
+    ResolvedClasspathImpl resolvedClasspath = new ResolvedClasspathImpl();
+    for (ResolvedClasspathEntry entry : result._entries) {
+      resolvedClasspath.addClasspathEntry(entry);
+    }
+    for (ResolvedClasspathEntry entry : result._bootEntries) {
+      resolvedClasspath.addBootClasspathEntry(entry);
+    }
+    if (referencedProjects != null) {
+      referencedProjects.addAll(result._projects);
+    }
+    return resolvedClasspath;
+  }
+
+  /**
+   * <p>
+   * Disposes the entry resolvers. If a resolution is running, the entry resolvers are disposed as soon as it is
+   * finished. A resolution that is started afterwards initializes them again (and disposes them when it is finished).
+   * </p>
+   */
+  public synchronized void dispose() {
+    this._disposed = true;
+    if (this._running == 0) {
+      disposeEntryResolvers();
+    }
+  }
+
+  /**
+   * <p>
+   * Starts a resolution. The entry resolvers are initialized if necessary. They are shared by all resolutions.
+   * </p>
+   */
+  private synchronized void begin() {
+    if (!this._initialized) {
+      for (ClasspathEntryResolver entryResolver : this._entryResolvers) {
+        if ((entryResolver instanceof Lifecycle) && !((Lifecycle) entryResolver).isInitialized()) {
+          ((Lifecycle) entryResolver).initialize();
+        }
+      }
+      this._initialized = true;
+    }
+    this._running++;
+  }
+
+  /**
+   * <p>
+   * Finishes a resolution. The entry resolvers are disposed if the resolver has been disposed in the meantime.
+   * </p>
+   */
+  private synchronized void end() {
+    this._running--;
+    if (this._disposed && (this._running == 0)) {
+      disposeEntryResolvers();
+    }
+  }
+
+  /**
+   * <p>
+   * Disposes the entry resolvers if they have been initialized.
+   * </p>
+   */
+  private void disposeEntryResolvers() {
+    if (!this._initialized) {
+      return;
+    }
+    for (ClasspathEntryResolver entryResolver : this._entryResolvers) {
+      if ((entryResolver instanceof Lifecycle) && ((Lifecycle) entryResolver).isInitialized()) {
+        ((Lifecycle) entryResolver).dispose();
+      }
+    }
+    this._initialized = false;
+  }
+
+  /**
+   * <p>
+   * Resolves the class path of the given project using a {@link ClasspathEntryResolverExecutor}.
+   * </p>
+   */
+  private ResolvedClasspath resolveWithExecutor(EclipseProject rootProject,
+      Collection<EclipseProject> referencedProjects) {
+    ClasspathEntryResolverExecutor executor = new ClasspathEntryResolverExecutor(true);
+    ResolverJob job = new ResolverJob(rootProject, this._workspace, this._relative, this._runtime,
+        this._classpathContainerArguments);
+    ResolvedClasspathImpl resolvedClasspath = new ResolvedClasspathImpl();
+    executor.resolve(rootProject, this._entryResolvers, new ClasspathResolverContextImpl(executor, job,
+        resolvedClasspath));
+    if (referencedProjects != null) {
+      referencedProjects.addAll(executor.getReferencedProjects());
+    }
+    return resolvedClasspath;
+  }
+
+  /**
+   * <p>
+   * Returns the contribution of the given referenced project. The contribution is computed if necessary or if the
+   * project files it depends on have been changed.
+   * </p>
+   */
+  private Contribution getContribution(EclipseProject project, ResolverJob job,
+      Map<EclipseProject, EclipseProject> computing) {
+    Contribution result;
+    synchronized (this._contributions) {
+      result = this._contributions.get(project);
+      if ((result != null) && !result._stamp.equals(getStamp(result._projects))) {
+        A4ELogging.debug("Project files involved in the contribution of '%s' have been changed.", project
+            .getSpecifiedName());
+        this._contributions.remove(project);
+        result = null;
+      }
+    }
+    if (result != null) {
+      return result;
+    }
+
+    // a project that is currently computed has been referenced again
+    if (computing.put(project, project) != null) {
+      throw new CyclicReferenceException();
+    }
+
+    result = new Contribution();
+    result._projects.add(project);
+    resolveEntries(project, new ContributionTarget(project, result, job, computing));
+    computing.remove(project);
+    result._stamp = getStamp(result._projects);
+
+    // another thread may have computed the same contribution in the meantime
+    synchronized (this._contributions) {
+      Contribution existing = this._contributions.get(project);
+      if (existing != null) {
+        return existing;
+      }
+      this._contributions.put(project, result);
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns the stamp (size and modification time) of the project files of the given projects.
+   * </p>
+   */
+  private static String getStamp(Collection<EclipseProject> projects) {
+    StringBuilder result = new StringBuilder();
+    for (EclipseProject project : projects) {
+      for (File file : JdtResolverCache.getProjectFiles(project)) {
+        result.append(file.length()).append(':').append(file.lastModified()).append(';');
+      }
+    }
+    return result.toString();
+  }
+
+  /**
+   * <p>
+   * Resolves all raw class path entries of the given project.
+   * </p>
+   */
+  private void resolveEntries(EclipseProject project, ContributionTarget target) {
+    ClasspathResolverContext context = new ClasspathResolverContextImpl(target._job, target);
+
+    // assert raw class path entries
+    // TODO: NLS
+    Assure.assertTrue(project.getRole(JavaProjectRole.class).hasRawClasspathEntries(), String.format(
+        "The JDT project '%s' (%s) doesn't contain any class path entries.", project.getFolderName(), project
+            .getFolder().getAbsolutePath()));
+
+    for (ClasspathEntry classpathEntry : project.getRole(JavaProjectRole.class).getRawClasspathEntries()) {
+      try {
+        resolveEntry(classpathEntry, context);
+      } catch (Ant4EclipseException e) {
+        throw e;
+      } catch (CyclicReferenceException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new Ant4EclipseException(e, JdtExceptionCode.EXCEPTION_WHILE_RESOLVING_CLASSPATH_ENTRY, classpathEntry,
+            project.getSpecifiedName(), e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Resolves a single class path entry.
+   * </p>
+   */
+  private void resolveEntry(ClasspathEntry entry, ClasspathResolverContext context) {
+    ClasspathEntryResolverExecutor.getEntryResolver(this._entryResolvers, entry, true).resolve(entry, context);
+  }
+
+  /**
+   * <p>
+   * The class path contribution of a project.
+   * </p>
+   */
+  private static class Contribution {
+
+    /** the class path entries */
+    private Set<ResolvedClasspathEntry>  _entries     = new LinkedHashSet<ResolvedClasspathEntry>();
+
+    /** the boot class path entries */
+    private List<ResolvedClasspathEntry> _bootEntries = new LinkedList<ResolvedClasspathEntry>();
+
+    /** all resolved or referenced projects */
+    private Set<EclipseProject>          _projects    = new LinkedHashSet<EclipseProject>();
+
+    /** the stamp of the project files of all projects */
+    private String                       _stamp;
+
+    /**
+     * <p>
+     * Adds the given contribution.
+     * </p>
+     */
+    void addAll(Contribution contribution) {
+      this._entries.addAll(contribution._entries);
+      this._bootEntries.addAll(contribution._bootEntries);
+      this._projects.addAll(contribution._projects);
+    }
+  }
+
+  /**
+   * <p>
+   * Signals a cyclic project reference.
+   * </p>
+   */
+  private static class CyclicReferenceException extends RuntimeException {
+
+    /** serialVersionUID */
+    private static final long serialVersionUID = 1L;
+  }
+
+  /**
+   * <p>
+   * Receives the results of the entry resolvers for a single project and adds them to the contribution of the project.
+   * </p>
+   */
+  private class ContributionTarget implements ClasspathResolverContextImpl.Target {
+
+    /** the project whose entries are resolved */
+    private EclipseProject                      _project;
+
+    /** the contribution of the project */
+    private Contribution                        _contribution;
+
+    /** the resolver job of the resolution */
+    private ResolverJob                         _job;
+
+    /** the projects whose contributions are currently computed by this resolution */
+    private Map<EclipseProject, EclipseProject> _computing;
+
+    /**
+     * <p>
+     * Creates a new instance of type {@link ContributionTarget}.
+     * </p>
+     */
+    ContributionTarget(EclipseProject project, Contribution contribution, ResolverJob job,
+        Map<EclipseProject, EclipseProject> computing) {
+      this._project = project;
+      this._contribution = contribution;
+      this._job = job;
+      this._computing = computing;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public EclipseProject getCurrentProject() {
+      return this._project;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void resolveProjectClasspath(EclipseProject project) {
+      if (project.equals(this._project)) {
+        // a project referencing itself (the executor ignores this as a circular dependency)
+        throw new CyclicReferenceException();
+      }
+      this._contribution.addAll(getContribution(project, this._job, this._computing));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addReferencedProject(EclipseProject project) {
+      this._contribution._projects.add(project);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addClasspathEntry(ResolvedClasspathEntry entry) {
+      this._contribution._entries.add(entry);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addBootClasspathEntry(ResolvedClasspathEntry entry) {
+      this._contribution._bootEntries.add(entry);
+    }
+  }
+}
@@ -27,6 +27,9 @@ import java.util.Map;
  * <p>
  * Implementation of the {@link ClasspathVariablesRegistry}.
  * </p>
+ * <p>
+ * The registry is thread safe, so class paths may be resolved concurrently.
+ * </p>
  * 
  * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
  */
@@ -56,56 +59,56 @@ public class ClassPathElementsRegistryImpl implements ClassPathElementsRegistry
   /**
    * {@inheritDoc}
    */
-  public List<ClassPathContainer> getClasspathContainer() {
+  public synchronized List<ClassPathContainer> getClasspathContainer() {
     return new LinkedList<ClassPathContainer>(this._classpathContainer.values());
   }
 
   /**
    * {@inheritDoc}
    */
-  public ClassPathContainer getClassPathContainer(String name) {
+  public synchronized ClassPathContainer getClassPathContainer(String name) {
     return this._classpathContainer.get(name);
   }
 
   /**
    * {@inheritDoc}
    */
-  public boolean hasClassPathContainer(String name) {
+  public synchronized boolean hasClassPathContainer(String name) {
     return this._classpathContainer.containsKey(name);
   }
 
   /**
    * {@inheritDoc}
    */
-  public void registerClassPathContainer(String name, File[] pathEntries) {
+  public synchronized void registerClassPathContainer(String name, File[] pathEntries) {
     this._classpathContainer.put(name, new ClassPathContainerImpl(name, pathEntries));
   }
 
   /**
    * {@inheritDoc}
    */
-  public ClassPathVariable getClassPathVariable(String name) {
+  public synchronized ClassPathVariable getClassPathVariable(String name) {
     return this._classpathVariables.get(name);
   }
 
   /**
    * {@inheritDoc}
    */
-  public List<ClassPathVariable> getClasspathVariables() {
+  public synchronized List<ClassPathVariable> getClasspathVariables() {
     return new LinkedList<ClassPathVariable>(this._classpathVariables.values());
   }
 
   /**
    * {@inheritDoc}
    */
-  public boolean hasClassPathVariable(String name) {
+  public synchronized boolean hasClassPathVariable(String name) {
     return this._classpathVariables.containsKey(name);
   }
 
   /**
    * {@inheritDoc}
    */
-  public void registerClassPathVariable(String name, File path) {
+  public synchronized void registerClassPathVariable(String name, File path) {
     ClassPathVariable newvar = new ClassPathVariableImpl(name, path);
     ClassPathVariable oldvar = this._classpathVariables.get(name);
     if (oldvar != null) {
@@ -122,7 +125,7 @@ public class ClassPathElementsRegistryImpl implements ClassPathElementsRegistry
   /**
    * {@inheritDoc}
    */
-  public void registerClassPathVariables(Map<String, File> vars) {
+  public synchronized void registerClassPathVariables(Map<String, File> vars) {
     for (Map.Entry<String, File> var : vars.entrySet()) {
       registerClassPathVariable(var.getKey(), var.getValue());
     }
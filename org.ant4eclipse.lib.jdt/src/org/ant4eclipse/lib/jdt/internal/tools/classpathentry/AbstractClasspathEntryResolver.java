@@ -102,6 +102,11 @@ public abstract class AbstractClasspathEntryResolver implements ClasspathEntryRe
    * <p>
    * Returns <code>true</code>, if the class path entry is visible.
    * </p>
+   * <p>
+   * The runtime flag is checked last: entries of the root project and exported entries are visible regardless of the
+   * kind of the class path, so they don't have to be resolved separately for the compile time and the runtime class
+   * path (see <code>ClasspathModelResolver</code>).
+   * </p>
    * 
    * @param entry
    *          the entry
@@ -110,8 +115,8 @@ public abstract class AbstractClasspathEntryResolver implements ClasspathEntryRe
    * @return <code>true</code>, if the class path entry is visible.
    */
   protected final boolean isClasspathEntryVisible(ClasspathEntry entry, ClasspathResolverContext context) {
-    return context.isRuntime() || context.isCurrentProjectRoot() /* || isRuntimeClasspathEntry(entry) */
-        || (isRawClasspathEntry(entry) && ((RawClasspathEntry) entry).isExported());
+    return context.isCurrentProjectRoot() /* || isRuntimeClasspathEntry(entry) */
+        || (isRawClasspathEntry(entry) && ((RawClasspathEntry) entry).isExported()) || context.isRuntime();
   }
 
   /**
@@ -117,6 +117,17 @@ public class ContainerClasspathEntryResolver extends AbstractClasspathEntryResol
     }
   }
 
+  /**
+   * <p>
+   * Returns the registered container resolvers in the order in which they are asked to resolve a container.
+   * </p>
+   * 
+   * @return the registered container resolvers.
+   */
+  public List<ClasspathContainerResolver> getContainerResolvers() {
+    return new LinkedList<ClasspathContainerResolver>(this._containerresolver);
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -11,13 +11,18 @@
  **********************************************************************/
 package org.ant4eclipse.lib.jdt.internal.tools.container;
 
+import java.io.File;
+import java.util.List;
+
 import org.ant4eclipse.lib.core.service.ServiceRegistryAccess;
 import org.ant4eclipse.lib.jdt.model.ClasspathEntry;
 import org.ant4eclipse.lib.jdt.tools.ResolvedClasspathEntry;
 import org.ant4eclipse.lib.jdt.tools.classpathelements.ClassPathContainer;
 import org.ant4eclipse.lib.jdt.tools.classpathelements.ClassPathElementsRegistry;
-import org.ant4eclipse.lib.jdt.tools.container.ClasspathContainerResolver;
+import org.ant4eclipse.lib.jdt.tools.container.CacheableClasspathContainerResolver;
 import org.ant4eclipse.lib.jdt.tools.container.ClasspathResolverContext;
+import org.ant4eclipse.lib.jdt.tools.container.JdtClasspathContainerArgument;
+import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
 
 /**
  * <p>
@@ -25,7 +30,7 @@ import org.ant4eclipse.lib.jdt.tools.container.ClasspathResolverContext;
  * 
  * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
  */
-public class ClassPathElementsRegistryResolver implements ClasspathContainerResolver {
+public class ClassPathElementsRegistryResolver implements CacheableClasspathContainerResolver {
 
   /**
    * {@inheritDoc}
@@ -42,6 +47,26 @@ public class ClassPathElementsRegistryResolver implements ClasspathContainerReso
     context.addClasspathEntry(new ResolvedClasspathEntry(container.getPathEntries()));
   }
 
+  /**
+   * {@inheritDoc}
+   * 
+   * <p>
+   * The key consists of all registered class path containers (f.e. user libraries) and their entries.
+   * </p>
+   */
+  public String getCacheKey(EclipseProject rootProject,
+      List<JdtClasspathContainerArgument> classpathContainerArguments) {
+    StringBuilder result = new StringBuilder();
+    for (ClassPathContainer container : getClassPathElementsRegistry().getClasspathContainer()) {
+      result.append(container.getName()).append('=');
+      for (File pathEntry : container.getPathEntries()) {
+        result.append(pathEntry).append('|');
+      }
+      result.append(';');
+    }
+    return result.toString();
+  }
+
   /**
    * <p>
    * </p>
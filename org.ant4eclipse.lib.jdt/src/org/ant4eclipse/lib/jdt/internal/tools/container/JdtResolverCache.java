@@ -1,66 +1,836 @@
 package org.ant4eclipse.lib.jdt.internal.tools.container;
 
-import java.util.Hashtable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.Lifecycle;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
 import org.ant4eclipse.lib.core.service.ServiceRegistryAccess;
+import org.ant4eclipse.lib.core.util.Pair;
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.jdt.internal.tools.ResolvedClasspathImpl;
+import org.ant4eclipse.lib.jdt.internal.tools.WorkspaceClasspathResolver;
 import org.ant4eclipse.lib.jdt.tools.ResolvedClasspath;
+import org.ant4eclipse.lib.jdt.tools.ResolvedClasspathEntry;
+import org.ant4eclipse.lib.jdt.tools.ResolvedClasspathEntry.AccessRestrictions;
+import org.ant4eclipse.lib.jdt.tools.classpathelements.ClassPathElementsRegistry;
+import org.ant4eclipse.lib.jdt.tools.classpathelements.ClassPathVariable;
+import org.ant4eclipse.lib.jdt.tools.container.CacheableClasspathContainerResolver;
+import org.ant4eclipse.lib.jdt.tools.container.ClasspathContainerResolver;
+import org.ant4eclipse.lib.jdt.tools.container.JdtClasspathContainerArgument;
 import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
+import org.ant4eclipse.lib.platform.model.resource.Workspace;
 
 /**
  * <p>
+ * Cache for resolved class paths. A resolved class path is stored under a key that identifies the resolution request
+ * (the project, the resolution flags and the class path container arguments) together with a fingerprint of the
+ * settings the resolution depends on (class path variables, the projects of the workspace and the cache keys of all
+ * {@link CacheableClasspathContainerResolver container resolvers}). Additionally the state of all input files is
+ * recorded: the contents of the project files (<code>.project</code>, <code>.classpath</code>,
+ * <code>META-INF/MANIFEST.MF</code> and <code>build.properties</code>) of all involved projects and the existence of
+ * all resolved class path entries. A cached class path is only returned if the fingerprint still matches and none of
+ * the input files has changed.
  * </p>
- * 
+ * <p>
+ * If a container resolver doesn't implement {@link CacheableClasspathContainerResolver} no fingerprint can be computed
+ * and the class path is always resolved.
+ * </p>
+ * <p>
+ * Resolved class paths can be persisted across builds by setting the system property
+ * <code>ant4eclipse.jdtResolverCacheFile</code> to the location of the cache file. The whole file is loaded with a
+ * single read when the service is initialized, new records are appended to the file and outdated records are dropped
+ * whenever the file is compacted on startup.
+ * </p>
+ * <p>
+ * Besides the resolved class paths the cache keeps a {@link WorkspaceClasspathResolver} for each kind of resolution
+ * request, so the class path contributions of referenced projects are shared between all projects of a workspace. A
+ * workspace resolver that is replaced is disposed.
+ * </p>
+ *
  * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
  */
-public class JdtResolverCache {
+public class JdtResolverCache implements Lifecycle {
+
+  /** System-Property that specifies the location of the cache file (and enables the persistence) */
+  public static final String       CACHE_FILE_PROPERTY = "ant4eclipse.jdtResolverCacheFile";
+
+  /** the magic number of a cache file */
+  private static final int         MAGIC               = 0x41344a52;
+
+  /** the version of the file format */
+  private static final int         VERSION             = 1;
+
+  /** stamp kind for files or directories that don't exist */
+  private static final byte        KIND_MISSING        = 0;
+
+  /** stamp kind for existing directories */
+  private static final byte        KIND_DIRECTORY      = 1;
 
-  /** the class path cache */
-  private static final Map<String, ResolvedClasspath> _classpathCache = new Hashtable<String, ResolvedClasspath>();
+  /** stamp kind for existing files */
+  private static final byte        KIND_FILE           = 2;
+
+  /** stamp kind for files whose content is relevant */
+  private static final byte        KIND_CONTENT        = 3;
+
+  /** the project files that are used to resolve a class path */
+  private static final String[]    PROJECT_FILES       = { ".project", ".classpath",
+      "META-INF/MANIFEST.MF", "build.properties"      };
+
+  /** the cache file, <code>null</code> if the cache isn't persisted */
+  private File                     _cacheFile;
+
+  /** maps the key of a resolution request to its record */
+  private Map<String, CacheRecord> _records;
+
+  /** the workspace resolvers (together with their fingerprints) for each kind of resolution request */
+  private Map<String, Pair<String, WorkspaceClasspathResolver>> _workspaceResolvers;
+
+  /** the number of records stored in the cache file (including outdated ones) */
+  private int                      _recordsInFile;
+
+  /** hit counter */
+  private int                      _hits;
+
+  /** miss counter */
+  private int                      _missed;
+
+  /** - */
+  private boolean                  _initialized;
 
   /**
    * <p>
+   * Creates a new instance of type {@link JdtResolverCache}.
    * </p>
-   * 
+   */
+  public JdtResolverCache() {
+    this._records = new HashMap<String, CacheRecord>();
+    this._workspaceResolvers = new HashMap<String, Pair<String, WorkspaceClasspathResolver>>();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public boolean isInitialized() {
+    return this._initialized;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public synchronized void initialize() {
+    String location = Utilities.cleanup(System.getProperty(CACHE_FILE_PROPERTY));
+    if (location != null) {
+      this._cacheFile = new File(location).getAbsoluteFile();
+      load();
+    }
+    this._initialized = true;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public synchronized void dispose() {
+    for (Pair<String, WorkspaceClasspathResolver> pair : this._workspaceResolvers.values()) {
+      pair.getSecond().dispose();
+    }
+    this._workspaceResolvers.clear();
+    this._initialized = false;
+    A4ELogging.debug("JdtResolverCache: %d hits, %d misses.", Integer.valueOf(this._hits), Integer
+        .valueOf(this._missed));
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if resolved class paths are persisted using the system property
+   * {@link #CACHE_FILE_PROPERTY}.
+   * </p>
+   *
+   * @return <code>true</code> if resolved class paths are persisted.
+   */
+  public boolean isPersistent() {
+    return this._cacheFile != null;
+  }
+
+  /**
+   * <p>
+   * Returns the cached class path for the given request if it's still up to date. Otherwise <code>null</code> will be
+   * returned and the caller is supposed to resolve the class path and to
+   * {@link #storeResolvedClasspath(String, String, List, ResolvedClasspath) store} it.
+   * </p>
+   *
    * @param key
-   * @return
+   *          the key of the request (see {@link #getCacheKey(EclipseProject, boolean, boolean, List)}).
+   * @param fingerprint
+   *          the fingerprint of the settings (see {@link #getFingerprint(EclipseProject, List, List)}).
+   *          If <code>null</code> the class path can't be cached.
+   * @return the cached class path or <code>null</code>.
    */
-  public ResolvedClasspath getResolvedClasspath(String key) {
-    return _classpathCache.get(key);
+  public synchronized ResolvedClasspath getResolvedClasspath(String key, String fingerprint) {
+    Assure.notNull("key", key);
+    if (fingerprint == null) {
+      return null;
+    }
+
+    CacheRecord record = this._records.get(key);
+    if ((record == null) || !record._fingerprint.equals(fingerprint) || !record.isUpToDate()) {
+      this._missed++;
+      return null;
+    }
+
+    this._hits++;
+    return record._classpath;
   }
 
   /**
    * <p>
+   * Stores the given resolved class path and appends it to the cache file.
    * </p>
-   * 
+   *
    * @param key
+   *          the key of the request (see {@link #getCacheKey(EclipseProject, boolean, boolean, List)}).
+   * @param fingerprint
+   *          the fingerprint of the settings (see {@link #getFingerprint(EclipseProject, List, List)}).
+   *          If <code>null</code> the class path won't be cached.
+   * @param projects
+   *          all projects that have been involved in resolving the class path.
    * @param classpath
+   *          the resolved class path.
+   */
+  public synchronized void storeResolvedClasspath(String key, String fingerprint, List<EclipseProject> projects,
+      ResolvedClasspath classpath) {
+    Assure.notNull("key", key);
+    Assure.notNull("projects", projects);
+    Assure.notNull("classpath", classpath);
+    if (fingerprint == null) {
+      return;
+    }
+
+    // collect the stamps of all input files
+    Set<File> files = new LinkedHashSet<File>();
+    Set<File> contentFiles = new LinkedHashSet<File>();
+    for (EclipseProject project : projects) {
+      files.add(project.getFolder());
+      contentFiles.addAll(Arrays.asList(getProjectFiles(project)));
+    }
+    for (File file : classpath.getClasspathFiles()) {
+      files.add(file);
+    }
+    for (File file : classpath.getBootClasspathFiles()) {
+      files.add(file);
+    }
+    List<Stamp> stamps = new LinkedList<Stamp>();
+    for (File file : contentFiles) {
+      stamps.add(Stamp.create(file, true));
+    }
+    for (File file : files) {
+      if (file.isAbsolute() && !contentFiles.contains(file)) {
+        stamps.add(Stamp.create(file, false));
+      }
+    }
+
+    CacheRecord record = new CacheRecord();
+    record._key = key;
+    record._fingerprint = fingerprint;
+    record._stamps = stamps.toArray(new Stamp[stamps.size()]);
+    record._classpath = classpath;
+    this._records.put(key, record);
+
+    if (!isPersistent()) {
+      return;
+    }
+
+    // append the record
+    try {
+      ByteArrayOutputStream byteout = new ByteArrayOutputStream();
+      DataOutputStream dataout = new DataOutputStream(byteout);
+      if (!this._cacheFile.isFile()) {
+        Utilities.mkdirs(this._cacheFile.getParentFile());
+        writeHeader(dataout);
+        this._recordsInFile = 0;
+      }
+      record.write(dataout);
+      dataout.flush();
+      Utilities.appendFile(this._cacheFile, byteout.toByteArray());
+      this._recordsInFile++;
+    } catch (Exception ex) {
+      A4ELogging.warn("Could not update class path cache '%s': %s", this._cacheFile, ex.getMessage());
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the workspace resolver for the given kind of resolution request if it has been created for the given
+   * workspace and the settings didn't change since.
+   * </p>
+   *
+   * @param requestKey
+   *          the kind of the request (see {@link #getRequestKey(boolean, boolean, List)}).
+   * @param workspace
+   *          the workspace.
+   * @param fingerprint
+   *          the fingerprint of the settings (see {@link #getFingerprint(EclipseProject, List, List)}).
+   * @return the workspace resolver or <code>null</code>.
+   */
+  public synchronized WorkspaceClasspathResolver getWorkspaceClasspathResolver(String requestKey,
+      Workspace workspace, String fingerprint) {
+    Assure.notNull("requestKey", requestKey);
+    Pair<String, WorkspaceClasspathResolver> pair = this._workspaceResolvers.get(requestKey);
+    if ((pair == null) || !pair.getFirst().equals(fingerprint) || (pair.getSecond().getWorkspace() != workspace)) {
+      return null;
+    }
+    return pair.getSecond();
+  }
+
+  /**
+   * <p>
+   * Stores the workspace resolver for the given kind of resolution request. A previously stored resolver for this
+   * kind of request is dropped and disposed.
+   * </p>
+   *
+   * @param requestKey
+   *          the kind of the request (see {@link #getRequestKey(boolean, boolean, List)}).
+   * @param fingerprint
+   *          the fingerprint of the settings (see {@link #getFingerprint(EclipseProject, List, List)}).
+   * @param resolver
+   *          the workspace resolver.
+   */
+  public synchronized void storeWorkspaceClasspathResolver(String requestKey, String fingerprint,
+      WorkspaceClasspathResolver resolver) {
+    Assure.notNull("requestKey", requestKey);
+    Assure.notNull("fingerprint", fingerprint);
+    Assure.notNull("resolver", resolver);
+    Pair<String, WorkspaceClasspathResolver> previous = this._workspaceResolvers.put(requestKey,
+        new Pair<String, WorkspaceClasspathResolver>(fingerprint, resolver));
+    if ((previous != null) && (previous.getSecond() != resolver)) {
+      previous.getSecond().dispose();
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the number of class paths that could be served from the cache.
+   * </p>
+   *
+   * @return the number of class paths that could be served from the cache.
+   */
+  public synchronized int getHits() {
+    return this._hits;
+  }
+
+  /**
+   * <p>
+   * Returns the number of class paths that had to be resolved although they have been requested before.
+   * </p>
+   *
+   * @return the number of class paths that had to be resolved.
    */
-  public void storeResolvedClasspath(String key, ResolvedClasspath classpath) {
-    _classpathCache.put(key, classpath);
+  public synchronized int getMisses() {
+    return this._missed;
   }
 
   /**
    * <p>
+   * Returns the key for the given resolution request.
    * </p>
-   * 
+   *
    * @param project
+   *          the project whose class path is resolved.
+   * @param resolveRelative
+   *          indicates if the class path is resolved relative to the workspace or not.
+   * @param runtimeClasspath
+   *          indicates if the class path is a runtime class path or not.
+   * @param classpathContainerArguments
+   *          the class path container arguments (maybe <code>null</code>).
+   * @return the key for the request.
+   */
+  public static String getCacheKey(EclipseProject project, boolean resolveRelative, boolean runtimeClasspath,
+      List<JdtClasspathContainerArgument> classpathContainerArguments) {
+    Assure.notNull("project", project);
+    StringBuilder result = new StringBuilder();
+    result.append(project.getFolder().getAbsolutePath()).append('|');
+    result.append(project.getSpecifiedName()).append('|');
+    result.append(getRequestKey(resolveRelative, runtimeClasspath, classpathContainerArguments));
+    return result.toString();
+  }
+
+  /**
+   * <p>
+   * Returns the key for the kind of a resolution request (the request without the project).
+   * </p>
+   *
    * @param resolveRelative
+   *          indicates if the class path is resolved relative to the workspace or not.
    * @param runtimeClasspath
-   * @return
+   *          indicates if the class path is a runtime class path or not.
+   * @param classpathContainerArguments
+   *          the class path container arguments (maybe <code>null</code>).
+   * @return the key for the kind of the request.
    */
-  public static String getCacheKey(EclipseProject project, boolean resolveRelative, boolean runtimeClasspath) {
-    // TODO include classpathContainerArguments in key
-    return project.getSpecifiedName() + "." + resolveRelative + "." + runtimeClasspath;
+  public static String getRequestKey(boolean resolveRelative, boolean runtimeClasspath,
+      List<JdtClasspathContainerArgument> classpathContainerArguments) {
+    StringBuilder result = new StringBuilder();
+    result.append(resolveRelative).append('|').append(runtimeClasspath);
+    if (classpathContainerArguments != null) {
+      for (JdtClasspathContainerArgument argument : classpathContainerArguments) {
+        result.append('|').append(argument.getKey()).append('=').append(argument.getValue());
+      }
+    }
+    return result.toString();
   }
 
   /**
    * <p>
+   * Computes the fingerprint of all settings outside of the project files that are used to resolve the class path of
+   * the given project.
    * </p>
-   * 
-   * @return
+   *
+   * @param project
+   *          the project whose class path is resolved.
+   * @param classpathContainerArguments
+   *          the class path container arguments (maybe <code>null</code>).
+   * @param containerResolvers
+   *          the container resolvers used for the resolution.
+   * @return the fingerprint or <code>null</code> if the class path can't be cached.
+   */
+  public static String getFingerprint(EclipseProject project,
+      List<JdtClasspathContainerArgument> classpathContainerArguments,
+      List<ClasspathContainerResolver> containerResolvers) {
+    Assure.notNull("project", project);
+    Assure.notNull("containerResolvers", containerResolvers);
+
+    StringBuilder buffer = new StringBuilder();
+
+    // the class path variables
+    ClassPathElementsRegistry registry = ServiceRegistryAccess.instance().getService(ClassPathElementsRegistry.class);
+    Set<String> variables = new TreeSet<String>();
+    for (ClassPathVariable variable : registry.getClasspathVariables()) {
+      variables.add(variable.getName() + "=" + variable.getPath());
+    }
+    buffer.append(variables);
+
+    // the projects of the workspace (a path is workspace relative if it starts with a project name)
+    Set<String> projects = new TreeSet<String>();
+    for (EclipseProject workspaceProject : project.getWorkspace().getAllProjects()) {
+      projects.add(workspaceProject.getSpecifiedName() + "=" + workspaceProject.getFolder());
+    }
+    buffer.append(projects);
+
+    // the settings of the container resolvers
+    for (ClasspathContainerResolver containerResolver : containerResolvers) {
+      if (!(containerResolver instanceof CacheableClasspathContainerResolver)) {
+        A4ELogging.debug("Class path of project '%s' can't be cached: %s is not cacheable.", project
+            .getSpecifiedName(), containerResolver.getClass().getName());
+        return null;
+      }
+      buffer.append(containerResolver.getClass().getName()).append(':');
+      buffer.append(((CacheableClasspathContainerResolver) containerResolver).getCacheKey(project,
+          classpathContainerArguments));
+      buffer.append(';');
+    }
+
+    try {
+      return Utilities.digest(buffer.toString().getBytes("UTF-8"));
+    } catch (UnsupportedEncodingException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the project files of the given project that are used to resolve its class path (f.e. its
+   * <code>.classpath</code>). The files don't need to exist.
+   * </p>
+   *
+   * @param project
+   *          the project
+   * @return the project files.
+   */
+  public static File[] getProjectFiles(EclipseProject project) {
+    Assure.notNull("project", project);
+    File[] result = new File[PROJECT_FILES.length];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = new File(project.getFolder(), PROJECT_FILES[i]);
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns the {@link JdtResolverCache} if the service registry provides one, <code>null</code> otherwise.
+   * </p>
+   *
+   * @return the {@link JdtResolverCache} or <code>null</code>.
    */
   public static JdtResolverCache getInstance() {
+    if (!ServiceRegistryAccess.isConfigured()
+        || !ServiceRegistryAccess.instance().hasService(JdtResolverCache.class)) {
+      return null;
+    }
     return ServiceRegistryAccess.instance().getService(JdtResolverCache.class);
   }
+
+  /**
+   * <p>
+   * Loads the cache file using a single read. Outdated records or a damaged tail (f.e. caused by an interrupted build)
+   * cause the file to be compacted.
+   * </p>
+   */
+  private void load() {
+    this._records.clear();
+    this._recordsInFile = 0;
+
+    if (!this._cacheFile.isFile()) {
+      return;
+    }
+
+    boolean damaged = false;
+    try {
+      DataInputStream input = new DataInputStream(new ByteArrayInputStream(Utilities.readFile(this._cacheFile)));
+      if ((input.readInt() != MAGIC) || (input.readInt() != VERSION)) {
+        damaged = true;
+      } else {
+        while (input.available() > 0) {
+          CacheRecord record = CacheRecord.read(input);
+          this._records.put(record._key, record);
+          this._recordsInFile++;
+        }
+      }
+    } catch (IOException ex) {
+      // the records read so far are still valid
+      damaged = true;
+    } catch (RuntimeException ex) {
+      A4ELogging.warn("Could not read class path cache '%s': %s", this._cacheFile, ex.getMessage());
+      damaged = true;
+    }
+
+    if (damaged || (this._recordsInFile > (2 * this._records.size()) + 64)) {
+      compact();
+    }
+  }
+
+  /**
+   * <p>
+   * Rewrites the cache file so that it only contains the currently known records.
+   * </p>
+   */
+  private void compact() {
+    try {
+      ByteArrayOutputStream byteout = new ByteArrayOutputStream();
+      DataOutputStream dataout = new DataOutputStream(byteout);
+      writeHeader(dataout);
+      for (CacheRecord record : this._records.values()) {
+        record.write(dataout);
+      }
+      dataout.flush();
+      File tempFile = new File(this._cacheFile.getParentFile(), this._cacheFile.getName() + ".tmp");
+      Utilities.writeFile(tempFile, byteout.toByteArray());
+      Utilities.delete(this._cacheFile);
+      if (!tempFile.renameTo(this._cacheFile)) {
+        Utilities.delete(tempFile);
+      }
+      this._recordsInFile = this._records.size();
+    } catch (Exception ex) {
+      A4ELogging.warn("Could not compact class path cache '%s': %s", this._cacheFile, ex.getMessage());
+    }
+  }
+
+  /**
+   * <p>
+   * Writes the file header.
+   * </p>
+   *
+   * @param output
+   *          the output stream
+   * @throws IOException
+   */
+  private static void writeHeader(DataOutputStream output) throws IOException {
+    output.writeInt(MAGIC);
+    output.writeInt(VERSION);
+  }
+
+  /**
+   * <p>
+   * Reads a non-negative count and makes sure that it's plausible for the remaining input.
+   * </p>
+   */
+  private static int readCount(DataInputStream input) throws IOException {
+    int result = input.readInt();
+    if ((result < 0) || (result > input.available())) {
+      throw new IOException("Invalid count " + result);
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * The state of an input file at the time a class path has been resolved.
+   * </p>
+   */
+  private static class Stamp {
+
+    /** the absolute path of the file */
+    private String _path;
+
+    /** the kind of the stamp */
+    private byte   _kind;
+
+    /** the size of the file (content stamps only) */
+    private long   _length;
+
+    /** the modification time of the file (content stamps only) */
+    private long   _lastModified;
+
+    /** the hash of the content of the file (content stamps only) */
+    private String _digest;
+
+    /**
+     * <p>
+     * Creates the stamp for the given file.
+     * </p>
+     */
+    static Stamp create(File file, boolean content) {
+      Stamp result = new Stamp();
+      result._path = file.getAbsolutePath();
+      result._digest = "";
+      if (file.isDirectory()) {
+        result._kind = KIND_DIRECTORY;
+      } else if (!file.isFile()) {
+        result._kind = KIND_MISSING;
+      } else if (!content) {
+        result._kind = KIND_FILE;
+      } else {
+        result._kind = KIND_CONTENT;
+        result._length = file.length();
+        result._lastModified = file.lastModified();
+        result._digest = Utilities.digest(Utilities.readFile(file));
+      }
+      return result;
+    }
+
+    /**
+     * <p>
+     * Returns <code>true</code> if the file still matches this stamp. The content of a file is only compared if its
+     * size is unchanged but its modification time differs.
+     * </p>
+     */
+    boolean isUpToDate() {
+      File file = new File(this._path);
+      switch (this._kind) {
+      case KIND_MISSING:
+        return !file.exists();
+      case KIND_DIRECTORY:
+        return file.isDirectory();
+      case KIND_FILE:
+        return file.isFile();
+      default:
+        if (!file.isFile() || (file.length() != this._length)) {
+          return false;
+        }
+        long lastModified = file.lastModified();
+        if (lastModified == this._lastModified) {
+          return true;
+        }
+        if (!this._digest.equals(Utilities.digest(Utilities.readFile(file)))) {
+          return false;
+        }
+        // the file has been touched only, so there's no need to compare the content next time
+        this._lastModified = lastModified;
+        return true;
+      }
+    }
+
+    /**
+     * <p>
+     * Writes this stamp.
+     * </p>
+     */
+    void write(DataOutputStream output) throws IOException {
+      output.writeUTF(this._path);
+      output.writeByte(this._kind);
+      output.writeLong(this._length);
+      output.writeLong(this._lastModified);
+      output.writeUTF(this._digest);
+    }
+
+    /**
+     * <p>
+     * Reads a stamp.
+     * </p>
+     */
+    static Stamp read(DataInputStream input) throws IOException {
+      Stamp result = new Stamp();
+      result._path = input.readUTF();
+      result._kind = input.readByte();
+      result._length = input.readLong();
+      result._lastModified = input.readLong();
+      result._digest = input.readUTF();
+      return result;
+    }
+  }
+
+  /**
+   * <p>
+   * A single record of the cache: a resolved class path together with the fingerprint and the stamps of its inputs.
+   * </p>
+   */
+  private static class CacheRecord {
+
+    /** the key of the resolution request */
+    private String            _key;
+
+    /** the fingerprint of the settings */
+    private String            _fingerprint;
+
+    /** the stamps of the input files */
+    private Stamp[]           _stamps;
+
+    /** the resolved class path */
+    private ResolvedClasspath _classpath;
+
+    /**
+     * <p>
+     * Returns <code>true</code> if none of the input files has changed.
+     * </p>
+     */
+    boolean isUpToDate() {
+      for (Stamp stamp : this._stamps) {
+        if (!stamp.isUpToDate()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * <p>
+     * Writes this record.
+     * </p>
+     */
+    void write(DataOutputStream output) throws IOException {
+      output.writeUTF(this._key);
+      output.writeUTF(this._fingerprint);
+      output.writeInt(this._stamps.length);
+      for (Stamp stamp : this._stamps) {
+        stamp.write(output);
+      }
+      ResolvedClasspathEntry[] entries = this._classpath.getClasspath();
+      output.writeInt(entries.length);
+      for (ResolvedClasspathEntry entry : entries) {
+        writeEntry(output, entry);
+      }
+      output.writeBoolean(this._classpath.hasBootClasspath());
+      if (this._classpath.hasBootClasspath()) {
+        writeEntry(output, this._classpath.getBootClasspath());
+      }
+    }
+
+    /**
+     * <p>
+     * Reads a record.
+     * </p>
+     */
+    static CacheRecord read(DataInputStream input) throws IOException {
+      CacheRecord result = new CacheRecord();
+      result._key = input.readUTF();
+      result._fingerprint = input.readUTF();
+      result._stamps = new Stamp[readCount(input)];
+      for (int i = 0; i < result._stamps.length; i++) {
+        result._stamps[i] = Stamp.read(input);
+      }
+      ResolvedClasspathImpl classpath = new ResolvedClasspathImpl();
+      int count = readCount(input);
+      for (int i = 0; i < count; i++) {
+        classpath.addClasspathEntry(readEntry(input));
+      }
+      if (input.readBoolean()) {
+        classpath.addBootClasspathEntry(readEntry(input));
+      }
+      result._classpath = classpath;
+      return result;
+    }
+
+    /**
+     * <p>
+     * Writes a resolved class path entry. The paths are written as they are, so relative paths stay relative.
+     * </p>
+     */
+    private static void writeEntry(DataOutputStream output, ResolvedClasspathEntry entry) throws IOException {
+      writeFiles(output, entry.getClassPathEntries());
+      output.writeBoolean(entry.getSourcePathEntries() != null);
+      if (entry.getSourcePathEntries() != null) {
+        writeFiles(output, entry.getSourcePathEntries());
+      }
+      output.writeBoolean(entry.hasAccessRestrictions());
+      if (entry.hasAccessRestrictions()) {
+        AccessRestrictions accessRestrictions = entry.getAccessRestrictions();
+        output.writeBoolean(accessRestrictions.isExcludeAll());
+        writeNames(output, accessRestrictions.getPublicPackages());
+        writeNames(output, accessRestrictions.getPrivatePackages());
+      }
+    }
+
+    /**
+     * <p>
+     * Reads a resolved class path entry.
+     * </p>
+     */
+    private static ResolvedClasspathEntry readEntry(DataInputStream input) throws IOException {
+      File[] classPathEntries = readFiles(input);
+      File[] sourcePathEntries = input.readBoolean() ? readFiles(input) : null;
+      AccessRestrictions accessRestrictions = null;
+      if (input.readBoolean()) {
+        boolean excludeAll = input.readBoolean();
+        Set<String> publicPackages = readNames(input);
+        Set<String> privatePackages = readNames(input);
+        accessRestrictions = new AccessRestrictions(publicPackages, privatePackages, excludeAll);
+      }
+      return new ResolvedClasspathEntry(classPathEntries, accessRestrictions, sourcePathEntries);
+    }
+
+    private static void writeFiles(DataOutputStream output, File[] files) throws IOException {
+      output.writeInt(files.length);
+      for (File file : files) {
+        output.writeUTF(file.getPath());
+      }
+    }
+
+    private static File[] readFiles(DataInputStream input) throws IOException {
+      File[] result = new File[readCount(input)];
+      for (int i = 0; i < result.length; i++) {
+        result[i] = new File(input.readUTF());
+      }
+      return result;
+    }
+
+    private static void writeNames(DataOutputStream output, Set<String> names) throws IOException {
+      output.writeInt(names.size());
+      for (String name : names) {
+        output.writeUTF(name);
+      }
+    }
+
+    private static Set<String> readNames(DataInputStream input) throws IOException {
+      int count = readCount(input);
+      Set<String> result = new LinkedHashSet<String>();
+      for (int i = 0; i < count; i++) {
+        result.add(input.readUTF());
+      }
+      return result;
+    }
+  }
 }
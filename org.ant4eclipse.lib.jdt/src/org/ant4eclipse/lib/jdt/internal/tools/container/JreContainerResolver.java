@@ -17,16 +17,21 @@ import org.ant4eclipse.lib.jdt.model.ClasspathEntry;
 import org.ant4eclipse.lib.jdt.model.ContainerTypes;
 import org.ant4eclipse.lib.jdt.model.jre.JavaRuntime;
 import org.ant4eclipse.lib.jdt.model.jre.JavaRuntimeRegistry;
+import org.ant4eclipse.lib.jdt.model.project.JavaProjectRole;
+import org.ant4eclipse.lib.jdt.model.project.RawClasspathEntry;
 import org.ant4eclipse.lib.jdt.tools.ResolvedClasspathEntry;
 import org.ant4eclipse.lib.jdt.tools.ResolvedClasspathEntry.AccessRestrictions;
-import org.ant4eclipse.lib.jdt.tools.container.ClasspathContainerResolver;
+import org.ant4eclipse.lib.jdt.tools.container.CacheableClasspathContainerResolver;
 import org.ant4eclipse.lib.jdt.tools.container.ClasspathResolverContext;
+import org.ant4eclipse.lib.jdt.tools.container.JdtClasspathContainerArgument;
+import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
 
 import java.io.File;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
-public class JreContainerResolver implements ClasspathContainerResolver {
+public class JreContainerResolver implements CacheableClasspathContainerResolver {
 
   /**
    * {@inheritDoc}
@@ -35,6 +40,51 @@ public class JreContainerResolver implements ClasspathContainerResolver {
     return classpathEntry.getPath().startsWith(ContainerTypes.JRE_CONTAINER);
   }
 
+  /**
+   * {@inheritDoc}
+   * 
+   * <p>
+   * The key consists of the java runtimes and the java profiles that are selected by the JRE containers of the root
+   * project (only the root project contributes a boot class path).
+   * </p>
+   */
+  public String getCacheKey(EclipseProject rootProject,
+      List<JdtClasspathContainerArgument> classpathContainerArguments) {
+    StringBuilder result = new StringBuilder();
+    if (!rootProject.hasRole(JavaProjectRole.class)) {
+      return result.toString();
+    }
+
+    JavaRuntimeRegistry javaRuntimeRegistry = ServiceRegistryAccess.instance().getService(JavaRuntimeRegistry.class);
+    RawClasspathEntry[] entries = rootProject.getRole(JavaProjectRole.class).getRawClasspathEntries(
+        RawClasspathEntry.CPE_CONTAINER);
+    for (RawClasspathEntry entry : entries) {
+      if (!canResolveContainer(entry)) {
+        continue;
+      }
+      String path = entry.getPath().replace('%', ' ');
+      result.append(path).append('|');
+
+      JavaRuntime javaRuntime = null;
+      String key = null;
+      if (path.startsWith(ContainerTypes.VMTYPE_PREFIX)) {
+        key = path.substring(ContainerTypes.VMTYPE_PREFIX.length());
+        if (javaRuntimeRegistry.hasJavaRuntime(key)) {
+          javaRuntime = javaRuntimeRegistry.getJavaRuntime(key);
+        }
+      }
+      if (javaRuntime == null) {
+        javaRuntime = javaRuntimeRegistry.getDefaultJavaRuntime();
+      }
+      result.append(javaRuntime.getLocation()).append('|');
+      for (File library : javaRuntime.getLibraries()) {
+        result.append(library).append('|');
+      }
+      result.append((key != null) && javaRuntimeRegistry.hasJavaProfile(key)).append(';');
+    }
+    return result.toString();
+  }
+
   /**
    * @param resolver
    */
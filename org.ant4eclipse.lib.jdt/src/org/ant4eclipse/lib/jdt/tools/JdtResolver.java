@@ -11,14 +11,25 @@
  **********************************************************************/
 package org.ant4eclipse.lib.jdt.tools;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.util.PerformanceLogging;
 import org.ant4eclipse.lib.jdt.internal.tools.ClasspathEntryResolverExecutor;
+import org.ant4eclipse.lib.jdt.internal.tools.ClasspathModelResolver;
 import org.ant4eclipse.lib.jdt.internal.tools.ClasspathResolverContextImpl;
 import org.ant4eclipse.lib.jdt.internal.tools.ResolvedClasspathImpl;
 import org.ant4eclipse.lib.jdt.internal.tools.ResolverJob;
+import org.ant4eclipse.lib.jdt.internal.tools.WorkspaceClasspathResolver;
 import org.ant4eclipse.lib.jdt.internal.tools.classpathentry.ClasspathEntryResolver;
 import org.ant4eclipse.lib.jdt.internal.tools.classpathentry.ContainerClasspathEntryResolver;
 import org.ant4eclipse.lib.jdt.internal.tools.classpathentry.LibraryClasspathEntryResolver;
@@ -39,13 +50,19 @@ import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
  */
 public class JdtResolver {
 
-  /** system property that enables the Jdt resolver cache */
-  private static final boolean ENABLE_CACHE = Boolean.getBoolean("ant4eclipse.enableJdtResolverCache");
+  /** system property that disables the Jdt resolver cache (if set to <code>false</code>) */
+  private static final boolean ENABLE_CACHE = !"false".equalsIgnoreCase(System
+                                                .getProperty("ant4eclipse.enableJdtResolverCache"));
 
   /**
    * <p>
    * Resolves the class path of the given eclipse project.
    * </p>
+   * <p>
+   * Resolved class paths are cached by the {@link JdtResolverCache} as long as none of the resolution inputs (project
+   * files, class path variables, container settings) has changed. The cache can be disabled by setting the system
+   * property <code>ant4eclipse.enableJdtResolverCache</code> to <code>false</code>.
+   * </p>
    * 
    * @param project
    *          the eclipse project that should be resolved
@@ -59,34 +76,301 @@ public class JdtResolver {
    */
   public static final ResolvedClasspath resolveProjectClasspath(EclipseProject project, boolean resolveRelative,
       boolean isRuntimeClasspath, List<JdtClasspathContainerArgument> classpathContainerArguments) {
+    Assure.notNull("project", project);
+
+    // create the container resolver (it's used to compute the fingerprint as well)
+    ContainerClasspathEntryResolver containerResolver = new ContainerClasspathEntryResolver();
 
-    //
-    if (ENABLE_CACHE) {
+    JdtResolverCache cache = ENABLE_CACHE ? JdtResolverCache.getInstance() : null;
+    if (cache == null) {
 
-      // determine the key for the cached classpath
-      String cacheKey = JdtResolverCache.getCacheKey(project, resolveRelative, isRuntimeClasspath);
+      // cache is disabled, always re-resolve classpath
+      return doResolveProjectClasspath(project, resolveRelative, isRuntimeClasspath, classpathContainerArguments,
+          new ClasspathEntryResolverExecutor(true), containerResolver);
+    }
 
-      // try to get ResolvedClasspath from the cache
-      ResolvedClasspath resolvedClasspath = JdtResolverCache.getInstance().getResolvedClasspath(cacheKey);
+    // determine the key and the fingerprint for the cached classpath
+    String cacheKey = JdtResolverCache.getCacheKey(project, resolveRelative, isRuntimeClasspath,
+        classpathContainerArguments);
+    String fingerprint = JdtResolverCache.getFingerprint(project, classpathContainerArguments, containerResolver
+        .getContainerResolvers());
+    if (fingerprint == null) {
 
-      if (resolvedClasspath == null) {
+      // the classpath can't be cached
+      return doResolveProjectClasspath(project, resolveRelative, isRuntimeClasspath, classpathContainerArguments,
+          new ClasspathEntryResolverExecutor(true), containerResolver);
+    }
 
-        // Classpath has not been resolved yet -> resolve it now
-        resolvedClasspath = doResolveProjectClasspath(project, resolveRelative, isRuntimeClasspath,
-            classpathContainerArguments);
+    // try to get ResolvedClasspath from the cache
+    ResolvedClasspath resolvedClasspath = cache.getResolvedClasspath(cacheKey, fingerprint);
 
-        // add the resolved classpath to the cache
-        JdtResolverCache.getInstance().storeResolvedClasspath(cacheKey, resolvedClasspath);
+    if (resolvedClasspath == null) {
+
+      // Classpath has not been resolved yet or is outdated -> resolve it now. The workspace resolver is shared by all
+      // projects of the workspace, so the contributions of referenced projects are only resolved once
+      String requestKey = JdtResolverCache.getRequestKey(resolveRelative, isRuntimeClasspath,
+          classpathContainerArguments);
+      WorkspaceClasspathResolver workspaceResolver;
+      synchronized (cache) {
+        workspaceResolver = cache.getWorkspaceClasspathResolver(requestKey, project.getWorkspace(), fingerprint);
+        if (workspaceResolver == null) {
+          workspaceResolver = new WorkspaceClasspathResolver(project.getWorkspace(), resolveRelative,
+              isRuntimeClasspath, classpathContainerArguments, createEntryResolvers(containerResolver));
+          cache.storeWorkspaceClasspathResolver(requestKey, fingerprint, workspaceResolver);
+        }
       }
 
-      // return the classpath
-      return resolvedClasspath;
+      PerformanceLogging.start(JdtResolver.class, "doResolveProjectClasspath");
+      List<EclipseProject> projects = new LinkedList<EclipseProject>();
+      resolvedClasspath = workspaceResolver.resolve(project, projects);
+      PerformanceLogging.stop(JdtResolver.class, "doResolveProjectClasspath");
 
-    } else {
+      // add the resolved classpath to the cache
+      cache.storeResolvedClasspath(cacheKey, fingerprint, projects, resolvedClasspath);
+    }
 
-      // cache is disabled, always re-resolve classpath
-      return doResolveProjectClasspath(project, resolveRelative, isRuntimeClasspath, classpathContainerArguments);
+    // return the classpath
+    return resolvedClasspath;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if resolved class paths are cached by the {@link JdtResolverCache}.
+   * </p>
+   * 
+   * @return <code>true</code> if resolved class paths are cached.
+   */
+  public static final boolean isCacheEnabled() {
+    return ENABLE_CACHE && (JdtResolverCache.getInstance() != null);
+  }
+
+  /**
+   * <p>
+   * Resolves the class paths of the given eclipse projects concurrently using a pool with at most
+   * <code>threadCount</code> threads. The result is the same as calling
+   * {@link #resolveProjectClasspath(EclipseProject, boolean, boolean, List)} for each project, so the resolved class
+   * paths are cached as well. Referenced projects that are shared by several projects are resolved only once.
+   * </p>
+   * 
+   * @param projects
+   *          the eclipse projects that should be resolved
+   * @param resolveRelative
+   *          indicates if the class paths should be resolved relative to the workspace or not.
+   * @param isRuntimeClasspath
+   *          indicates if the class paths are runtime class paths or not
+   * @param classpathContainerArguments
+   *          an optional list with class path container arguments
+   * @param threadCount
+   *          the maximum number of threads used to resolve the class paths
+   * @return the resolved class paths in the order of the given projects
+   */
+  public static final List<ResolvedClasspath> resolveProjectClasspaths(Collection<EclipseProject> projects,
+      final boolean resolveRelative, final boolean isRuntimeClasspath,
+      final List<JdtClasspathContainerArgument> classpathContainerArguments, int threadCount) {
+    Assure.notNull("projects", projects);
+
+    List<Callable<ResolvedClasspath>> jobs = new LinkedList<Callable<ResolvedClasspath>>();
+    for (final EclipseProject project : projects) {
+      Assure.notNull("project", project);
+      jobs.add(new Callable<ResolvedClasspath>() {
+        public ResolvedClasspath call() {
+          return resolveProjectClasspath(project, resolveRelative, isRuntimeClasspath, classpathContainerArguments);
+        }
+      });
+    }
+    return execute(jobs, threadCount);
+  }
+
+  /**
+   * <p>
+   * Resolves the class path models of the given eclipse projects concurrently using a pool with at most
+   * <code>threadCount</code> threads (see {@link #resolveProjectClasspathModel(EclipseProject, boolean, List)}).
+   * </p>
+   * 
+   * @param projects
+   *          the eclipse projects that should be resolved
+   * @param includeRuntimeClasspath
+   *          indicates if the runtime class paths should be resolved as well (otherwise only the compile time class
+   *          paths are resolved)
+   * @param classpathContainerArguments
+   *          an optional list with class path container arguments
+   * @param threadCount
+   *          the maximum number of threads used to resolve the class paths
+   * @return the resolved class path models in the order of the given projects
+   */
+  public static final List<ResolvedClasspathModel> resolveProjectClasspathModels(Collection<EclipseProject> projects,
+      final boolean includeRuntimeClasspath, final List<JdtClasspathContainerArgument> classpathContainerArguments,
+      int threadCount) {
+    Assure.notNull("projects", projects);
+
+    List<Callable<ResolvedClasspathModel>> jobs = new LinkedList<Callable<ResolvedClasspathModel>>();
+    for (final EclipseProject project : projects) {
+      Assure.notNull("project", project);
+      jobs.add(new Callable<ResolvedClasspathModel>() {
+        public ResolvedClasspathModel call() {
+          return resolveProjectClasspathModel(project, includeRuntimeClasspath, classpathContainerArguments);
+        }
+      });
+    }
+    return execute(jobs, threadCount);
+  }
+
+  /**
+   * <p>
+   * Returns the cached class path of the given eclipse project. The class path is <b>not</b> resolved if it isn't
+   * cached (or if the cached class path is outdated).
+   * </p>
+   * 
+   * @param project
+   *          the eclipse project
+   * @param resolveRelative
+   *          indicates if the class path should be resolved relative to the workspace or not.
+   * @param isRuntimeClasspath
+   *          indicates if the class path is a runtime class path or not
+   * @param classpathContainerArguments
+   *          an optional list with class path container arguments
+   * @return the cached class path or <code>null</code>
+   */
+  public static final ResolvedClasspath getCachedProjectClasspath(EclipseProject project, boolean resolveRelative,
+      boolean isRuntimeClasspath, List<JdtClasspathContainerArgument> classpathContainerArguments) {
+    Assure.notNull("project", project);
+
+    JdtResolverCache cache = ENABLE_CACHE ? JdtResolverCache.getInstance() : null;
+    if (cache == null) {
+      return null;
     }
+
+    String fingerprint = JdtResolverCache.getFingerprint(project, classpathContainerArguments,
+        new ContainerClasspathEntryResolver().getContainerResolvers());
+    return cache.getResolvedClasspath(JdtResolverCache.getCacheKey(project, resolveRelative, isRuntimeClasspath,
+        classpathContainerArguments), fingerprint);
+  }
+
+  /**
+   * <p>
+   * Resolves the class path of the given eclipse project in a single pass. The absolute and workspace relative (and if
+   * requested the runtime) flavours of the class path can be derived from the returned model without resolving the
+   * class path again. This is considerably faster than resolving each flavour using
+   * {@link #resolveProjectClasspath(EclipseProject, boolean, boolean, List)}.
+   * </p>
+   * <p>
+   * The derived class paths are added to the {@link JdtResolverCache} (if enabled).
+   * </p>
+   * 
+   * @param project
+   *          the eclipse project that should be resolved
+   * @param includeRuntimeClasspath
+   *          indicates if the runtime class path should be resolved as well (otherwise only the compile time class
+   *          path is resolved)
+   * @param classpathContainerArguments
+   *          an optional list with class path container arguments
+   * @return the resolved class path model
+   */
+  public static final ResolvedClasspathModel resolveProjectClasspathModel(EclipseProject project,
+      boolean includeRuntimeClasspath, List<JdtClasspathContainerArgument> classpathContainerArguments) {
+    Assure.notNull("project", project);
+
+    ContainerClasspathEntryResolver containerResolver = new ContainerClasspathEntryResolver();
+
+    // resolve the model
+    PerformanceLogging.start(JdtResolver.class, "resolveProjectClasspathModel");
+    ResolvedClasspathModel result = new ClasspathModelResolver(includeRuntimeClasspath, classpathContainerArguments,
+        createEntryResolvers(containerResolver)).resolve(project);
+    PerformanceLogging.stop(JdtResolver.class, "resolveProjectClasspathModel");
+
+    // add the derived class paths to the cache
+    JdtResolverCache cache = ENABLE_CACHE ? JdtResolverCache.getInstance() : null;
+    if (cache != null) {
+      String fingerprint = JdtResolverCache.getFingerprint(project, classpathContainerArguments, containerResolver
+          .getContainerResolvers());
+      if (fingerprint != null) {
+        for (boolean runtime : includeRuntimeClasspath ? new boolean[] { false, true } : new boolean[] { false }) {
+          for (boolean relative : new boolean[] { false, true }) {
+            cache.storeResolvedClasspath(JdtResolverCache.getCacheKey(project, relative, runtime,
+                classpathContainerArguments), fingerprint, result.getReferencedProjects(runtime), result.getClasspath(
+                relative, runtime));
+          }
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * <p>
+   * Executes the given jobs using a pool with at most <code>threadCount</code> threads and returns their results in the
+   * order of the jobs. The first failure is rethrown, the remaining jobs are cancelled.
+   * </p>
+   * 
+   * @param jobs
+   *          the jobs
+   * @param threadCount
+   *          the maximum number of threads
+   * @return the results of the jobs
+   */
+  private static final <T> List<T> execute(List<Callable<T>> jobs, int threadCount) {
+    Assure.assertTrue(threadCount > 0, "The thread count must be greater than 0.");
+
+    List<T> result = new ArrayList<T>(jobs.size());
+
+    // no need to create a pool
+    if ((threadCount == 1) || (jobs.size() < 2)) {
+      for (Callable<T> job : jobs) {
+        try {
+          result.add(job.call());
+        } catch (RuntimeException ex) {
+          throw ex;
+        } catch (Exception ex) {
+          throw new RuntimeException(ex);
+        }
+      }
+      return result;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threadCount, jobs.size()),
+        new ResolverThreadFactory());
+    try {
+      List<Future<T>> futures = new LinkedList<Future<T>>();
+      for (Callable<T> job : jobs) {
+        futures.add(executor.submit(job));
+      }
+      for (Future<T> future : futures) {
+        try {
+          result.add(future.get());
+        } catch (ExecutionException ex) {
+          Throwable cause = ex.getCause();
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          } else if (cause instanceof Error) {
+            throw (Error) cause;
+          }
+          throw new RuntimeException(cause);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          throw new RuntimeException("Interrupted while resolving the class paths", ex);
+        }
+      }
+      return result;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * <p>
+   * Creates the resolvers for all kinds of class path entries.
+   * </p>
+   * 
+   * @param containerResolver
+   *          the resolver for container entries
+   * @return the entry resolvers
+   */
+  private static final ClasspathEntryResolver[] createEntryResolvers(
+      ContainerClasspathEntryResolver containerResolver) {
+    return new ClasspathEntryResolver[] { new VariableClasspathEntryResolver(), containerResolver,
+        new SourceClasspathEntryResolver(), new ProjectClasspathEntryResolver(), new LibraryClasspathEntryResolver(),
+        new OutputClasspathEntryResolver() };
   }
 
   /**
@@ -97,10 +381,13 @@ public class JdtResolver {
    * @param resolveRelative
    * @param isRuntimeClasspath
    * @param classpathContainerArguments
+   * @param executor
+   * @param containerResolver
    * @return
    */
   private static final ResolvedClasspath doResolveProjectClasspath(EclipseProject project, boolean resolveRelative,
-      boolean isRuntimeClasspath, List<JdtClasspathContainerArgument> classpathContainerArguments) {
+      boolean isRuntimeClasspath, List<JdtClasspathContainerArgument> classpathContainerArguments,
+      ClasspathEntryResolverExecutor executor, ContainerClasspathEntryResolver containerResolver) {
 
     Assure.notNull("project", project);
 
@@ -111,13 +398,8 @@ public class JdtResolver {
     ResolverJob job = new ResolverJob(project, project.getWorkspace(), resolveRelative, isRuntimeClasspath,
         classpathContainerArguments);
 
-    // create the ClasspathEntryResolverExecutor
-    ClasspathEntryResolverExecutor executor = new ClasspathEntryResolverExecutor(true);
-
     // create the ClasspathEntryResolvers
-    ClasspathEntryResolver[] resolvers = new ClasspathEntryResolver[] { new VariableClasspathEntryResolver(),
-        new ContainerClasspathEntryResolver(), new SourceClasspathEntryResolver(), new ProjectClasspathEntryResolver(),
-        new LibraryClasspathEntryResolver(), new OutputClasspathEntryResolver() };
+    ClasspathEntryResolver[] resolvers = createEntryResolvers(containerResolver);
 
     // create the result object
     ResolvedClasspathImpl resolvedClasspath = new ResolvedClasspathImpl();
@@ -132,4 +414,24 @@ public class JdtResolver {
     // return the ResolvedClasspath
     return resolvedClasspath;
   }
+
+  /**
+   * <p>
+   * Creates the daemon threads used to resolve class paths concurrently.
+   * </p>
+   */
+  private static class ResolverThreadFactory implements ThreadFactory {
+
+    /** the number of created threads */
+    private int _count;
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "ant4eclipse-resolve-" + (++this._count));
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
 }
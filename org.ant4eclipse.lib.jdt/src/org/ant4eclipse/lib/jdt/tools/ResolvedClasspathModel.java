@@ -0,0 +1,88 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.tools;
+
+import java.util.List;
+
+import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
+
+/**
+ * <p>
+ * Represents the class path of a project resolved in a single pass. The model records for each resolved entry the
+ * project it originates from and whether it's part of the compile time class path or only of the runtime class path.
+ * The absolute and workspace relative, compile time and runtime flavours of the class path are derived from the model.
+ * </p>
+ */
+public interface ResolvedClasspathModel {
+
+  /**
+   * <p>
+   * Returns the project whose class path has been resolved.
+   * </p>
+   *
+   * @return the project whose class path has been resolved.
+   */
+  EclipseProject getRootProject();
+
+  /**
+   * <p>
+   * Returns the requested flavour of the class path. The result is the same as the result of
+   * {@link JdtResolver#resolveProjectClasspath(EclipseProject, boolean, boolean, List)}.
+   * </p>
+   *
+   * @param relative
+   *          indicates if the class path should be relative to the workspace or not.
+   * @param runtime
+   *          indicates if the runtime class path or the compile time class path is requested.
+   * @return the requested flavour of the class path.
+   */
+  ResolvedClasspath getClasspath(boolean relative, boolean runtime);
+
+  /**
+   * <p>
+   * Returns all projects that are (transitively) referenced by the compile time or the runtime class path (including
+   * the root project).
+   * </p>
+   *
+   * @param runtime
+   *          indicates if the projects of the runtime class path or of the compile time class path are requested.
+   * @return all referenced projects.
+   */
+  List<EclipseProject> getReferencedProjects(boolean runtime);
+
+  /**
+   * <p>
+   * Returns the project whose class path entry contributed the given entry to the runtime class path.
+   * </p>
+   *
+   * @param entry
+   *          an entry of the runtime class path.
+   * @param relative
+   *          indicates if the entry is taken from the workspace relative class path or not.
+   * @return the project that contributed the entry or <code>null</code> if the entry isn't part of the class path.
+   */
+  EclipseProject getOriginProject(ResolvedClasspathEntry entry, boolean relative);
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the given entry is part of the runtime class path but not of the compile time class
+   * path.
+   * </p>
+   *
+   * @param entry
+   *          an entry of the runtime class path.
+   * @param relative
+   *          indicates if the entry is taken from the workspace relative class path or not.
+   * @return <code>true</code> if the given entry is only part of the runtime class path.
+   */
+  boolean isRuntimeOnly(ResolvedClasspathEntry entry, boolean relative);
+}
@@ -0,0 +1,41 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.tools.container;
+
+import java.util.List;
+
+import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
+
+/**
+ * <p>
+ * A {@link ClasspathContainerResolver} that depends on settings outside of the resolved projects (f.e. registered java
+ * runtimes or target platforms). The resolved class paths are cached by the <code>JdtResolver</code>, so a container
+ * resolver has to describe these settings by a cache key. A cached class path is only reused if the cache keys of all
+ * container resolvers didn't change.
+ * </p>
+ */
+public interface CacheableClasspathContainerResolver extends ClasspathContainerResolver {
+
+  /**
+   * <p>
+   * Returns a key that describes the settings used to resolve the containers of the given project. The key must change
+   * whenever the resolution of a container could produce a different result.
+   * </p>
+   *
+   * @param rootProject
+   *          the project whose class path is resolved
+   * @param classpathContainerArguments
+   *          the class path container arguments (maybe <code>null</code>)
+   * @return the cache key (maybe empty, but not <code>null</code>)
+   */
+  String getCacheKey(EclipseProject rootProject, List<JdtClasspathContainerArgument> classpathContainerArguments);
+}
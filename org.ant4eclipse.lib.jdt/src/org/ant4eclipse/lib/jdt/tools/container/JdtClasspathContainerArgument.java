@@ -11,6 +11,10 @@
  **********************************************************************/
 package org.ant4eclipse.lib.jdt.tools.container;
 
+import org.ant4eclipse.lib.core.Assure;
+
+import java.util.List;
+
 /**
  * <p>
  * Represents a jdt class path container argument.
@@ -76,6 +80,31 @@ public class JdtClasspathContainerArgument {
     this.value = value;
   }
 
+  /**
+   * <p>
+   * Returns the class path container argument with the given key (the key is compared case insensitive).
+   * </p>
+   * 
+   * @param arguments
+   *          the class path container arguments. Maybe <code>null</code>.
+   * @param key
+   *          the key of the class path container argument.
+   * @return the class path container argument or <code>null</code> if there's none.
+   */
+  public static JdtClasspathContainerArgument find(List<JdtClasspathContainerArgument> arguments, String key) {
+    Assure.nonEmpty("key", key);
+
+    if (arguments != null) {
+      for (JdtClasspathContainerArgument jdtClasspathContainerArgument : arguments) {
+        if (key.equalsIgnoreCase(jdtClasspathContainerArgument.getKey())) {
+          return jdtClasspathContainerArgument;
+        }
+      }
+    }
+
+    return null;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -90,4 +119,4 @@ public class JdtClasspathContainerArgument {
     buffer.append("]");
     return buffer.toString();
   }
-}
\ No newline at end of file
+}
\ No newline at end of file
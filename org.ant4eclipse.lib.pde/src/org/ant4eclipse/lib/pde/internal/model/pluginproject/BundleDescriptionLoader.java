@@ -23,6 +23,7 @@ import java.util.jar.Manifest;
 
 import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.JarFilePool;
 import org.ant4eclipse.lib.pde.PdeExceptionCode;
 import org.ant4eclipse.lib.pde.model.pluginproject.BundleSource;
 import org.ant4eclipse.lib.pde.model.pluginproject.Constants;
@@ -133,9 +134,11 @@ public class BundleDescriptionLoader {
   private static BundleDescription parsePluginJarFile(File file) {
     Assure.isFile("file", file);
 
+    JarFilePool jarFilePool = JarFilePool.getInstance();
+    JarFile jarFile = null;
     try {
-      // create jar file
-      JarFile jarFile = new JarFile(file);
+      // get jar file from the pool
+      jarFile = jarFilePool.acquire(file);
 
       // support for plugins based on the osgi bundle model
       Manifest manifest = jarFile.getManifest();
@@ -144,6 +147,8 @@ public class BundleDescriptionLoader {
       }
     } catch (Exception e) {
       throw new RuntimeException("Exception while parsing plugin jar '" + file.getName() + "'!", e);
+    } finally {
+      jarFilePool.release(jarFile);
     }
 
     // throw FileParserException since jar is no valid plugin jar
@@ -13,6 +13,7 @@ package org.ant4eclipse.lib.pde.internal.model.pluginproject;
 
 import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.JarFilePool;
 import org.ant4eclipse.lib.pde.PdeExceptionCode;
 import org.ant4eclipse.lib.pde.internal.tools.FeatureDescription;
 import org.ant4eclipse.lib.pde.model.featureproject.FeatureManifest;
@@ -72,9 +73,11 @@ public class FeatureDescriptionLoader {
   private static FeatureDescription parseFeatureJarFile(File file) {
     Assure.isFile("file", file);
 
+    JarFilePool jarFilePool = JarFilePool.getInstance();
+    JarFile jarFile = null;
     try {
-      // create jar file
-      JarFile jarFile = new JarFile(file);
+      // get jar file from the pool
+      jarFile = jarFilePool.acquire(file);
 
       // get the feature manifest
       ZipEntry zipEntry = jarFile.getEntry(Constants.FEATURE_MANIFEST);
@@ -94,6 +97,8 @@ public class FeatureDescriptionLoader {
       // throw new RuntimeException();
       // TODO: handle exception
       return null;
+    } finally {
+      jarFilePool.release(jarFile);
     }
   }
 
@@ -77,7 +77,7 @@ public abstract class AbstractBundleAndFeatureSet implements BundleAndFeatureSet
   /**
    * {@inheritDoc}
    */
-  public final void initialize() {
+  public final synchronized void initialize() {
 
     // return if already initialized
     if (this._isInitialised) {
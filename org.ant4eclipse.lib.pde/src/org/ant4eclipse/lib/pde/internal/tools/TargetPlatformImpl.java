@@ -70,8 +70,8 @@ public final class TargetPlatformImpl implements TargetPlatform {
   /** the target platform configuration */
   private PlatformConfiguration     _configuration;
 
-  /** the state object */
-  private State                     _state;
+  /** the state object (replaced on refresh) */
+  private volatile State            _state;
 
   /** - */
   private File[]                    _targetplatformLocations;
@@ -866,4 +866,4 @@ public final class TargetPlatformImpl implements TargetPlatform {
     }
     return buffer.toString();
   }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -33,6 +33,9 @@ import org.ant4eclipse.lib.platform.model.resource.Workspace;
  * <p>
  * The {@link TargetPlatformRegistryImpl} can be used to retrieve instances of type {@link TargetPlatform}.
  * </p>
+ * <p>
+ * The registry is thread safe, so class paths of plug-in projects may be resolved concurrently.
+ * </p>
  * 
  * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
  * @author Nils Hartmann (nils@nilshartmann.net)
@@ -40,7 +43,7 @@ import org.ant4eclipse.lib.platform.model.resource.Workspace;
 public class TargetPlatformRegistryImpl implements TargetPlatformRegistry {
 
   /** the current {@link TargetPlatform}, maybe null **/
-  private TargetPlatform                         _currentTargetPlatform;
+  private volatile TargetPlatform                _currentTargetPlatform;
 
   /** the static map with all target platforms currently resolved */
   private Map<Object, BundleAndFeatureSet>       _bundleAndFeatureSetMap     = new HashMap<Object, BundleAndFeatureSet>();
@@ -57,7 +60,7 @@ public class TargetPlatformRegistryImpl implements TargetPlatformRegistry {
   /**
    * {@inheritDoc}
    */
-  public void refreshAll() {
+  public synchronized void refreshAll() {
     for (TargetPlatform targetPlatform : this._targetPlatformMap.values()) {
       targetPlatform.refresh();
     }
@@ -87,7 +90,7 @@ public class TargetPlatformRegistryImpl implements TargetPlatformRegistry {
   /**
    * {@inheritDoc}
    */
-  public void clear() {
+  public synchronized void clear() {
     this._bundleAndFeatureSetMap.clear();
     this._targetPlatformDefnitionMap.clear();
     this._targetPlatformMap.clear();
@@ -97,28 +100,29 @@ public class TargetPlatformRegistryImpl implements TargetPlatformRegistry {
    * @see org.ant4eclipse.lib.pde.tools.TargetPlatformRegistry#addPlatformConfiguration(java.lang.String,
    *      org.ant4eclipse.lib.pde.tools.PlatformConfiguration)
    */
-  public void addPlatformConfiguration(String identifier, PlatformConfiguration platformConfiguration) {
+  public synchronized void addPlatformConfiguration(String identifier, PlatformConfiguration platformConfiguration) {
     this._platformConfigurationMap.put(identifier, platformConfiguration);
   }
 
   /**
    * @see org.ant4eclipse.lib.pde.tools.TargetPlatformRegistry#getPlatformConfiguration(java.lang.String)
    */
-  public PlatformConfiguration getPlatformConfiguration(String identifier) {
+  public synchronized PlatformConfiguration getPlatformConfiguration(String identifier) {
     return this._platformConfigurationMap.get(identifier);
   }
 
   /**
    * @see org.ant4eclipse.lib.pde.tools.TargetPlatformRegistry#hasPlatformConfiguration(java.lang.String)
    */
-  public boolean hasPlatformConfiguration(String identifier) {
+  public synchronized boolean hasPlatformConfiguration(String identifier) {
     return this._platformConfigurationMap.containsKey(identifier);
   }
 
   /**
    * {@inheritDoc}
    */
-  public void addTargetPlatformDefinition(String identifier, TargetPlatformDefinition targetPlatformDefinition) {
+  public synchronized void addTargetPlatformDefinition(String identifier,
+      TargetPlatformDefinition targetPlatformDefinition) {
     this._targetPlatformDefnitionMap.put(identifier, targetPlatformDefinition);
 
   }
@@ -126,7 +130,7 @@ public class TargetPlatformRegistryImpl implements TargetPlatformRegistry {
   /**
    * {@inheritDoc}
    */
-  public List<String> getTargetPlatformDefinitionIds() {
+  public synchronized List<String> getTargetPlatformDefinitionIds() {
     return Collections.unmodifiableList(new LinkedList<String>(this._targetPlatformDefnitionMap.keySet()));
   }
 
@@ -155,14 +159,14 @@ public class TargetPlatformRegistryImpl implements TargetPlatformRegistry {
   /**
    * {@inheritDoc}
    */
-  public TargetPlatformDefinition getTargetPlatformDefinition(String identifier) {
+  public synchronized TargetPlatformDefinition getTargetPlatformDefinition(String identifier) {
     return this._targetPlatformDefnitionMap.get(identifier);
   }
 
   /**
    * {@inheritDoc}
    */
-  public boolean hasTargetPlatformDefinition(String identifier) {
+  public synchronized boolean hasTargetPlatformDefinition(String identifier) {
     return this._targetPlatformDefnitionMap.containsKey(identifier);
   }
 
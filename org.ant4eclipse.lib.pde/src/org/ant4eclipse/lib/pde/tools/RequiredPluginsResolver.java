@@ -12,8 +12,11 @@
 package org.ant4eclipse.lib.pde.tools;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
 
 import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
@@ -23,7 +26,7 @@ import org.ant4eclipse.lib.core.service.ServiceRegistryAccess;
 import org.ant4eclipse.lib.core.util.Utilities;
 import org.ant4eclipse.lib.jdt.model.ClasspathEntry;
 import org.ant4eclipse.lib.jdt.tools.ResolvedClasspathEntry;
-import org.ant4eclipse.lib.jdt.tools.container.ClasspathContainerResolver;
+import org.ant4eclipse.lib.jdt.tools.container.CacheableClasspathContainerResolver;
 import org.ant4eclipse.lib.jdt.tools.container.ClasspathResolverContext;
 import org.ant4eclipse.lib.jdt.tools.container.JdtClasspathContainerArgument;
 import org.ant4eclipse.lib.pde.PdeExceptionCode;
@@ -32,6 +35,8 @@ import org.ant4eclipse.lib.pde.internal.tools.BundleDependenciesResolver.BundleD
 import org.ant4eclipse.lib.pde.internal.tools.TargetPlatformImpl;
 import org.ant4eclipse.lib.pde.internal.tools.UnresolvedBundleException;
 import org.ant4eclipse.lib.pde.model.buildproperties.PluginBuildProperties;
+import org.ant4eclipse.lib.pde.model.link.LinkFile;
+import org.ant4eclipse.lib.pde.model.link.LinkFileFactory;
 import org.ant4eclipse.lib.pde.model.pluginproject.BundleSource;
 import org.ant4eclipse.lib.pde.model.pluginproject.PluginProjectRole;
 import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
@@ -39,12 +44,13 @@ import org.eclipse.osgi.service.resolver.BundleDescription;
 
 /**
  * <p>
- * {@link ClasspathContainerResolver} for resolving the 'org.eclipse.pde.core.requiredPlugins' container.
+ * {@link org.ant4eclipse.lib.jdt.tools.container.ClasspathContainerResolver} for resolving the
+ * 'org.eclipse.pde.core.requiredPlugins' container.
  * </p>
  * 
  * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
  */
-public class RequiredPluginsResolver implements ClasspathContainerResolver {
+public class RequiredPluginsResolver implements CacheableClasspathContainerResolver {
 
   /**
    * the constant for the container type 'org.eclipse.pde.core.requiredPlugins'
@@ -58,6 +64,73 @@ public class RequiredPluginsResolver implements ClasspathContainerResolver {
     return classpathEntry.getPath().startsWith(CONTAINER_TYPE_PDE_REQUIRED_PLUGINS);
   }
 
+  /**
+   * {@inheritDoc}
+   * 
+   * <p>
+   * The key consists of the selected target platforms (including size and modification time of each bundle archive
+   * or bundle manifest within their locations), the selected platform configuration and the manifests of all plug-in
+   * projects of the workspace.
+   * </p>
+   */
+  public String getCacheKey(EclipseProject rootProject,
+      List<JdtClasspathContainerArgument> classpathContainerArguments) {
+    Assure.notNull("rootProject", rootProject);
+
+    TargetPlatformRegistry registry = ServiceRegistryAccess.instance().getService(TargetPlatformRegistry.class);
+    JdtClasspathContainerArgument targetPlatformArgument = JdtClasspathContainerArgument.find(
+        classpathContainerArguments, "targetPlatformId");
+    JdtClasspathContainerArgument platformConfigurationArgument = JdtClasspathContainerArgument.find(
+        classpathContainerArguments, "platformConfigurationId");
+    String targetPlatformId = targetPlatformArgument != null ? targetPlatformArgument.getValue() : null;
+    String platformConfigurationId = platformConfigurationArgument != null ? platformConfigurationArgument.getValue()
+        : null;
+
+    StringBuilder result = new StringBuilder();
+
+    // the target platform locations
+    List<String> targetPlatformIds = new LinkedList<String>();
+    if (targetPlatformId != null) {
+      targetPlatformIds.add(targetPlatformId);
+    } else {
+      targetPlatformIds.addAll(registry.getTargetPlatformDefinitionIds());
+    }
+    for (String id : targetPlatformIds) {
+      result.append("tp:").append(id).append('=');
+      if (registry.hasTargetPlatformDefinition(id)) {
+        for (File location : registry.getTargetPlatformDefinition(id).getLocations()) {
+          result.append(location).append('@');
+          appendBundles(result, location);
+          result.append('|');
+        }
+      }
+      result.append(';');
+    }
+
+    // the platform configuration
+    if (Utilities.hasText(platformConfigurationId) && registry.hasPlatformConfiguration(platformConfigurationId)) {
+      PlatformConfiguration configuration = registry.getPlatformConfiguration(platformConfigurationId);
+      Properties properties = configuration.getConfigurationProperties();
+      result.append("pc:").append(platformConfigurationId).append('=');
+      TreeSet<String> names = new TreeSet<String>();
+      for (Object name : properties.keySet()) {
+        names.add(String.valueOf(name));
+      }
+      for (String name : names) {
+        result.append(name).append(':').append(properties.getProperty(name)).append('|');
+      }
+      result.append(configuration.isPreferProjects()).append(';');
+    }
+
+    // the plug-in projects of the workspace
+    for (EclipseProject pluginProject : rootProject.getWorkspace().getAllProjects(PluginProjectRole.class)) {
+      File manifest = pluginProject.getChild("META-INF/MANIFEST.MF");
+      result.append("pp:").append(manifest).append('@').append(manifest.lastModified()).append('@').append(
+          manifest.length()).append(';');
+    }
+    return result.toString();
+  }
+
   /**
    * {@inheritDoc}
    * 
@@ -274,6 +347,44 @@ public class RequiredPluginsResolver implements ClasspathContainerResolver {
 
   }
 
+  /**
+   * <p>
+   * Appends size and modification time of all bundles within the given target platform location to the cache key. The
+   * bundles are looked up like the target platform does: within the <code>plugins</code> directory (or the location
+   * itself) and the <code>plugins</code> directories of the linked locations. For a bundle archive the archive itself
+   * is used, for a bundle directory its manifest.
+   * </p>
+   * 
+   * @param result
+   *          the cache key
+   * @param location
+   *          the target platform location
+   */
+  private void appendBundles(StringBuilder result, File location) {
+    List<File> pluginsDirectories = new LinkedList<File>();
+    File pluginsDirectory = new File(location, "plugins");
+    pluginsDirectories.add(pluginsDirectory.exists() ? pluginsDirectory : location);
+    if (location.isDirectory()) {
+      for (LinkFile linkFile : LinkFileFactory.getLinkFiles(location)) {
+        if (linkFile.isValidDestination()) {
+          pluginsDirectories.add(linkFile.getPluginsDirectory());
+        }
+      }
+    }
+    for (File directory : pluginsDirectories) {
+      String[] names = directory.list();
+      if (names == null) {
+        continue;
+      }
+      Arrays.sort(names);
+      for (String name : names) {
+        File bundle = new File(directory, name);
+        File file = bundle.isDirectory() ? new File(bundle, "META-INF/MANIFEST.MF") : bundle;
+        result.append(name).append(':').append(file.length()).append(':').append(file.lastModified()).append(',');
+      }
+    }
+  }
+
   /**
    * <p>
    * Returns the target platform.
@@ -329,4 +440,4 @@ public class RequiredPluginsResolver implements ClasspathContainerResolver {
       return registry.getInstance(context.getWorkspace(), targetPlatformContainerArgument.getValue(), configuration);
     }
   }
-}
\ No newline at end of file
+}
\ No newline at end of file